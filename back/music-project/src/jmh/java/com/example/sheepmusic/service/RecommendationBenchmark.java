@@ -0,0 +1,189 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.repository.PlaylistRepository;
+import com.example.sheepmusic.repository.PlaylistSongRepository;
+import com.example.sheepmusic.repository.SongRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 推荐热点路径基准测试
+ *
+ * 用合成数据（按品味聚类的收藏 + 播放次数 + 公开歌单）装载内存索引，直接调用 RecommendationService 的打分方法，
+ * 不经过推荐结果缓存和数据库。吞吐量和 p99 分别来自 Throughput / SampleTime 两种模式，分配速率来自 -prof gc。
+ *
+ * 运行：mvn -P benchmark test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class RecommendationBenchmark {
+
+    private static final int SONGS = 50_000;
+    private static final int CLUSTERS = 200;
+    private static final int POOL_SIZE = SONGS / CLUSTERS;
+    private static final int FAVORITES_PER_USER = 8;
+    private static final int PLAYED_PER_USER = 6;
+    private static final int SONGS_PER_PLAYLIST = 30;
+    private static final int QUERIES = 4096;
+
+    @Param({"10000", "100000", "1000000"})
+    private int users;
+
+    private RecommendationService service;
+
+    private long[] queryUsers;
+
+    private long[] querySongs;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+
+        // 1. 用户-歌曲交互：每个用户属于一个品味簇，70% 的交互来自簇内歌曲池，其余来自全局热门
+        int pairs = users * (FAVORITES_PER_USER + PLAYED_PER_USER);
+        long[] userIds = new long[pairs];
+        long[] songIds = new long[pairs];
+        int[] weights = new int[pairs];
+        int n = 0;
+        for (int user = 1; user <= users; user++) {
+            int cluster = random.nextInt(CLUSTERS);
+            for (int i = 0; i < FAVORITES_PER_USER; i++) {
+                userIds[n] = user;
+                songIds[n] = pickSong(random, cluster);
+                weights[n] = 1;
+                n++;
+            }
+            for (int i = 0; i < PLAYED_PER_USER; i++) {
+                userIds[n] = user;
+                songIds[n] = pickSong(random, cluster);
+                weights[n] = (1 + random.nextInt(5)) << 1;
+                n++;
+            }
+        }
+        InteractionIndex interactionIndex = new InteractionIndex();
+        interactionIndex.load(userIds, songIds, weights, n);
+
+        UserLshIndex userLshIndex = new UserLshIndex();
+        ReflectionTestUtils.setField(userLshIndex, "interactionIndex", interactionIndex);
+        ReflectionTestUtils.setField(userLshIndex, "bands", 48);
+        ReflectionTestUtils.setField(userLshIndex, "rows", 1);
+        ReflectionTestUtils.setField(userLshIndex, "maxCandidates", 2000);
+        userLshIndex.init();
+
+        SongSimilarityIndex songSimilarityIndex = new SongSimilarityIndex();
+        ReflectionTestUtils.setField(songSimilarityIndex, "interactionIndex", interactionIndex);
+        ReflectionTestUtils.setField(songSimilarityIndex, "topK", 50);
+        ReflectionTestUtils.setField(songSimilarityIndex, "maxStalenessMs", Long.MAX_VALUE);
+        songSimilarityIndex.rebuild();
+
+        // 2. 公开歌单：每个歌单的歌曲来自一个品味簇
+        int playlists = Math.max(1000, users / 20);
+        List<Object[]> playlistStats = new ArrayList<>(playlists);
+        List<Object[]> playlistSongs = new ArrayList<>(playlists * SONGS_PER_PLAYLIST);
+        for (long playlist = 1; playlist <= playlists; playlist++) {
+            playlistStats.add(new Object[]{playlist, (long) (1 + random.nextInt(users)),
+                (long) random.nextInt(100_000), (long) random.nextInt(5_000)});
+            int cluster = random.nextInt(CLUSTERS);
+            for (int i = 0; i < SONGS_PER_PLAYLIST; i++) {
+                playlistSongs.add(new Object[]{playlist, pickSong(random, cluster)});
+            }
+        }
+        PlaylistSongIndex playlistSongIndex = new PlaylistSongIndex();
+        ReflectionTestUtils.setField(playlistSongIndex, "playlistRepository",
+            stub(PlaylistRepository.class, "findPublicPlaylistStats", args -> playlistStats));
+        ReflectionTestUtils.setField(playlistSongIndex, "playlistSongRepository",
+            stub(PlaylistSongRepository.class, "findPublicPlaylistSongPairs", args -> playlistSongs));
+        playlistSongIndex.reload();
+
+        // 3. 热门歌曲（推荐不足时的补充来源）
+        List<Song> hotSongs = new ArrayList<>();
+        for (long songId = 0; songId < 100; songId++) {
+            Song song = new Song();
+            song.setId(songId);
+            hotSongs.add(song);
+        }
+
+        service = new RecommendationService();
+        ReflectionTestUtils.setField(service, "interactionIndex", interactionIndex);
+        ReflectionTestUtils.setField(service, "userLshIndex", userLshIndex);
+        ReflectionTestUtils.setField(service, "songSimilarityIndex", songSimilarityIndex);
+        ReflectionTestUtils.setField(service, "songVectorIndex", new SongVectorIndex());
+        ReflectionTestUtils.setField(service, "alsRecommender", new AlsRecommender());
+        ReflectionTestUtils.setField(service, "playlistSongIndex", playlistSongIndex);
+        ReflectionTestUtils.setField(service, "playlistRepository",
+            stub(PlaylistRepository.class, "findByIsPublicOrderByCreateTimeDesc", args -> Collections.emptyList()));
+        ReflectionTestUtils.setField(service, "songRepository",
+            stub(SongRepository.class, "findByStatusOrderByPlayCountDesc",
+                args -> new PageImpl<>(hotSongs.subList(0, Math.min(((Pageable) args[1]).getPageSize(), hotSongs.size())))));
+        ReflectionTestUtils.setField(service, "defaultStrategy", RecommendationService.STRATEGY_CF);
+
+        queryUsers = new long[QUERIES];
+        querySongs = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queryUsers[i] = 1 + random.nextInt(users);
+            querySongs[i] = pickSong(random, random.nextInt(CLUSTERS));
+        }
+    }
+
+    @Benchmark
+    public List<Long> personalized() {
+        return service.rankPersonalized(queryUsers[next()], 20, RecommendationService.STRATEGY_CF);
+    }
+
+    @Benchmark
+    public List<Long> similarSongs() {
+        return service.getSimilarSongIds(querySongs[next()], 10);
+    }
+
+    @Benchmark
+    public List<Long> playlists() {
+        return service.rankPlaylists(queryUsers[next()], 10);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (QUERIES - 1);
+        return cursor;
+    }
+
+    /**
+     * 簇内和全局都偏向头部（立方分布），70% 来自簇内歌曲池
+     */
+    private static long pickSong(Random random, int cluster) {
+        if (random.nextDouble() < 0.7) {
+            double r = random.nextDouble();
+            return (long) cluster * POOL_SIZE + (int) (POOL_SIZE * r * r * r);
+        }
+        double r = random.nextDouble();
+        return (long) (SONGS * r * r * r);
+    }
+
+    /**
+     * 只实现一个查询方法的仓库桩，其余方法抛出异常
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, String method, Function<Object[], Object> answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, m, args) -> {
+            if (m.getName().equals(method)) {
+                return answer.apply(args);
+            }
+            if (m.getDeclaringClass() == Object.class) {
+                return m.getName().equals("toString") ? type.getSimpleName() + "Stub" : m.invoke(type, args);
+            }
+            throw new UnsupportedOperationException(m.getName());
+        });
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.sheepmusic.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新歌热度榜基准测试
+ *
+ * 50 万首歌曲的曲库，创建时间均匀分布在 spreadDays 天内：3 年时只有约 1/12 的歌曲会被跟踪，
+ * 90 天为最坏情况（整个曲库都是新歌）。分别测量播放量更新和 Top-50 查询，p99 来自 SampleTime 模式，
+ * 分配速率来自 -prof gc。
+ * 内存占用由 build 单独测量：单次建榜前后各做数次 GC 取稳定的已用堆，差值即榜单常驻内存，
+ * 以 retainedBytes / trackedSongs 辅助计数器输出（-prof gc 只能给出分配速率，看不到常驻大小）。
+ *
+ * 运行：mvn -P benchmark test-compile exec:exec -Djmh.args="NewReleaseChartBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class NewReleaseChartBenchmark {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long[] WINDOWS = {7 * DAY, 30 * DAY, 90 * DAY};
+    private static final int CATALOGUE = 500_000;
+    private static final int QUERIES = 4096;
+
+    @Param({"1095", "90"})
+    private int spreadDays;
+
+    private NewReleaseChart chart;
+
+    private long now;
+
+    private long[] updateIds;
+
+    private long[] createTimes;
+
+    private long[] plays;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        now = 10_000 * DAY;
+        createTimes = new long[CATALOGUE];
+        plays = new long[CATALOGUE];
+        for (int id = 0; id < CATALOGUE; id++) {
+            createTimes[id] = now - (long) (random.nextDouble() * spreadDays * DAY);
+            plays[id] = (long) Math.exp(random.nextDouble() * 12);
+        }
+        chart = load();
+        updateIds = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            updateIds[i] = random.nextInt(CATALOGUE);
+        }
+    }
+
+    @Benchmark
+    public void addPlays() {
+        chart.addPlays(updateIds[next()], 1);
+    }
+
+    @Benchmark
+    public long[] top() {
+        return chart.top(WINDOWS[next() % WINDOWS.length], now, 50);
+    }
+
+    /**
+     * 建榜耗时与常驻内存，每次迭代只建一次榜
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void build(Footprint footprint) {
+        long before = usedHeap();
+        NewReleaseChart built = load();
+        long after = usedHeap();
+        footprint.retainedBytes = after - before;
+        footprint.trackedSongs = built.size();
+        // 测量完成前保持引用，避免榜单提前被回收
+        footprint.chart = built;
+    }
+
+    /**
+     * build 的辅助计数器，每次迭代重置
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long retainedBytes;
+
+        public long trackedSongs;
+
+        private NewReleaseChart chart;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+            trackedSongs = 0;
+            chart = null;
+        }
+    }
+
+    private NewReleaseChart load() {
+        NewReleaseChart loaded = new NewReleaseChart(WINDOWS);
+        for (int id = 0; id < CATALOGUE; id++) {
+            loaded.put(id, createTimes[id], plays[id], now);
+        }
+        return loaded;
+    }
+
+    /**
+     * 多次 GC 后取已用堆的最小值，减少并发回收带来的抖动
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private int next() {
+        int index = cursor;
+        cursor = (index + 1) & (QUERIES - 1);
+        return index;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.sheepmusic.common;
+
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果
+ *
+ * 与 Page 的页码分页不同，下一页从上一页最后一条记录的排序键之后继续查询（keyset 分页），
+ * 查询只走索引范围扫描，翻到多深都不会变慢；代价是不提供总数和跳页。
+ * 游标对客户端不透明，原样传回即可。
+ */
+@Data
+public class CursorPage<T> {
+    
+    private static final String SEPARATOR = "_";
+    
+    /**
+     * 每页最多条数
+     */
+    public static final int MAX_SIZE = 100;
+    
+    /**
+     * 本页数据
+     */
+    private List<T> content;
+    
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private String nextCursor;
+    
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+    
+    /**
+     * 由多查询一条的结果构建分页：rows 超过 size 条说明还有下一页
+     *
+     * @param rows      按排序键查询的 size + 1 条记录
+     * @param size      每页大小
+     * @param cursorOf  根据本页最后一条记录生成下一页游标
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+        CursorPage<T> page = new CursorPage<>();
+        page.setHasMore(rows.size() > size);
+        page.setContent(rows.size() > size ? new ArrayList<>(rows.subList(0, size)) : rows);
+        page.setNextCursor(page.isHasMore() ? cursorOf.apply(page.getContent().get(size - 1)) : null);
+        return page;
+    }
+    
+    /**
+     * 把请求的每页大小限制在 [1, MAX_SIZE]
+     */
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+    
+    /**
+     * 把排序键编码为游标
+     */
+    public static String encode(Object... keys) {
+        StringBuilder builder = new StringBuilder();
+        for (Object key : keys) {
+            if (builder.length() > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(key);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * 解析游标中的排序键
+     *
+     * @param count 排序键个数
+     */
+    public static String[] decode(String cursor, int count) {
+        try {
+            String[] keys = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+            if (keys.length != count) {
+                throw new IllegalArgumentException();
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("无效的分页游标");
+        }
+    }
+}
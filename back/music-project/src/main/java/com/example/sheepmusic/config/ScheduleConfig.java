@@ -0,0 +1,13 @@
+package com.example.sheepmusic.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置
+ * 线程池大小见 application.yml 中的 spring.task.scheduling.pool.size
+ */
+@Configuration
+@EnableScheduling
+public class ScheduleConfig {
+}
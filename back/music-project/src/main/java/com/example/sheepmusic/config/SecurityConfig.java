@@ -1,5 +1,6 @@
 package com.example.sheepmusic.config;
 
+import com.example.sheepmusic.security.JwtAuthenticationEntryPoint;
 import com.example.sheepmusic.security.JwtAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -22,6 +23,9 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Autowired
+    private JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
+
     /*密码加密器 Bean*/
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -61,6 +65,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
             // 其他请求需要认证
             .anyRequest().authenticated()
             
+            .and()
+            // 未认证返回 401，前端据此刷新访问令牌
+            .exceptionHandling()
+            .authenticationEntryPoint(jwtAuthenticationEntryPoint)
+
             .and()
             // 添加JWT过滤器
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
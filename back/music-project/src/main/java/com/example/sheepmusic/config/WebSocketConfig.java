@@ -1,6 +1,9 @@
 package com.example.sheepmusic.config;
 
+import com.example.sheepmusic.security.StompRateLimitInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -13,12 +16,21 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private StompRateLimitInterceptor stompRateLimitInterceptor;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // 订阅前缀，客户端可订阅 /topic/** 或 /queue/**
         config.enableSimpleBroker("/topic", "/queue");
         // 应用前缀，客户端发送到 /app/** 由 @MessageMapping 处理
-        config.setApplicationDestinationPrefixes("/app");
+        config.setApplicationDestinationPrefixes(StompRateLimitInterceptor.APP_PREFIX);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // 客户端发送的消息按 @RateLimited 规则限流
+        registration.interceptors(stompRateLimitInterceptor);
     }
 
     @Override
@@ -1,10 +1,28 @@
 package com.example.sheepmusic.controller;
 
 import com.example.sheepmusic.common.Result;
+import com.example.sheepmusic.entity.User;
+import com.example.sheepmusic.security.RateLimiter;
+import com.example.sheepmusic.security.TokenRevocationList;
+import com.example.sheepmusic.service.ListenerStats;
+import com.example.sheepmusic.service.PlayArchive;
+import com.example.sheepmusic.service.PlayCountAggregator;
+import com.example.sheepmusic.service.PlayHistoryIngestor;
+import com.example.sheepmusic.service.RecommendationCache;
+import com.example.sheepmusic.service.RetentionJob;
+import com.example.sheepmusic.service.SongSearchIndex;
+import com.example.sheepmusic.service.SuggestIndex;
+import com.example.sheepmusic.service.UserProfileCache;
+import com.example.sheepmusic.service.UserService;
+import com.example.sheepmusic.utils.JwtUtil;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 管理员控制器
  * 只有管理员可以访问这些接口
@@ -15,6 +33,45 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin
 public class AdminController {
     
+    @Autowired
+    private RecommendationCache recommendationCache;
+    
+    @Autowired
+    private PlayCountAggregator playCountAggregator;
+    
+    @Autowired
+    private PlayHistoryIngestor playHistoryIngestor;
+    
+    @Autowired
+    private ListenerStats listenerStats;
+    
+    @Autowired
+    private RetentionJob retentionJob;
+    
+    @Autowired
+    private PlayArchive playArchive;
+    
+    @Autowired
+    private UserProfileCache userProfileCache;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+    
+    @Autowired
+    private RateLimiter rateLimiter;
+    
+    @Autowired
+    private SongSearchIndex songSearchIndex;
+    
+    @Autowired
+    private SuggestIndex suggestIndex;
+    
     /**
      * 测试管理员权限
      */
@@ -32,4 +89,141 @@ public class AdminController {
     public Result<String> getUserList() {
         return Result.success("用户列表", "user list data");
     }
+    
+    /**
+     * 推荐结果缓存统计（命中、未命中、淘汰、过期、失效次数）
+     */
+    @ApiOperation("推荐结果缓存统计")
+    @GetMapping("/cache/recommendation")
+    public Result<Map<String, Object>> getRecommendationCacheStats() {
+        return Result.success("查询成功", recommendationCache.getStats());
+    }
+    
+    /**
+     * 用户资料缓存统计
+     */
+    @ApiOperation("用户资料缓存统计")
+    @GetMapping("/cache/user-profile")
+    public Result<Map<String, Object>> getUserProfileCacheStats() {
+        return Result.success("查询成功", userProfileCache.getStats());
+    }
+    
+    /**
+     * 认证缓存统计（已验签Token缓存命中情况、被禁用和已吊销的用户数）
+     */
+    @ApiOperation("认证缓存统计")
+    @GetMapping("/cache/auth")
+    public Result<Map<String, Object>> getAuthCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("verifiedTokens", jwtUtil.getVerifiedCacheStats());
+        stats.put("revocation", tokenRevocationList.getStats());
+        return Result.success("查询成功", stats);
+    }
+    
+    /**
+     * 歌曲搜索索引统计（文档数、词数、倒排项数）
+     */
+    @ApiOperation("歌曲搜索索引统计")
+    @GetMapping("/search-index")
+    public Result<Map<String, Object>> getSearchIndexStats() {
+        return Result.success("查询成功", songSearchIndex.getStats());
+    }
+    
+    /**
+     * 搜索联想索引统计（条目数、节点数、补全槽位数、最近一次重建耗时）
+     */
+    @ApiOperation("搜索联想索引统计")
+    @GetMapping("/suggest-index")
+    public Result<Map<String, Object>> getSuggestIndexStats() {
+        return Result.success("查询成功", suggestIndex.getStats());
+    }
+    
+    /**
+     * 接口限流统计（每条规则的速率、容量、跟踪的用户/IP 数、放行和拒绝次数）
+     */
+    @ApiOperation("接口限流统计")
+    @GetMapping("/rate-limit")
+    public Result<Map<String, Object>> getRateLimitStats() {
+        return Result.success("查询成功", rateLimiter.getStats());
+    }
+    
+    /**
+     * 禁用/启用用户，禁用后该用户的Token立即失效
+     */
+    @ApiOperation("禁用/启用用户")
+    @PutMapping("/users/{userId}/status")
+    public Result<Void> updateUserStatus(@PathVariable Long userId, @RequestParam Integer status) {
+        try {
+            User user = userService.updateStatus(userId, status);
+            return Result.success(user.getStatus() == 1 ? "已启用" : "已禁用", null);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * 播放量写回统计（待写回歌曲数、待写回播放数、已写回播放数、写回失败次数）
+     */
+    @ApiOperation("播放量写回统计")
+    @GetMapping("/play-count")
+    public Result<Map<String, Object>> getPlayCountStats() {
+        return Result.success("查询成功", playCountAggregator.getStats());
+    }
+    
+    /**
+     * 播放历史写入统计（队列深度、接收/拒绝/写入/丢弃条数、批量写入耗时）
+     */
+    @ApiOperation("播放历史写入统计")
+    @GetMapping("/play-history")
+    public Result<Map<String, Object>> getPlayHistoryIngestStats() {
+        return Result.success("查询成功", playHistoryIngestor.getStats());
+    }
+    
+    /**
+     * 独立听众草图统计（内存草图数、待持久化数、持久化次数与耗时）
+     */
+    @ApiOperation("独立听众草图统计")
+    @GetMapping("/listener-stats")
+    public Result<Map<String, Object>> getListenerStats() {
+        return Result.success("查询成功", listenerStats.getStats());
+    }
+    
+    /**
+     * 过期数据清理进度（各策略的进度位置、最近一次删除行数、删除速度、行锁等待）
+     */
+    @ApiOperation("过期数据清理进度")
+    @GetMapping("/retention")
+    public Result<Map<String, Object>> getRetentionStats() {
+        return Result.success("查询成功", retentionJob.getStats());
+    }
+    
+    /**
+     * 立即执行一次过期数据清理（后台运行，从上次进度继续）
+     */
+    @ApiOperation("立即执行过期数据清理")
+    @PostMapping("/retention/run")
+    public Result<Void> runRetention() {
+        if (!retentionJob.runAsync()) {
+            return Result.error("清理任务正在运行");
+        }
+        return Result.success("清理任务已开始", null);
+    }
+    
+    /**
+     * 播放历史归档统计（段文件数、行组数、记录数、每条记录平均字节数）
+     */
+    @ApiOperation("播放历史归档统计")
+    @GetMapping("/play-archive")
+    public Result<Map<String, Object>> getPlayArchiveStats() {
+        return Result.success("查询成功", playArchive.getStats());
+    }
+    
+    /**
+     * 歌曲在已归档播放历史中每个月的播放次数
+     */
+    @ApiOperation("歌曲归档月度播放次数")
+    @GetMapping("/play-archive/song/{songId}")
+    public Result<Map<String, Long>> getArchivedSongMonthlyPlays(@PathVariable Long songId) {
+        return Result.success("查询成功", playArchive.songMonthlyPlays(songId));
+    }
 }
@@ -2,8 +2,11 @@ package com.example.sheepmusic.controller;
 
 import com.example.sheepmusic.common.Result;
 import com.example.sheepmusic.dto.LoginRequest;
+import com.example.sheepmusic.dto.RefreshTokenRequest;
 import com.example.sheepmusic.dto.RegisterRequest;
 import com.example.sheepmusic.entity.User;
+import com.example.sheepmusic.security.RateLimited;
+import com.example.sheepmusic.service.RefreshTokenService;
 import com.example.sheepmusic.service.UserService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -11,10 +14,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.Map;
 
 /**
- * 认证控制器（登录、注册）
+ * 认证控制器（登录、注册、刷新令牌、退出登录）
  */
 @Api(tags = "用户认证")
 @RestController
@@ -25,10 +29,14 @@ public class AuthController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    
     /**
      * 用户注册
      */
     @ApiOperation("用户注册")
+    @RateLimited(value = "register", permitsPerSecond = 0.02, burst = 5, key = RateLimited.Key.IP)
     @PostMapping("/register")
     public Result<User> register(@Validated @RequestBody RegisterRequest request) {
         try {
@@ -43,6 +51,7 @@ public class AuthController {
      * 用户登录
      */
     @ApiOperation("用户登录")
+    @RateLimited(value = "login", permitsPerSecond = 0.2, burst = 10, key = RateLimited.Key.IP)
     @PostMapping("/login")
     public Result<Map<String, Object>> login(@Validated @RequestBody LoginRequest request) {
         try {
@@ -52,5 +61,37 @@ public class AuthController {
             return Result.error(e.getMessage());
         }
     }
+    
+    /**
+     * 刷新令牌（旧刷新令牌随即作废）
+     */
+    @ApiOperation("刷新令牌")
+    @RateLimited(value = "refresh", permitsPerSecond = 0.5, burst = 20, key = RateLimited.Key.IP)
+    @PostMapping("/refresh")
+    public Result<Map<String, Object>> refresh(@Validated @RequestBody RefreshTokenRequest request) {
+        try {
+            Map<String, Object> result = refreshTokenService.refresh(request.getRefreshToken());
+            return Result.success("刷新成功", result);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * 退出登录（作废刷新令牌并吊销当前访问令牌）
+     */
+    @ApiOperation("退出登录")
+    @PostMapping("/logout")
+    public Result<Void> logout(@RequestBody(required = false) RefreshTokenRequest request,
+                               HttpServletRequest httpRequest) {
+        try {
+            String header = httpRequest.getHeader("Authorization");
+            String accessToken = header != null && header.startsWith("Bearer ") ? header.substring(7) : null;
+            refreshTokenService.logout(request == null ? null : request.getRefreshToken(), accessToken);
+            return Result.success("退出成功", null);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
 }
 
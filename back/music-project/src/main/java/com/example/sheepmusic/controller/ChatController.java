@@ -1,9 +1,11 @@
 package com.example.sheepmusic.controller;
 
+import com.example.sheepmusic.common.CursorPage;
 import com.example.sheepmusic.common.Result;
 import com.example.sheepmusic.dto.ChatMessageRequest;
 import com.example.sheepmusic.dto.ConversationVO;
 import com.example.sheepmusic.entity.ChatMessage;
+import com.example.sheepmusic.security.RateLimited;
 import com.example.sheepmusic.service.ChatService;
 import com.example.sheepmusic.utils.JwtUtil;
 import io.swagger.annotations.Api;
@@ -35,6 +37,7 @@ public class ChatController {
      * 发送消息
      */
     @ApiOperation("发送消息")
+    @RateLimited(value = "chat", permitsPerSecond = 2, burst = 20)
     @PostMapping("/send")
     public Result<ChatMessage> sendMessage(@Valid @RequestBody ChatMessageRequest request,
                                           HttpServletRequest httpRequest) {
@@ -74,6 +77,27 @@ public class ChatController {
         }
     }
     
+    /**
+     * 获取聊天记录（游标分页）
+     * 首页不传 cursor，之后传上一页返回的 nextCursor；不返回总数，翻页深度不影响查询速度
+     */
+    @ApiOperation("获取聊天记录（游标分页）")
+    @GetMapping("/history/{friendId}/cursor")
+    public Result<CursorPage<ChatMessage>> getChatHistoryByCursor(
+            @PathVariable Long friendId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            HttpServletRequest request) {
+        try {
+            Long userId = jwtUtil.getUserIdFromRequest(request);
+            size = CursorPage.clampSize(size);
+            CursorPage<ChatMessage> messages = chatService.getChatHistory(userId, friendId, cursor, size);
+            return Result.success("查询成功", messages);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 获取会话列表
      */
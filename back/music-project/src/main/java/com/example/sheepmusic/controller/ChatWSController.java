@@ -2,6 +2,7 @@ package com.example.sheepmusic.controller;
 
 import com.example.sheepmusic.dto.ChatMessageRequest;
 import com.example.sheepmusic.entity.ChatMessage;
+import com.example.sheepmusic.security.RateLimited;
 import com.example.sheepmusic.service.ChatService;
 import com.example.sheepmusic.utils.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +27,7 @@ public class ChatWSController {
      * 处理聊天消息发送
      * 前端发布到 /app/chat/send，需携带 Authorization Header（Bearer token）
      */
+    @RateLimited(value = "chat", permitsPerSecond = 2, burst = 20)
     @MessageMapping("/chat/send")
     public void send(@Payload ChatMessageRequest request,
                      @Header(name = "Authorization", required = false) String authorization) {
@@ -3,6 +3,7 @@ package com.example.sheepmusic.controller;
 import com.example.sheepmusic.common.Result;
 import com.example.sheepmusic.dto.CommentRequest;
 import com.example.sheepmusic.entity.SongComment;
+import com.example.sheepmusic.security.RateLimited;
 import com.example.sheepmusic.service.CommentService;
 import com.example.sheepmusic.utils.JwtUtil;
 import io.swagger.annotations.Api;
@@ -34,6 +35,7 @@ public class CommentController {
      * 发表评论
      */
     @ApiOperation("发表评论")
+    @RateLimited(value = "comment", permitsPerSecond = 0.2, burst = 5)
     @PostMapping
     public Result<SongComment> addComment(@Valid @RequestBody CommentRequest request,
                                           HttpServletRequest httpRequest) {
@@ -109,6 +111,7 @@ public class CommentController {
      * 点赞/取消点赞评论
      */
     @ApiOperation("点赞/取消点赞评论")
+    @RateLimited(value = "like", permitsPerSecond = 2, burst = 20)
     @PostMapping("/{commentId}/like")
     public Result<Boolean> toggleLike(@PathVariable Long commentId,
                                       HttpServletRequest request) {
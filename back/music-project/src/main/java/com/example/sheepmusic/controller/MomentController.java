@@ -1,10 +1,12 @@
 package com.example.sheepmusic.controller;
 
+import com.example.sheepmusic.common.CursorPage;
 import com.example.sheepmusic.common.Result;
 import com.example.sheepmusic.dto.MomentCommentRequest;
 import com.example.sheepmusic.dto.MomentRequest;
 import com.example.sheepmusic.entity.MomentComment;
 import com.example.sheepmusic.entity.UserMoment;
+import com.example.sheepmusic.security.RateLimited;
 import com.example.sheepmusic.service.MomentService;
 import com.example.sheepmusic.utils.JwtUtil;
 import io.swagger.annotations.Api;
@@ -35,6 +37,7 @@ public class MomentController {
      * 发布动态
      */
     @ApiOperation("发布动态")
+    @RateLimited(value = "moment", permitsPerSecond = 0.05, burst = 3)
     @PostMapping
     public Result<UserMoment> publishMoment(@Valid @RequestBody MomentRequest request,
                                             HttpServletRequest httpRequest) {
@@ -74,6 +77,26 @@ public class MomentController {
         }
     }
     
+    /**
+     * 获取好友动态（游标分页）
+     * 首页不传 cursor，之后传上一页返回的 nextCursor；不返回总数，翻页深度不影响查询速度
+     */
+    @ApiOperation("获取好友动态（游标分页）")
+    @GetMapping("/friends/cursor")
+    public Result<CursorPage<UserMoment>> getFriendsMomentsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            HttpServletRequest request) {
+        try {
+            Long userId = jwtUtil.getUserIdFromRequest(request);
+            size = CursorPage.clampSize(size);
+            CursorPage<UserMoment> moments = momentService.getFriendsMoments(userId, cursor, size);
+            return Result.success("查询成功", moments);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 获取公开动态
      */
@@ -107,10 +130,29 @@ public class MomentController {
         }
     }
     
+    /**
+     * 获取用户的动态（游标分页）
+     */
+    @ApiOperation("获取用户的动态（游标分页）")
+    @GetMapping("/user/{userId}/cursor")
+    public Result<CursorPage<UserMoment>> getUserMomentsByCursor(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            size = CursorPage.clampSize(size);
+            CursorPage<UserMoment> moments = momentService.getUserMoments(userId, cursor, size);
+            return Result.success("查询成功", moments);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 点赞/取消点赞动态
      */
     @ApiOperation("点赞/取消点赞动态")
+    @RateLimited(value = "like", permitsPerSecond = 2, burst = 20)
     @PostMapping("/{momentId}/like")
     public Result<Boolean> toggleLike(@PathVariable Long momentId,
                                       HttpServletRequest request) {
@@ -128,6 +170,7 @@ public class MomentController {
      * 评论动态
      */
     @ApiOperation("评论动态")
+    @RateLimited(value = "comment", permitsPerSecond = 0.2, burst = 5)
     @PostMapping("/comment")
     public Result<MomentComment> commentMoment(@Valid @RequestBody MomentCommentRequest request,
                                                HttpServletRequest httpRequest) {
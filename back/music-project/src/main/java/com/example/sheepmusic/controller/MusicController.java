@@ -3,10 +3,13 @@ package com.example.sheepmusic.controller;
 import com.example.sheepmusic.common.Result;
 import com.example.sheepmusic.entity.Artist;
 import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.security.RateLimited;
 import com.example.sheepmusic.service.ArtistService;
 import com.example.sheepmusic.service.SongService;
+import com.example.sheepmusic.service.SuggestIndex;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -15,6 +18,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 音乐浏览控制器（用户端）
@@ -28,6 +32,9 @@ public class MusicController {
     @Autowired
     private SongService songService;
     
+    @Autowired
+    private SuggestIndex suggestIndex;
+    
     @Autowired
     private ArtistService artistService;
     
@@ -64,6 +71,22 @@ public class MusicController {
         }
     }
     
+    /**
+     * 搜索框联想（歌曲名、歌手名、热门搜索词，支持拼音首字母，如 zjl → 周杰伦）
+     */
+    @ApiOperation("搜索联想")
+    @GetMapping("/suggest")
+    public Result<List<Map<String, Object>>> suggest(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        try {
+            return Result.success("查询成功", suggestIndex.suggest(keyword, Math.max(1, limit)));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 获取热门歌曲
      */
@@ -100,6 +123,42 @@ public class MusicController {
         }
     }
     
+    /**
+     * 获取热门新歌（时间窗口内创建的歌曲按播放次数排序）
+     */
+    @ApiOperation("获取热门新歌")
+    @GetMapping("/new/hot")
+    public Result<List<Song>> getNewHotSongs(
+            @ApiParam(value = "时间窗口（天）：7、30、90", defaultValue = "30")
+            @RequestParam(defaultValue = "30") int days,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        try {
+            List<Song> songs = songService.getNewHotSongs(days, limit);
+            return Result.success("查询成功", songs);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * 获取实时热歌（最近 1 小时 / 24 小时 / 7 天内播放最多的歌曲）
+     */
+    @ApiOperation("获取实时热歌")
+    @GetMapping("/trending")
+    public Result<List<Song>> getTrendingSongs(
+            @ApiParam(value = "时间窗口：1h、24h、7d", defaultValue = "24h")
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        try {
+            List<Song> songs = songService.getTrendingSongs(window, limit);
+            return Result.success("查询成功", songs);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 根据歌手获取歌曲
      */
@@ -118,6 +177,7 @@ public class MusicController {
      * 播放歌曲（增加播放次数）
      */
     @ApiOperation("播放歌曲")
+    @RateLimited(value = "play", permitsPerSecond = 1, burst = 10)
     @PostMapping("/play/{id}")
     public Result<Void> playSong(@PathVariable Long id) {
         try {
@@ -162,6 +222,32 @@ public class MusicController {
         }
     }
     
+    /**
+     * 获取歌曲独立听众数（今天、最近 7 天、全部时间，HyperLogLog 估计值）
+     */
+    @ApiOperation("获取歌曲独立听众数")
+    @GetMapping("/song/{id}/listeners")
+    public Result<Map<String, Long>> getSongListeners(@PathVariable Long id) {
+        try {
+            return Result.success("查询成功", songService.getSongListeners(id));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * 获取歌手独立听众数（今天、最近 7 天、全部时间，HyperLogLog 估计值）
+     */
+    @ApiOperation("获取歌手独立听众数")
+    @GetMapping("/artist/{id}/listeners")
+    public Result<Map<String, Long>> getArtistListeners(@PathVariable Long id) {
+        try {
+            return Result.success("查询成功", artistService.getArtistListeners(id));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 获取歌曲歌词
      */
@@ -1,5 +1,6 @@
 package com.example.sheepmusic.controller;
 
+import com.example.sheepmusic.common.CursorPage;
 import com.example.sheepmusic.common.Result;
 import com.example.sheepmusic.entity.Notification;
 import com.example.sheepmusic.service.NotificationService;
@@ -46,6 +47,26 @@ public class NotificationController {
         }
     }
     
+    /**
+     * 获取通知列表（游标分页）
+     * 首页不传 cursor，之后传上一页返回的 nextCursor；不返回总数，翻页深度不影响查询速度
+     */
+    @ApiOperation("获取通知列表（游标分页）")
+    @GetMapping("/list/cursor")
+    public Result<CursorPage<Notification>> getNotificationsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            HttpServletRequest request) {
+        try {
+            Long userId = jwtUtil.getUserIdFromRequest(request);
+            size = CursorPage.clampSize(size);
+            CursorPage<Notification> notifications = notificationService.getNotifications(userId, cursor, size);
+            return Result.success("查询成功", notifications);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 获取未读通知
      */
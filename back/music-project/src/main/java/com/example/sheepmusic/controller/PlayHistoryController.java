@@ -1,9 +1,11 @@
 package com.example.sheepmusic.controller;
 
+import com.example.sheepmusic.common.CursorPage;
 import com.example.sheepmusic.common.Result;
 import com.example.sheepmusic.dto.PlayHistoryDTO;
 import com.example.sheepmusic.entity.PlayHistory;
 import com.example.sheepmusic.entity.User;
+import com.example.sheepmusic.security.RateLimited;
 import com.example.sheepmusic.service.PlayHistoryService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -36,6 +38,7 @@ public class PlayHistoryController {
      * Body: { "songId": 123, "playDuration": 180 }
      */
     @ApiOperation("添加播放历史")
+    @RateLimited(value = "play-history", permitsPerSecond = 1, burst = 10)
     @PostMapping
     public Result<?> addPlayHistory(
             @AuthenticationPrincipal User user,
@@ -75,6 +78,27 @@ public class PlayHistoryController {
         }
     }
 
+    /**
+     * 获取播放历史列表（游标分页，去重，包含播放次数）
+     * GET /api/user/play-history/list/cursor?cursor=&size=20
+     * 首页不传 cursor，之后传上一页返回的 nextCursor；翻页深度不影响查询速度
+     */
+    @ApiOperation("获取播放历史列表（游标分页）")
+    @GetMapping("/list/cursor")
+    public Result<CursorPage<PlayHistoryDTO>> getPlayHistoryListByCursor(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        try {
+            size = CursorPage.clampSize(size);
+            CursorPage<PlayHistoryDTO> history = playHistoryService.getPlayHistoryWithCount(user.getId(), cursor, size);
+            return Result.success(history);
+        } catch (Exception e) {
+            return Result.error("查询失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 统计播放历史数量
      * GET /api/user/play-history/count
@@ -129,6 +153,42 @@ public class PlayHistoryController {
         }
     }
 
+    /**
+     * 从播放历史中删除一首歌（该歌曲的全部播放记录）
+     * DELETE /api/user/play-history/song/{songId}
+     */
+    @ApiOperation("从播放历史中删除一首歌")
+    @DeleteMapping("/song/{songId}")
+    public Result<?> deleteSongPlayHistory(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long songId
+    ) {
+        try {
+            playHistoryService.deleteSongPlayHistory(user.getId(), songId);
+            return Result.success("删除成功");
+        } catch (Exception e) {
+            return Result.error("删除失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 年度回顾
+     * GET /api/user/play-history/year-review?year=2025
+     */
+    @ApiOperation("年度回顾")
+    @GetMapping("/year-review")
+    public Result<Map<String, Object>> getYearReview(
+            @AuthenticationPrincipal User user,
+            @RequestParam int year,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        try {
+            return Result.success(playHistoryService.getYearReview(user.getId(), year, limit));
+        } catch (Exception e) {
+            return Result.error("查询失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取最近播放的歌曲
      * GET /api/user/play-history/recent?limit=10
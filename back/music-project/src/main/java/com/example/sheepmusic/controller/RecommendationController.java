@@ -23,6 +23,16 @@ import java.util.List;
 @CrossOrigin
 public class RecommendationController {
     
+    /**
+     * 分页推荐最多翻到的页码，与每页上限一起限制单次请求需要计算的排序深度
+     */
+    private static final int MAX_PAGE = 50;
+    
+    /**
+     * 单次请求最多返回的数量
+     */
+    private static final int MAX_LIMIT = 100;
+    
     @Autowired
     private RecommendationService recommendationService;
     
@@ -36,16 +46,22 @@ public class RecommendationController {
     @GetMapping("/personalized")
     public Result<List<Song>> getPersonalizedSongs(
             HttpServletRequest request,
+            @ApiParam(value = "页码（从0开始）", defaultValue = "0")
+            @RequestParam(defaultValue = "0") int page,
             @ApiParam(value = "推荐数量", defaultValue = "20")
-            @RequestParam(defaultValue = "20") int limit
+            @RequestParam(defaultValue = "20") int limit,
+            @ApiParam(value = "推荐策略：cf-协同过滤，als-矩阵分解，不传使用默认配置")
+            @RequestParam(required = false) String strategy
     ) {
         try {
             Long userId = getUserIdFromToken(request);
             if (userId == null) {
                 return Result.error("请先登录");
             }
+            page = Math.max(0, Math.min(page, MAX_PAGE));
+            limit = Math.max(1, Math.min(limit, MAX_LIMIT));
             
-            List<Song> recommendations = recommendationService.getPersonalizedSongs(userId, limit);
+            List<Song> recommendations = recommendationService.getPersonalizedSongs(userId, page, limit, strategy);
             return Result.success("推荐成功", recommendations);
         } catch (Exception e) {
             e.printStackTrace();
@@ -60,6 +76,8 @@ public class RecommendationController {
     @GetMapping("/guess-you-like")
     public Result<List<Song>> getGuessYouLike(
             HttpServletRequest request,
+            @ApiParam(value = "页码（从0开始）", defaultValue = "0")
+            @RequestParam(defaultValue = "0") int page,
             @ApiParam(value = "推荐数量", defaultValue = "30")
             @RequestParam(defaultValue = "30") int limit
     ) {
@@ -68,8 +86,10 @@ public class RecommendationController {
             if (userId == null) {
                 return Result.error("请先登录");
             }
+            page = Math.max(0, Math.min(page, MAX_PAGE));
+            limit = Math.max(1, Math.min(limit, MAX_LIMIT));
             
-            List<Song> recommendations = recommendationService.getGuessYouLike(userId, limit);
+            List<Song> recommendations = recommendationService.getGuessYouLike(userId, page, limit);
             return Result.success("推荐成功", recommendations);
         } catch (Exception e) {
             e.printStackTrace();
@@ -89,6 +109,7 @@ public class RecommendationController {
             @RequestParam(defaultValue = "10") int limit
     ) {
         try {
+            limit = Math.max(1, Math.min(limit, MAX_LIMIT));
             List<Song> similarSongs = recommendationService.getSimilarSongs(songId, limit);
             return Result.success("查询成功", similarSongs);
         } catch (Exception e) {
@@ -97,6 +118,48 @@ public class RecommendationController {
         }
     }
     
+    /**
+     * 接下来播放（自动连播）
+     */
+    @ApiOperation("接下来播放")
+    @GetMapping("/up-next/{songId}")
+    public Result<List<Song>> getUpNextSongs(
+            @ApiParam(value = "当前播放的歌曲ID", required = true)
+            @PathVariable Long songId,
+            @ApiParam(value = "推荐数量", defaultValue = "10")
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        try {
+            limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+            List<Song> upNextSongs = recommendationService.getUpNextSongs(songId, limit);
+            return Result.success("查询成功", upNextSongs);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error("获取下一首失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 歌曲电台（以一首歌为种子连续推荐）
+     */
+    @ApiOperation("歌曲电台")
+    @GetMapping("/radio/{songId}")
+    public Result<List<Song>> getRadioSongs(
+            @ApiParam(value = "种子歌曲ID", required = true)
+            @PathVariable Long songId,
+            @ApiParam(value = "推荐数量", defaultValue = "30")
+            @RequestParam(defaultValue = "30") int limit
+    ) {
+        try {
+            limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+            List<Song> radioSongs = recommendationService.getRadioSongs(songId, limit);
+            return Result.success("查询成功", radioSongs);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error("获取电台歌曲失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 推荐歌单
      */
@@ -104,6 +167,8 @@ public class RecommendationController {
     @GetMapping("/playlists")
     public Result<List<Playlist>> getRecommendedPlaylists(
             HttpServletRequest request,
+            @ApiParam(value = "页码（从0开始）", defaultValue = "0")
+            @RequestParam(defaultValue = "0") int page,
             @ApiParam(value = "推荐数量", defaultValue = "10")
             @RequestParam(defaultValue = "10") int limit
     ) {
@@ -112,8 +177,10 @@ public class RecommendationController {
             if (userId == null) {
                 return Result.error("请先登录");
             }
+            page = Math.max(0, Math.min(page, MAX_PAGE));
+            limit = Math.max(1, Math.min(limit, MAX_LIMIT));
             
-            List<Playlist> playlists = recommendationService.getRecommendedPlaylists(userId, limit);
+            List<Playlist> playlists = recommendationService.getRecommendedPlaylists(userId, page, limit);
             return Result.success("推荐成功", playlists);
         } catch (Exception e) {
             e.printStackTrace();
@@ -4,6 +4,7 @@ import com.example.sheepmusic.common.Result;
 import com.example.sheepmusic.dto.SearchHistoryRequest;
 import com.example.sheepmusic.entity.SearchHistory;
 import com.example.sheepmusic.entity.User;
+import com.example.sheepmusic.security.RateLimited;
 import com.example.sheepmusic.service.SearchHistoryService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -59,6 +60,7 @@ public class SearchHistoryController {
      * 添加搜索记录
      */
     @ApiOperation("添加搜索记录")
+    @RateLimited(value = "search-history", permitsPerSecond = 1, burst = 10)
     @PostMapping
     public Result<Void> addSearchHistory(
             @AuthenticationPrincipal User user,
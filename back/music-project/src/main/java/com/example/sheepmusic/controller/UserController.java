@@ -5,6 +5,7 @@ import com.example.sheepmusic.dto.UpdatePasswordRequest;
 import com.example.sheepmusic.dto.UpdateUserRequest;
 import com.example.sheepmusic.entity.User;
 import com.example.sheepmusic.service.UserService;
+import com.example.sheepmusic.service.UserStatsService;
 import com.example.sheepmusic.utils.JwtUtil;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -30,6 +31,9 @@ public class UserController {
     @Autowired
     private JwtUtil jwtUtil;
     
+    @Autowired
+    private UserStatsService userStatsService;
+    
     /**
      * 获取当前用户信息
      */
@@ -56,6 +60,30 @@ public class UserController {
         }
     }
     
+    /**
+     * 获取当前用户的收听统计
+     */
+    @ApiOperation("获取当前用户的收听统计（最常听的歌曲/歌手、流派/语言分布、每周收听时长）")
+    @GetMapping("/stats")
+    public Result<Map<String, Object>> getUserStats(
+            @RequestParam(defaultValue = "10") Integer limit,
+            @RequestParam(defaultValue = "12") Integer weeks,
+            HttpServletRequest request) {
+        try {
+            String token = request.getHeader("Authorization");
+            if (token != null && token.startsWith("Bearer ")) {
+                token = token.substring(7);
+            }
+            Long userId = jwtUtil.getUserIdFromToken(token);
+            
+            limit = Math.max(1, Math.min(limit, 50));
+            weeks = Math.max(1, Math.min(weeks, 52));
+            return Result.success(userStatsService.getStats(userId, limit, weeks));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 更新用户信息
      */
@@ -2,6 +2,7 @@ package com.example.sheepmusic.dto;
 
 import com.example.sheepmusic.entity.PlayHistory;
 import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.entity.UserSongPlay;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -18,6 +19,11 @@ public class PlayHistoryDTO {
      */
     private Long id;
     
+    /**
+     * 歌曲ID
+     */
+    private Long songId;
+    
     /**
      * 歌曲信息
      */
@@ -33,16 +39,34 @@ public class PlayHistoryDTO {
      */
     private Long playCount;
     
+    /**
+     * 累计播放时长（秒）
+     */
+    private Long totalDuration;
+    
     /**
      * 从 PlayHistory 实体转换
      */
     public static PlayHistoryDTO fromEntity(PlayHistory playHistory, Long playCount) {
         PlayHistoryDTO dto = new PlayHistoryDTO();
         dto.setId(playHistory.getId());
+        dto.setSongId(playHistory.getSongId());
         dto.setSong(playHistory.getSong());
         dto.setPlayTime(playHistory.getPlayTime());
         dto.setPlayCount(playCount);
         return dto;
     }
+    
+    /**
+     * 从 (用户, 歌曲) 播放汇总转换（去重的播放历史，没有单条记录ID）
+     */
+    public static PlayHistoryDTO fromRollup(UserSongPlay play) {
+        PlayHistoryDTO dto = new PlayHistoryDTO();
+        dto.setSongId(play.getSongId());
+        dto.setSong(play.getSong());
+        dto.setPlayTime(play.getLastPlayTime());
+        dto.setPlayCount(play.getPlayCount());
+        dto.setTotalDuration(play.getTotalDuration());
+        return dto;
+    }
 }
-
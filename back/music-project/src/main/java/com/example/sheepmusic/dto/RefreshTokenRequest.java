@@ -0,0 +1,15 @@
+package com.example.sheepmusic.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotBlank;
+
+/**
+ * 刷新令牌请求
+ */
+@Data
+public class RefreshTokenRequest {
+    
+    @NotBlank(message = "刷新令牌不能为空")
+    private String refreshToken;
+}
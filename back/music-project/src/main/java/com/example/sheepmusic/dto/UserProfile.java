@@ -0,0 +1,40 @@
+package com.example.sheepmusic.dto;
+
+import com.example.sheepmusic.entity.User;
+import lombok.Data;
+
+/**
+ * 用户资料摘要（缓存用，不含密码、邮箱等敏感字段）
+ */
+@Data
+public class UserProfile {
+    
+    private Long id;
+    
+    private String username;
+    
+    private String nickname;
+    
+    private String avatar;
+    
+    /**
+     * 角色：user-普通用户, admin-管理员
+     */
+    private String role;
+    
+    /**
+     * 状态：0-禁用, 1-正常
+     */
+    private Integer status;
+    
+    public static UserProfile from(User user) {
+        UserProfile profile = new UserProfile();
+        profile.setId(user.getId());
+        profile.setUsername(user.getUsername());
+        profile.setNickname(user.getNickname());
+        profile.setAvatar(user.getAvatar());
+        profile.setRole(user.getRole());
+        profile.setStatus(user.getStatus());
+        return profile;
+    }
+}
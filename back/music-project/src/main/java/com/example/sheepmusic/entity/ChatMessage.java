@@ -12,7 +12,7 @@ import java.time.LocalDateTime;
 @Data
 @Entity
 @Table(name = "tb_chat_message", indexes = {
-    @Index(name = "idx_sender_receiver", columnList = "senderId,receiverId"),
+    @Index(name = "idx_sender_receiver_time", columnList = "senderId,receiverId,createTime,id"),
     @Index(name = "idx_create_time", columnList = "createTime")
 })
 public class ChatMessage {
@@ -0,0 +1,55 @@
+package com.example.sheepmusic.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 独立听众数草图实体类
+ * 每个 (对象类型, 对象ID, 统计周期) 一行，保存 HyperLogLog 序列化后的寄存器，由 ListenerStats 定期写入
+ */
+@Data
+@Entity
+@Table(name = "tb_listener_sketch", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"target_type", "target_id", "period"})
+}, indexes = {
+    @Index(name = "idx_period", columnList = "period")
+})
+public class ListenerSketch {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 对象类型：song-歌曲，artist-歌手
+     */
+    @Column(name = "target_type", nullable = false, length = 10)
+    private String targetType;
+    
+    /**
+     * 歌曲ID或歌手ID
+     */
+    @Column(name = "target_id", nullable = false)
+    private Long targetId;
+    
+    /**
+     * 统计周期：all-全部时间，yyyy-MM-dd-当天
+     */
+    @Column(nullable = false, length = 10)
+    private String period;
+    
+    /**
+     * HyperLogLog 序列化字节（稀疏表示几十字节，稠密表示约 4KB）
+     */
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] registers;
+    
+    /**
+     * 更新时间
+     */
+    @Column(name = "update_time")
+    private LocalDateTime updateTime;
+}
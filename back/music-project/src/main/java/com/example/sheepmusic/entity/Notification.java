@@ -11,7 +11,9 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "tb_notification")
+@Table(name = "tb_notification", indexes = {
+    @Index(name = "idx_user_create_time", columnList = "userId,createTime,id")
+})
 public class Notification {
     
     @Id
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 @Data
 @Entity
 @Table(name = "tb_play_history", indexes = {
-    @Index(name = "idx_user_play_time", columnList = "user_id,play_time")
+    @Index(name = "idx_user_play_time", columnList = "user_id,play_time"),
+    @Index(name = "idx_user_song", columnList = "user_id,song_id")
 })
 public class PlayHistory {
     
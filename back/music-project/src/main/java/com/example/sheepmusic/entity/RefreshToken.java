@@ -0,0 +1,65 @@
+package com.example.sheepmusic.entity;
+
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 刷新令牌实体类
+ * 只保存令牌的 SHA-256 摘要；每次刷新都作废旧令牌并在同一家族（同一次登录）中签发新令牌，
+ * 已作废的令牌再次出现说明被盗用，整个家族一并作废
+ */
+@Data
+@Entity
+@Table(name = "tb_refresh_token", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"token_hash"})
+}, indexes = {
+    @Index(name = "idx_user_id", columnList = "user_id"),
+    @Index(name = "idx_family_id", columnList = "family_id"),
+    @Index(name = "idx_revoked_create_time", columnList = "revoked, create_time")
+})
+public class RefreshToken {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 用户ID
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    /**
+     * 令牌的 SHA-256 摘要（Base64）
+     */
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+    
+    /**
+     * 令牌家族：同一次登录后轮换出的令牌共用一个家族ID
+     */
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+    
+    /**
+     * 过期时间
+     */
+    @Column(name = "expire_time", nullable = false)
+    private LocalDateTime expireTime;
+    
+    /**
+     * 是否已作废（已轮换、退出登录或被吊销）
+     */
+    @Column(nullable = false)
+    private Boolean revoked = false;
+    
+    /**
+     * 创建时间
+     */
+    @CreationTimestamp
+    @Column(name = "create_time", updatable = false)
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,88 @@
+package com.example.sheepmusic.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 数据保留任务进度实体类
+ * 每个清理策略一行，记录已清理到的主键位置（中断后从这里继续）和最近一次运行的统计
+ */
+@Data
+@Entity
+@Table(name = "tb_retention_progress", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"policy"})
+})
+public class RetentionProgress {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 策略名称：play-history、notification、search-history
+     */
+    @Column(nullable = false, length = 50)
+    private String policy;
+    
+    /**
+     * 主键不大于该值的过期数据已全部删除
+     */
+    @Column(name = "cursor_id", nullable = false)
+    private Long cursorId;
+    
+    /**
+     * 最近一次运行状态：RUNNING-运行中，DONE-完成，PAUSED-超出运行时长暂停，FAILED-失败
+     */
+    @Column(length = 20)
+    private String status;
+    
+    /**
+     * 最近一次运行开始时间
+     */
+    @Column(name = "last_start_time")
+    private LocalDateTime lastStartTime;
+    
+    /**
+     * 最近一次运行结束时间
+     */
+    @Column(name = "last_end_time")
+    private LocalDateTime lastEndTime;
+    
+    /**
+     * 最近一次运行删除的行数
+     */
+    @Column(name = "last_deleted")
+    private Long lastDeleted;
+    
+    /**
+     * 最近一次运行的删除速度（行/秒）
+     */
+    @Column(name = "last_rows_per_second")
+    private Double lastRowsPerSecond;
+    
+    /**
+     * 最近一次运行期间数据库行锁等待时间（毫秒，取自 Innodb_row_lock_time，为全库累计值的增量）
+     */
+    @Column(name = "last_lock_wait_ms")
+    private Long lastLockWaitMs;
+    
+    /**
+     * 最近一次运行中单块删除的最长耗时（毫秒）
+     */
+    @Column(name = "last_max_chunk_ms")
+    private Long lastMaxChunkMs;
+    
+    /**
+     * 累计删除的行数
+     */
+    @Column(name = "total_deleted")
+    private Long totalDeleted;
+    
+    /**
+     * 最近一次失败的错误信息
+     */
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+}
@@ -87,9 +87,9 @@ public class Song {
     private String lyric;
     
     /**
-     * 播放次数
+     * 播放次数（只由 PlayCountAggregator 批量累加写回，保存实体时不覆盖）
      */
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Long playCount = 0L;
     
     /**
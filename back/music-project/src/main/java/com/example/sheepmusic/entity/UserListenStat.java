@@ -0,0 +1,55 @@
+package com.example.sheepmusic.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * 用户收听统计实体类
+ * 每个 (用户, 维度, 维度值) 一行，写入播放历史时在同一事务中累加；
+ * 维度：song-歌曲ID，artist-歌手ID，genre-流派，language-语言，week-所在周的周一日期，total-合计（维度值为空串）；
+ * user_id 为 0、维度为 backfill 的一行是回填标记（见 UserStatsService）
+ */
+@Data
+@Entity
+@Table(name = "tb_user_listen_stat", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "dim", "dim_key"})
+}, indexes = {
+    @Index(name = "idx_user_dim_plays", columnList = "user_id,dim,plays")
+})
+public class UserListenStat {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 用户ID
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    /**
+     * 统计维度
+     */
+    @Column(nullable = false, length = 10)
+    private String dim;
+    
+    /**
+     * 维度值
+     */
+    @Column(name = "dim_key", nullable = false, length = 64)
+    private String dimKey;
+    
+    /**
+     * 播放次数
+     */
+    @Column(nullable = false)
+    private Long plays;
+    
+    /**
+     * 累计播放时长（秒）
+     */
+    @Column(nullable = false)
+    private Long seconds;
+}
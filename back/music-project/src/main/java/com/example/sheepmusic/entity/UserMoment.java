@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "tb_user_moment")
+@Table(name = "tb_user_moment", indexes = {
+    @Index(name = "idx_user_create_time", columnList = "userId,createTime,id")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class UserMoment {
     
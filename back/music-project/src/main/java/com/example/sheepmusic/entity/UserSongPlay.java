@@ -0,0 +1,63 @@
+package com.example.sheepmusic.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 用户-歌曲播放汇总实体类
+ * 每个 (用户, 歌曲) 一行，写入播放历史时同步累加，用于"去重的播放历史 + 播放次数"查询
+ */
+@Data
+@Entity
+@Table(name = "tb_user_song_play", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "song_id"})
+}, indexes = {
+    @Index(name = "idx_user_last_play", columnList = "user_id,last_play_time,song_id")
+})
+public class UserSongPlay {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 用户ID
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    /**
+     * 歌曲ID
+     */
+    @Column(name = "song_id", nullable = false)
+    private Long songId;
+    
+    /**
+     * 播放次数
+     */
+    @Column(name = "play_count", nullable = false)
+    private Long playCount;
+    
+    /**
+     * 最后播放时间
+     */
+    @Column(name = "last_play_time", nullable = false)
+    private LocalDateTime lastPlayTime;
+    
+    /**
+     * 累计播放时长（秒）
+     */
+    @Column(name = "total_duration", nullable = false)
+    private Long totalDuration;
+    
+    /**
+     * 关联查询：获取歌曲详情
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "song_id", insertable = false, updatable = false)
+    @JsonIgnoreProperties({"playHistories"})
+    private Song song;
+}
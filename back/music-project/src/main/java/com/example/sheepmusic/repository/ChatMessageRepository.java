@@ -29,6 +29,28 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
                                       @Param("friendId") Long friendId, 
                                       Pageable pageable);
     
+    /**
+     * 查询 sender 发给 receiver 的最新消息（游标分页首页）
+     * 只查一个方向，走 (senderId, receiverId, createTime, id) 索引
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.senderId = :senderId AND m.receiverId = :receiverId " +
+           "ORDER BY m.createTime DESC, m.id DESC")
+    List<ChatMessage> findLatestBetween(@Param("senderId") Long senderId,
+                                        @Param("receiverId") Long receiverId,
+                                        Pageable pageable);
+    
+    /**
+     * 查询 sender 发给 receiver 的、排在 (createTime, id) 之前的消息（游标分页）
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.senderId = :senderId AND m.receiverId = :receiverId " +
+           "AND (m.createTime < :createTime OR (m.createTime = :createTime AND m.id < :id)) " +
+           "ORDER BY m.createTime DESC, m.id DESC")
+    List<ChatMessage> findBetweenBefore(@Param("senderId") Long senderId,
+                                        @Param("receiverId") Long receiverId,
+                                        @Param("createTime") LocalDateTime createTime,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+    
     /**
      * 查询用户的未读消息
      */
@@ -52,5 +52,10 @@ public interface FavoriteRepository extends JpaRepository<Favorite, Long> {
      */
     @Query("SELECT f.songId FROM Favorite f WHERE f.userId = :userId AND f.songId IN :songIds")
     List<Long> findFavoriteSongIdsByUserIdAndSongIds(@Param("userId") Long userId, @Param("songIds") List<Long> songIds);
+    
+    /**
+     * 获取所有 (用户ID, 歌曲ID) 收藏对（仅两列，供推荐离线任务批量加载）
+     */
+    @Query("SELECT f.userId, f.songId FROM Favorite f")
+    List<Object[]> findAllUserSongPairs();
 }
-
@@ -0,0 +1,20 @@
+package com.example.sheepmusic.repository;
+
+import com.example.sheepmusic.entity.ListenerSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 独立听众数草图数据访问层
+ */
+@Repository
+public interface ListenerSketchRepository extends JpaRepository<ListenerSketch, Long> {
+    
+    /**
+     * 查询指定统计周期的全部草图（启动时加载全部时间和最近 7 天）
+     */
+    List<ListenerSketch> findByPeriodIn(Collection<String> periods);
+}
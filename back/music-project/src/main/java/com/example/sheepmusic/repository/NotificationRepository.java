@@ -23,6 +23,23 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
      */
     Page<Notification> findByUserIdOrderByCreateTimeDesc(Long userId, Pageable pageable);
     
+    /**
+     * 查询用户最新的通知（游标分页首页，不查总数）
+     */
+    List<Notification> findByUserIdOrderByCreateTimeDescIdDesc(Long userId, Pageable pageable);
+    
+    /**
+     * 查询用户排在 (createTime, id) 之前的通知（游标分页）
+     * 只走 (userId, createTime, id) 索引，不随翻页深度变慢
+     */
+    @Query("SELECT n FROM Notification n WHERE n.userId = :userId " +
+           "AND (n.createTime < :createTime OR (n.createTime = :createTime AND n.id < :id)) " +
+           "ORDER BY n.createTime DESC, n.id DESC")
+    List<Notification> findByUserIdBefore(@Param("userId") Long userId,
+                                          @Param("createTime") LocalDateTime createTime,
+                                          @Param("id") Long id,
+                                          Pageable pageable);
+    
     /**
      * 查询用户的未读通知
      */
@@ -59,13 +76,6 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
            "WHERE n.userId = :userId AND n.isRead = false")
     void markAllAsRead(@Param("userId") Long userId, 
                        @Param("readTime") LocalDateTime readTime);
-    
-    /**
-     * 删除旧通知（超过指定天数）
-     */
-    @Modifying
-    @Query("DELETE FROM Notification n WHERE n.createTime < :beforeDate")
-    void deleteOldNotifications(@Param("beforeDate") LocalDateTime beforeDate);
 }
 
 
@@ -4,6 +4,7 @@ import com.example.sheepmusic.entity.PlayHistory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -67,9 +68,13 @@ public interface PlayHistoryRepository extends JpaRepository<PlayHistory, Long>
     void deleteByUserId(Long userId);
     
     /**
-     * 删除指定时间之前的播放历史（清理旧数据）
+     * 删除用户某首歌的全部播放历史
+     *
+     * @return 删除的记录数
      */
-    void deleteByPlayTimeBefore(LocalDateTime dateTime);
+    @Modifying
+    @Query("DELETE FROM PlayHistory ph WHERE ph.userId = :userId AND ph.songId = :songId")
+    int deleteByUserIdAndSongId(@Param("userId") Long userId, @Param("songId") Long songId);
     
     /**
      * 查询用户最近播放的N首歌曲
@@ -101,5 +106,41 @@ public interface PlayHistoryRepository extends JpaRepository<PlayHistory, Long>
         @Param("startTime") LocalDateTime startTime,
         @Param("endTime") LocalDateTime endTime
     );
+    
+    /**
+     * 查询用户在 [startTime, endTime) 内每次播放的歌曲、时间和时长（供年度回顾统计，不加载实体）
+     * 返回：[songId, playTime, playDuration]
+     */
+    @Query("SELECT ph.songId, ph.playTime, ph.playDuration FROM PlayHistory ph " +
+           "WHERE ph.userId = :userId AND ph.playTime >= :startTime AND ph.playTime < :endTime")
+    List<Object[]> findPlaysByUserIdAndTimeRange(
+        @Param("userId") Long userId,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+    
+    /**
+     * 按 (用户ID, 歌曲ID) 分组统计播放次数（供推荐离线任务批量加载）
+     * 返回：[userId, songId, count]
+     */
+    @Query("SELECT ph.userId, ph.songId, COUNT(ph) FROM PlayHistory ph GROUP BY ph.userId, ph.songId")
+    List<Object[]> countPlaysGroupByUserAndSong();
+    
+    /**
+     * 按用户、播放时间顺序查询某时间之后的播放序列（供下一首模型构建转移表）
+     * 返回：[userId, songId, playTime]
+     */
+    @Query("SELECT ph.userId, ph.songId, ph.playTime FROM PlayHistory ph WHERE ph.playTime >= :since ORDER BY ph.userId, ph.playTime, ph.id")
+    List<Object[]> findPlaySequenceSince(@Param("since") LocalDateTime since);
+    
+    /**
+     * 按 (歌曲ID, 时间桶) 分组统计某时间之后的播放次数（供实时热歌榜启动时预热）
+     * 返回：[songId, 桶内最早播放时间, count]
+     */
+    @Query(value = "SELECT song_id, MIN(play_time), COUNT(*) FROM tb_play_history " +
+                   "WHERE play_time >= :since " +
+                   "GROUP BY song_id, FLOOR(UNIX_TIMESTAMP(play_time) / :bucketSeconds)",
+           nativeQuery = true)
+    List<Object[]> countPlaysGroupBySongAndBucketSince(@Param("since") LocalDateTime since,
+                                                       @Param("bucketSeconds") long bucketSeconds);
 }
-
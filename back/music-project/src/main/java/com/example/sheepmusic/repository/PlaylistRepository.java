@@ -90,5 +90,10 @@ public interface PlaylistRepository extends JpaRepository<Playlist, Long> {
     @Modifying
     @Query("UPDATE Playlist p SET p.songCount = :count WHERE p.id = :playlistId")
     void updateSongCount(@Param("playlistId") Long playlistId, @Param("count") Integer count);
+    
+    /**
+     * 查询公开歌单的打分数据：[歌单ID, 创建者ID, 播放次数, 收藏次数]
+     */
+    @Query("SELECT p.id, p.userId, p.playCount, p.collectCount FROM Playlist p WHERE p.isPublic = true")
+    List<Object[]> findPublicPlaylistStats();
 }
-
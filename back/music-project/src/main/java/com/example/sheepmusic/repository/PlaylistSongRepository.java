@@ -74,5 +74,16 @@ public interface PlaylistSongRepository extends JpaRepository<PlaylistSong, Long
     void insertSong(@Param("playlistId") Long playlistId, 
                     @Param("songId") Long songId, 
                     @Param("sortOrder") Integer sortOrder);
+    
+    /**
+     * 查询歌单的所有歌曲ID
+     */
+    @Query("SELECT ps.songId FROM PlaylistSong ps WHERE ps.playlistId = :playlistId")
+    List<Long> findSongIdsByPlaylistId(@Param("playlistId") Long playlistId);
+    
+    /**
+     * 查询所有公开歌单中的 (歌单ID, 歌曲ID)
+     */
+    @Query("SELECT ps.playlistId, ps.songId FROM PlaylistSong ps, Playlist p WHERE ps.playlistId = p.id AND p.isPublic = true")
+    List<Object[]> findPublicPlaylistSongPairs();
 }
-
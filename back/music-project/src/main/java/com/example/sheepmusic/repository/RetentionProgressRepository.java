@@ -0,0 +1,19 @@
+package com.example.sheepmusic.repository;
+
+import com.example.sheepmusic.entity.RetentionProgress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * 数据保留任务进度数据访问层
+ */
+@Repository
+public interface RetentionProgressRepository extends JpaRepository<RetentionProgress, Long> {
+    
+    /**
+     * 根据策略名称查询进度
+     */
+    Optional<RetentionProgress> findByPolicy(String policy);
+}
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -32,12 +33,6 @@ public interface SongRepository extends JpaRepository<Song, Long> {
      */
     Page<Song> findByStatus(Integer status, Pageable pageable);
     
-    /**
-     * 搜索歌曲（根据歌曲名或歌手名）- 支持多歌手
-     */
-    @Query("SELECT DISTINCT s FROM Song s LEFT JOIN s.artists a WHERE s.title LIKE %:keyword% OR a.name LIKE %:keyword%")
-    Page<Song> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
-    
     /**
      * 获取热门歌曲（按播放次数排序）
      */
@@ -47,5 +42,28 @@ public interface SongRepository extends JpaRepository<Song, Long> {
      * 获取最新歌曲（按创建时间排序）
      */
     Page<Song> findByStatusOrderByCreateTimeDesc(Integer status, Pageable pageable);
+    
+    /**
+     * 查询上架歌曲的内容特征，每个 (歌曲, 歌手) 一行：[歌曲ID, 类型, 语言, 专辑ID, 歌手ID]
+     */
+    @Query("SELECT s.id, s.genre, s.language, s.albumId, a.id FROM Song s LEFT JOIN s.artists a WHERE s.status = 1")
+    List<Object[]> findActiveSongFeatures();
+    
+    /**
+     * 查询某时间之后创建的上架歌曲：[歌曲ID, 创建时间, 播放次数]
+     */
+    @Query("SELECT s.id, s.createTime, s.playCount FROM Song s WHERE s.status = 1 AND s.createTime >= :since")
+    List<Object[]> findActiveSongsCreatedSince(@Param("since") LocalDateTime since);
+    
+    /**
+     * 查询所有歌曲ID
+     */
+    @Query("SELECT s.id FROM Song s")
+    List<Long> findAllIds();
+    
+    /**
+     * 查询所有 (歌曲ID, 歌手ID) 关联（供独立听众统计把歌曲播放归到歌手）
+     */
+    @Query("SELECT s.id, a.id FROM Song s JOIN s.artists a")
+    List<Object[]> findAllSongArtistIds();
 }
-
@@ -0,0 +1,47 @@
+package com.example.sheepmusic.repository;
+
+import com.example.sheepmusic.entity.UserListenStat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 用户收听统计数据访问层
+ */
+@Repository
+public interface UserListenStatRepository extends JpaRepository<UserListenStat, Long> {
+    
+    /**
+     * 用户某个维度播放次数最多的若干项（走 (user_id, dim, plays) 索引，与历史长度无关）
+     */
+    @Query("SELECT s FROM UserListenStat s WHERE s.userId = :userId AND s.dim = :dim ORDER BY s.plays DESC, s.dimKey")
+    List<UserListenStat> findTop(@Param("userId") Long userId, @Param("dim") String dim, Pageable pageable);
+    
+    /**
+     * 用户某个维度从 fromKey 开始的统计（按维度值升序，用于按周统计）
+     */
+    @Query("SELECT s FROM UserListenStat s WHERE s.userId = :userId AND s.dim = :dim AND s.dimKey >= :fromKey ORDER BY s.dimKey")
+    List<UserListenStat> findFrom(@Param("userId") Long userId, @Param("dim") String dim, @Param("fromKey") String fromKey);
+    
+    Optional<UserListenStat> findByUserIdAndDimAndDimKey(Long userId, String dim, String dimKey);
+    
+    /**
+     * 删除用户的全部统计（清空播放历史时）
+     */
+    @Modifying
+    @Query(value = "DELETE FROM tb_user_listen_stat WHERE user_id = :userId", nativeQuery = true)
+    void deleteByUserId(@Param("userId") Long userId);
+    
+    /**
+     * 删除用户某个维度某一项的统计
+     */
+    @Modifying
+    @Query(value = "DELETE FROM tb_user_listen_stat WHERE user_id = :userId AND dim = :dim AND dim_key = :dimKey", nativeQuery = true)
+    void deleteByUserIdAndDimAndDimKey(@Param("userId") Long userId, @Param("dim") String dim, @Param("dimKey") String dimKey);
+}
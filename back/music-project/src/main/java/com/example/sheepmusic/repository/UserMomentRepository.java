@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -30,6 +31,44 @@ public interface UserMomentRepository extends JpaRepository<UserMoment, Long> {
     Page<UserMoment> findFriendsMoments(@Param("friendIds") List<Long> friendIds, 
                                         Pageable pageable);
     
+    /**
+     * 查询好友最新的动态（游标分页首页，不查总数）
+     */
+    @Query("SELECT m FROM UserMoment m WHERE m.userId IN :friendIds " +
+           "AND m.visibility IN ('public', 'friends') " +
+           "ORDER BY m.createTime DESC, m.id DESC")
+    List<UserMoment> findFriendsMomentsLatest(@Param("friendIds") List<Long> friendIds,
+                                              Pageable pageable);
+    
+    /**
+     * 查询好友排在 (createTime, id) 之前的动态（游标分页）
+     * 每个好友在 (userId, createTime, id) 索引上各取一段范围
+     */
+    @Query("SELECT m FROM UserMoment m WHERE m.userId IN :friendIds " +
+           "AND m.visibility IN ('public', 'friends') " +
+           "AND (m.createTime < :createTime OR (m.createTime = :createTime AND m.id < :id)) " +
+           "ORDER BY m.createTime DESC, m.id DESC")
+    List<UserMoment> findFriendsMomentsBefore(@Param("friendIds") List<Long> friendIds,
+                                              @Param("createTime") LocalDateTime createTime,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+    
+    /**
+     * 查询用户最新的动态（游标分页首页，不查总数）
+     */
+    List<UserMoment> findByUserIdOrderByCreateTimeDescIdDesc(Long userId, Pageable pageable);
+    
+    /**
+     * 查询用户排在 (createTime, id) 之前的动态（游标分页）
+     */
+    @Query("SELECT m FROM UserMoment m WHERE m.userId = :userId " +
+           "AND (m.createTime < :createTime OR (m.createTime = :createTime AND m.id < :id)) " +
+           "ORDER BY m.createTime DESC, m.id DESC")
+    List<UserMoment> findByUserIdBefore(@Param("userId") Long userId,
+                                        @Param("createTime") LocalDateTime createTime,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+    
     /**
      * 查询公开动态
      */
@@ -2,6 +2,8 @@ package com.example.sheepmusic.repository;
 
 import com.example.sheepmusic.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -36,5 +38,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * 根据用户名或昵称模糊搜索用户
      */
     java.util.List<User> findByUsernameContainingOrNicknameContaining(String username, String nickname);
+    
+    /**
+     * 查询状态不为 status 的用户ID（启动时加载被禁用的用户）
+     */
+    @Query("SELECT u.id FROM User u WHERE u.status <> :status")
+    java.util.List<Long> findIdsByStatusNot(@Param("status") Integer status);
 }
 
@@ -0,0 +1,102 @@
+package com.example.sheepmusic.repository;
+
+import com.example.sheepmusic.entity.UserSongPlay;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 用户-歌曲播放汇总数据访问层
+ */
+@Repository
+public interface UserSongPlayRepository extends JpaRepository<UserSongPlay, Long> {
+    
+    /**
+     * 分页查询用户播放过的歌曲（按最后播放时间倒序，带歌曲详情）
+     */
+    @Query(value = "SELECT p FROM UserSongPlay p JOIN FETCH p.song " +
+           "WHERE p.userId = :userId " +
+           "ORDER BY p.lastPlayTime DESC, p.songId DESC",
+           countQuery = "SELECT COUNT(p) FROM UserSongPlay p WHERE p.userId = :userId")
+    Page<UserSongPlay> findByUserIdWithSong(@Param("userId") Long userId, Pageable pageable);
+    
+    /**
+     * 游标分页查询用户播放过的歌曲：从 (lastPlayTime, songId) 之后继续，按最后播放时间倒序
+     * 只走 (user_id, last_play_time, song_id) 索引，不随翻页深度变慢
+     */
+    @Query("SELECT p FROM UserSongPlay p JOIN FETCH p.song " +
+           "WHERE p.userId = :userId " +
+           "AND (p.lastPlayTime < :lastPlayTime OR (p.lastPlayTime = :lastPlayTime AND p.songId < :songId)) " +
+           "ORDER BY p.lastPlayTime DESC, p.songId DESC")
+    List<UserSongPlay> findByUserIdAfter(@Param("userId") Long userId,
+                                         @Param("lastPlayTime") LocalDateTime lastPlayTime,
+                                         @Param("songId") Long songId,
+                                         Pageable pageable);
+    
+    /**
+     * 统计用户播放过的不同歌曲数量
+     */
+    long countByUserId(Long userId);
+    
+    /**
+     * 删除某个 (用户, 歌曲) 的汇总
+     */
+    @Modifying
+    @Query(value = "DELETE FROM tb_user_song_play WHERE user_id = :userId AND song_id = :songId", nativeQuery = true)
+    void deleteByUserIdAndSongId(@Param("userId") Long userId, @Param("songId") Long songId);
+    
+    /**
+     * 从某个 (用户, 歌曲) 的汇总中扣除一次播放（需先删除该条播放历史）
+     * 播放历史可能已被归档，汇总不能从明细表重算；只有删除的正是最后一次播放时，
+     * 才从剩余明细中取最后播放时间，明细中已没有记录时保留原值
+     */
+    @Modifying
+    @Query(value = "UPDATE tb_user_song_play SET play_count = play_count - 1, " +
+           "total_duration = GREATEST(total_duration - :duration, 0), " +
+           "last_play_time = CASE WHEN last_play_time = :playTime THEN COALESCE(" +
+           "(SELECT MAX(h.play_time) FROM tb_play_history h WHERE h.user_id = :userId AND h.song_id = :songId), " +
+           "last_play_time) ELSE last_play_time END " +
+           "WHERE user_id = :userId AND song_id = :songId",
+           nativeQuery = true)
+    void decrement(@Param("userId") Long userId, @Param("songId") Long songId,
+                   @Param("playTime") LocalDateTime playTime, @Param("duration") long duration);
+    
+    /**
+     * 播放次数扣减到 0 时删除该 (用户, 歌曲) 的汇总
+     */
+    @Modifying
+    @Query(value = "DELETE FROM tb_user_song_play WHERE user_id = :userId AND song_id = :songId AND play_count <= 0",
+           nativeQuery = true)
+    void deleteIfEmpty(@Param("userId") Long userId, @Param("songId") Long songId);
+    
+    /**
+     * 删除用户的全部汇总
+     */
+    @Modifying
+    @Query(value = "DELETE FROM tb_user_song_play WHERE user_id = :userId", nativeQuery = true)
+    void deleteByUserId(@Param("userId") Long userId);
+    
+    /**
+     * 清空汇总表
+     */
+    @Modifying
+    @Query(value = "DELETE FROM tb_user_song_play", nativeQuery = true)
+    void deleteAllRows();
+    
+    /**
+     * 从播放历史全量重建汇总表
+     */
+    @Modifying
+    @Query(value = "INSERT INTO tb_user_song_play (user_id, song_id, play_count, last_play_time, total_duration) " +
+           "SELECT user_id, song_id, COUNT(*), MAX(play_time), COALESCE(SUM(play_duration), 0) " +
+           "FROM tb_play_history GROUP BY user_id, song_id",
+           nativeQuery = true)
+    void rebuildAll();
+}
@@ -1,7 +1,6 @@
 package com.example.sheepmusic.security;
 
 import com.example.sheepmusic.entity.User;
-import com.example.sheepmusic.repository.UserRepository;
 import com.example.sheepmusic.utils.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -19,10 +18,11 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * JWT认证过滤器
+ * 认证主体直接由 Token 声明构建（用户ID、用户名、角色），不查询数据库；
+ * 验签结果由 JwtUtil 按 Token 摘要缓存，封禁和吊销由 TokenRevocationList 在内存中判断
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -31,7 +31,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtUtil jwtUtil;
     
     @Autowired
-    private UserRepository userRepository;
+    private TokenRevocationList tokenRevocationList;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -40,41 +40,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         // 从请求头获取Token
         String header = request.getHeader("Authorization");
-        String token = null;
-        String username = null;
         
-        if (header != null && header.startsWith("Bearer ")) {
-            token = header.substring(7);
-            try {
-                username = jwtUtil.getUsernameFromToken(token);
-            } catch (Exception e) {
-                logger.error("JWT Token解析失败", e);
-            }
-        }
-        
-        // 验证Token
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            if (jwtUtil.validateToken(token)) {
-                // 从数据库加载用户对象
-                Optional<User> userOptional = userRepository.findByUsername(username);
+        if (header != null && header.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // 验证Token（命中已验证缓存时不再验签）
+            JwtUtil.VerifiedToken verified = jwtUtil.verify(header.substring(7));
+            
+            if (verified != null && !tokenRevocationList.isRevoked(verified)) {
+                // 由Token声明构建用户对象
+                User user = new User();
+                user.setId(verified.getUserId());
+                user.setUsername(verified.getUsername());
+                user.setRole(verified.getRole());
                 
-                if (userOptional.isPresent()) {
-                    User user = userOptional.get();
-                    
-                    // 创建权限列表
-                    List<GrantedAuthority> authorities = new ArrayList<>();
-                    if (user.getRole() != null) {
-                        authorities.add(new SimpleGrantedAuthority("ROLE_" + user.getRole().toUpperCase()));
-                    }
-                    
-                    // 创建认证对象（使用 User 对象作为 principal）
-                    UsernamePasswordAuthenticationToken authentication = 
-                        new UsernamePasswordAuthenticationToken(user, null, authorities);
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    
-                    // 设置到Security上下文
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                // 创建权限列表
+                List<GrantedAuthority> authorities = new ArrayList<>();
+                if (user.getRole() != null) {
+                    authorities.add(new SimpleGrantedAuthority("ROLE_" + user.getRole().toUpperCase()));
                 }
+                
+                // 创建认证对象（使用 User 对象作为 principal）
+                UsernamePasswordAuthenticationToken authentication = 
+                    new UsernamePasswordAuthenticationToken(user, null, authorities);
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                
+                // 设置到Security上下文
+                SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         }
         
@@ -0,0 +1,135 @@
+package com.example.sheepmusic.security;
+
+import com.example.sheepmusic.common.Result;
+import com.example.sheepmusic.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * REST 接口限流拦截器
+ * 处理标注了 @RateLimited 的接口，超限时返回 HTTP 429 和统一格式的错误信息
+ *
+ * 按 IP 分桶时，直连地址是可信代理（如前端 nginx）才读取 X-Forwarded-For：
+ * 从右往左跳过可信代理，第一个不可信的地址即客户端地址；客户端自己伪造的值在其左侧，不会被采用。
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    static final String MESSAGE = "请求过于频繁，请稍后再试";
+
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9a-fA-F:.]+");
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 可信代理地址（IP 或 CIDR，逗号分隔）
+     */
+    @Value("${rate-limit.trusted-proxies:127.0.0.0/8,::1,10.0.0.0/8,172.16.0.0/12,192.168.0.0/16}")
+    private String trustedProxies;
+
+    private List<IpAddressMatcher> trusted;
+
+    @PostConstruct
+    public void init() {
+        trusted = parseTrustedProxies(trustedProxies);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        RateLimited spec = ((HandlerMethod) handler).getMethodAnnotation(RateLimited.class);
+        if (spec == null || rateLimiter.tryAcquire(spec, keyOf(spec, request))) {
+            return true;
+        }
+        response.setStatus(429);
+        response.setHeader("Retry-After", "1");
+        response.setContentType("application/json;charset=UTF-8");
+        objectMapper.writeValue(response.getWriter(), Result.error(429, MESSAGE));
+        return false;
+    }
+
+    private String keyOf(RateLimited spec, HttpServletRequest request) {
+        if (spec.key() == RateLimited.Key.USER) {
+            // JwtAuthenticationFilter 已经把 User 放入认证主体
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getPrincipal() instanceof User) {
+                return "u:" + ((User) authentication.getPrincipal()).getId();
+            }
+        }
+        return "ip:" + clientIp(request.getRemoteAddr(), request.getHeader("X-Forwarded-For"), trusted);
+    }
+
+    static List<IpAddressMatcher> parseTrustedProxies(String value) {
+        List<IpAddressMatcher> matchers = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                matchers.add(new IpAddressMatcher(item.trim()));
+            }
+        }
+        return matchers;
+    }
+
+    /**
+     * 解析客户端地址：直连地址不可信时直接使用；否则从 X-Forwarded-For 右侧开始跳过可信代理
+     *
+     * @param remoteAddr   TCP 直连地址
+     * @param forwardedFor X-Forwarded-For 请求头，可为 null
+     */
+    static String clientIp(String remoteAddr, String forwardedFor, List<IpAddressMatcher> trusted) {
+        if (forwardedFor == null || !isTrusted(remoteAddr, trusted)) {
+            return remoteAddr;
+        }
+        String[] hops = forwardedFor.split(",");
+        String client = remoteAddr;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+            client = hop;
+            if (!isTrusted(hop, trusted)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 只匹配 IP 字面量，避免把请求头中的主机名交给 InetAddress 解析
+     */
+    private static boolean isTrusted(String address, List<IpAddressMatcher> trusted) {
+        if (address == null || !IP_LITERAL.matcher(address).matches()) {
+            return false;
+        }
+        for (IpAddressMatcher matcher : trusted) {
+            try {
+                if (matcher.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
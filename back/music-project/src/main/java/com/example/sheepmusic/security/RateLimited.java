@@ -0,0 +1,48 @@
+package com.example.sheepmusic.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流
+ *
+ * 标注在 REST 接口或 STOMP @MessageMapping 方法上，同名规则共用一组令牌桶。
+ * 速率和容量可在配置文件 rate-limit.rules.&lt;规则名&gt;.permits-per-second / burst 中覆盖注解上的默认值。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    /**
+     * 规则名
+     */
+    String value();
+
+    /**
+     * 每秒补充的令牌数
+     */
+    double permitsPerSecond() default 1;
+
+    /**
+     * 桶容量（允许的最大突发请求数）
+     */
+    int burst() default 10;
+
+    /**
+     * 限流维度
+     */
+    Key key() default Key.USER;
+
+    enum Key {
+        /**
+         * 按用户限流，未登录时按 IP（STOMP 按会话）
+         */
+        USER,
+        /**
+         * 按 IP 限流（如登录、注册）
+         */
+        IP
+    }
+}
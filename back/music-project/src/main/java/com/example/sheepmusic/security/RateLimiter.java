@@ -0,0 +1,96 @@
+package com.example.sheepmusic.security;
+
+import com.example.sheepmusic.utils.TokenBucketLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内限流
+ *
+ * 每条 @RateLimited 规则一个 TokenBucketLimiter，按用户ID或IP分桶；
+ * REST 由 RateLimitInterceptor 调用（超限返回 429），STOMP 由 StompRateLimitInterceptor 调用（超限返回 ERROR 帧）。
+ * 规则在第一次使用时按配置创建，放行和拒绝次数按规则统计。
+ */
+@Component
+public class RateLimiter {
+
+    private static final String PREFIX = "rate-limit.rules.";
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    private final ConcurrentHashMap<String, Rule> rules = new ConcurrentHashMap<>();
+
+    /**
+     * 为 key 取一个令牌，超限返回 false
+     */
+    public boolean tryAcquire(RateLimited spec, String key) {
+        if (!enabled) {
+            return true;
+        }
+        Rule rule = rules.get(spec.value());
+        if (rule == null) {
+            rule = rules.computeIfAbsent(spec.value(), name -> new Rule(new TokenBucketLimiter(
+                environment.getProperty(PREFIX + name + ".permits-per-second", Double.class, spec.permitsPerSecond()),
+                environment.getProperty(PREFIX + name + ".burst", Integer.class, spec.burst()))));
+        }
+        if (rule.limiter.tryAcquire(key)) {
+            rule.allowed.increment();
+            return true;
+        }
+        rule.rejected.increment();
+        return false;
+    }
+
+    /**
+     * 定期清除已经补满的桶，避免长期不活跃的用户/IP 占用内存
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.evict-interval-ms:60000}")
+    public void evictIdle() {
+        for (Rule rule : rules.values()) {
+            rule.limiter.evictIdle();
+        }
+    }
+
+    /**
+     * 每条规则的速率、容量、当前跟踪的键数、放行和拒绝次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        rules.forEach((name, rule) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("permitsPerSecond", rule.limiter.getPermitsPerSecond());
+            item.put("burst", rule.limiter.getBurst());
+            item.put("keys", rule.limiter.size());
+            item.put("allowed", rule.allowed.sum());
+            item.put("rejected", rule.rejected.sum());
+            stats.put(name, item);
+        });
+        return stats;
+    }
+
+    private static class Rule {
+
+        private final TokenBucketLimiter limiter;
+
+        private final LongAdder allowed = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        private Rule(TokenBucketLimiter limiter) {
+            this.limiter = limiter;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.sheepmusic.security;
+
+import com.example.sheepmusic.utils.JwtUtil;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * STOMP 消息限流拦截器（注册在客户端入站通道上）
+ *
+ * 客户端 SEND 到标注了 @RateLimited 的 @MessageMapping 目的地时按用户限流，
+ * 超限时抛出 MessageDeliveryException，由 STOMP 协议处理器向客户端返回 ERROR 帧。
+ * 用户取自消息头中的 Authorization（与 ChatWSController 一致），没有时按 WebSocket 会话限流。
+ */
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+
+    /**
+     * 与 WebSocketConfig 中的应用目的地前缀一致
+     */
+    public static final String APP_PREFIX = "/app";
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    /**
+     * 目的地 → 限流规则，第一次收到消息时扫描控制器建立
+     */
+    private volatile Map<String, RateLimited> destinations;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.SEND || accessor.getDestination() == null) {
+            return message;
+        }
+        RateLimited spec = destinations().get(accessor.getDestination());
+        if (spec == null || rateLimiter.tryAcquire(spec, keyOf(spec, accessor))) {
+            return message;
+        }
+        throw new MessageDeliveryException(message, RateLimitInterceptor.MESSAGE);
+    }
+
+    private String keyOf(RateLimited spec, StompHeaderAccessor accessor) {
+        if (spec.key() == RateLimited.Key.USER) {
+            String authorization = accessor.getFirstNativeHeader("Authorization");
+            if (authorization != null && authorization.startsWith("Bearer ")) {
+                JwtUtil.VerifiedToken verified = jwtUtil.verify(authorization.substring(7));
+                if (verified != null) {
+                    return "u:" + verified.getUserId();
+                }
+            }
+        }
+        return "s:" + accessor.getSessionId();
+    }
+
+    private Map<String, RateLimited> destinations() {
+        Map<String, RateLimited> result = destinations;
+        if (result == null) {
+            result = new HashMap<>();
+            for (Object bean : applicationContext.getBeansWithAnnotation(Controller.class).values()) {
+                for (Method method : AopUtils.getTargetClass(bean).getMethods()) {
+                    RateLimited spec = AnnotatedElementUtils.findMergedAnnotation(method, RateLimited.class);
+                    MessageMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, MessageMapping.class);
+                    if (spec != null && mapping != null) {
+                        for (String destination : mapping.value()) {
+                            result.put(APP_PREFIX + destination, spec);
+                        }
+                    }
+                }
+            }
+            destinations = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.sheepmusic.security;
+
+import com.example.sheepmusic.repository.UserRepository;
+import com.example.sheepmusic.utils.ExpiringIdSet;
+import com.example.sheepmusic.utils.JwtUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token 吊销与封禁检查
+ *
+ * 认证走 Token 声明后不再逐请求查询用户表，封禁和吊销改由内存中的几个小集合判断：
+ * 被禁用的用户ID（启动时从 tb_user.status 加载，修改状态时同步更新）；
+ * 每个用户"早于某时刻签发的 Token 一律无效"的时间点（修改密码时设置）；
+ * 以及退出登录时吊销的令牌ID（按令牌过期时间分桶，过期后整桶丢弃）。
+ *
+ * 后两者只保存在本实例内存中，但访问令牌有效期很短，刷新令牌的作废记录在数据库中，
+ * 其他实例最迟在访问令牌过期、客户端刷新时生效。
+ */
+@Component
+public class TokenRevocationList {
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    /**
+     * 访问令牌有效期（毫秒），吊销时间点保留这么久后即可丢弃
+     */
+    @Value("${jwt.expiration}")
+    private long accessTokenTtlMillis;
+    
+    private final ExpiringIdSet revokedTokens = new ExpiringIdSet(60_000);
+    
+    private final Set<Long> bannedUsers = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * 用户ID → 该时刻（毫秒，取整到秒）之前签发的 Token 无效
+     */
+    private final Map<Long, Long> revokedBefore = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        bannedUsers.addAll(userRepository.findIdsByStatusNot(1));
+    }
+    
+    /**
+     * Token 是否已被吊销（用户被禁用，或在吊销时间点之前签发）
+     */
+    public boolean isRevoked(JwtUtil.VerifiedToken token) {
+        if (token.getUserId() == null) {
+            return true;
+        }
+        if (bannedUsers.contains(token.getUserId())) {
+            return true;
+        }
+        Long before = revokedBefore.get(token.getUserId());
+        if (before != null && token.getIssuedAt() < before) {
+            return true;
+        }
+        return token.getTokenId() != null && revokedTokens.contains(token.getTokenId());
+    }
+    
+    /**
+     * 吊销单个访问令牌（退出登录），令牌过期后自动从索引中移除
+     */
+    public void revokeToken(JwtUtil.VerifiedToken token) {
+        if (token.getTokenId() != null) {
+            revokedTokens.add(token.getTokenId(), token.getExpireAt());
+        }
+    }
+    
+    /**
+     * 丢弃已经过期的吊销记录
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void purge() {
+        long now = System.currentTimeMillis();
+        revokedTokens.purge(now);
+        // 早于 now - 有效期 签发的令牌都已过期，对应的吊销时间点不再需要
+        revokedBefore.values().removeIf(before -> before < now - accessTokenTtlMillis);
+    }
+    
+    /**
+     * 禁用用户，其全部 Token 立即失效
+     */
+    public void ban(Long userId) {
+        bannedUsers.add(userId);
+    }
+    
+    public void unban(Long userId) {
+        bannedUsers.remove(userId);
+    }
+    
+    /**
+     * 吊销用户当前时刻之前签发的全部 Token
+     * JWT 的签发时间精确到秒，同一秒内稍早签发的 Token 不受影响
+     */
+    public void revokeAll(Long userId) {
+        revokedBefore.put(userId, System.currentTimeMillis() / 1000 * 1000);
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bannedUsers", bannedUsers.size());
+        stats.put("revokedUsers", revokedBefore.size());
+        stats.put("revokedTokens", revokedTokens.size());
+        return stats;
+    }
+}
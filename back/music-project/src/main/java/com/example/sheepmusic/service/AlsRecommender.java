@@ -0,0 +1,534 @@
+package com.example.sheepmusic.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 矩阵分解推荐引擎（隐式反馈 ALS）
+ *
+ * 以 InteractionIndex 中的播放次数和收藏作为隐式反馈，按加权 ALS（Hu, Koren, Volinsky）训练用户/歌曲隐向量：
+ * 偏好 p = 1，置信度 c = 1 + alpha * ln(1 + 播放次数 + 收藏权重)。
+ * 每轮固定一侧求解另一侧，各用户/歌曲的 k 维正规方程相互独立，使用 ForkJoin 并行求解。
+ *
+ * 训练结果以 float[] 保存在内存中，同时写入模型文件，重启后直接加载而不必重新训练。
+ * 推荐时用用户向量与所有歌曲向量做点积取 Top-N，不再需要逐请求遍历邻居。
+ */
+@Component
+public class AlsRecommender {
+
+    private static final int MODEL_MAGIC = 0x414C5331; // "ALS1"
+
+    @Autowired
+    private InteractionIndex interactionIndex;
+
+    /**
+     * 隐向量维度
+     */
+    @Value("${recommend.als.factors:32}")
+    private int factors;
+
+    @Value("${recommend.als.iterations:10}")
+    private int iterations;
+
+    /**
+     * L2 正则系数
+     */
+    @Value("${recommend.als.lambda:0.1}")
+    private double lambda;
+
+    /**
+     * 置信度放大系数
+     */
+    @Value("${recommend.als.alpha:10}")
+    private double alpha;
+
+    /**
+     * 一次收藏折算的播放次数
+     */
+    @Value("${recommend.als.favorite-weight:5}")
+    private int favoriteWeight;
+
+    /**
+     * 训练并行度，0 表示使用全部 CPU
+     */
+    @Value("${recommend.als.parallelism:0}")
+    private int parallelism;
+
+    @Value("${recommend.als.model-path:data/als-model.bin}")
+    private String modelPath;
+
+    private volatile Model model;
+
+    private final AtomicBoolean training = new AtomicBoolean(false);
+
+    /**
+     * 启动后优先加载模型文件，不存在时在后台训练
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        Path path = Paths.get(modelPath);
+        if (Files.exists(path)) {
+            try {
+                model = Model.read(path);
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        CompletableFuture.runAsync(this::train);
+    }
+
+    /**
+     * 定时重新训练，时间见 recommend.als.train-cron
+     */
+    @Scheduled(cron = "${recommend.als.train-cron:0 0 4 * * ?}")
+    public void train() {
+        if (!training.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Model trained = fit(TrainingData.from(interactionIndex, alpha, favoriteWeight));
+            model = trained;
+            save(trained);
+        } catch (Exception e) {
+            // 训练失败时保留旧模型
+            e.printStackTrace();
+        } finally {
+            training.set(false);
+        }
+    }
+
+    /**
+     * 模型中是否有该用户的向量
+     */
+    public boolean hasUser(Long userId) {
+        Model current = model;
+        return current != null && Arrays.binarySearch(current.userIds, userId) >= 0;
+    }
+
+    /**
+     * 为用户推荐歌曲：用户向量与所有歌曲向量点积，取分数最高的 limit 首
+     *
+     * @param excludeSongIds 需要排除的歌曲ID（升序，如用户已喜欢的歌曲）
+     * @return 推荐歌曲ID（按分数降序），用户不在模型中时返回空列表
+     */
+    public List<Long> recommend(Long userId, long[] excludeSongIds, int limit) {
+        Model current = model;
+        if (current == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int user = Arrays.binarySearch(current.userIds, userId);
+        if (user < 0) {
+            return Collections.emptyList();
+        }
+
+        int k = current.factors;
+        int userOffset = user * k;
+        long[] topIds = new long[limit];
+        float[] topScores = new float[limit];
+        int size = 0;
+
+        for (int song = 0; song < current.songIds.length; song++) {
+            long songId = current.songIds[song];
+            if (Arrays.binarySearch(excludeSongIds, songId) >= 0) {
+                continue;
+            }
+            float score = dot(current.userFactors, userOffset, current.songFactors, song * k, k);
+            if (size == limit && score <= topScores[size - 1]) {
+                continue;
+            }
+            // 插入到按分数降序排列的 Top-N 数组中
+            int position = size < limit ? size++ : size - 1;
+            while (position > 0 && topScores[position - 1] < score) {
+                topScores[position] = topScores[position - 1];
+                topIds[position] = topIds[position - 1];
+                position--;
+            }
+            topScores[position] = score;
+            topIds[position] = songId;
+        }
+
+        List<Long> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(topIds[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 获取歌曲隐向量（副本），歌曲不在模型中时返回 null
+     */
+    public float[] getSongFactors(Long songId) {
+        Model current = model;
+        if (current == null) {
+            return null;
+        }
+        int song = Arrays.binarySearch(current.songIds, songId);
+        if (song < 0) {
+            return null;
+        }
+        return Arrays.copyOfRange(current.songFactors, song * current.factors, (song + 1) * current.factors);
+    }
+
+    // ========== 训练 ==========
+
+    /**
+     * 交替最小二乘训练
+     */
+    Model fit(TrainingData data) {
+        int k = factors;
+        int userCount = data.userIds.length;
+        int songCount = data.songIds.length;
+        float[] userFactors = new float[userCount * k];
+        float[] songFactors = new float[songCount * k];
+
+        Random random = new Random(42);
+        for (int i = 0; i < songFactors.length; i++) {
+            songFactors[i] = (float) (random.nextGaussian() * 0.01);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                // 固定歌曲向量求解用户向量，再固定用户向量求解歌曲向量
+                HalfStep users = new HalfStep(userFactors, songFactors, data.userPtr, data.userItems, data.userConf, k, lambda);
+                pool.invoke(new SolveTask(users, 0, userCount));
+                HalfStep songs = new HalfStep(songFactors, userFactors, data.songPtr, data.songUsers, data.songConf, k, lambda);
+                pool.invoke(new SolveTask(songs, 0, songCount));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return new Model(k, data.userIds, userFactors, data.songIds, songFactors, System.currentTimeMillis());
+    }
+
+    /**
+     * 半步求解：固定 fixed 侧向量，逐行求解 target 侧向量
+     * 对第 u 行：(YᵀY + Σ(c-1)·y·yᵀ + λI) x = Σ c·y
+     */
+    private static class HalfStep {
+        private final float[] target;
+        private final float[] fixed;
+        private final int[] ptr;
+        private final int[] cols;
+        private final float[] conf;
+        private final int k;
+        private final double lambda;
+        private final double[] gram;
+
+        HalfStep(float[] target, float[] fixed, int[] ptr, int[] cols, float[] conf, int k, double lambda) {
+            this.target = target;
+            this.fixed = fixed;
+            this.ptr = ptr;
+            this.cols = cols;
+            this.conf = conf;
+            this.k = k;
+            this.lambda = lambda;
+            this.gram = gram(fixed, k);
+        }
+
+        /**
+         * 计算 YᵀY
+         */
+        private static double[] gram(float[] factors, int k) {
+            double[] gram = new double[k * k];
+            for (int offset = 0; offset < factors.length; offset += k) {
+                for (int a = 0; a < k; a++) {
+                    double va = factors[offset + a];
+                    for (int b = a; b < k; b++) {
+                        gram[a * k + b] += va * factors[offset + b];
+                    }
+                }
+            }
+            for (int a = 0; a < k; a++) {
+                for (int b = 0; b < a; b++) {
+                    gram[a * k + b] = gram[b * k + a];
+                }
+            }
+            return gram;
+        }
+
+        void solveRow(int row, double[] matrix, double[] vector) {
+            System.arraycopy(gram, 0, matrix, 0, gram.length);
+            Arrays.fill(vector, 0.0);
+            for (int a = 0; a < k; a++) {
+                matrix[a * k + a] += lambda;
+            }
+            for (int p = ptr[row]; p < ptr[row + 1]; p++) {
+                int offset = cols[p] * k;
+                double c = conf[p];
+                for (int a = 0; a < k; a++) {
+                    double va = fixed[offset + a];
+                    vector[a] += c * va;
+                    double scaled = (c - 1) * va;
+                    for (int b = 0; b < k; b++) {
+                        matrix[a * k + b] += scaled * fixed[offset + b];
+                    }
+                }
+            }
+            choleskySolve(matrix, vector, k);
+            for (int a = 0; a < k; a++) {
+                target[row * k + a] = (float) vector[a];
+            }
+        }
+    }
+
+    /**
+     * ForkJoin 任务：按行区间二分拆分
+     */
+    private static class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private static final int THRESHOLD = 256;
+
+        /**
+         * 任务只在本进程的线程池中执行，不会被序列化
+         */
+        private final transient HalfStep step;
+        private final int from;
+        private final int to;
+
+        SolveTask(HalfStep step, int from, int to) {
+            this.step = step;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                double[] matrix = new double[step.k * step.k];
+                double[] vector = new double[step.k];
+                for (int row = from; row < to; row++) {
+                    step.solveRow(row, matrix, vector);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SolveTask(step, from, mid), new SolveTask(step, mid, to));
+        }
+    }
+
+    /**
+     * Cholesky 分解求解对称正定方程组 A x = b，结果写回 b（A 被覆盖）
+     */
+    static void choleskySolve(double[] a, double[] b, int k) {
+        for (int j = 0; j < k; j++) {
+            double sum = a[j * k + j];
+            for (int p = 0; p < j; p++) {
+                sum -= a[j * k + p] * a[j * k + p];
+            }
+            double diagonal = Math.sqrt(Math.max(sum, 1e-12));
+            a[j * k + j] = diagonal;
+            for (int i = j + 1; i < k; i++) {
+                double value = a[i * k + j];
+                for (int p = 0; p < j; p++) {
+                    value -= a[i * k + p] * a[j * k + p];
+                }
+                a[i * k + j] = value / diagonal;
+            }
+        }
+        // 前代 L y = b
+        for (int i = 0; i < k; i++) {
+            double value = b[i];
+            for (int p = 0; p < i; p++) {
+                value -= a[i * k + p] * b[p];
+            }
+            b[i] = value / a[i * k + i];
+        }
+        // 回代 Lᵀ x = y
+        for (int i = k - 1; i >= 0; i--) {
+            double value = b[i];
+            for (int p = i + 1; p < k; p++) {
+                value -= a[p * k + i] * b[p];
+            }
+            b[i] = value / a[i * k + i];
+        }
+    }
+
+    private static float dot(float[] x, int xOffset, float[] y, int yOffset, int k) {
+        float sum = 0f;
+        for (int i = 0; i < k; i++) {
+            sum += x[xOffset + i] * y[yOffset + i];
+        }
+        return sum;
+    }
+
+    // ========== 训练数据 / 模型文件 ==========
+
+    /**
+     * 训练数据：用户、歌曲两个方向的 CSR 稀疏矩阵（列下标 + 置信度）
+     */
+    static class TrainingData {
+        long[] userIds;
+        long[] songIds;
+        int[] userPtr;
+        int[] userItems;
+        float[] userConf;
+        int[] songPtr;
+        int[] songUsers;
+        float[] songConf;
+
+        static TrainingData from(InteractionIndex index, double alpha, int favoriteWeight) {
+            // 行对象不可变，先收集引用得到一致的快照
+            List<long[]> rowIds = new ArrayList<>();
+            List<int[]> rowWeights = new ArrayList<>();
+            List<Long> users = new ArrayList<>();
+            index.forEachUser((userId, ids, weights) -> {
+                users.add(userId);
+                rowIds.add(ids);
+                rowWeights.add(weights);
+            });
+
+            Integer[] order = new Integer[users.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(users::get));
+
+            TrainingData data = new TrainingData();
+            data.userIds = new long[order.length];
+            int nnz = 0;
+            for (int i = 0; i < order.length; i++) {
+                data.userIds[i] = users.get(order[i]);
+                nnz += rowIds.get(order[i]).length;
+            }
+            data.songIds = rowIds.stream().flatMapToLong(Arrays::stream).distinct().sorted().toArray();
+
+            // 用户方向 CSR
+            data.userPtr = new int[order.length + 1];
+            data.userItems = new int[nnz];
+            data.userConf = new float[nnz];
+            int[] songCounts = new int[data.songIds.length];
+            int position = 0;
+            for (int i = 0; i < order.length; i++) {
+                long[] ids = rowIds.get(order[i]);
+                int[] weights = rowWeights.get(order[i]);
+                for (int j = 0; j < ids.length; j++) {
+                    int song = Arrays.binarySearch(data.songIds, ids[j]);
+                    int feedback = InteractionIndex.playsOf(weights[j])
+                        + (InteractionIndex.isFavorite(weights[j]) ? favoriteWeight : 0);
+                    data.userItems[position] = song;
+                    data.userConf[position] = (float) (1 + alpha * Math.log1p(feedback));
+                    songCounts[song]++;
+                    position++;
+                }
+                data.userPtr[i + 1] = position;
+            }
+
+            // 转置得到歌曲方向 CSR
+            data.songPtr = new int[data.songIds.length + 1];
+            for (int song = 0; song < songCounts.length; song++) {
+                data.songPtr[song + 1] = data.songPtr[song] + songCounts[song];
+            }
+            data.songUsers = new int[nnz];
+            data.songConf = new float[nnz];
+            int[] cursor = Arrays.copyOf(data.songPtr, data.songIds.length);
+            for (int user = 0; user < order.length; user++) {
+                for (int p = data.userPtr[user]; p < data.userPtr[user + 1]; p++) {
+                    int target = cursor[data.userItems[p]]++;
+                    data.songUsers[target] = user;
+                    data.songConf[target] = data.userConf[p];
+                }
+            }
+            return data;
+        }
+    }
+
+    /**
+     * 写入模型文件（先写临时文件再原子替换）
+     */
+    private void save(Model trained) throws IOException {
+        Path path = Paths.get(modelPath);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = Paths.get(modelPath + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            trained.write(out);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 不可变的训练结果
+     */
+    static class Model {
+        final int factors;
+        final long[] userIds;
+        final float[] userFactors;
+        final long[] songIds;
+        final float[] songFactors;
+        final long trainedAt;
+
+        Model(int factors, long[] userIds, float[] userFactors, long[] songIds, float[] songFactors, long trainedAt) {
+            this.factors = factors;
+            this.userIds = userIds;
+            this.userFactors = userFactors;
+            this.songIds = songIds;
+            this.songFactors = songFactors;
+            this.trainedAt = trainedAt;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(MODEL_MAGIC);
+            out.writeInt(factors);
+            out.writeLong(trainedAt);
+            writeSide(out, userIds, userFactors);
+            writeSide(out, songIds, songFactors);
+        }
+
+        static Model read(Path path) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                if (in.readInt() != MODEL_MAGIC) {
+                    throw new IOException("不是有效的 ALS 模型文件: " + path);
+                }
+                int factors = in.readInt();
+                long trainedAt = in.readLong();
+                long[] userIds = new long[in.readInt()];
+                float[] userFactors = readSide(in, userIds, factors);
+                long[] songIds = new long[in.readInt()];
+                float[] songFactors = readSide(in, songIds, factors);
+                return new Model(factors, userIds, userFactors, songIds, songFactors, trainedAt);
+            }
+        }
+
+        private static void writeSide(DataOutputStream out, long[] ids, float[] vectors) throws IOException {
+            out.writeInt(ids.length);
+            for (long id : ids) {
+                out.writeLong(id);
+            }
+            for (float value : vectors) {
+                out.writeFloat(value);
+            }
+        }
+
+        private static float[] readSide(DataInputStream in, long[] ids, int factors) throws IOException {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = in.readLong();
+            }
+            float[] vectors = new float[ids.length * factors];
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = in.readFloat();
+            }
+            return vectors;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.example.sheepmusic.service;
 
 import com.example.sheepmusic.dto.ArtistRequest;
 import com.example.sheepmusic.entity.Artist;
+import com.example.sheepmusic.entity.Song;
 import com.example.sheepmusic.repository.ArtistRepository;
+import com.example.sheepmusic.repository.SongRepository;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -10,6 +12,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 歌手服务类
@@ -20,6 +24,15 @@ public class ArtistService {
     @Autowired
     private ArtistRepository artistRepository;
     
+    @Autowired
+    private ListenerStats listenerStats;
+    
+    @Autowired
+    private SongRepository songRepository;
+    
+    @Autowired
+    private SongSearchIndex songSearchIndex;
+    
     /**
      * 创建歌手
      */
@@ -48,8 +61,17 @@ public class ArtistService {
             }
         }
         
+        String oldName = artist.getName();
         BeanUtils.copyProperties(request, artist, "id", "createTime", "updateTime");
-        return artistRepository.save(artist);
+        Artist saved = artistRepository.save(artist);
+        
+        // 改名后重建该歌手所有歌曲的搜索索引
+        if (!oldName.equals(saved.getName())) {
+            for (Song song : songRepository.findByArtistId(id)) {
+                songSearchIndex.put(song);
+            }
+        }
+        return saved;
     }
     
     /**
@@ -59,7 +81,26 @@ public class ArtistService {
         if (!artistRepository.existsById(id)) {
             throw new RuntimeException("歌手不存在");
         }
+        List<Long> songIds = songRepository.findByArtistId(id).stream()
+                .map(Song::getId)
+                .collect(Collectors.toList());
         artistRepository.deleteById(id);
+        listenerStats.removeArtist(id);
+        
+        // 从歌曲的搜索索引中去掉该歌手名
+        for (Song song : songRepository.findAllById(songIds)) {
+            songSearchIndex.put(song);
+        }
+    }
+    
+    /**
+     * 获取歌手的独立听众数（今天、最近 7 天、全部时间）
+     */
+    public Map<String, Long> getArtistListeners(Long artistId) {
+        if (!artistRepository.existsById(artistId)) {
+            throw new RuntimeException("歌手不存在");
+        }
+        return listenerStats.getArtistListeners(artistId);
     }
     
     /**
@@ -1,5 +1,6 @@
 package com.example.sheepmusic.service;
 
+import com.example.sheepmusic.common.CursorPage;
 import com.example.sheepmusic.dto.ConversationVO;
 import com.example.sheepmusic.entity.ChatMessage;
 import com.example.sheepmusic.entity.User;
@@ -14,6 +15,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -111,6 +114,33 @@ public class ChatService {
         return chatMessageRepository.findChatHistory(userId, friendId, pageable);
     }
     
+    /**
+     * 获取聊天记录（游标分页，按时间倒序）
+     * 两个方向的消息各自走 (senderId, receiverId, createTime, id) 索引取 size + 1 条，再归并，
+     * 避免 OR 条件导致的排序和 count 查询
+     *
+     * @param cursor 上一页返回的游标，为空时从最新的消息开始
+     */
+    public CursorPage<ChatMessage> getChatHistory(Long userId, Long friendId, String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<ChatMessage> rows = new ArrayList<>();
+        if (cursor == null || cursor.isEmpty()) {
+            rows.addAll(chatMessageRepository.findLatestBetween(userId, friendId, limit));
+            rows.addAll(chatMessageRepository.findLatestBetween(friendId, userId, limit));
+        } else {
+            String[] keys = CursorPage.decode(cursor, 2);
+            LocalDateTime createTime = LocalDateTime.parse(keys[0]);
+            Long id = Long.valueOf(keys[1]);
+            rows.addAll(chatMessageRepository.findBetweenBefore(userId, friendId, createTime, id, limit));
+            rows.addAll(chatMessageRepository.findBetweenBefore(friendId, userId, createTime, id, limit));
+        }
+        rows.sort(Comparator.comparing(ChatMessage::getCreateTime).thenComparing(ChatMessage::getId).reversed());
+        if (rows.size() > size + 1) {
+            rows = new ArrayList<>(rows.subList(0, size + 1));
+        }
+        return CursorPage.of(rows, size, last -> CursorPage.encode(last.getCreateTime(), last.getId()));
+    }
+    
     /**
      * 获取会话列表
      */
@@ -1,16 +1,16 @@
 package com.example.sheepmusic.service;
 
 import com.example.sheepmusic.dto.ConversationVO;
+import com.example.sheepmusic.dto.UserProfile;
 import com.example.sheepmusic.entity.Conversation;
-import com.example.sheepmusic.entity.User;
 import com.example.sheepmusic.repository.ConversationRepository;
-import com.example.sheepmusic.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -23,15 +23,17 @@ public class ConversationService {
     private ConversationRepository conversationRepository;
     
     @Autowired
-    private UserRepository userRepository;
+    private UserProfileCache userProfileCache;
     
     /**
      * 创建或更新会话
      */
     @Transactional
     public Conversation createOrUpdateConversation(Long userId, Long friendId) {
-        User friend = userRepository.findById(friendId)
-            .orElseThrow(() -> new RuntimeException("好友不存在"));
+        UserProfile friend = userProfileCache.get(friendId);
+        if (friend == null) {
+            throw new RuntimeException("好友不存在");
+        }
         
         Conversation conversation = conversationRepository
             .findByUserIdAndFriendId(userId, friendId)
@@ -94,14 +96,17 @@ public class ConversationService {
     public List<ConversationVO> getConversations(Long userId) {
         List<Conversation> conversations = conversationRepository
             .findByUserIdOrderByLastMessageTimeDesc(userId);
+        Map<Long, UserProfile> friends = userProfileCache.getAll(conversations.stream()
+            .map(Conversation::getFriendId)
+            .collect(Collectors.toList()));
         
         return conversations.stream().map(conv -> {
             ConversationVO vo = new ConversationVO();
             vo.setId(conv.getId());
             vo.setFriendId(conv.getFriendId());
             
-            // 从 User 表获取最新的好友信息（确保昵称和头像是最新的）
-            User friend = userRepository.findById(conv.getFriendId()).orElse(null);
+            // 从用户资料缓存获取最新的好友信息（确保昵称和头像是最新的）
+            UserProfile friend = friends.get(conv.getFriendId());
             if (friend != null) {
                 vo.setFriendName(friend.getNickname());
                 vo.setFriendAvatar(friend.getAvatar());
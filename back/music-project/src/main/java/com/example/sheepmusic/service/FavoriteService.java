@@ -25,6 +25,9 @@ public class FavoriteService {
     @Autowired
     private SongRepository songRepository;
     
+    @Autowired
+    private InteractionIndex interactionIndex;
+    
     /**
      * 添加收藏
      */
@@ -45,7 +48,9 @@ public class FavoriteService {
         favorite.setUserId(userId);
         favorite.setSongId(songId);
         
-        return favoriteRepository.save(favorite);
+        Favorite saved = favoriteRepository.save(favorite);
+        interactionIndex.addFavorite(userId, songId);
+        return saved;
     }
     
     /**
@@ -54,6 +59,7 @@ public class FavoriteService {
     @Transactional
     public void removeFavorite(Long userId, Long songId) {
         favoriteRepository.deleteByUserIdAndSongId(userId, songId);
+        interactionIndex.removeFavorite(userId, songId);
     }
     
     /**
@@ -63,7 +69,7 @@ public class FavoriteService {
     public boolean toggleFavorite(Long userId, Long songId) {
         if (favoriteRepository.existsByUserIdAndSongId(userId, songId)) {
             // 已收藏，取消收藏
-            favoriteRepository.deleteByUserIdAndSongId(userId, songId);
+            removeFavorite(userId, songId);
             return false;
         } else {
             // 未收藏，添加收藏
@@ -1,5 +1,6 @@
 package com.example.sheepmusic.service;
 
+import com.example.sheepmusic.dto.UserProfile;
 import com.example.sheepmusic.entity.Friendship;
 import com.example.sheepmusic.entity.User;
 import com.example.sheepmusic.repository.FriendshipRepository;
@@ -9,7 +10,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * 好友Service
@@ -23,6 +26,9 @@ public class FriendshipService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private UserProfileCache userProfileCache;
+    
     @Autowired
     private NotificationService notificationService;
     
@@ -185,9 +191,12 @@ public class FriendshipService {
      */
     public List<Friendship> getFriendList(Long userId) {
         List<Friendship> friendships = friendshipRepository.findByUserIdAndStatus(userId, "accepted");
-        // 强制从 User 表获取最新的好友信息（确保昵称和头像是最新的）
+        // 从用户资料缓存批量获取最新的好友信息（确保昵称和头像是最新的），未命中的合并为一次查询
+        Map<Long, UserProfile> friends = userProfileCache.getAll(friendships.stream()
+            .map(Friendship::getFriendId)
+            .collect(Collectors.toList()));
         for (Friendship friendship : friendships) {
-            User friend = userRepository.findById(friendship.getFriendId()).orElse(null);
+            UserProfile friend = friends.get(friendship.getFriendId());
             if (friend != null) {
                 // 总是更新为最新的用户信息
                 friendship.setFriendName(friend.getNickname());
@@ -205,10 +214,14 @@ public class FriendshipService {
     public List<Friendship> getFriendRequests(Long userId) {
         List<Friendship> friendships = friendshipRepository.findByFriendIdAndStatus(userId, "pending");
         // 确保冗余字段已填充（填充发起者的信息）
+        Map<Long, UserProfile> requesters = userProfileCache.getAll(friendships.stream()
+            .filter(friendship -> friendship.getUserName() == null || friendship.getUserAvatar() == null)
+            .map(Friendship::getUserId)
+            .collect(Collectors.toList()));
         for (Friendship friendship : friendships) {
             // 对于好友请求，friendId是接收者（当前用户），userId是发起者
             if (friendship.getUserName() == null || friendship.getUserAvatar() == null) {
-                User requester = userRepository.findById(friendship.getUserId()).orElse(null);
+                UserProfile requester = requesters.get(friendship.getUserId());
                 if (requester != null) {
                     friendship.setUserName(requester.getNickname());
                     friendship.setUserAvatar(requester.getAvatar());
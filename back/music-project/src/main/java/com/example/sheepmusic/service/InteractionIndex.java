@@ -0,0 +1,646 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.repository.FavoriteRepository;
+import com.example.sheepmusic.repository.PlayHistoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 用户-歌曲交互索引（协同过滤共享的内存数据）
+ *
+ * 同时维护 用户→歌曲 和 歌曲→用户 两个方向的邻接表，每一行是按ID升序排列的 long[]，
+ * 以及对应的 int[] 权重：(播放次数 << 1) | 收藏位。行对象不可变，更新时整行替换（写时复制）。
+ *
+ * 启动时从数据库加载一次，之后由收藏、播放历史的写操作在事务提交后增量更新。
+ * 全量重载期间增量更新照常作用于旧数据，同时记入缓冲区，新数据替换上去时在写锁内重放，
+ * 查询数据库之后提交的变化不会因替换而丢失。
+ * Jaccard / 余弦相似度通过对两个有序数组做归并求交集计算，不创建任何装箱集合。
+ * 依赖这些数据的组件（如 LSH 索引）可通过 {@link Listener} 订阅变化。
+ */
+@Component
+public class InteractionIndex {
+
+    /**
+     * 用户"喜欢"一首歌的播放次数阈值（收藏 或 播放 >= 3 次）
+     */
+    public static final int USER_LIKE_PLAY_THRESHOLD = 3;
+
+    /**
+     * 歌曲被用户"喜欢"的播放次数阈值（收藏 或 播放 >= 2 次）
+     */
+    public static final int SONG_LIKER_PLAY_THRESHOLD = 2;
+
+    private static final long[] EMPTY = new long[0];
+
+    @Autowired
+    private FavoriteRepository favoriteRepository;
+
+    @Autowired
+    private PlayHistoryRepository playHistoryRepository;
+
+    @Autowired
+    private PlayHistoryIngestor playHistoryIngestor;
+
+    private volatile Map<Long, Row> userRows = new ConcurrentHashMap<>();
+
+    private volatile Map<Long, Row> songRows = new ConcurrentHashMap<>();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 增量更新持读锁，替换全量数据持写锁
+     */
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * 全量重载期间的增量更新，不在重载时为 null
+     */
+    private volatile Queue<Delta> pending;
+
+    /**
+     * 注册变化监听器
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 启动时从数据库全量加载，并订阅写入数据库后的播放记录
+     */
+    @PostConstruct
+    public void init() {
+        playHistoryIngestor.addListener((userId, songId, playTime) -> addPlay(userId, songId));
+        reload();
+    }
+
+    /**
+     * 从数据库全量加载，查询期间的增量更新在替换后重放
+     */
+    public synchronized void reload() {
+        // 在写锁内开始缓冲：之前的增量更新已作用于旧数据，之后的都会进入缓冲区
+        swapLock.writeLock().lock();
+        try {
+            pending = new ConcurrentLinkedQueue<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        try {
+            reloadFromDatabase();
+        } finally {
+            pending = null;
+        }
+    }
+
+    private void reloadFromDatabase() {
+        List<Object[]> favorites = favoriteRepository.findAllUserSongPairs();
+        List<Object[]> plays = playHistoryRepository.countPlaysGroupByUserAndSong();
+
+        int size = favorites.size() + plays.size();
+        long[] userIds = new long[size];
+        long[] songIds = new long[size];
+        int[] weights = new int[size];
+        int n = 0;
+        for (Object[] row : favorites) {
+            userIds[n] = (Long) row[0];
+            songIds[n] = (Long) row[1];
+            weights[n] = 1;
+            n++;
+        }
+        for (Object[] row : plays) {
+            userIds[n] = (Long) row[0];
+            songIds[n] = (Long) row[1];
+            weights[n] = ((Long) row[2]).intValue() << 1;
+            n++;
+        }
+        load(userIds, songIds, weights, n);
+    }
+
+    /**
+     * 用 (用户ID, 歌曲ID, 权重) 三元组全量替换索引内容，同一对出现多次时收藏位取或、播放次数相加
+     * 只使用基本类型数组分组，不为每条交互创建装箱对象（也供基准测试直接装载合成数据）
+     * 由 reload 调用时，重放重载期间缓冲的增量更新
+     */
+    public void load(long[] userIds, long[] songIds, int[] weights, int size) {
+        Map<Long, Row> newUserRows = buildRows(userIds, songIds, weights, size);
+        Map<Long, Row> newSongRows = buildRows(songIds, userIds, weights, size);
+
+        swapLock.writeLock().lock();
+        try {
+            Queue<Delta> buffered = pending;
+            if (buffered != null) {
+                for (Delta delta : buffered) {
+                    update(newUserRows, newSongRows, delta.userId, delta.songId, delta.favorite, delta.playDelta);
+                }
+                pending = null;
+            }
+            userRows = newUserRows;
+            songRows = newSongRows;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        for (Listener listener : listeners) {
+            listener.onReload();
+        }
+    }
+
+    /**
+     * 批量删除数据后在事务提交时重新全量加载
+     */
+    public void reloadAfterCommit() {
+        afterCommit(this::reload);
+    }
+
+    // ========== 增量更新 ==========
+
+    /**
+     * 记录收藏
+     */
+    public void addFavorite(Long userId, Long songId) {
+        afterCommit(() -> apply(userId, songId, Boolean.TRUE, 0));
+    }
+
+    /**
+     * 取消收藏
+     */
+    public void removeFavorite(Long userId, Long songId) {
+        afterCommit(() -> apply(userId, songId, Boolean.FALSE, 0));
+    }
+
+    /**
+     * 记录一次播放
+     */
+    public void addPlay(Long userId, Long songId) {
+        afterCommit(() -> apply(userId, songId, null, 1));
+    }
+
+    /**
+     * 删除一次播放记录
+     */
+    public void removePlay(Long userId, Long songId) {
+        afterCommit(() -> apply(userId, songId, null, -1));
+    }
+
+    /**
+     * 删除同一首歌的多次播放记录
+     */
+    public void removePlays(Long userId, Long songId, int count) {
+        if (count > 0) {
+            afterCommit(() -> apply(userId, songId, null, -count));
+        }
+    }
+
+    /**
+     * 清空用户的所有播放次数（保留收藏）
+     */
+    public void clearPlays(Long userId) {
+        afterCommit(() -> {
+            Row row = userRows.get(userId);
+            if (row == null) {
+                return;
+            }
+            for (int i = 0; i < row.ids.length; i++) {
+                int plays = row.weights[i] >>> 1;
+                if (plays > 0) {
+                    apply(userId, row.ids[i], null, -plays);
+                }
+            }
+        });
+    }
+
+    /**
+     * 同时更新两个方向的邻接行，并通知监听器
+     */
+    private void apply(Long userId, Long songId, Boolean favorite, int playDelta) {
+        int[] weights;
+        swapLock.readLock().lock();
+        try {
+            Queue<Delta> buffered = pending;
+            if (buffered != null) {
+                buffered.add(new Delta(userId, songId, favorite, playDelta));
+            }
+            weights = update(userRows, songRows, userId, songId, favorite, playDelta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+
+        boolean favoritesChanged = (weights[0] & 1) != (weights[1] & 1);
+        boolean likedChanged = isLiked(weights[0]) != isLiked(weights[1]);
+        if (favoritesChanged || likedChanged) {
+            for (Listener listener : listeners) {
+                listener.onUserChanged(userId, favoritesChanged, likedChanged);
+            }
+        }
+    }
+
+    /**
+     * 更新两个方向的邻接行，返回该 (用户, 歌曲) 更新前后的权重
+     */
+    private static int[] update(Map<Long, Row> users, Map<Long, Row> songs,
+                                Long userId, Long songId, Boolean favorite, int playDelta) {
+        int[] weights = new int[2];
+        users.compute(userId, (k, row) -> {
+            Row updated = Row.apply(row, songId, favorite, playDelta);
+            weights[0] = Row.weightOf(row, songId);
+            weights[1] = Row.weightOf(updated, songId);
+            return updated;
+        });
+        songs.compute(songId, (k, row) -> Row.apply(row, userId, favorite, playDelta));
+        return weights;
+    }
+
+    private static boolean isLiked(int weight) {
+        return (weight & 1) != 0 || (weight >>> 1) >= USER_LIKE_PLAY_THRESHOLD;
+    }
+
+    /**
+     * 在当前事务提交后执行（无事务时立即执行），避免回滚的写入污染索引
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 用户喜欢的歌曲（收藏 或 播放 >= 3 次），升序
+     */
+    public long[] getLikedSongs(Long userId) {
+        return filter(userRows.get(userId), USER_LIKE_PLAY_THRESHOLD);
+    }
+
+    /**
+     * 用户收藏的歌曲，升序
+     */
+    public long[] getFavoriteSongs(Long userId) {
+        return filter(userRows.get(userId), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 喜欢某首歌的用户（收藏 或 播放 >= 2 次），升序
+     */
+    public long[] getLikingUsers(Long songId) {
+        return filter(songRows.get(songId), SONG_LIKER_PLAY_THRESHOLD);
+    }
+
+    /**
+     * 所有有交互记录的用户ID
+     */
+    public Set<Long> getUserIds() {
+        return Collections.unmodifiableSet(userRows.keySet());
+    }
+
+    /**
+     * 所有有交互记录的歌曲ID
+     */
+    public Set<Long> getSongIds() {
+        return Collections.unmodifiableSet(songRows.keySet());
+    }
+
+    /**
+     * 用户播放某首歌的次数
+     */
+    public int getPlayCount(Long userId, Long songId) {
+        Row row = userRows.get(userId);
+        if (row == null) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(row.ids, songId);
+        return index >= 0 ? row.weights[index] >>> 1 : 0;
+    }
+
+    /**
+     * 遍历所有用户行（升序歌曲ID + 权重），供离线训练等批处理使用
+     */
+    public void forEachUser(RowVisitor visitor) {
+        userRows.forEach((userId, row) -> visitor.visit(userId, row.ids, row.weights));
+    }
+
+    /**
+     * 权重中的播放次数
+     */
+    public static int playsOf(int weight) {
+        return weight >>> 1;
+    }
+
+    /**
+     * 权重中的收藏位
+     */
+    public static boolean isFavorite(int weight) {
+        return (weight & 1) != 0;
+    }
+
+    /**
+     * 过滤出 收藏 或 播放次数 >= 阈值 的ID
+     */
+    private static long[] filter(Row row, int playThreshold) {
+        if (row == null) {
+            return EMPTY;
+        }
+        long[] result = new long[row.ids.length];
+        int size = 0;
+        for (int i = 0; i < row.ids.length; i++) {
+            int weight = row.weights[i];
+            if ((weight & 1) != 0 || (weight >>> 1) >= playThreshold) {
+                result[size++] = row.ids[i];
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    // ========== 相似度计算（有序数组归并） ==========
+
+    /**
+     * 两个升序数组的交集大小
+     */
+    public static int intersectionSize(long[] a, long[] b) {
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Jaccard 相似系数 = |A∩B| / |A∪B|
+     */
+    public static double jaccard(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0.0;
+        }
+        int intersection = intersectionSize(a, b);
+        return (double) intersection / (a.length + b.length - intersection);
+    }
+
+    /**
+     * 余弦相似度 = |A∩B| / sqrt(|A| * |B|)
+     */
+    public static double cosine(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0.0;
+        }
+        return intersectionSize(a, b) / Math.sqrt((double) a.length * b.length);
+    }
+
+    /**
+     * 升序数组中是否包含某个ID
+     */
+    public static boolean contains(long[] sorted, long id) {
+        return Arrays.binarySearch(sorted, id) >= 0;
+    }
+
+    // ========== 批量构建 ==========
+
+    /**
+     * 按 keys 分组构建邻接行：先按 key 计数得到每组的偏移量（CSR），再对每组按 value 排序并合并重复项
+     */
+    private static Map<Long, Row> buildRows(long[] keys, long[] values, int[] weights, int size) {
+        long[] distinctKeys = Arrays.copyOf(keys, size);
+        Arrays.sort(distinctKeys);
+        int keyCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || distinctKeys[i] != distinctKeys[i - 1]) {
+                distinctKeys[keyCount++] = distinctKeys[i];
+            }
+        }
+
+        int[] slots = new int[size];
+        int[] offsets = new int[keyCount + 1];
+        for (int i = 0; i < size; i++) {
+            slots[i] = Arrays.binarySearch(distinctKeys, 0, keyCount, keys[i]);
+            offsets[slots[i] + 1]++;
+        }
+        for (int k = 0; k < keyCount; k++) {
+            offsets[k + 1] += offsets[k];
+        }
+        long[] groupedValues = new long[size];
+        int[] groupedWeights = new int[size];
+        int[] cursor = Arrays.copyOf(offsets, keyCount);
+        for (int i = 0; i < size; i++) {
+            int position = cursor[slots[i]]++;
+            groupedValues[position] = values[i];
+            groupedWeights[position] = weights[i];
+        }
+
+        Map<Long, Row> rows = new ConcurrentHashMap<>(keyCount * 2);
+        for (int k = 0; k < keyCount; k++) {
+            int from = offsets[k];
+            int to = offsets[k + 1];
+            sortPairs(groupedValues, groupedWeights, from, to - 1);
+
+            int distinct = 0;
+            long[] ids = new long[to - from];
+            int[] rowWeights = new int[to - from];
+            for (int i = from; i < to; i++) {
+                if (distinct > 0 && ids[distinct - 1] == groupedValues[i]) {
+                    int merged = rowWeights[distinct - 1];
+                    int weight = groupedWeights[i];
+                    rowWeights[distinct - 1] = (((merged >>> 1) + (weight >>> 1)) << 1) | ((merged | weight) & 1);
+                } else {
+                    ids[distinct] = groupedValues[i];
+                    rowWeights[distinct] = groupedWeights[i];
+                    distinct++;
+                }
+            }
+            rows.put(distinctKeys[k], distinct == ids.length
+                ? new Row(ids, rowWeights)
+                : new Row(Arrays.copyOf(ids, distinct), Arrays.copyOf(rowWeights, distinct)));
+        }
+        return rows;
+    }
+
+    /**
+     * 按 ids 升序对 [low, high] 区间内的两个并行数组做原地快速排序
+     */
+    private static void sortPairs(long[] ids, int[] weights, int low, int high) {
+        while (low < high) {
+            if (high - low < 16) {
+                for (int i = low + 1; i <= high; i++) {
+                    long id = ids[i];
+                    int weight = weights[i];
+                    int j = i - 1;
+                    while (j >= low && ids[j] > id) {
+                        ids[j + 1] = ids[j];
+                        weights[j + 1] = weights[j];
+                        j--;
+                    }
+                    ids[j + 1] = id;
+                    weights[j + 1] = weight;
+                }
+                return;
+            }
+            long pivot = ids[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (ids[i] < pivot) {
+                    i++;
+                }
+                while (ids[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long id = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = id;
+                    int weight = weights[i];
+                    weights[i] = weights[j];
+                    weights[j] = weight;
+                    i++;
+                    j--;
+                }
+            }
+            // 递归处理较短的一侧，较长的一侧继续循环，限制栈深度
+            if (j - low < high - i) {
+                sortPairs(ids, weights, low, j);
+                low = i;
+            } else {
+                sortPairs(ids, weights, i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * 不可变邻接行：升序ID + 权重（(播放次数 << 1) | 收藏位）
+     */
+    static final class Row {
+        final long[] ids;
+        final int[] weights;
+
+        Row(long[] ids, int[] weights) {
+            this.ids = ids;
+            this.weights = weights;
+        }
+
+        static int weightOf(Row row, long id) {
+            if (row == null) {
+                return 0;
+            }
+            int index = Arrays.binarySearch(row.ids, id);
+            return index >= 0 ? row.weights[index] : 0;
+        }
+
+        /**
+         * 生成更新后的新行，行变为空时返回 null（从 Map 中移除）
+         *
+         * @param favorite  null-不变，true-收藏，false-取消收藏
+         * @param playDelta 播放次数变化量
+         */
+        static Row apply(Row row, long id, Boolean favorite, int playDelta) {
+            long[] ids = row != null ? row.ids : EMPTY;
+            int[] weights = row != null ? row.weights : new int[0];
+            int index = Arrays.binarySearch(ids, id);
+
+            int weight = index >= 0 ? weights[index] : 0;
+            int fav = favorite == null ? (weight & 1) : (favorite ? 1 : 0);
+            int plays = Math.max(0, (weight >>> 1) + playDelta);
+            int newWeight = (plays << 1) | fav;
+
+            if (index >= 0) {
+                if (newWeight == weight) {
+                    return row;
+                }
+                if (newWeight == 0) {
+                    if (ids.length == 1) {
+                        return null;
+                    }
+                    long[] newIds = new long[ids.length - 1];
+                    int[] newWeights = new int[ids.length - 1];
+                    System.arraycopy(ids, 0, newIds, 0, index);
+                    System.arraycopy(ids, index + 1, newIds, index, ids.length - index - 1);
+                    System.arraycopy(weights, 0, newWeights, 0, index);
+                    System.arraycopy(weights, index + 1, newWeights, index, weights.length - index - 1);
+                    return new Row(newIds, newWeights);
+                }
+                int[] newWeights = weights.clone();
+                newWeights[index] = newWeight;
+                return new Row(ids, newWeights);
+            }
+
+            if (newWeight == 0) {
+                return row;
+            }
+            int insertAt = -index - 1;
+            long[] newIds = new long[ids.length + 1];
+            int[] newWeights = new int[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, insertAt);
+            System.arraycopy(weights, 0, newWeights, 0, insertAt);
+            newIds[insertAt] = id;
+            newWeights[insertAt] = newWeight;
+            System.arraycopy(ids, insertAt, newIds, insertAt + 1, ids.length - insertAt);
+            System.arraycopy(weights, insertAt, newWeights, insertAt + 1, weights.length - insertAt);
+            return new Row(newIds, newWeights);
+        }
+    }
+
+    /**
+     * 重载期间缓冲的一次增量更新
+     */
+    private static final class Delta {
+        final Long userId;
+        final Long songId;
+        final Boolean favorite;
+        final int playDelta;
+
+        Delta(Long userId, Long songId, Boolean favorite, int playDelta) {
+            this.userId = userId;
+            this.songId = songId;
+            this.favorite = favorite;
+            this.playDelta = playDelta;
+        }
+    }
+
+    /**
+     * 邻接行访问器（数组只读，不要修改）
+     */
+    public interface RowVisitor {
+        void visit(long id, long[] ids, int[] weights);
+    }
+
+    /**
+     * 交互变化监听器
+     */
+    public interface Listener {
+
+        /**
+         * 用户的交互发生了变化
+         *
+         * @param favoritesChanged 收藏集合是否变化
+         * @param likedChanged     "喜欢"集合（收藏 或 播放 >= 3 次）是否变化
+         */
+        void onUserChanged(Long userId, boolean favoritesChanged, boolean likedChanged);
+
+        /**
+         * 索引被全量重新加载
+         */
+        default void onReload() {
+        }
+    }
+}
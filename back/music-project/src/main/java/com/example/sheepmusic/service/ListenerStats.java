@@ -0,0 +1,372 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.Artist;
+import com.example.sheepmusic.entity.ListenerSketch;
+import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.repository.ListenerSketchRepository;
+import com.example.sheepmusic.repository.SongRepository;
+import com.example.sheepmusic.utils.HyperLogLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 歌曲、歌手独立听众数统计
+ *
+ * 为每首歌曲、每位歌手分别维护"全部时间"和"每天"的 HyperLogLog 草图，播放记录写入后由 PlayHistoryIngestor 回调更新；
+ * 今天 = 当天草图，本周 = 最近 7 个日草图合并，全部时间 = 全部时间草图，查询只读内存，不对播放历史做 COUNT(DISTINCT)。
+ *
+ * 只有寄存器发生变化的草图才标记为脏，定时按 (类型, ID, 周期) 批量 upsert 到 tb_listener_sketch，
+ * 启动时加载全部时间和最近 7 天的草图。同一用户重复添加不改变草图，因此回填和重放都是幂等的；
+ * 进程崩溃时最多丢失最近一个持久化间隔内的更新。
+ */
+@Component
+public class ListenerStats {
+
+    private static final String SONG = "song";
+
+    private static final String ARTIST = "artist";
+
+    private static final String ALL = "all";
+
+    private static final int WEEK_DAYS = 7;
+
+    private static final long[] NO_ARTISTS = new long[0];
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO tb_listener_sketch (target_type, target_id, period, registers, update_time) " +
+        "VALUES (?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE registers = VALUES(registers), update_time = VALUES(update_time)";
+
+    private static final String PAIRS_SQL = "SELECT user_id, song_id FROM tb_user_song_play";
+
+    private static final String RECENT_PLAYS_SQL =
+        "SELECT user_id, song_id, play_time FROM tb_play_history WHERE play_time >= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ListenerSketchRepository listenerSketchRepository;
+
+    @Autowired
+    private SongRepository songRepository;
+
+    @Autowired
+    private PlayHistoryIngestor playHistoryIngestor;
+
+    /**
+     * HyperLogLog 精度（桶数的对数），12 对应 4096 个寄存器、标准误差约 1.6%
+     */
+    @Value("${listener-stats.precision:12}")
+    private int precision;
+
+    /**
+     * 单次批量 upsert 的最大草图数
+     */
+    @Value("${listener-stats.batch-size:200}")
+    private int batchSize;
+
+    private final Map<SketchKey, HyperLogLog> sketches = new ConcurrentHashMap<>();
+
+    /**
+     * 寄存器已变化、尚未持久化的草图
+     */
+    private final Set<SketchKey> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 歌曲ID -> 歌手ID
+     */
+    private final Map<Long, long[]> songArtists = new ConcurrentHashMap<>();
+
+    private final AtomicLong persisted = new AtomicLong();
+
+    private final AtomicLong persistFailures = new AtomicLong();
+
+    private volatile long lastPersistMs;
+
+    @PostConstruct
+    public void subscribe() {
+        Map<Long, List<Long>> artists = new HashMap<>();
+        for (Object[] row : songRepository.findAllSongArtistIds()) {
+            artists.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((Long) row[1]);
+        }
+        artists.forEach((songId, ids) -> songArtists.put(songId, ids.stream().mapToLong(Long::longValue).toArray()));
+        playHistoryIngestor.addListener(this::onPlay);
+    }
+
+    /**
+     * 加载已持久化的草图；表为空（首次部署）时从播放汇总表和最近 7 天的播放历史回填
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        List<String> periods = new ArrayList<>(recentDays());
+        periods.add(ALL);
+        List<ListenerSketch> rows = listenerSketchRepository.findByPeriodIn(periods);
+        for (ListenerSketch row : rows) {
+            // 启动期间已有播放写入时合并而不是覆盖
+            sketches.merge(new SketchKey(row.getTargetType(), row.getTargetId(), row.getPeriod()),
+                HyperLogLog.fromBytes(row.getRegisters()),
+                (current, loaded) -> {
+                    current.merge(loaded);
+                    return current;
+                });
+        }
+        if (rows.isEmpty() && listenerSketchRepository.count() == 0) {
+            // 汇总表和播放历史都可能很大，逐行流式读取，不整体加载到内存
+            stream(PAIRS_SQL, null, rs -> {
+                long userId = rs.getLong(1);
+                long songId = rs.getLong(2);
+                add(SONG, songId, ALL, userId);
+                for (long artistId : songArtists.getOrDefault(songId, NO_ARTISTS)) {
+                    add(ARTIST, artistId, ALL, userId);
+                }
+            });
+            LocalDateTime since = LocalDate.now().minusDays(WEEK_DAYS - 1).atStartOfDay();
+            stream(RECENT_PLAYS_SQL, Timestamp.valueOf(since),
+                rs -> onPlay(rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).getTime()));
+        }
+    }
+
+    /**
+     * 流式执行查询，逐行回调
+     *
+     * @param since 查询的唯一参数，为 null 时查询不带参数
+     */
+    private void stream(String sql, Timestamp since, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // MySQL 驱动在 fetchSize 为 Integer.MIN_VALUE 时逐行流式返回结果
+            statement.setFetchSize(Integer.MIN_VALUE);
+            if (since != null) {
+                statement.setTimestamp(1, since);
+            }
+            return statement;
+        }, handler);
+    }
+
+    /**
+     * 记录一次播放（播放记录写入数据库后由 PlayHistoryIngestor 回调）
+     *
+     * @param playTime 播放时间（毫秒时间戳）
+     */
+    public void onPlay(Long userId, Long songId, long playTime) {
+        String day = Instant.ofEpochMilli(playTime).atZone(ZoneId.systemDefault()).toLocalDate().toString();
+        boolean recent = day.compareTo(recentDays().get(0)) >= 0;
+        long[] artistIds = songArtists.getOrDefault(songId, NO_ARTISTS);
+        add(SONG, songId, ALL, userId);
+        for (long artistId : artistIds) {
+            add(ARTIST, artistId, ALL, userId);
+        }
+        if (recent) {
+            add(SONG, songId, day, userId);
+            for (long artistId : artistIds) {
+                add(ARTIST, artistId, day, userId);
+            }
+        }
+    }
+
+    /**
+     * 歌曲的独立听众数：今天、最近 7 天、全部时间
+     */
+    public Map<String, Long> getSongListeners(Long songId) {
+        return listeners(SONG, songId);
+    }
+
+    /**
+     * 歌手（所有歌曲合计）的独立听众数：今天、最近 7 天、全部时间
+     */
+    public Map<String, Long> getArtistListeners(Long artistId) {
+        return listeners(ARTIST, artistId);
+    }
+
+    /**
+     * 歌曲新增或修改歌手后同步（事务提交后生效）
+     */
+    public void putSong(Song song) {
+        Long songId = song.getId();
+        long[] artistIds = song.getArtists() == null ? NO_ARTISTS
+            : song.getArtists().stream().map(Artist::getId).mapToLong(Long::longValue).toArray();
+        afterCommit(() -> songArtists.put(songId, artistIds));
+    }
+
+    /**
+     * 歌曲被删除（事务提交后生效），同时删除其草图
+     */
+    public void removeSong(Long songId) {
+        afterCommit(() -> {
+            songArtists.remove(songId);
+            removeTarget(SONG, songId);
+        });
+    }
+
+    /**
+     * 歌手被删除（事务提交后生效），同时删除其草图
+     */
+    public void removeArtist(Long artistId) {
+        afterCommit(() -> removeTarget(ARTIST, artistId));
+    }
+
+    /**
+     * 定时持久化变化过的草图，并清理超出 7 天的日草图
+     */
+    @Scheduled(initialDelayString = "${listener-stats.persist-interval-ms:60000}",
+            fixedDelayString = "${listener-stats.persist-interval-ms:60000}")
+    public synchronized void persist() {
+        long start = System.currentTimeMillis();
+        List<SketchKey> keys = new ArrayList<>(dirty);
+        List<Object[]> args = new ArrayList<>(keys.size());
+        Timestamp now = new Timestamp(start);
+        for (SketchKey key : keys) {
+            // 先移出脏集合再序列化，序列化之后的新变化会再次标脏
+            dirty.remove(key);
+            HyperLogLog sketch = sketches.get(key);
+            if (sketch != null) {
+                args.add(new Object[]{key.type, key.id, key.period, sketch.toBytes(), now});
+            }
+        }
+        try {
+            for (int from = 0; from < args.size(); from += batchSize) {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, args.subList(from, Math.min(from + batchSize, args.size())));
+            }
+            String oldest = recentDays().get(0);
+            sketches.keySet().removeIf(key -> !ALL.equals(key.period) && key.period.compareTo(oldest) < 0);
+            jdbcTemplate.update("DELETE FROM tb_listener_sketch WHERE period <> ? AND period < ?", ALL, oldest);
+        } catch (Exception e) {
+            persistFailures.incrementAndGet();
+            dirty.addAll(keys);
+            e.printStackTrace();
+            return;
+        }
+        persisted.addAndGet(args.size());
+        lastPersistMs = System.currentTimeMillis() - start;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        persist();
+    }
+
+    /**
+     * 运行统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sketches", sketches.size());
+        stats.put("dirty", dirty.size());
+        stats.put("persisted", persisted.get());
+        stats.put("persistFailures", persistFailures.get());
+        stats.put("lastPersistMs", lastPersistMs);
+        return stats;
+    }
+
+    private void add(String type, long id, String period, long userId) {
+        SketchKey key = new SketchKey(type, id, period);
+        if (sketches.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(userId)) {
+            dirty.add(key);
+        }
+    }
+
+    private Map<String, Long> listeners(String type, long id) {
+        List<String> days = recentDays();
+        HyperLogLog week = new HyperLogLog(precision);
+        for (String day : days) {
+            HyperLogLog sketch = sketches.get(new SketchKey(type, id, day));
+            if (sketch != null) {
+                week.merge(sketch);
+            }
+        }
+        HyperLogLog today = sketches.get(new SketchKey(type, id, days.get(days.size() - 1)));
+        HyperLogLog all = sketches.get(new SketchKey(type, id, ALL));
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("day", today == null ? 0 : today.estimate());
+        result.put("week", week.estimate());
+        result.put("all", all == null ? 0 : all.estimate());
+        return result;
+    }
+
+    private void removeTarget(String type, long id) {
+        sketches.keySet().removeIf(key -> key.type.equals(type) && key.id == id);
+        dirty.removeIf(key -> key.type.equals(type) && key.id == id);
+        jdbcTemplate.update("DELETE FROM tb_listener_sketch WHERE target_type = ? AND target_id = ?", type, id);
+    }
+
+    /**
+     * 最近 7 天（含今天）的日期，升序
+     */
+    private static List<String> recentDays() {
+        LocalDate today = LocalDate.now();
+        List<String> days = new ArrayList<>(WEEK_DAYS);
+        for (int i = WEEK_DAYS - 1; i >= 0; i--) {
+            days.add(today.minusDays(i).toString());
+        }
+        return days;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static class SketchKey {
+
+        private final String type;
+
+        private final long id;
+
+        private final String period;
+
+        private SketchKey(String type, long id, String period) {
+            this.type = type;
+            this.id = id;
+            this.period = period;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SketchKey)) {
+                return false;
+            }
+            SketchKey other = (SketchKey) o;
+            return id == other.id && type.equals(other.type) && period.equals(other.period);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id, period);
+        }
+    }
+}
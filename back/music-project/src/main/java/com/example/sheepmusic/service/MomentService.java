@@ -1,5 +1,6 @@
 package com.example.sheepmusic.service;
 
+import com.example.sheepmusic.common.CursorPage;
 import com.example.sheepmusic.entity.*;
 import com.example.sheepmusic.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +10,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -100,6 +102,29 @@ public class MomentService {
         return momentRepository.findFriendsMoments(friendIds, pageable);
     }
     
+    /**
+     * 获取好友动态（游标分页）
+     *
+     * @param cursor 上一页返回的游标，为空时从最新的动态开始
+     */
+    public CursorPage<UserMoment> getFriendsMoments(Long userId, String cursor, int size) {
+        List<Long> friendIds = friendshipService.getFriendList(userId).stream()
+            .map(Friendship::getFriendId)
+            .collect(java.util.stream.Collectors.toList());
+        friendIds.add(userId);
+        
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<UserMoment> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = momentRepository.findFriendsMomentsLatest(friendIds, limit);
+        } else {
+            String[] keys = CursorPage.decode(cursor, 2);
+            rows = momentRepository.findFriendsMomentsBefore(friendIds,
+                    LocalDateTime.parse(keys[0]), Long.valueOf(keys[1]), limit);
+        }
+        return CursorPage.of(rows, size, last -> CursorPage.encode(last.getCreateTime(), last.getId()));
+    }
+    
     /**
      * 获取公开动态
      */
@@ -116,6 +141,24 @@ public class MomentService {
         return momentRepository.findByUserIdOrderByCreateTimeDesc(userId, pageable);
     }
     
+    /**
+     * 获取用户的动态（游标分页）
+     *
+     * @param cursor 上一页返回的游标，为空时从最新的动态开始
+     */
+    public CursorPage<UserMoment> getUserMoments(Long userId, String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<UserMoment> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = momentRepository.findByUserIdOrderByCreateTimeDescIdDesc(userId, limit);
+        } else {
+            String[] keys = CursorPage.decode(cursor, 2);
+            rows = momentRepository.findByUserIdBefore(userId,
+                    LocalDateTime.parse(keys[0]), Long.valueOf(keys[1]), limit);
+        }
+        return CursorPage.of(rows, size, last -> CursorPage.encode(last.getCreateTime(), last.getId()));
+    }
+    
     /**
      * 点赞/取消点赞动态
      */
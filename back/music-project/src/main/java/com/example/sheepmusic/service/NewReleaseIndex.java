@@ -0,0 +1,119 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.repository.SongRepository;
+import com.example.sheepmusic.utils.NewReleaseChart;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 新歌热度榜索引
+ *
+ * 启动时只查询最大时间窗口内上架歌曲的 (ID, 创建时间, 播放量)，不加载整个曲库；
+ * 之后由歌曲创建、修改、删除以及播放量增加增量维护，按 7/30/90 天等时间窗口查询播放量排行。
+ */
+@Component
+public class NewReleaseIndex {
+
+    @Autowired
+    private SongRepository songRepository;
+
+    /**
+     * 支持查询的时间窗口（天）
+     */
+    @Value("${recommend.new-release.windows-days:7,30,90}")
+    private int[] windowDays;
+
+    private NewReleaseChart chart;
+
+    @PostConstruct
+    public void init() {
+        long[] windows = Arrays.stream(windowDays).mapToLong(TimeUnit.DAYS::toMillis).toArray();
+        chart = new NewReleaseChart(windows);
+        int maxDays = Arrays.stream(windowDays).max().orElse(90);
+
+        long now = System.currentTimeMillis();
+        LocalDateTime since = LocalDateTime.now().minusDays(maxDays);
+        for (Object[] row : songRepository.findActiveSongsCreatedSince(since)) {
+            chart.put((Long) row[0], toMillis((LocalDateTime) row[1]), (Long) row[2], now);
+        }
+    }
+
+    /**
+     * 查询时间窗口内播放量最高的新歌ID
+     *
+     * @param days 时间窗口（天），必须是 recommend.new-release.windows-days 中的一个
+     */
+    public List<Long> getTopSongIds(int days, int limit) {
+        if (Arrays.stream(windowDays).noneMatch(d -> d == days)) {
+            throw new RuntimeException("不支持的时间窗口: " + days + " 天，可选值: " + Arrays.toString(windowDays));
+        }
+        long[] ids = chart.top(TimeUnit.DAYS.toMillis(days), System.currentTimeMillis(), limit);
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * 歌曲新增或修改后同步（事务提交后生效），下架歌曲移除
+     */
+    public void put(Song song) {
+        Long songId = song.getId();
+        if (song.getStatus() == null || song.getStatus() != 1) {
+            remove(songId);
+            return;
+        }
+        long createTime = song.getCreateTime() != null ? toMillis(song.getCreateTime()) : System.currentTimeMillis();
+        long playCount = song.getPlayCount() != null ? song.getPlayCount() : 0;
+        afterCommit(() -> chart.put(songId, createTime, playCount, System.currentTimeMillis()));
+    }
+
+    /**
+     * 歌曲被删除（事务提交后生效）
+     */
+    public void remove(Long songId) {
+        afterCommit(() -> chart.remove(songId));
+    }
+
+    /**
+     * 播放量增加（事务提交后生效）
+     */
+    public void addPlays(Long songId, long delta) {
+        afterCommit(() -> chart.addPlays(songId, delta));
+    }
+
+    /**
+     * 每小时清理滑出时间窗口的歌曲
+     */
+    @Scheduled(cron = "0 5 * * * ?")
+    public void purge() {
+        chart.purge(System.currentTimeMillis());
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.utils.TransitionTable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 下一首歌曲模型（基于会话的一阶马尔可夫转移）
+ *
+ * 同一用户相邻两次播放的间隔不超过会话间隔时，记一次 上一首 -> 下一首 的转移。
+ * 启动时按用户、时间顺序流式扫描最近一段时间的播放历史（逐行回调，不把整段历史读入内存）填充转移表，
+ * 启动后的每次播放直接增量更新同一张表，扫描期间到达的播放不会丢失（扫描开始前已写入库的少量播放可能多计一次）；
+ * 查询"接下来播放"只读转移表中该歌曲计数最高的后继，不访问数据库。
+ */
+@Component
+public class NextSongModel {
+
+    private static final String SEQUENCE_SQL = "SELECT user_id, song_id, play_time FROM tb_play_history " +
+        "WHERE play_time >= ? ORDER BY user_id, play_time, id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlayHistoryIngestor playHistoryIngestor;
+
+    /**
+     * 会话间隔（分钟），相邻两次播放超过该间隔视为不同会话
+     */
+    @Value("${recommend.next-song.session-gap-minutes:30}")
+    private long sessionGapMinutes;
+
+    /**
+     * 每首歌最多保存的后继数
+     */
+    @Value("${recommend.next-song.max-successors:50}")
+    private int maxSuccessors;
+
+    /**
+     * 启动时加载最近多少天的播放历史
+     */
+    @Value("${recommend.next-song.history-days:90}")
+    private int historyDays;
+
+    private TransitionTable transitions;
+
+    /**
+     * 每个用户最近一次播放，用于和下一次播放组成转移
+     */
+    private final Map<Long, LastPlay> lastPlays = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribe() {
+        transitions = new TransitionTable(maxSuccessors);
+        playHistoryIngestor.addListener(this::onPlay);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        long gapMillis = TimeUnit.MINUTES.toMillis(sessionGapMinutes);
+        SequenceScanner scanner = new SequenceScanner(gapMillis);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SEQUENCE_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // MySQL 驱动在 fetchSize 为 Integer.MIN_VALUE 时逐行流式返回结果
+            statement.setFetchSize(Integer.MIN_VALUE);
+            statement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now().minusDays(historyDays)));
+            return statement;
+        }, scanner);
+        scanner.finish();
+    }
+
+    /**
+     * 记录一次播放（播放记录写入数据库后由 PlayHistoryIngestor 回调）
+     *
+     * @param playTime 播放时间（毫秒时间戳）
+     */
+    public void onPlay(Long userId, Long songId, long playTime) {
+        long gapMillis = TimeUnit.MINUTES.toMillis(sessionGapMinutes);
+        LastPlay previous = lastPlays.put(userId, new LastPlay(songId, playTime));
+        if (previous != null && playTime - previous.time <= gapMillis && previous.songId != songId) {
+            transitions.increment(previous.songId, songId);
+        }
+    }
+
+    /**
+     * 歌曲被删除后不再作为来源出现（作为后继的记录在查询结果中由调用方过滤）
+     */
+    public void removeSong(Long songId) {
+        transitions.removeSource(songId);
+    }
+
+    /**
+     * 听完这首歌后最常接着播放的歌曲（按转移次数降序）
+     */
+    public List<Long> getNextSongIds(Long songId, int limit) {
+        return Arrays.stream(transitions.successors(songId, limit))
+            .boxed()
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 按 (用户, 播放时间) 顺序逐行处理播放序列
+     */
+    private class SequenceScanner implements RowCallbackHandler {
+
+        private final long gapMillis;
+
+        private long previousUser = -1;
+
+        private long previousSong;
+
+        private long previousTime;
+
+        private SequenceScanner(long gapMillis) {
+            this.gapMillis = gapMillis;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long userId = rs.getLong(1);
+            long songId = rs.getLong(2);
+            long playTime = rs.getTimestamp(3).getTime();
+            if (userId == previousUser && playTime - previousTime <= gapMillis && songId != previousSong) {
+                transitions.increment(previousSong, songId);
+            }
+            if (previousUser != -1 && userId != previousUser) {
+                finishUser();
+            }
+            previousUser = userId;
+            previousSong = songId;
+            previousTime = playTime;
+        }
+
+        private void finish() {
+            if (previousUser != -1) {
+                finishUser();
+            }
+        }
+
+        /**
+         * 启动后已有新播放的用户以实时记录为准
+         */
+        private void finishUser() {
+            lastPlays.putIfAbsent(previousUser, new LastPlay(previousSong, previousTime));
+        }
+    }
+
+    private static class LastPlay {
+
+        private final long songId;
+
+        private final long time;
+
+        private LastPlay(long songId, long time) {
+            this.songId = songId;
+            this.time = time;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.example.sheepmusic.service;
 
+import com.example.sheepmusic.common.CursorPage;
+import com.example.sheepmusic.dto.UserProfile;
 import com.example.sheepmusic.entity.Notification;
-import com.example.sheepmusic.entity.User;
 import com.example.sheepmusic.repository.NotificationRepository;
-import com.example.sheepmusic.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.data.domain.Page;
@@ -25,7 +25,7 @@ public class NotificationService {
     private NotificationRepository notificationRepository;
     
     @Autowired
-    private UserRepository userRepository;
+    private UserProfileCache userProfileCache;
 
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
@@ -37,10 +37,7 @@ public class NotificationService {
     public Notification createNotification(Long userId, Long senderId, String type,
                                           String title, String content, Long relatedId,
                                           String relatedType, String link) {
-        User sender = null;
-        if (senderId != null) {
-            sender = userRepository.findById(senderId).orElse(null);
-        }
+        UserProfile sender = userProfileCache.get(senderId);
         
         Notification notification = new Notification();
         notification.setUserId(userId);
@@ -171,6 +168,24 @@ public class NotificationService {
         return notificationRepository.findByUserIdOrderByCreateTimeDesc(userId, pageable);
     }
     
+    /**
+     * 获取用户的通知（游标分页）
+     *
+     * @param cursor 上一页返回的游标，为空时从最新的通知开始
+     */
+    public CursorPage<Notification> getNotifications(Long userId, String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Notification> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = notificationRepository.findByUserIdOrderByCreateTimeDescIdDesc(userId, limit);
+        } else {
+            String[] keys = CursorPage.decode(cursor, 2);
+            rows = notificationRepository.findByUserIdBefore(userId,
+                    LocalDateTime.parse(keys[0]), Long.valueOf(keys[1]), limit);
+        }
+        return CursorPage.of(rows, size, last -> CursorPage.encode(last.getCreateTime(), last.getId()));
+    }
+    
     /**
      * 获取未读通知
      */
@@ -210,14 +225,5 @@ public class NotificationService {
     public void markAllAsRead(Long userId) {
         notificationRepository.markAllAsRead(userId, LocalDateTime.now());
     }
-    
-    /**
-     * 删除旧通知（30天前）
-     */
-    @Transactional
-    public void deleteOldNotifications() {
-        LocalDateTime beforeDate = LocalDateTime.now().minusDays(30);
-        notificationRepository.deleteOldNotifications(beforeDate);
-    }
 }
 
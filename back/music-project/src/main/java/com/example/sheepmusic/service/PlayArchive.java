@@ -0,0 +1,479 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.utils.PlaySegmentCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 冷播放历史列式归档
+ *
+ * 过期的 tb_play_history 记录由 RetentionJob 在删除前导出到本地磁盘，每月一个段文件（plays-yyyy-MM.col），
+ * 每个删除块追加为一个列式行组（见 PlaySegmentCodec）。查询时内存映射段文件（超过 2GB 的文件按行组边界分成多个窗口映射），
+ * 按行组时间范围和用户过滤器跳过、只解码需要的列，
+ * "年度回顾"和长时间范围的统计不需要访问 MySQL。
+ *
+ * 导出与数据库删除两阶段提交：行组先以 PENDING 状态写入并刷盘，删除事务提交后再把状态字节改为 COMMITTED，
+ * 事务回滚则作废该行组（是文件最后一个行组时截断，否则标为 ABORTED，不影响其后已提交的行组）；读取时只读 COMMITTED 行组。
+ * 进程在两者之间崩溃时，启动时检查行组中的记录是否仍在数据库中，已删除则补标 COMMITTED，否则同样作废，
+ * 保证归档与数据库中的记录不重不漏。
+ * 截断会使已映射的区域失效，因此查询期间持读锁，回滚截断时持写锁。
+ *
+ * 解析出的行组索引按段文件缓存，文件大小不变时直接复用，不必每次查询都重新映射、解析所有行组头部；
+ * 追加、截断和改写状态时清除该文件的缓存。行组状态直接从映射区读取，缓存中的行组能看到提交后的新状态。
+ */
+@Component
+public class PlayArchive {
+
+    private static final String FILE_PREFIX = "plays-";
+
+    private static final String FILE_SUFFIX = ".col";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 段文件目录
+     */
+    @Value("${play-archive.dir:data/play-archive}")
+    private String dir;
+
+    private final ReentrantReadWriteLock truncateLock = new ReentrantReadWriteLock();
+
+    /**
+     * 段文件 -> 已解析的行组索引
+     */
+    private final Map<Path, Segment> segments = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(dir));
+        for (Path path : listFiles()) {
+            recover(path);
+        }
+    }
+
+    /**
+     * 按月份追加一批记录（PENDING 状态），返回的导出需要在数据库删除提交或回滚后确认
+     *
+     * @param rows 每行为 [记录ID, 播放时间毫秒, 用户ID, 歌曲ID, 播放时长秒]
+     */
+    public synchronized Export append(List<long[]> rows) throws IOException {
+        Map<YearMonth, List<long[]>> byMonth = rows.stream()
+            .collect(Collectors.groupingBy(row -> toMonth(row[1]), TreeMap::new, Collectors.toList()));
+        Export export = new Export();
+        try {
+            for (Map.Entry<YearMonth, List<long[]>> entry : byMonth.entrySet()) {
+                List<long[]> monthRows = entry.getValue();
+                long[][] columns = new long[5][monthRows.size()];
+                for (int i = 0; i < monthRows.size(); i++) {
+                    for (int c = 0; c < 5; c++) {
+                        columns[c][i] = monthRows.get(i)[c];
+                    }
+                }
+                byte[] block = PlaySegmentCodec.encode(columns[0], columns[1], columns[2], columns[3], columns[4]);
+                Path path = pathOf(entry.getKey());
+                try (FileChannel channel = FileChannel.open(path,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    long offset = channel.size();
+                    export.blocks.add(new BlockRef(path, offset, block.length));
+                    channel.write(ByteBuffer.wrap(block), offset);
+                    channel.force(false);
+                }
+                segments.remove(path);
+            }
+        } catch (IOException e) {
+            export.rollback();
+            throw e;
+        }
+        return export;
+    }
+
+    /**
+     * 遍历某用户在时间范围内的归档播放记录
+     */
+    public void scanUser(long userId, long fromMillis, long toMillis, RowVisitor visitor) {
+        truncateLock.readLock().lock();
+        try {
+            scanUserLocked(userId, fromMillis, toMillis, visitor);
+        } finally {
+            truncateLock.readLock().unlock();
+        }
+    }
+
+    private void scanUserLocked(long userId, long fromMillis, long toMillis, RowVisitor visitor) {
+        for (YearMonth month = toMonth(fromMillis); !month.isAfter(toMonth(toMillis - 1)); month = month.plusMonths(1)) {
+            Segment segment = segment(pathOf(month));
+            if (segment == null) {
+                continue;
+            }
+            for (PlaySegmentCodec.Block block : segment.blocks) {
+                if (!block.isCommitted() || block.getMaxTime() < fromMillis || block.getMinTime() >= toMillis) {
+                    continue;
+                }
+                // 先查用户过滤器，再只解码用户列，本行组没有该用户的记录时跳过其余列
+                if (!block.mightContainUser(userId)) {
+                    continue;
+                }
+                long[] users = block.decode(PlaySegmentCodec.COLUMN_USERS);
+                if (Arrays.stream(users).noneMatch(id -> id == userId)) {
+                    continue;
+                }
+                long[] times = block.decode(PlaySegmentCodec.COLUMN_TIMES);
+                long[] songs = block.decode(PlaySegmentCodec.COLUMN_SONGS);
+                long[] durations = block.decode(PlaySegmentCodec.COLUMN_DURATIONS);
+                for (int i = 0; i < users.length; i++) {
+                    if (users[i] == userId && times[i] >= fromMillis && times[i] < toMillis) {
+                        visitor.visit(songs[i], times[i], durations[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 某首歌曲在归档中每个月的播放次数（只解码歌曲列）
+     */
+    public Map<String, Long> songMonthlyPlays(long songId) {
+        Map<String, Long> result = new TreeMap<>();
+        truncateLock.readLock().lock();
+        try {
+            songMonthlyPlaysLocked(songId, result);
+        } finally {
+            truncateLock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private void songMonthlyPlaysLocked(long songId, Map<String, Long> result) {
+        for (Path path : listFiles()) {
+            Segment segment = segment(path);
+            if (segment == null) {
+                continue;
+            }
+            long plays = 0;
+            for (PlaySegmentCodec.Block block : segment.blocks) {
+                if (block.isCommitted()) {
+                    plays += Arrays.stream(block.decode(PlaySegmentCodec.COLUMN_SONGS)).filter(id -> id == songId).count();
+                }
+            }
+            if (plays > 0) {
+                result.put(monthOf(path), plays);
+            }
+        }
+    }
+
+    /**
+     * 归档统计（段文件数、行组数、记录数、字节数）
+     */
+    public Map<String, Object> getStats() {
+        long files = 0;
+        long blockCount = 0;
+        long rows = 0;
+        long bytes = 0;
+        truncateLock.readLock().lock();
+        try {
+            for (Path path : listFiles()) {
+                Segment segment = segment(path);
+                if (segment == null) {
+                    continue;
+                }
+                files++;
+                bytes += segment.size;
+                for (PlaySegmentCodec.Block block : segment.blocks) {
+                    if (block.isCommitted()) {
+                        blockCount++;
+                        rows += block.getRows();
+                    }
+                }
+            }
+        } finally {
+            truncateLock.readLock().unlock();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("files", files);
+        stats.put("blocks", blockCount);
+        stats.put("rows", rows);
+        stats.put("bytes", bytes);
+        stats.put("bytesPerRow", rows == 0 ? 0 : (double) bytes / rows);
+        return stats;
+    }
+
+    /**
+     * 启动时处理上次崩溃残留的 PENDING 行组和写了一半的行组
+     */
+    private void recover(Path path) throws IOException {
+        Segment segment = scan(path);
+        if (segment == null) {
+            return;
+        }
+        if (segment.end < segment.size) {
+            truncate(path, segment.end);
+        }
+        for (int i = 0; i < segment.blocks.size(); i++) {
+            PlaySegmentCodec.Block block = segment.blocks.get(i);
+            long position = segment.positions.get(i);
+            if (block.getStatus() != PlaySegmentCodec.PENDING) {
+                continue;
+            }
+            if (anyExists(block.decode(PlaySegmentCodec.COLUMN_IDS))) {
+                // 删除事务没有提交，记录仍在数据库中，下次清理时重新导出
+                if (position + block.getTotalBytes() == segment.end) {
+                    truncate(path, position);
+                } else {
+                    markStatus(path, position, PlaySegmentCodec.ABORTED);
+                }
+            } else {
+                markStatus(path, position, PlaySegmentCodec.COMMITTED);
+            }
+        }
+    }
+
+    private boolean anyExists(long[] ids) {
+        for (int from = 0; from < ids.length; from += 1000) {
+            long[] chunk = Arrays.copyOfRange(ids, from, Math.min(from + 1000, ids.length));
+            String placeholders = String.join(",", Collections.nCopies(chunk.length, "?"));
+            Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM tb_play_history WHERE id IN (" + placeholders + ")",
+                Long.class, Arrays.stream(chunk).boxed().toArray());
+            if (count != null && count > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取段文件的行组索引：缓存的索引与当前文件大小一致时直接使用，否则重新解析并缓存
+     */
+    private Segment segment(Path path) {
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (NoSuchFileException e) {
+            segments.remove(path);
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Segment cached = segments.get(path);
+        if (cached != null && cached.size == size) {
+            return cached;
+        }
+        Segment scanned = scan(path);
+        if (scanned == null) {
+            segments.remove(path);
+        } else {
+            segments.put(path, scanned);
+        }
+        return scanned;
+    }
+
+    /**
+     * 只读映射段文件并读出其中所有完整的行组，文件不存在或为空时返回 null
+     *
+     * 单个 MappedByteBuffer 最大 2GB，因此从文件开头起每次映射至多 2GB 的窗口，
+     * 在窗口内读完完整的行组后，从下一个行组的起点重新映射（行组本身远小于 2GB，不会跨越窗口）。
+     */
+    private static Segment scan(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return null;
+            }
+            Segment segment = new Segment(size);
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(size - position, Integer.MAX_VALUE));
+                int offset = 0;
+                PlaySegmentCodec.Block block;
+                while ((block = PlaySegmentCodec.read(buffer, offset)) != null) {
+                    segment.blocks.add(block);
+                    segment.positions.add(position + offset);
+                    offset += block.getTotalBytes();
+                }
+                if (offset == 0) {
+                    // 剩余部分不是完整的行组（写入中途崩溃）
+                    break;
+                }
+                position += offset;
+            }
+            segment.end = position;
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 改写行组的状态字节
+     */
+    private void markStatus(Path path, long offset, byte status) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            writeStatus(channel, offset, status);
+            channel.force(false);
+        }
+        segments.remove(path);
+    }
+
+    private static void writeStatus(FileChannel channel, long offset, byte status) throws IOException {
+        channel.write(ByteBuffer.wrap(new byte[]{status}), offset);
+    }
+
+    /**
+     * 作废一个行组：是文件最后一个行组时截断，否则标为 ABORTED
+     */
+    private void discard(Path path, long offset, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (offset + length >= channel.size()) {
+                channel.truncate(offset);
+            } else {
+                writeStatus(channel, offset, PlaySegmentCodec.ABORTED);
+            }
+            channel.force(false);
+        }
+        segments.remove(path);
+    }
+
+    private void truncate(Path path, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            channel.force(false);
+        }
+        segments.remove(path);
+    }
+
+    private List<Path> listFiles() {
+        try (Stream<Path> files = Files.list(Paths.get(dir))) {
+            return files
+                .filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                })
+                .sorted()
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path pathOf(YearMonth month) {
+        return Paths.get(dir, FILE_PREFIX + month + FILE_SUFFIX);
+    }
+
+    private static String monthOf(Path path) {
+        String name = path.getFileName().toString();
+        return name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length());
+    }
+
+    private static YearMonth toMonth(long millis) {
+        return YearMonth.from(Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()));
+    }
+
+    /**
+     * 归档记录访问器
+     */
+    public interface RowVisitor {
+
+        /**
+         * @param playTime 播放时间（毫秒时间戳）
+         * @param playDuration 播放时长（秒），未知时为 0
+         */
+        void visit(long songId, long playTime, long playDuration);
+    }
+
+    /**
+     * 一次导出写入的行组，数据库删除提交后 commit，回滚后 rollback
+     */
+    public class Export {
+
+        private final List<BlockRef> blocks = new ArrayList<>();
+
+        public void commit() {
+            synchronized (PlayArchive.this) {
+                for (BlockRef block : blocks) {
+                    try {
+                        markStatus(block.path, block.offset, PlaySegmentCodec.COMMITTED);
+                    } catch (IOException e) {
+                        // 启动恢复时会根据数据库补标
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        public void rollback() {
+            synchronized (PlayArchive.this) {
+                truncateLock.writeLock().lock();
+                try {
+                    for (BlockRef block : blocks) {
+                        try {
+                            discard(block.path, block.offset, block.length);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                } finally {
+                    truncateLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个段文件中的完整行组及其在文件中的位置
+     */
+    private static class Segment {
+
+        private final long size;
+
+        private final List<PlaySegmentCodec.Block> blocks = new ArrayList<>();
+
+        private final List<Long> positions = new ArrayList<>();
+
+        /**
+         * 最后一个完整行组的结束位置，小于 size 说明末尾有写了一半的行组
+         */
+        private long end;
+
+        private Segment(long size) {
+            this.size = size;
+        }
+    }
+
+    private static class BlockRef {
+
+        private final Path path;
+
+        private final long offset;
+
+        private final long length;
+
+        private BlockRef(Path path, long offset, long length) {
+            this.path = path;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.sheepmusic.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 歌曲播放量写回聚合器
+ *
+ * 每次播放只在内存中给该歌曲的 LongAdder 加一，并向追加日志写入 8 字节歌曲ID，不访问数据库；
+ * 定时把累计的增量按歌曲ID升序用批量 UPDATE tb_song SET play_count = play_count + ? 写回，
+ * 整批在同一个事务中提交，任一分块失败则全部回滚后放回内存，不会出现部分分块已提交又被重复计入的情况。
+ * 热门歌曲的并发播放只竞争 LongAdder 的分段计数，不再争抢同一行的行锁。
+ *
+ * 追加日志按段滚动：写回前切换到新段，写回成功后删除旧段；进程崩溃后启动时重放残留的日志段，
+ * 因此已记录但未写回的播放不会丢失（写回成功但删除日志前崩溃时，该批增量会被重复计入一次）。
+ */
+@Component
+public class PlayCountAggregator {
+
+    private static final String SEGMENT_PREFIX = "play-count-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private NewReleaseIndex newReleaseIndex;
+
+    @Autowired
+    private TrendingIndex trendingIndex;
+
+    @Autowired
+    private SongSearchIndex songSearchIndex;
+
+    /**
+     * 追加日志目录
+     */
+    @Value("${play-count.log-dir:data/play-count}")
+    private String logDir;
+
+    /**
+     * 单条批量 UPDATE 的最大歌曲数
+     */
+    @Value("${play-count.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 歌曲ID -> 尚未写回的播放增量
+     */
+    private volatile Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 记录播放时持读锁（可并发），切换计数表和日志段时持写锁
+     */
+    private final ReentrantReadWriteLock rotateLock = new ReentrantReadWriteLock();
+
+    private FileChannel segment;
+
+    private long segmentSeq;
+
+    private final AtomicLong flushedPlays = new AtomicLong();
+
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    /**
+     * 启动时重放上次未写回的日志段并立即写回
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Path dir = Paths.get(logDir);
+        Files.createDirectories(dir);
+        for (Path path : listSegments()) {
+            replay(path);
+            segmentSeq = Math.max(segmentSeq, parseSeq(path));
+        }
+        if (pending.isEmpty()) {
+            deleteSegmentsUpTo(segmentSeq);
+        }
+        openSegment();
+        flush();
+    }
+
+    /**
+     * 记录一次播放
+     */
+    public void record(Long songId) {
+        ByteBuffer record = ByteBuffer.allocate(Long.BYTES).putLong(0, songId);
+        rotateLock.readLock().lock();
+        try {
+            pending.computeIfAbsent(songId, k -> new LongAdder()).increment();
+            segment.write(record);
+        } catch (IOException e) {
+            // 日志写入失败不影响计数，只是这次播放在崩溃时不可恢复
+            e.printStackTrace();
+        } finally {
+            rotateLock.readLock().unlock();
+        }
+        newReleaseIndex.addPlays(songId, 1);
+        songSearchIndex.addPlays(songId, 1);
+        trendingIndex.record(songId);
+    }
+
+    /**
+     * 定时把累计增量写回数据库
+     */
+    @Scheduled(initialDelayString = "${play-count.flush-interval-ms:5000}",
+            fixedDelayString = "${play-count.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<Long, LongAdder> batch;
+        long rotatedSeq;
+        rotateLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            rotatedSeq = segmentSeq;
+            openSegment();
+            batch = pending;
+            pending = new ConcurrentHashMap<>();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            rotateLock.writeLock().unlock();
+        }
+
+        // 按ID升序更新，多实例并发写回时加锁顺序一致，避免死锁
+        List<Object[]> args = batch.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(entry -> new Object[]{entry.getValue().sum(), entry.getKey()})
+            .collect(Collectors.toList());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int from = 0; from < args.size(); from += batchSize) {
+                    jdbcTemplate.batchUpdate("UPDATE tb_song SET play_count = play_count + ? WHERE id = ?",
+                        args.subList(from, Math.min(from + batchSize, args.size())));
+                }
+            });
+        } catch (Exception e) {
+            // 写回失败：事务已回滚，增量放回内存，旧日志段保留到下次成功写回后再删除
+            flushFailures.incrementAndGet();
+            rotateLock.readLock().lock();
+            try {
+                batch.forEach((songId, adder) ->
+                    pending.computeIfAbsent(songId, k -> new LongAdder()).add(adder.sum()));
+            } finally {
+                rotateLock.readLock().unlock();
+            }
+            e.printStackTrace();
+            return;
+        }
+        flushedPlays.addAndGet(args.stream().mapToLong(row -> (Long) row[0]).sum());
+        deleteSegmentsUpTo(rotatedSeq);
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        flush();
+        rotateLock.writeLock().lock();
+        try {
+            segment.close();
+        } finally {
+            rotateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 运行统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingSongs", pending.size());
+        stats.put("pendingPlays", pending.values().stream().mapToLong(LongAdder::sum).sum());
+        stats.put("flushedPlays", flushedPlays.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("segment", segmentSeq);
+        return stats;
+    }
+
+    private void openSegment() throws IOException {
+        FileChannel previous = segment;
+        segmentSeq++;
+        segment = FileChannel.open(Paths.get(logDir, SEGMENT_PREFIX + segmentSeq + SEGMENT_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    private void replay(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                long songId = in.readLong();
+                pending.computeIfAbsent(songId, k -> new LongAdder()).increment();
+            }
+        } catch (EOFException e) {
+            // 读到文件末尾（崩溃时可能残留不足 8 字节的半条记录，直接丢弃）
+        }
+    }
+
+    private void deleteSegmentsUpTo(long seq) {
+        try {
+            for (Path path : listSegments()) {
+                if (parseSeq(path) <= seq) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(logDir))) {
+            return files
+                .filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted(Comparator.comparingLong(PlayCountAggregator::parseSeq))
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static long parseSeq(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
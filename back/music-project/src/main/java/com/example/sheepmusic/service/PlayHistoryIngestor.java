@@ -0,0 +1,372 @@
+package com.example.sheepmusic.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 播放历史异步批量写入
+ *
+ * 上报播放时只用 SongIdCache 校验歌曲存在，把事件放入有界队列后立即返回；
+ * 单个消费线程攒够 batch-size 条或等待 max-latency-ms 后，用一条 JDBC 批量 INSERT 写入，
+ * 并在同一事务中累加 tb_user_song_play 汇总表和用户收听统计；写入成功后再通知监听器（交互索引、下一首模型等）。
+ *
+ * 队列满时上报线程最多等待 offer-timeout-ms，仍放不进去则拒绝本次上报（背压）；
+ * 数据库不可用（连接失败、锁超时等暂时性错误）时持续退避重试，不丢弃任何记录，期间队列积压，上报端感受到背压；
+ * 数据错误（如违反约束）时改为逐条写入，只丢弃写不进去的那几条（如期间被删除的歌曲）。
+ * 因此播放记录在上报后至多延迟 max-latency-ms 才可查询到。
+ */
+@Component
+public class PlayHistoryIngestor {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO tb_play_history (user_id, song_id, play_time, play_duration) VALUES (?, ?, ?, ?)";
+
+    private static final String ROLLUP_SQL =
+        "INSERT INTO tb_user_song_play (user_id, song_id, play_count, last_play_time, total_duration) " +
+        "VALUES (?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE play_count = play_count + VALUES(play_count), " +
+        "last_play_time = GREATEST(last_play_time, VALUES(last_play_time)), " +
+        "total_duration = total_duration + VALUES(total_duration)";
+
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SongIdCache songIdCache;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    /**
+     * 队列容量
+     */
+    @Value("${play-history.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * 单次批量写入的最大条数
+     */
+    @Value("${play-history.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 队列中第一条事件最多等待多久就写入（毫秒）
+     */
+    @Value("${play-history.max-latency-ms:200}")
+    private long maxLatencyMs;
+
+    /**
+     * 队列满时上报线程的最长等待时间（毫秒）
+     */
+    @Value("${play-history.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+
+    private BlockingQueue<PlayEvent> queue;
+
+    private Thread consumer;
+
+    private volatile boolean running;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong inserted = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong flushes = new AtomicLong();
+
+    private final AtomicLong flushNanos = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private volatile long lastFlushMs;
+
+    private volatile long maxFlushMs;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        consumer = new Thread(this::consume, "play-history-ingestor");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * 停止时把队列中剩余的事件写完
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * 注册播放监听器（播放记录写入数据库后回调，在消费线程中执行）
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 上报一次播放
+     *
+     * @param playDuration 播放时长（秒），可为空
+     */
+    public void submit(Long userId, Long songId, Integer playDuration) {
+        if (!songIdCache.contains(songId)) {
+            throw new RuntimeException("歌曲不存在");
+        }
+        PlayEvent event = new PlayEvent(userId, songId, System.currentTimeMillis(), playDuration);
+        boolean offered;
+        try {
+            offered = queue.offer(event, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (!offered) {
+            rejected.incrementAndGet();
+            throw new RuntimeException("播放记录上报繁忙，请稍后重试");
+        }
+        accepted.incrementAndGet();
+    }
+
+    /**
+     * 运行统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long flushCount = flushes.get();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("inserted", inserted.get());
+        stats.put("dropped", dropped.get());
+        stats.put("flushes", flushCount);
+        stats.put("retries", retries.get());
+        stats.put("avgFlushMs", flushCount == 0 ? 0 : flushNanos.get() / flushCount / 1_000_000.0);
+        stats.put("lastFlushMs", lastFlushMs);
+        stats.put("maxFlushMs", maxFlushMs);
+        return stats;
+    }
+
+    private void consume() {
+        List<PlayEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PlayEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0 || !running) {
+                        break;
+                    }
+                    PlayEvent next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PlayEvent> batch) {
+        long start = System.nanoTime();
+        // 排队期间歌曲可能已被删除
+        List<PlayEvent> valid = batch.stream()
+            .filter(event -> songIdCache.contains(event.songId))
+            .collect(Collectors.toList());
+        dropped.addAndGet(batch.size() - valid.size());
+
+        List<PlayEvent> written;
+        try {
+            insertWithRetry(valid, MAX_BATCH_ATTEMPTS);
+            written = valid;
+        } catch (Exception e) {
+            // 数据错误（或多次重试仍失败的未知错误）：逐条写入，隔离出错的记录；逐条写入时遇到暂时性错误同样会等待重试
+            e.printStackTrace();
+            written = new ArrayList<>(valid.size());
+            for (PlayEvent event : valid) {
+                try {
+                    insertWithRetry(Collections.singletonList(event), 1);
+                    written.add(event);
+                } catch (Exception rowError) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+        inserted.addAndGet(written.size());
+
+        long elapsed = System.nanoTime() - start;
+        flushes.incrementAndGet();
+        flushNanos.addAndGet(elapsed);
+        lastFlushMs = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        maxFlushMs = Math.max(maxFlushMs, lastFlushMs);
+
+        for (PlayEvent event : written) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onPlay(event.userId, event.songId, event.playTime);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入一批记录：暂时性错误无限次退避重试（间隔翻倍，最长 MAX_BACKOFF_MS），线程被中断时放弃；
+     * 数据错误立即抛出；其他未知错误最多尝试 maxAttempts 次后抛出
+     */
+    private void insertWithRetry(List<PlayEvent> events, int maxAttempts) {
+        long backoff = 1000;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                insert(events);
+                return;
+            } catch (RuntimeException e) {
+                boolean transientError = isTransient(e);
+                if (e instanceof DataIntegrityViolationException
+                        || (!transientError && attempt >= maxAttempts)
+                        || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+                if (attempt == 1 || backoff == MAX_BACKOFF_MS) {
+                    e.printStackTrace();
+                }
+                sleepQuietly(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    private static boolean isTransient(Exception e) {
+        // CannotGetJdbcConnectionException 属于 DataAccessResourceFailureException
+        return e instanceof TransientDataAccessException
+            || e instanceof RecoverableDataAccessException
+            || e instanceof DataAccessResourceFailureException
+            || e instanceof CannotCreateTransactionException;
+    }
+
+    /**
+     * 在同一个事务中写入播放记录并累加 (用户, 歌曲) 汇总和用户收听统计
+     */
+    private void insert(List<PlayEvent> events) {
+        List<Object[]> rows = events.stream().map(PlayEvent::toArgs).collect(Collectors.toList());
+
+        // 同一批内同一 (用户, 歌曲) 先合并，并按键排序保证多实例加锁顺序一致
+        Map<List<Long>, long[]> rollup = new TreeMap<>(
+            Comparator.<List<Long>, Long>comparing(key -> key.get(0)).thenComparing(key -> key.get(1)));
+        for (PlayEvent event : events) {
+            long[] value = rollup.computeIfAbsent(Arrays.asList(event.userId, event.songId), k -> new long[3]);
+            value[0]++;
+            value[1] = Math.max(value[1], event.playTime);
+            value[2] += event.playDuration != null ? event.playDuration : 0;
+        }
+        List<Object[]> rollupRows = rollup.entrySet().stream()
+            .map(entry -> new Object[]{entry.getKey().get(0), entry.getKey().get(1),
+                entry.getValue()[0], new Timestamp(entry.getValue()[1]), entry.getValue()[2]})
+            .collect(Collectors.toList());
+        List<long[]> plays = events.stream()
+            .map(event -> new long[]{event.userId, event.songId, event.playTime,
+                event.playDuration != null ? event.playDuration : 0})
+            .collect(Collectors.toList());
+
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            jdbcTemplate.batchUpdate(ROLLUP_SQL, rollupRows);
+            userStatsService.record(plays);
+            return null;
+        });
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 播放监听器
+     */
+    public interface Listener {
+
+        /**
+         * 一条播放记录已写入数据库
+         *
+         * @param playTime 播放时间（毫秒时间戳）
+         */
+        void onPlay(Long userId, Long songId, long playTime);
+    }
+
+    private static class PlayEvent {
+
+        private final Long userId;
+
+        private final Long songId;
+
+        private final long playTime;
+
+        private final Integer playDuration;
+
+        private PlayEvent(Long userId, Long songId, long playTime, Integer playDuration) {
+            this.userId = userId;
+            this.songId = songId;
+            this.playTime = playTime;
+            this.playDuration = playDuration;
+        }
+
+        private Object[] toArgs() {
+            return new Object[]{userId, songId, new Timestamp(playTime), playDuration};
+        }
+    }
+}
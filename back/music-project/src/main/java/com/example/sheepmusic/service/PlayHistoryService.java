@@ -1,20 +1,29 @@
 package com.example.sheepmusic.service;
 
+import com.example.sheepmusic.common.CursorPage;
 import com.example.sheepmusic.dto.PlayHistoryDTO;
 import com.example.sheepmusic.entity.PlayHistory;
+import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.entity.UserSongPlay;
 import com.example.sheepmusic.repository.PlayHistoryRepository;
 import com.example.sheepmusic.repository.SongRepository;
+import com.example.sheepmusic.repository.UserSongPlayRepository;
 import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -26,32 +35,35 @@ public class PlayHistoryService {
     @Autowired
     private PlayHistoryRepository playHistoryRepository;
 
+    @Autowired
+    private InteractionIndex interactionIndex;
+
+    @Autowired
+    private UserSongPlayRepository userSongPlayRepository;
+
+    @Autowired
+    private PlayHistoryIngestor playHistoryIngestor;
+
+    @Autowired
+    private PlayArchive playArchive;
+
     @Autowired
     private SongRepository songRepository;
 
+    @Autowired
+    private UserStatsService userStatsService;
+
     /**
      * 添加播放历史记录
-     * 每次播放歌曲时调用
+     * 每次播放歌曲时调用；记录进入异步队列后批量写入，写入后再更新交互索引等内存模型
      */
-    @Transactional
     public void addPlayHistory(Long userId, Long songId, Integer playDuration) {
-        // 验证歌曲是否存在
-        songRepository.findById(songId)
-                .orElseThrow(() -> new RuntimeException("歌曲不存在"));
-        
-        // 创建播放历史记录
-        PlayHistory playHistory = new PlayHistory();
-        playHistory.setUserId(userId);
-        playHistory.setSongId(songId);
-        playHistory.setPlayDuration(playDuration);
-        
-        playHistoryRepository.save(playHistory);
+        playHistoryIngestor.submit(userId, songId, playDuration);
     }
 
     /**
      * 添加播放历史记录（不记录播放时长）
      */
-    @Transactional
     public void addPlayHistory(Long userId, Long songId) {
         addPlayHistory(userId, songId, null);
     }
@@ -79,40 +91,33 @@ public class PlayHistoryService {
     
     /**
      * 获取用户的播放历史列表（包含播放次数）
-     * 默认去重，每首歌只显示最新的播放记录，但会附带该歌曲的总播放次数
+     * 去重，每首歌一条，按最后播放时间倒序，附带该歌曲的总播放次数；直接分页查询 (用户, 歌曲) 汇总表
      */
     @Transactional(readOnly = true)
     public Page<PlayHistoryDTO> getPlayHistoryWithCount(Long userId, Pageable pageable) {
-        // 获取所有播放历史（不分页，因为需要先去重）
-        List<PlayHistory> allHistory = playHistoryRepository.findByUserIdOrderByPlayTimeDesc(userId, org.springframework.data.domain.PageRequest.of(0, Integer.MAX_VALUE)).getContent();
-        
-        // 手动去重：使用 Map 保存每首歌的最新播放记录
-        java.util.Map<Long, PlayHistory> latestByeSongId = new java.util.LinkedHashMap<>();
-        for (PlayHistory history : allHistory) {
-            if (!latestByeSongId.containsKey(history.getSongId())) {
-                latestByeSongId.put(history.getSongId(), history);
-            }
+        return userSongPlayRepository.findByUserIdWithSong(userId, pageable).map(PlayHistoryDTO::fromRollup);
+    }
+    
+    /**
+     * 获取用户的播放历史列表（包含播放次数，游标分页）
+     *
+     * @param cursor 上一页返回的游标，为空时从第一页开始
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<PlayHistoryDTO> getPlayHistoryWithCount(Long userId, String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<UserSongPlay> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = userSongPlayRepository.findByUserIdWithSong(userId, limit).getContent();
+        } else {
+            String[] keys = CursorPage.decode(cursor, 2);
+            rows = userSongPlayRepository.findByUserIdAfter(userId,
+                    LocalDateTime.parse(keys[0]), Long.valueOf(keys[1]), limit);
         }
-        
-        // 转换为 List
-        List<PlayHistory> distinctHistory = new java.util.ArrayList<>(latestByeSongId.values());
-        
-        // 手动分页
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), distinctHistory.size());
-        List<PlayHistory> pagedHistory = start >= distinctHistory.size() ? 
-            new java.util.ArrayList<>() : 
-            distinctHistory.subList(start, end);
-        
-        // 转换为 DTO，添加播放次数信息
-        List<PlayHistoryDTO> dtoList = pagedHistory.stream()
-            .map(history -> {
-                Long playCount = playHistoryRepository.countByUserIdAndSongId(userId, history.getSongId());
-                return PlayHistoryDTO.fromEntity(history, playCount);
-            })
+        List<PlayHistoryDTO> dtoList = rows.stream()
+            .map(PlayHistoryDTO::fromRollup)
             .collect(Collectors.toList());
-        
-        return new PageImpl<>(dtoList, pageable, distinctHistory.size());
+        return CursorPage.of(dtoList, size, last -> CursorPage.encode(last.getPlayTime(), last.getSongId()));
     }
 
     /**
@@ -129,7 +134,7 @@ public class PlayHistoryService {
      */
     public long countPlayHistory(Long userId, boolean distinct) {
         if (distinct) {
-            return playHistoryRepository.countDistinctSongsByUserId(userId);
+            return userSongPlayRepository.countByUserId(userId);
         } else {
             return playHistoryRepository.countByUserId(userId);
         }
@@ -148,6 +153,9 @@ public class PlayHistoryService {
     @Transactional
     public void clearPlayHistory(Long userId) {
         playHistoryRepository.deleteByUserId(userId);
+        userSongPlayRepository.deleteByUserId(userId);
+        userStatsService.clear(userId);
+        interactionIndex.clearPlays(userId);
     }
 
     /**
@@ -164,16 +172,45 @@ public class PlayHistoryService {
         }
         
         playHistoryRepository.delete(playHistory);
+        playHistoryRepository.flush();
+        // 从汇总中扣除这一次播放，不从明细重算（已归档的播放不在明细表中）
+        Integer duration = playHistory.getPlayDuration();
+        userSongPlayRepository.decrement(userId, playHistory.getSongId(), playHistory.getPlayTime(),
+                duration == null ? 0 : duration);
+        userSongPlayRepository.deleteIfEmpty(userId, playHistory.getSongId());
+        interactionIndex.removePlay(userId, playHistory.getSongId());
+    }
+
+    /**
+     * 从播放历史中删除一首歌（该歌曲的全部播放记录）
+     */
+    @Transactional
+    public void deleteSongPlayHistory(Long userId, Long songId) {
+        int deleted = playHistoryRepository.deleteByUserIdAndSongId(userId, songId);
+        userSongPlayRepository.deleteByUserIdAndSongId(userId, songId);
+        userStatsService.removeSong(userId, songId);
+        interactionIndex.removePlays(userId, songId, deleted);
+    }
+
+    /**
+     * 从播放历史全量重建 (用户, 歌曲) 汇总表
+     */
+    @Transactional
+    public void rebuildRollup() {
+        playHistoryRepository.flush();
+        userSongPlayRepository.deleteAllRows();
+        userSongPlayRepository.rebuildAll();
     }
 
     /**
-     * 清理旧的播放历史（例如：保留最近3个月的）
-     * 可以定时任务调用
+     * 汇总表为空而播放历史不为空时（首次上线）从播放历史回填
      */
+    @EventListener(ApplicationReadyEvent.class)
     @Transactional
-    public void cleanupOldHistory(int monthsToKeep) {
-        LocalDateTime cutoffDate = LocalDateTime.now().minusMonths(monthsToKeep);
-        playHistoryRepository.deleteByPlayTimeBefore(cutoffDate);
+    public void initRollup() {
+        if (userSongPlayRepository.count() == 0 && playHistoryRepository.count() > 0) {
+            userSongPlayRepository.rebuildAll();
+        }
     }
 
     /**
@@ -189,5 +226,67 @@ public class PlayHistoryService {
     public List<PlayHistory> getPlayHistoryByTimeRange(Long userId, LocalDateTime startTime, LocalDateTime endTime) {
         return playHistoryRepository.findByUserIdAndTimeRange(userId, startTime, endTime);
     }
+
+    /**
+     * 年度回顾：总播放次数、收听分钟数、听过的歌曲数、最常听的歌曲、每月和每个小时的播放分布
+     * 已归档的冷数据从本地列式归档读取，仍在 tb_play_history 中的部分走 (user_id, play_time) 索引
+     */
+    public Map<String, Object> getYearReview(Long userId, int year, int topLimit) {
+        LocalDateTime start = LocalDate.of(year, 1, 1).atStartOfDay();
+        LocalDateTime end = start.plusYears(1);
+        ZoneId zone = ZoneId.systemDefault();
+
+        Map<Long, long[]> songStats = new HashMap<>();
+        long[] monthly = new long[12];
+        long[] hourly = new long[24];
+        long[] totals = new long[2];
+        PlayArchive.RowVisitor visitor = (songId, playTime, playDuration) -> {
+            long[] stats = songStats.computeIfAbsent(songId, k -> new long[2]);
+            stats[0]++;
+            stats[1] += playDuration;
+            ZonedDateTime time = Instant.ofEpochMilli(playTime).atZone(zone);
+            monthly[time.getMonthValue() - 1]++;
+            hourly[time.getHour()]++;
+            totals[0]++;
+            totals[1] += playDuration;
+        };
+        playArchive.scanUser(userId, start.atZone(zone).toInstant().toEpochMilli(),
+            end.atZone(zone).toInstant().toEpochMilli(), visitor);
+        for (Object[] row : playHistoryRepository.findPlaysByUserIdAndTimeRange(userId, start, end)) {
+            Integer playDuration = (Integer) row[2];
+            visitor.visit((Long) row[0], ((LocalDateTime) row[1]).atZone(zone).toInstant().toEpochMilli(),
+                playDuration != null ? playDuration : 0);
+        }
+
+        List<Long> topSongIds = songStats.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+            .limit(topLimit)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+        Map<Long, Song> songs = songRepository.findAllById(topSongIds).stream()
+            .collect(Collectors.toMap(Song::getId, song -> song));
+        List<Map<String, Object>> topSongs = new ArrayList<>();
+        for (Long songId : topSongIds) {
+            Song song = songs.get(songId);
+            if (song == null) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("song", song);
+            item.put("plays", songStats.get(songId)[0]);
+            item.put("minutes", songStats.get(songId)[1] / 60);
+            topSongs.add(item);
+        }
+
+        Map<String, Object> review = new LinkedHashMap<>();
+        review.put("year", year);
+        review.put("plays", totals[0]);
+        review.put("minutes", totals[1] / 60);
+        review.put("distinctSongs", songStats.size());
+        review.put("topSongs", topSongs);
+        review.put("monthlyPlays", monthly);
+        review.put("hourlyPlays", hourly);
+        return review;
+    }
 }
 
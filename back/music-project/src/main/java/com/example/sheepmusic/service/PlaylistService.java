@@ -14,6 +14,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -35,6 +36,9 @@ public class PlaylistService {
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private PlaylistSongIndex playlistSongIndex;
+    
     /**
      * 创建歌单
      */
@@ -54,7 +58,9 @@ public class PlaylistService {
             playlist.setSongCount(0);
         }
         
-        return playlistRepository.save(playlist);
+        Playlist saved = playlistRepository.save(playlist);
+        playlistSongIndex.refreshPlaylist(saved);
+        return saved;
     }
     
     /**
@@ -87,7 +93,9 @@ public class PlaylistService {
             playlist.setIsPublic(updatedInfo.getIsPublic());
         }
         
-        return playlistRepository.save(playlist);
+        Playlist saved = playlistRepository.save(playlist);
+        playlistSongIndex.refreshPlaylist(saved);
+        return saved;
     }
     
     /**
@@ -108,6 +116,7 @@ public class PlaylistService {
         
         // 再删除歌单本身
         playlistRepository.delete(playlist);
+        playlistSongIndex.removePlaylist(playlistId);
     }
     
     /**
@@ -170,6 +179,7 @@ public class PlaylistService {
         playlistSong.setSortOrder((int) playlistSongRepository.countByPlaylistId(playlistId));
         
         playlistSong = playlistSongRepository.save(playlistSong);
+        playlistSongIndex.addSongs(playlistId, Collections.singletonList(songId));
         
         // 更新歌单的歌曲数量和封面
         updatePlaylistInfo(playlistId);
@@ -203,6 +213,7 @@ public class PlaylistService {
         
         // 批量插入
         int sortOrder = (int) playlistSongRepository.countByPlaylistId(playlistId);
+        List<Long> addedSongIds = new ArrayList<>();
         for (Long songId : newSongIds) {
             if (songRepository.existsById(songId)) {
                 PlaylistSong playlistSong = new PlaylistSong();
@@ -210,8 +221,10 @@ public class PlaylistService {
                 playlistSong.setSongId(songId);
                 playlistSong.setSortOrder(sortOrder++);
                 playlistSongRepository.save(playlistSong);
+                addedSongIds.add(songId);
             }
         }
+        playlistSongIndex.addSongs(playlistId, addedSongIds);
         
         // 更新歌单的歌曲数量和封面
         updatePlaylistInfo(playlistId);
@@ -233,6 +246,7 @@ public class PlaylistService {
         
         // 删除关联
         playlistSongRepository.deleteByPlaylistIdAndSongId(playlistId, songId);
+        playlistSongIndex.removeSong(playlistId, songId);
         
         // 更新歌单的歌曲数量和封面
         updatePlaylistInfo(playlistId);
@@ -324,6 +338,7 @@ public class PlaylistService {
         
         playlist.setIsPublic(isPublic);
         playlistRepository.save(playlist);
+        playlistSongIndex.refreshPlaylist(playlist);
     }
     
     /**
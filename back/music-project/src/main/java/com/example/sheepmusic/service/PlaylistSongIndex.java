@@ -0,0 +1,300 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.Playlist;
+import com.example.sheepmusic.repository.PlaylistRepository;
+import com.example.sheepmusic.repository.PlaylistSongRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 歌曲→公开歌单 倒排索引
+ *
+ * 每首歌对应一个按ID升序的公开歌单 long[]（倒排链），另外记录每个公开歌单的歌曲集合和打分所需的元数据。
+ * 推荐歌单时只需遍历用户喜欢歌曲的倒排链累加命中数，代价与用户喜欢的歌曲数相关，而与歌单总数无关。
+ *
+ * 歌单增删歌曲、公开/私有切换、删除时由 PlaylistService 在事务提交后增量更新；
+ * 播放量、收藏量等计数器不逐次同步，由定时全量重载刷新。
+ */
+@Component
+public class PlaylistSongIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    @Autowired
+    private PlaylistRepository playlistRepository;
+
+    @Autowired
+    private PlaylistSongRepository playlistSongRepository;
+
+    /**
+     * 歌曲ID -> 包含它的公开歌单ID（升序）
+     */
+    private volatile Map<Long, long[]> postings = new ConcurrentHashMap<>();
+
+    /**
+     * 公开歌单ID -> 歌单信息
+     */
+    private volatile Map<Long, PlaylistInfo> playlists = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时及定时从数据库全量加载
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "${recommend.playlist-index.reload-interval-ms:600000}",
+            fixedDelayString = "${recommend.playlist-index.reload-interval-ms:600000}")
+    public synchronized void reload() {
+        Map<Long, PlaylistInfo> loadedPlaylists = new ConcurrentHashMap<>();
+        for (Object[] row : playlistRepository.findPublicPlaylistStats()) {
+            Long playlistId = (Long) row[0];
+            loadedPlaylists.put(playlistId, new PlaylistInfo(playlistId, (Long) row[1],
+                    (Long) row[2], (Long) row[3], EMPTY));
+        }
+
+        Map<Long, List<Long>> songsByPlaylist = new HashMap<>();
+        Map<Long, List<Long>> playlistsBySong = new HashMap<>();
+        for (Object[] row : playlistSongRepository.findPublicPlaylistSongPairs()) {
+            Long playlistId = (Long) row[0];
+            Long songId = (Long) row[1];
+            songsByPlaylist.computeIfAbsent(playlistId, k -> new ArrayList<>()).add(songId);
+            playlistsBySong.computeIfAbsent(songId, k -> new ArrayList<>()).add(playlistId);
+        }
+        for (Map.Entry<Long, List<Long>> entry : songsByPlaylist.entrySet()) {
+            PlaylistInfo info = loadedPlaylists.get(entry.getKey());
+            if (info != null) {
+                loadedPlaylists.put(entry.getKey(), info.withSongs(toSortedArray(entry.getValue())));
+            }
+        }
+
+        Map<Long, long[]> loadedPostings = new ConcurrentHashMap<>();
+        for (Map.Entry<Long, List<Long>> entry : playlistsBySong.entrySet()) {
+            loadedPostings.put(entry.getKey(), toSortedArray(entry.getValue()));
+        }
+
+        playlists = loadedPlaylists;
+        postings = loadedPostings;
+    }
+
+    // ========== 增量更新（事务提交后执行） ==========
+
+    /**
+     * 歌单新增歌曲；歌单不公开时忽略
+     */
+    public void addSongs(Long playlistId, Collection<Long> songIds) {
+        long[] added = toSortedArray(songIds);
+        afterCommit(() -> {
+            synchronized (this) {
+                PlaylistInfo info = playlists.get(playlistId);
+                if (info == null) {
+                    return;
+                }
+                long[] songs = info.songIds;
+                for (long songId : added) {
+                    if (Arrays.binarySearch(songs, songId) < 0) {
+                        songs = insert(songs, songId);
+                        postings.compute(songId, (k, list) -> insert(list == null ? EMPTY : list, playlistId));
+                    }
+                }
+                playlists.put(playlistId, info.withSongs(songs));
+            }
+        });
+    }
+
+    /**
+     * 歌单移除歌曲
+     */
+    public void removeSong(Long playlistId, Long songId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                PlaylistInfo info = playlists.get(playlistId);
+                if (info == null || Arrays.binarySearch(info.songIds, songId) < 0) {
+                    return;
+                }
+                playlists.put(playlistId, info.withSongs(delete(info.songIds, songId)));
+                removePosting(songId, playlistId);
+            }
+        });
+    }
+
+    /**
+     * 歌单创建、编辑或公开状态变化后同步：公开则重新加载该歌单的歌曲，否则从索引中移除
+     */
+    public void refreshPlaylist(Playlist playlist) {
+        Long playlistId = playlist.getId();
+        boolean isPublic = Boolean.TRUE.equals(playlist.getIsPublic());
+        PlaylistInfo updated = new PlaylistInfo(playlistId, playlist.getUserId(),
+                playlist.getPlayCount(), playlist.getCollectCount(), EMPTY);
+        afterCommit(() -> {
+            synchronized (this) {
+                removePlaylistInternal(playlistId);
+                if (!isPublic) {
+                    return;
+                }
+                long[] songs = toSortedArray(playlistSongRepository.findSongIdsByPlaylistId(playlistId));
+                for (long songId : songs) {
+                    postings.compute(songId, (k, list) -> insert(list == null ? EMPTY : list, playlistId));
+                }
+                playlists.put(playlistId, updated.withSongs(songs));
+            }
+        });
+    }
+
+    /**
+     * 歌单被删除
+     */
+    public void removePlaylist(Long playlistId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                removePlaylistInternal(playlistId);
+            }
+        });
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 统计每个公开歌单包含给定歌曲的数量
+     *
+     * @param songIds 歌曲ID（如用户喜欢的歌曲）
+     * @return 公开歌单ID -> 命中歌曲数，只包含至少命中一首的歌单
+     */
+    public Map<Long, Integer> countMatches(long[] songIds) {
+        Map<Long, long[]> current = postings;
+        Map<Long, Integer> matches = new HashMap<>();
+        for (long songId : songIds) {
+            long[] list = current.get(songId);
+            if (list == null) {
+                continue;
+            }
+            for (long playlistId : list) {
+                matches.merge(playlistId, 1, Integer::sum);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 获取公开歌单信息，歌单不存在或不公开时返回 null
+     */
+    public PlaylistInfo getPlaylist(Long playlistId) {
+        return playlists.get(playlistId);
+    }
+
+    private void removePlaylistInternal(Long playlistId) {
+        PlaylistInfo old = playlists.remove(playlistId);
+        if (old == null) {
+            return;
+        }
+        for (long songId : old.songIds) {
+            removePosting(songId, playlistId);
+        }
+    }
+
+    private void removePosting(long songId, long playlistId) {
+        postings.computeIfPresent(songId, (k, list) -> {
+            long[] updated = delete(list, playlistId);
+            return updated.length == 0 ? null : updated;
+        });
+    }
+
+    private static long[] toSortedArray(Collection<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+    }
+
+    private static long[] insert(long[] sorted, long id) {
+        int index = Arrays.binarySearch(sorted, id);
+        if (index >= 0) {
+            return sorted;
+        }
+        int insertAt = -index - 1;
+        long[] result = new long[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(sorted, insertAt, result, insertAt + 1, sorted.length - insertAt);
+        return result;
+    }
+
+    private static long[] delete(long[] sorted, long id) {
+        int index = Arrays.binarySearch(sorted, id);
+        if (index < 0) {
+            return sorted;
+        }
+        long[] result = new long[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+        return result;
+    }
+
+    /**
+     * 在当前事务提交后执行（无事务时立即执行），避免回滚的写入污染索引
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 公开歌单信息（不可变）
+     */
+    public static class PlaylistInfo {
+
+        private final Long id;
+
+        private final Long userId;
+
+        private final long playCount;
+
+        private final long collectCount;
+
+        /**
+         * 歌单中的歌曲ID（升序、去重）
+         */
+        private final long[] songIds;
+
+        private PlaylistInfo(Long id, Long userId, Long playCount, Long collectCount, long[] songIds) {
+            this.id = id;
+            this.userId = userId;
+            this.playCount = playCount != null ? playCount : 0;
+            this.collectCount = collectCount != null ? collectCount : 0;
+            this.songIds = songIds;
+        }
+
+        private PlaylistInfo withSongs(long[] songs) {
+            return new PlaylistInfo(id, userId, playCount, collectCount, songs);
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public long getPlayCount() {
+            return playCount;
+        }
+
+        public long getCollectCount() {
+            return collectCount;
+        }
+
+        public int getSongCount() {
+            return songIds.length;
+        }
+    }
+}
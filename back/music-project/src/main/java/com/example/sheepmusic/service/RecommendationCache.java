@@ -0,0 +1,168 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.utils.LruTtlCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+
+/**
+ * 用户推荐结果缓存
+ *
+ * 按 (用户, 推荐类型) 缓存排好序的推荐ID列表，分页请求直接从缓存的排序中截取。
+ * 只有当该用户的"喜欢"集合或收藏发生变化时（由 InteractionIndex 通知）才失效，
+ * 普通的一次播放不会让缓存失效；其他用户行为带来的变化由 TTL 兜底。
+ *
+ * 失效只递增用户所在分段的版本号，不遍历缓存：条目记录计算前读到的版本号，
+ * 读取时版本号已变化即视为未命中，旧条目随后被覆盖或由 LRU/TTL 淘汰。
+ * 计算排序期间发生的失效同样会让版本号不一致，基于旧数据算出的结果不会被命中。
+ */
+@Component
+public class RecommendationCache implements InteractionIndex.Listener {
+
+    /**
+     * 按用户ID分段的版本号个数
+     */
+    private static final int VERSION_STRIPES = 256;
+
+    @Autowired
+    private InteractionIndex interactionIndex;
+
+    @Value("${recommend.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${recommend.cache.ttl-ms:600000}")
+    private long ttlMillis;
+
+    /**
+     * 每次计算并缓存的排序深度，分页超出该深度时按需加深
+     */
+    @Value("${recommend.cache.depth:100}")
+    private int depth;
+
+    private LruTtlCache<Key, Ranking> cache;
+
+    /**
+     * 用户变化时递增所在分段的版本号；全量重载时递增 globalVersion
+     */
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private volatile long globalVersion;
+
+    @PostConstruct
+    public void init() {
+        cache = new LruTtlCache<>(maxEntries, ttlMillis);
+        interactionIndex.addListener(this);
+    }
+
+    /**
+     * 获取用户某类推荐的排序ID列表，未命中时调用 loader 计算并缓存
+     *
+     * @param kind   推荐类型（含策略等参数），如 "personalized:cf"
+     * @param needed 调用方至少需要的长度
+     * @param loader 根据深度计算排序列表
+     */
+    public List<Long> getRanking(Long userId, String kind, int needed, IntFunction<List<Long>> loader) {
+        Key key = new Key(userId, kind);
+        int stripe = stripe(userId);
+        long global = globalVersion;
+        long version = versions.get(stripe);
+        Ranking ranking = cache.get(key);
+        // 版本号变化或计算深度不够时重新计算；深度够但结果更短说明候选已取尽，可直接使用
+        if (ranking != null && ranking.global == global && ranking.version == version && ranking.depth >= needed) {
+            return ranking.ids;
+        }
+        int computeDepth = Math.max(depth, needed);
+        List<Long> ids = Collections.unmodifiableList(loader.apply(computeDepth));
+        cache.put(key, new Ranking(ids, computeDepth, global, version));
+        return ids;
+    }
+
+    /**
+     * 截取排序列表的一页
+     */
+    public static List<Long> page(List<Long> ranking, int page, int size) {
+        int from = Math.min(ranking.size(), Math.max(page, 0) * size);
+        int to = Math.min(ranking.size(), from + size);
+        return ranking.subList(from, to);
+    }
+
+    public Map<String, Object> getStats() {
+        return cache.getStats();
+    }
+
+    @Override
+    public void onUserChanged(Long userId, boolean favoritesChanged, boolean likedChanged) {
+        versions.incrementAndGet(stripe(userId));
+    }
+
+    @Override
+    public synchronized void onReload() {
+        globalVersion++;
+        cache.invalidateAll();
+    }
+
+    private static int stripe(Long userId) {
+        return Long.hashCode(userId) & (VERSION_STRIPES - 1);
+    }
+
+    private static class Ranking {
+
+        private final List<Long> ids;
+
+        /**
+         * 计算时请求的深度
+         */
+        private final int depth;
+
+        /**
+         * 计算前读到的全局版本号与分段版本号
+         */
+        private final long global;
+
+        private final long version;
+
+        private Ranking(List<Long> ids, int depth, long global, long version) {
+            this.ids = ids;
+            this.depth = depth;
+            this.global = global;
+            this.version = version;
+        }
+    }
+
+    private static class Key {
+
+        private final Long userId;
+
+        private final String kind;
+
+        private Key(Long userId, String kind) {
+            this.userId = userId;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return userId.equals(other.userId) && kind.equals(other.kind);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, kind);
+        }
+    }
+}
@@ -1,16 +1,14 @@
 package com.example.sheepmusic.service;
 
 import com.example.sheepmusic.entity.*;
-import com.example.sheepmusic.repository.FavoriteRepository;
 import com.example.sheepmusic.repository.PlayHistoryRepository;
 import com.example.sheepmusic.repository.PlaylistRepository;
-import com.example.sheepmusic.repository.PlaylistSongRepository;
 import com.example.sheepmusic.repository.SongRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -20,9 +18,6 @@ import java.util.stream.Collectors;
 @Service
 public class RecommendationService {
     
-    @Autowired
-    private FavoriteRepository favoriteRepository;
-    
     @Autowired
     private PlayHistoryRepository playHistoryRepository;
     
@@ -33,43 +28,159 @@ public class RecommendationService {
     private PlaylistRepository playlistRepository;
     
     @Autowired
-    private PlaylistSongRepository playlistSongRepository;
+    private SongSimilarityIndex songSimilarityIndex;
+    
+    @Autowired
+    private InteractionIndex interactionIndex;
+    
+    @Autowired
+    private UserLshIndex userLshIndex;
+    
+    @Autowired
+    private AlsRecommender alsRecommender;
+    
+    @Autowired
+    private SongVectorIndex songVectorIndex;
+    
+    @Autowired
+    private RecommendationCache recommendationCache;
+    
+    @Autowired
+    private PlaylistSongIndex playlistSongIndex;
+    
+    @Autowired
+    private NewReleaseIndex newReleaseIndex;
+    
+    @Autowired
+    private NextSongModel nextSongModel;
+    
+    /**
+     * 默认推荐策略：cf 或 als
+     */
+    @Value("${recommend.strategy:cf}")
+    private String defaultStrategy;
+    
+    /**
+     * 推荐策略：基于用户的协同过滤
+     */
+    public static final String STRATEGY_CF = "cf";
+    
+    /**
+     * 推荐策略：ALS 矩阵分解
+     */
+    public static final String STRATEGY_ALS = "als";
     
     /**
-     * 获取用户个性化推荐歌曲（基于用户协同过滤）
+     * 获取用户个性化推荐歌曲（使用配置的默认策略）
      * 
      * @param userId 用户ID
      * @param limit 推荐数量
      * @return 推荐歌曲列表
      */
     public List<Song> getPersonalizedSongs(Long userId, int limit) {
+        return getPersonalizedSongs(userId, limit, defaultStrategy);
+    }
+    
+    /**
+     * 获取用户个性化推荐歌曲
+     * 
+     * @param userId 用户ID
+     * @param limit 推荐数量
+     * @param strategy 推荐策略：cf-用户协同过滤，als-矩阵分解（模型中没有该用户时回退到 cf）
+     * @return 推荐歌曲列表
+     */
+    public List<Song> getPersonalizedSongs(Long userId, int limit, String strategy) {
+        return getPersonalizedSongs(userId, 0, limit, strategy);
+    }
+    
+    /**
+     * 分页获取用户个性化推荐歌曲，各页从同一份缓存的排序中截取
+     * 
+     * @param userId 用户ID
+     * @param page 页码（从0开始）
+     * @param limit 每页数量
+     * @param strategy 推荐策略，为 null 时使用默认策略
+     * @return 推荐歌曲列表
+     */
+    public List<Song> getPersonalizedSongs(Long userId, int page, int limit, String strategy) {
+        List<Long> ranking = getPersonalizedRanking(userId, (page + 1) * limit, strategy);
+        return findSongsInOrder(RecommendationCache.page(ranking, page, limit));
+    }
+    
+    /**
+     * 获取个性化推荐排序（优先读缓存）
+     */
+    private List<Long> getPersonalizedRanking(Long userId, int needed, String strategy) {
+        String normalized = STRATEGY_ALS.equalsIgnoreCase(strategy != null ? strategy : defaultStrategy)
+            ? STRATEGY_ALS : STRATEGY_CF;
+        return recommendationCache.getRanking(userId, "personalized:" + normalized, needed,
+            depth -> rankPersonalized(userId, depth, normalized));
+    }
+    
+    /**
+     * 计算个性化推荐排序（不经过缓存；包内可见，供基准测试直接调用）
+     */
+    List<Long> rankPersonalized(Long userId, int limit, String strategy) {
         // 1. 获取用户喜欢的歌曲（收藏 + 多次播放的歌曲）
-        Set<Long> userLikedSongIds = getUserLikedSongs(userId);
+        long[] userLikedSongIds = getUserLikedSongs(userId);
         
-        if (userLikedSongIds.isEmpty()) {
+        if (userLikedSongIds.length == 0) {
             // 冷启动：返回热门歌曲
-            return getHotSongs(limit);
+            return getHotSongIds(limit);
+        }
+        
+        // 2. 按策略计算推荐歌曲ID
+        List<Long> recommendedSongIds;
+        if (STRATEGY_ALS.equals(strategy) && alsRecommender.hasUser(userId)) {
+            // 用户向量与歌曲向量点积打分
+            recommendedSongIds = alsRecommender.recommend(userId, userLikedSongIds, limit);
+        } else {
+            recommendedSongIds = recommendByUserCf(userId, userLikedSongIds, limit);
+            if (recommendedSongIds == null) {
+                // 如果没有找到相似用户，返回热门歌曲
+                return getHotSongIds(limit);
+            }
+        }
+        
+        // 3. 如果推荐结果不足，用热门歌曲补充（排除已推荐的和用户已喜欢的）
+        if (recommendedSongIds.size() < limit) {
+            Set<Long> recommendations = new LinkedHashSet<>(recommendedSongIds);
+            for (Long songId : getHotSongIds(limit - recommendedSongIds.size())) {
+                if (!InteractionIndex.contains(userLikedSongIds, songId)) {
+                    recommendations.add(songId);
+                    if (recommendations.size() >= limit) break;
+                }
+            }
+            return new ArrayList<>(recommendations);
         }
         
-        // 2. 找到有相似品味的用户（基于用户协同过滤）
+        return recommendedSongIds;
+    }
+    
+    /**
+     * 基于用户协同过滤计算推荐歌曲ID
+     * 
+     * @return 按推荐分数降序的歌曲ID；没有相似用户时返回 null
+     */
+    private List<Long> recommendByUserCf(Long userId, long[] userLikedSongIds, int limit) {
+        // 1. 找到有相似品味的用户
         Map<Long, Double> similarUsers = findSimilarUsers(userId, userLikedSongIds);
         
         if (similarUsers.isEmpty()) {
-            // 如果没有找到相似用户，返回热门歌曲
-            return getHotSongs(limit);
+            return null;
         }
         
-        // 3. 收集候选歌曲（相似用户喜欢的歌曲）
+        // 2. 收集候选歌曲（相似用户喜欢的歌曲）
         Map<Long, Double> candidateSongs = new HashMap<>();
         
         for (Map.Entry<Long, Double> entry : similarUsers.entrySet()) {
             Long similarUserId = entry.getKey();
             Double similarity = entry.getValue();
             
-            Set<Long> theirSongs = getUserLikedSongs(similarUserId);
-            for (Long songId : theirSongs) {
+            long[] theirSongs = getUserLikedSongs(similarUserId);
+            for (long songId : theirSongs) {
                 // 过滤掉用户已经喜欢的歌曲
-                if (!userLikedSongIds.contains(songId)) {
+                if (!InteractionIndex.contains(userLikedSongIds, songId)) {
                     // 使用相似度加权
                     candidateSongs.put(songId, 
                         candidateSongs.getOrDefault(songId, 0.0) + similarity);
@@ -77,88 +188,80 @@ public class RecommendationService {
             }
         }
         
-        // 4. 按推荐分数排序并获取Top N
-        List<Long> recommendedSongIds = candidateSongs.entrySet().stream()
+        // 3. 按推荐分数排序并获取Top N
+        return candidateSongs.entrySet().stream()
             .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
             .limit(limit)
             .map(Map.Entry::getKey)
             .collect(Collectors.toList());
-        
-        // 5. 如果推荐结果不足，用热门歌曲补充
-        if (recommendedSongIds.size() < limit) {
-            List<Song> hotSongs = getHotSongs(limit - recommendedSongIds.size());
-            List<Song> recommendations = new ArrayList<>();
-            
-            // 先添加推荐的歌曲
-            if (!recommendedSongIds.isEmpty()) {
-                recommendations.addAll(songRepository.findAllById(recommendedSongIds));
-            }
-            
-            // 再补充热门歌曲（排除已推荐的和用户已喜欢的）
-            for (Song song : hotSongs) {
-                if (!recommendedSongIds.contains(song.getId()) && 
-                    !userLikedSongIds.contains(song.getId())) {
-                    recommendations.add(song);
-                    if (recommendations.size() >= limit) break;
-                }
-            }
-            
-            return recommendations;
-        }
-        
-        return songRepository.findAllById(recommendedSongIds);
     }
     
     /**
      * 获取相似歌曲（基于物品协同过滤）
+     * 相似度由 SongSimilarityIndex 后台预计算，这里只做 O(K) 查询；
+     * 协同过滤结果不足时（新歌、冷门歌曲）用内容向量的近邻补足
      * 
      * @param songId 歌曲ID
      * @param limit 返回数量
      * @return 相似歌曲列表
      */
     public List<Song> getSimilarSongs(Long songId, int limit) {
-        // 1. 获取收藏/播放过这首歌的所有用户
-        Set<Long> usersWhoLikeThisSong = getUsersWhoLikeSong(songId);
-        
-        if (usersWhoLikeThisSong.isEmpty()) {
-            return Collections.emptyList();
+        return findSongsInOrder(getSimilarSongIds(songId, limit));
+    }
+    
+    /**
+     * 相似歌曲ID：协同过滤结果不足时用内容向量近邻补足
+     */
+    List<Long> getSimilarSongIds(Long songId, int limit) {
+        List<Long> similarSongIds = new ArrayList<>(songSimilarityIndex.getSimilarSongIds(songId, limit));
+        if (similarSongIds.size() < limit) {
+            similarSongIds.addAll(songVectorIndex.getSimilarSongIds(
+                songId, limit - similarSongIds.size(), new HashSet<>(similarSongIds)));
         }
-        
-        // 2. 计算其他歌曲与该歌曲的相似度（共同喜欢的用户数）
-        Map<Long, Integer> coOccurrence = new HashMap<>();
-        
-        for (Long userId : usersWhoLikeThisSong) {
-            Set<Long> userSongs = getUserLikedSongs(userId);
-            for (Long otherSongId : userSongs) {
-                if (!otherSongId.equals(songId)) {
-                    coOccurrence.put(otherSongId, 
-                        coOccurrence.getOrDefault(otherSongId, 0) + 1);
-                }
+        return similarSongIds;
+    }
+    
+    /**
+     * 获取歌曲电台：以种子歌曲为起点连续播放的歌曲
+     * 协同过滤相似歌曲与内容向量近邻交替排列，兼顾"听这首的人也听"和同风格的新歌
+     * 
+     * @param songId 种子歌曲ID
+     * @param limit 返回数量
+     * @return 电台歌曲列表
+     */
+    public List<Song> getRadioSongs(Long songId, int limit) {
+        List<Long> collaborative = songSimilarityIndex.getSimilarSongIds(songId, limit);
+        List<Long> content = songVectorIndex.getSimilarSongIds(songId, limit, new HashSet<>(collaborative));
+        
+        List<Long> radioSongIds = new ArrayList<>(limit);
+        for (int i = 0; radioSongIds.size() < limit && (i < collaborative.size() || i < content.size()); i++) {
+            if (i < collaborative.size()) {
+                radioSongIds.add(collaborative.get(i));
+            }
+            if (i < content.size() && radioSongIds.size() < limit) {
+                radioSongIds.add(content.get(i));
             }
         }
-        
-        // 3. 计算余弦相似度并排序
-        Map<Long, Double> similarity = new HashMap<>();
-        int songUserCount = usersWhoLikeThisSong.size();
-        
-        for (Map.Entry<Long, Integer> entry : coOccurrence.entrySet()) {
-            Long otherSongId = entry.getKey();
-            int coCount = entry.getValue();
-            int otherSongUserCount = getUsersWhoLikeSong(otherSongId).size();
-            
-            // 余弦相似度 = 共同用户数 / sqrt(歌曲1用户数 * 歌曲2用户数)
-            double sim = coCount / Math.sqrt(songUserCount * otherSongUserCount);
-            similarity.put(otherSongId, sim);
+        return findSongsInOrder(radioSongIds);
+    }
+    
+    /**
+     * 获取"接下来播放"的歌曲（自动连播）
+     * 优先使用会话转移模型中最常接在这首歌之后播放的歌曲，不足时用相似歌曲补足
+     * 
+     * @param songId 当前播放的歌曲ID
+     * @param limit 返回数量
+     * @return 接下来播放的歌曲列表
+     */
+    public List<Song> getUpNextSongs(Long songId, int limit) {
+        Set<Long> upNextSongIds = new LinkedHashSet<>(nextSongModel.getNextSongIds(songId, limit));
+        if (upNextSongIds.size() < limit) {
+            for (Long similarSongId : getSimilarSongIds(songId, limit)) {
+                upNextSongIds.add(similarSongId);
+                if (upNextSongIds.size() >= limit) break;
+            }
         }
-        
-        // 4. 按相似度排序并返回Top N
-        List<Long> similarSongIds = similarity.entrySet().stream()
-            .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-            .limit(limit)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
-        
-        return songRepository.findAllById(similarSongIds);
+        return findSongsInOrder(new ArrayList<>(upNextSongIds));
     }
     
     /**
@@ -170,58 +273,75 @@ public class RecommendationService {
      * @return 推荐歌单列表
      */
     public List<Playlist> getRecommendedPlaylists(Long userId, int limit) {
+        return getRecommendedPlaylists(userId, 0, limit);
+    }
+    
+    /**
+     * 分页获取推荐歌单，各页从同一份缓存的排序中截取
+     * 
+     * @param userId 用户ID
+     * @param page 页码（从0开始）
+     * @param limit 每页数量
+     * @return 推荐歌单列表
+     */
+    public List<Playlist> getRecommendedPlaylists(Long userId, int page, int limit) {
+        List<Long> ranking = recommendationCache.getRanking(userId, "playlists", (page + 1) * limit,
+            depth -> rankPlaylists(userId, depth));
+        List<Long> playlistIds = RecommendationCache.page(ranking, page, limit);
+        if (playlistIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        Map<Long, Playlist> playlistMap = playlistRepository.findAllById(playlistIds).stream()
+            .collect(Collectors.toMap(Playlist::getId, playlist -> playlist));
+        List<Playlist> recommendedPlaylists = playlistIds.stream()
+            .map(playlistMap::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        
+        // 触发 creator 的加载
+        recommendedPlaylists.forEach(playlist -> {
+            if (playlist.getCreator() != null) {
+                playlist.getCreator().getNickname();
+            }
+        });
+        
+        return recommendedPlaylists;
+    }
+    
+    /**
+     * 计算推荐歌单排序（不经过缓存；包内可见，供基准测试直接调用）
+     */
+    List<Long> rankPlaylists(Long userId, int limit) {
         // 1. 获取用户喜欢的歌曲
-        Set<Long> userLikedSongs = getUserLikedSongs(userId);
+        long[] userLikedSongs = getUserLikedSongs(userId);
         
-        if (userLikedSongs.isEmpty()) {
+        if (userLikedSongs.length == 0) {
             // 冷启动：返回热门歌单
-            return getHotPlaylists(limit);
+            return getHotPlaylistIds(limit);
         }
         
-        // 2. 获取所有公开歌单
-        List<Playlist> allPlaylists = playlistRepository.findByIsPublicOrderByCreateTimeDesc(true);
+        // 2. 遍历用户喜欢歌曲的倒排链，统计每个公开歌单命中的歌曲数
+        Map<Long, Integer> matchCounts = playlistSongIndex.countMatches(userLikedSongs);
         
-        // 3. 计算每个歌单与用户兴趣的匹配度
+        // 3. 计算每个命中歌单与用户兴趣的匹配度
         Map<Long, Double> playlistScores = new HashMap<>();
         
-        for (Playlist playlist : allPlaylists) {
-            // 排除用户自己创建的歌单
-            if (playlist.getUserId().equals(userId)) {
-                continue;
-            }
-            
-            // 跳过空歌单
-            if (playlist.getSongCount() == null || playlist.getSongCount() == 0) {
-                continue;
-            }
-            
-            // 获取歌单中的所有歌曲
-            List<PlaylistSong> playlistSongs = playlistSongRepository.findByPlaylistIdOrderByAddTimeDesc(playlist.getId());
-            Set<Long> playlistSongIds = playlistSongs.stream()
-                .map(PlaylistSong::getSongId)
-                .collect(Collectors.toSet());
-            
-            if (playlistSongIds.isEmpty()) {
-                continue;
-            }
-            
-            // 计算交集：歌单中有多少首歌是用户喜欢的
-            Set<Long> intersection = new HashSet<>(userLikedSongs);
-            intersection.retainAll(playlistSongIds);
-            int matchCount = intersection.size();
+        for (Map.Entry<Long, Integer> entry : matchCounts.entrySet()) {
+            PlaylistSongIndex.PlaylistInfo playlist = playlistSongIndex.getPlaylist(entry.getKey());
             
-            // 如果没有匹配的歌曲，跳过
-            if (matchCount == 0) {
+            // 排除用户自己创建的歌单
+            if (playlist == null || playlist.getUserId().equals(userId)) {
                 continue;
             }
             
             // 计算匹配度分数
             // 分数 = 匹配歌曲数 / sqrt(用户喜欢的歌曲数 * 歌单歌曲数) * 热度权重
-            double matchRatio = matchCount / Math.sqrt(userLikedSongs.size() * playlistSongIds.size());
+            int matchCount = entry.getValue();
+            double matchRatio = matchCount / Math.sqrt((double) userLikedSongs.length * playlist.getSongCount());
             
             // 热度权重：考虑歌单的播放量和收藏量
-            double popularityWeight = 1 + Math.log(1 + (playlist.getPlayCount() != null ? playlist.getPlayCount() : 0) 
-                                                      + (playlist.getCollectCount() != null ? playlist.getCollectCount() : 0) * 2);
+            double popularityWeight = 1 + Math.log(1 + playlist.getPlayCount() + playlist.getCollectCount() * 2);
             
             // 最终分数 = 匹配度 * 热度权重
             double score = matchRatio * popularityWeight;
@@ -231,26 +351,15 @@ public class RecommendationService {
         
         // 如果没有匹配的歌单，返回热门歌单
         if (playlistScores.isEmpty()) {
-            return getHotPlaylists(limit);
+            return getHotPlaylistIds(limit);
         }
         
         // 4. 按分数排序并返回Top N
-        List<Long> recommendedPlaylistIds = playlistScores.entrySet().stream()
+        return playlistScores.entrySet().stream()
             .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
             .limit(limit)
             .map(Map.Entry::getKey)
             .collect(Collectors.toList());
-        
-        List<Playlist> recommendedPlaylists = playlistRepository.findAllById(recommendedPlaylistIds);
-        
-        // 触发 creator 的加载
-        recommendedPlaylists.forEach(playlist -> {
-            if (playlist.getCreator() != null) {
-                playlist.getCreator().getNickname();
-            }
-        });
-        
-        return recommendedPlaylists;
     }
     
     /**
@@ -261,88 +370,84 @@ public class RecommendationService {
      * @return 推荐歌曲列表
      */
     public List<Song> getGuessYouLike(Long userId, int limit) {
-        List<Song> recommendations = new ArrayList<>();
-        
+        return getGuessYouLike(userId, 0, limit);
+    }
+    
+    /**
+     * 分页获取"猜你喜欢"，各页从同一份缓存的排序中截取
+     * 
+     * @param userId 用户ID
+     * @param page 页码（从0开始）
+     * @param limit 每页数量
+     * @return 推荐歌曲列表
+     */
+    public List<Song> getGuessYouLike(Long userId, int page, int limit) {
+        List<Long> ranking = recommendationCache.getRanking(userId, "guess-you-like", (page + 1) * limit,
+            depth -> rankGuessYouLike(userId, depth));
+        return findSongsInOrder(RecommendationCache.page(ranking, page, limit));
+    }
+    
+    /**
+     * 计算"猜你喜欢"排序：三路来源按比例交错合并，每一页都保持相同的构成
+     */
+    private List<Long> rankGuessYouLike(Long userId, int limit) {
         // 策略1: 基于协同过滤的推荐（占50%）
-        int cfCount = limit / 2;
-        List<Song> cfSongs = getPersonalizedSongs(userId, cfCount);
-        recommendations.addAll(cfSongs);
+        List<Long> cfSongIds = getPersonalizedRanking(userId, limit / 2, null);
         
         // 策略2: 基于用户最近播放的相似歌曲（占30%）
-        int similarCount = (int) (limit * 0.3);
-        List<Song> similarSongs = getSongsBasedOnRecentPlay(userId, similarCount);
-        recommendations.addAll(similarSongs);
+        List<Long> similarSongIds = getSongsBasedOnRecentPlay(userId, (int) (limit * 0.3));
         
         // 策略3: 热门新歌（占20%）
-        int newCount = limit - recommendations.size();
-        List<Song> newSongs = getNewHotSongs(newCount);
-        recommendations.addAll(newSongs);
+        List<Long> newSongIds = newReleaseIndex.getTopSongIds(30, limit);
+        
+        List<List<Long>> sources = Arrays.asList(cfSongIds, similarSongIds, newSongIds);
+        double[] ratios = {0.5, 0.3, 0.2};
+        int[] taken = new int[sources.size()];
+        Set<Long> recommendations = new LinkedHashSet<>();
+        
+        // 每个位置选择当前最欠配额的来源，重复歌曲直接跳过
+        for (int position = 0; recommendations.size() < limit; position++) {
+            int chosen = -1;
+            double maxDeficit = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < sources.size(); i++) {
+                if (taken[i] >= sources.get(i).size()) continue;
+                double deficit = ratios[i] * (position + 1) - taken[i];
+                if (deficit > maxDeficit) {
+                    maxDeficit = deficit;
+                    chosen = i;
+                }
+            }
+            if (chosen < 0) break;
+            recommendations.add(sources.get(chosen).get(taken[chosen]++));
+        }
         
-        // 去重并限制数量
-        return recommendations.stream()
-            .distinct()
-            .limit(limit)
-            .collect(Collectors.toList());
+        return new ArrayList<>(recommendations);
     }
     
     // ========== 辅助方法 ==========
     
     /**
-     * 获取用户喜欢的歌曲ID集合
+     * 获取用户喜欢的歌曲ID（升序）
      * 包括：收藏的歌曲 + 播放次数>=3的歌曲
      */
-    private Set<Long> getUserLikedSongs(Long userId) {
-        Set<Long> likedSongs = new HashSet<>();
-        
-        // 1. 从收藏获取
-        List<Favorite> favorites = favoriteRepository.findByUserIdOrderByCreateTimeDesc(userId);
-        likedSongs.addAll(favorites.stream()
-            .map(Favorite::getSongId)
-            .collect(Collectors.toSet()));
-        
-        // 2. 从播放历史获取（播放次数 >= 3 的歌曲）
-        List<PlayHistory> playHistory = playHistoryRepository.findRecentByUserId(
-            userId, PageRequest.of(0, 200)
-        );
-        
-        Map<Long, Long> playCount = playHistory.stream()
-            .collect(Collectors.groupingBy(
-                PlayHistory::getSongId,
-                Collectors.counting()
-            ));
-        
-        playCount.entrySet().stream()
-            .filter(entry -> entry.getValue() >= 3)
-            .forEach(entry -> likedSongs.add(entry.getKey()));
-        
-        return likedSongs;
+    private long[] getUserLikedSongs(Long userId) {
+        return interactionIndex.getLikedSongs(userId);
     }
     
     /**
      * 找到相似的用户（基于Jaccard相似度）
+     * 先由 LSH 索引筛出桶碰撞的候选用户，再与候选的收藏集合做有序数组归并求精确相似度
      */
-    private Map<Long, Double> findSimilarUsers(Long currentUserId, Set<Long> currentUserSongs) {
+    private Map<Long, Double> findSimilarUsers(Long currentUserId, long[] currentUserSongs) {
         Map<Long, Double> similarUsers = new HashMap<>();
         
-        // 获取所有收藏记录
-        List<Favorite> allFavorites = favoriteRepository.findAll();
-        
-        // 按用户分组统计
-        Map<Long, Set<Long>> userSongsMap = new HashMap<>();
-        for (Favorite fav : allFavorites) {
-            if (fav.getUserId().equals(currentUserId)) continue;
+        for (long otherUserId : userLshIndex.getCandidates(currentUserSongs)) {
+            if (otherUserId == currentUserId) continue;
             
-            userSongsMap.computeIfAbsent(fav.getUserId(), k -> new HashSet<>())
-                .add(fav.getSongId());
-        }
-        
-        // 计算相似度
-        for (Map.Entry<Long, Set<Long>> entry : userSongsMap.entrySet()) {
-            Long otherUserId = entry.getKey();
-            Set<Long> otherUserSongs = entry.getValue();
+            long[] otherUserSongs = interactionIndex.getFavoriteSongs(otherUserId);
             
             // 计算Jaccard相似度
-            double similarity = calculateJaccardSimilarity(currentUserSongs, otherUserSongs);
+            double similarity = InteractionIndex.jaccard(currentUserSongs, otherUserSongs);
             
             // 只保留相似度 > 0.1 的用户
             if (similarity > 0.1) {
@@ -362,85 +467,56 @@ public class RecommendationService {
             ));
     }
     
-    /**
-     * 计算Jaccard相似系数
-     */
-    private double calculateJaccardSimilarity(Set<Long> set1, Set<Long> set2) {
-        if (set1.isEmpty() || set2.isEmpty()) {
-            return 0.0;
-        }
-        
-        Set<Long> intersection = new HashSet<>(set1);
-        intersection.retainAll(set2);
-        
-        Set<Long> union = new HashSet<>(set1);
-        union.addAll(set2);
-        
-        return (double) intersection.size() / union.size();
-    }
-    
-    /**
-     * 获取喜欢某首歌的所有用户
-     */
-    private Set<Long> getUsersWhoLikeSong(Long songId) {
-        Set<Long> users = new HashSet<>();
-        
-        // 从收藏获取
-        List<Favorite> favorites = favoriteRepository.findAll();
-        users.addAll(favorites.stream()
-            .filter(f -> f.getSongId().equals(songId))
-            .map(Favorite::getUserId)
-            .collect(Collectors.toSet()));
-        
-        // 从播放历史获取（播放次数 >= 2）
-        List<PlayHistory> playHistory = playHistoryRepository.findAll();
-        Map<Long, Long> userPlayCount = playHistory.stream()
-            .filter(ph -> ph.getSongId().equals(songId))
-            .collect(Collectors.groupingBy(
-                PlayHistory::getUserId,
-                Collectors.counting()
-            ));
-        
-        userPlayCount.entrySet().stream()
-            .filter(entry -> entry.getValue() >= 2)
-            .forEach(entry -> users.add(entry.getKey()));
-        
-        return users;
-    }
-    
     /**
      * 基于用户最近播放的歌曲推荐相似歌曲
      */
-    private List<Song> getSongsBasedOnRecentPlay(Long userId, int limit) {
+    private List<Long> getSongsBasedOnRecentPlay(Long userId, int limit) {
         // 获取用户最近播放的5首歌
         List<PlayHistory> recentPlays = playHistoryRepository.findRecentByUserId(
             userId, PageRequest.of(0, 5)
         );
         
-        if (recentPlays.isEmpty()) {
+        if (recentPlays.isEmpty() || limit <= 0) {
             return Collections.emptyList();
         }
         
-        Set<Song> similarSongs = new HashSet<>();
-        Set<Long> userLikedSongs = getUserLikedSongs(userId);
+        Set<Long> similarSongIds = new LinkedHashSet<>();
+        long[] userLikedSongs = getUserLikedSongs(userId);
+        int perSong = Math.max(3, limit / recentPlays.size() + 1);
         
-        // 为每首最近播放的歌曲找相似歌曲
+        // 为每首最近播放的歌曲找接着播放的歌曲和相似歌曲
         for (PlayHistory play : recentPlays) {
-            List<Song> similar = getSimilarSongs(play.getSongId(), 3);
-            for (Song song : similar) {
+            List<Long> candidates = new ArrayList<>(nextSongModel.getNextSongIds(play.getSongId(), perSong));
+            candidates.addAll(getSimilarSongIds(play.getSongId(), perSong));
+            for (Long songId : candidates) {
                 // 过滤掉用户已经喜欢的
-                if (!userLikedSongs.contains(song.getId())) {
-                    similarSongs.add(song);
+                if (!InteractionIndex.contains(userLikedSongs, songId)) {
+                    similarSongIds.add(songId);
                 }
             }
-            if (similarSongs.size() >= limit) break;
+            if (similarSongIds.size() >= limit) break;
         }
         
-        return similarSongs.stream()
+        return similarSongIds.stream()
             .limit(limit)
             .collect(Collectors.toList());
     }
     
+    /**
+     * 按给定ID顺序查询歌曲（findAllById 不保证顺序）
+     */
+    private List<Song> findSongsInOrder(List<Long> songIds) {
+        if (songIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Song> songMap = songRepository.findAllById(songIds).stream()
+            .collect(Collectors.toMap(Song::getId, song -> song));
+        return songIds.stream()
+            .map(songMap::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+    
     /**
      * 获取热门歌曲（冷启动使用）
      */
@@ -450,40 +526,21 @@ public class RecommendationService {
         ).getContent();
     }
     
-    /**
-     * 获取热门新歌（最近30天的高播放量歌曲）
-     */
-    private List<Song> getNewHotSongs(int limit) {
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        List<Song> allSongs = songRepository.findAll();
-        
-        return allSongs.stream()
-            .filter(song -> song.getStatus() == 1)
-            .filter(song -> song.getCreateTime() != null && 
-                           song.getCreateTime().isAfter(thirtyDaysAgo))
-            .sorted(Comparator.comparing(Song::getPlayCount).reversed())
-            .limit(limit)
+    private List<Long> getHotSongIds(int limit) {
+        return getHotSongs(limit).stream()
+            .map(Song::getId)
             .collect(Collectors.toList());
     }
     
     /**
-     * 获取热门歌单
+     * 获取热门歌单ID
      */
-    private List<Playlist> getHotPlaylists(int limit) {
-        List<Playlist> hotPlaylists = playlistRepository.findByIsPublicOrderByCreateTimeDesc(true)
+    private List<Long> getHotPlaylistIds(int limit) {
+        return playlistRepository.findByIsPublicOrderByCreateTimeDesc(true)
             .stream()
             .sorted(Comparator.comparing(Playlist::getSongCount).reversed())
             .limit(limit)
+            .map(Playlist::getId)
             .collect(Collectors.toList());
-        
-        // 触发 creator 的加载
-        hotPlaylists.forEach(playlist -> {
-            if (playlist.getCreator() != null) {
-                playlist.getCreator().getNickname();
-            }
-        });
-        
-        return hotPlaylists;
     }
 }
-
@@ -0,0 +1,178 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.RefreshToken;
+import com.example.sheepmusic.entity.User;
+import com.example.sheepmusic.repository.RefreshTokenRepository;
+import com.example.sheepmusic.repository.UserRepository;
+import com.example.sheepmusic.security.TokenRevocationList;
+import com.example.sheepmusic.utils.JwtUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 刷新令牌服务
+ *
+ * 登录时签发短期访问令牌和长期刷新令牌；访问令牌过期后客户端用刷新令牌换取新的一对令牌，
+ * 旧刷新令牌随即作废（轮换）。数据库只保存刷新令牌的摘要；
+ * 已作废的刷新令牌再次被使用时视为泄露，作废同一次登录轮换出的所有令牌。
+ *
+ * 每次刷新都会留下一行已作废的记录，只在 revoked-retention-ms 内保留用于重放检测，之后定期分批删除；
+ * 过期的记录由 RetentionJob 清理。
+ */
+@Service
+public class RefreshTokenService {
+    
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+     * 刷新令牌有效期（毫秒），每次刷新重新计算
+     */
+    @Value("${jwt.refresh-expiration:604800000}")
+    private long refreshExpiration;
+    
+    /**
+     * 已作废的刷新令牌保留时长（毫秒，按签发时间计），超过后不再用于重放检测
+     */
+    @Value("${jwt.revoked-retention-ms:86400000}")
+    private long revokedRetention;
+    
+    /**
+     * 每批删除的已作废令牌行数
+     */
+    @Value("${jwt.purge-batch-size:2000}")
+    private int purgeBatchSize;
+    
+    private final SecureRandom random = new SecureRandom();
+    
+    /**
+     * 登录成功后签发令牌（新的令牌家族）
+     */
+    public Map<String, Object> issue(User user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+    
+    /**
+     * 用刷新令牌换取新的访问令牌和刷新令牌
+     */
+    public Map<String, Object> refresh(String refreshToken) {
+        RefreshToken stored = refreshTokenRepository.findByTokenHash(JwtUtil.digest(refreshToken))
+                .orElseThrow(() -> new RuntimeException("刷新令牌无效"));
+        if (stored.getExpireTime().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("登录已过期，请重新登录");
+        }
+        User user = userRepository.findById(stored.getUserId())
+                .orElseThrow(() -> new RuntimeException("用户不存在"));
+        if (user.getStatus() != 1) {
+            throw new RuntimeException("账号已被禁用");
+        }
+        
+        // 作废旧令牌和签发新令牌在同一事务中；并发刷新时只有一个请求能作废成功
+        Map<String, Object> result = transactionTemplate.execute(status -> {
+            if (refreshTokenRepository.revokeIfActive(stored.getId()) == 0) {
+                // 已作废的令牌被再次使用，整个家族作废（事务正常提交）
+                refreshTokenRepository.revokeFamily(stored.getFamilyId());
+                return null;
+            }
+            return issue(user, stored.getFamilyId());
+        });
+        if (result == null) {
+            throw new RuntimeException("登录状态已失效，请重新登录");
+        }
+        return result;
+    }
+    
+    /**
+     * 退出登录：作废本次登录的刷新令牌家族，并吊销当前访问令牌
+     *
+     * @param refreshToken 刷新令牌，可为空
+     * @param accessToken 访问令牌，可为空
+     */
+    @Transactional
+    public void logout(String refreshToken, String accessToken) {
+        if (refreshToken != null && !refreshToken.isEmpty()) {
+            refreshTokenRepository.findByTokenHash(JwtUtil.digest(refreshToken))
+                    .ifPresent(stored -> refreshTokenRepository.revokeFamily(stored.getFamilyId()));
+        }
+        if (accessToken != null && !accessToken.isEmpty()) {
+            JwtUtil.VerifiedToken verified = jwtUtil.verify(accessToken);
+            if (verified != null) {
+                tokenRevocationList.revokeToken(verified);
+            }
+        }
+    }
+    
+    /**
+     * 作废用户的全部刷新令牌（修改密码、禁用账号）
+     */
+    @Transactional
+    public void revokeAll(Long userId) {
+        refreshTokenRepository.revokeByUserId(userId);
+    }
+    
+    /**
+     * 分批删除超过保留时长的已作废令牌，每批一条短语句
+     *
+     * @return 删除的行数
+     */
+    @Scheduled(initialDelayString = "${jwt.revoked-purge-interval-ms:3600000}",
+            fixedDelayString = "${jwt.revoked-purge-interval-ms:3600000}")
+    public int purgeRevoked() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusNanos(revokedRetention * 1_000_000));
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(
+                "DELETE FROM tb_refresh_token WHERE revoked = 1 AND create_time < ? LIMIT ?", cutoff, purgeBatchSize);
+            total += deleted;
+        } while (deleted == purgeBatchSize);
+        return total;
+    }
+    
+    private Map<String, Object> issue(User user, String familyId) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        
+        RefreshToken stored = new RefreshToken();
+        stored.setUserId(user.getId());
+        stored.setTokenHash(JwtUtil.digest(refreshToken));
+        stored.setFamilyId(familyId);
+        stored.setExpireTime(LocalDateTime.now().plusNanos(refreshExpiration * 1_000_000));
+        refreshTokenRepository.save(stored);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("token", jwtUtil.generateToken(user.getUsername(), user.getId(), user.getRole()));
+        result.put("refreshToken", refreshToken);
+        result.put("expiresIn", jwtUtil.getExpiration() / 1000);
+        return result;
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.RetentionProgress;
+import com.example.sheepmusic.repository.RetentionProgressRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 过期数据分块清理（播放历史、通知、搜索历史、已过期的刷新令牌）
+ *
+ * 不再用一条 DELETE 删除整段时间范围：每次从进度表记录的主键位置往后取 chunk-size 行的主键范围，
+ * 只在该范围内删除早于保留期限的行，每块一个短事务，块与块之间停顿 pause-ms，锁范围和事务时长都有界。
+ * 自增主键与时间列基本同序，某块中出现未过期的行即说明到达保留边界，本次结束；
+ * 只有整块都被删除时才推进进度，边界块下次重新检查。运行超过 max-run-minutes 时暂停，下次从进度位置继续。
+ *
+ * 删除播放历史时在同一事务中从 tb_user_song_play 汇总表扣减对应的播放次数和时长，不再全量重建汇总表；
+ * 开启归档时被删除的播放历史先导出到 PlayArchive 的列式段文件，随删除事务一起提交或回滚。
+ */
+@Component
+public class RetentionJob {
+
+    private static final String PLAY_HISTORY = "play-history";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RetentionProgressRepository retentionProgressRepository;
+
+    @Autowired
+    private InteractionIndex interactionIndex;
+
+    @Autowired
+    private PlayArchive playArchive;
+
+    /**
+     * 每块最多删除的行数
+     */
+    @Value("${retention.chunk-size:2000}")
+    private int chunkSize;
+
+    /**
+     * 两块之间的停顿（毫秒）
+     */
+    @Value("${retention.pause-ms:200}")
+    private long pauseMs;
+
+    /**
+     * 单次运行的最长时间（分钟）
+     */
+    @Value("${retention.max-run-minutes:120}")
+    private long maxRunMinutes;
+
+    /**
+     * 播放历史保留天数，0 表示不清理
+     */
+    @Value("${retention.play-history-days:365}")
+    private int playHistoryDays;
+
+    /**
+     * 通知保留天数，0 表示不清理
+     */
+    @Value("${retention.notification-days:30}")
+    private int notificationDays;
+
+    /**
+     * 搜索历史保留天数，0 表示不清理
+     */
+    @Value("${retention.search-history-days:180}")
+    private int searchHistoryDays;
+
+    /**
+     * 刷新令牌过期后保留天数（刷新令牌有效期固定，过期时间与主键同序），0 表示不清理
+     */
+    @Value("${retention.refresh-token-days:1}")
+    private int refreshTokenDays;
+
+    /**
+     * 删除播放历史前是否导出到本地列式归档
+     */
+    @Value("${retention.archive-play-history:true}")
+    private boolean archivePlayHistory;
+
+    private final List<Policy> policies = new ArrayList<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        policies.add(new Policy(PLAY_HISTORY, "tb_play_history", "play_time", playHistoryDays));
+        policies.add(new Policy("notification", "tb_notification", "create_time", notificationDays));
+        policies.add(new Policy("search-history", "search_history", "search_time", searchHistoryDays));
+        policies.add(new Policy("refresh-token", "tb_refresh_token", "expire_time", refreshTokenDays));
+    }
+
+    /**
+     * 定时执行全部清理策略
+     */
+    @Scheduled(cron = "${retention.cron:0 30 3 * * ?}")
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(maxRunMinutes);
+            for (Policy policy : policies) {
+                if (policy.keepDays > 0) {
+                    runPolicy(policy, deadline);
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 在后台线程中立即执行一次（已在运行时返回 false）
+     */
+    public boolean runAsync() {
+        if (running.get()) {
+            return false;
+        }
+        Thread thread = new Thread(this::run, "retention-job");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 各策略的配置和进度
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("chunkSize", chunkSize);
+        stats.put("pauseMs", pauseMs);
+        for (Policy policy : policies) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("table", policy.table);
+            item.put("keepDays", policy.keepDays);
+            retentionProgressRepository.findByPolicy(policy.name).ifPresent(progress -> {
+                item.put("status", progress.getStatus());
+                item.put("cursorId", progress.getCursorId());
+                item.put("lastStartTime", progress.getLastStartTime());
+                item.put("lastEndTime", progress.getLastEndTime());
+                item.put("lastDeleted", progress.getLastDeleted());
+                item.put("lastRowsPerSecond", progress.getLastRowsPerSecond());
+                item.put("lastLockWaitMs", progress.getLastLockWaitMs());
+                item.put("lastMaxChunkMs", progress.getLastMaxChunkMs());
+                item.put("totalDeleted", progress.getTotalDeleted());
+                item.put("lastError", progress.getLastError());
+            });
+            stats.put(policy.name, item);
+        }
+        return stats;
+    }
+
+    private void runPolicy(Policy policy, long deadline) {
+        RetentionProgress progress = retentionProgressRepository.findByPolicy(policy.name).orElseGet(() -> {
+            RetentionProgress created = new RetentionProgress();
+            created.setPolicy(policy.name);
+            created.setCursorId(0L);
+            created.setTotalDeleted(0L);
+            return created;
+        });
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(policy.keepDays));
+        long start = System.currentTimeMillis();
+        long lockTimeBefore = rowLockTimeMs();
+        long deleted = 0;
+        long maxChunkMs = 0;
+        progress.setStatus("RUNNING");
+        progress.setLastStartTime(LocalDateTime.now());
+        progress.setLastError(null);
+        progress = retentionProgressRepository.save(progress);
+
+        String status = "DONE";
+        try {
+            while (true) {
+                if (System.currentTimeMillis() > deadline) {
+                    status = "PAUSED";
+                    break;
+                }
+                long from = progress.getCursorId();
+                // 只走主键索引取下一块的行数和上界
+                Map<String, Object> range = jdbcTemplate.queryForMap(
+                    "SELECT COUNT(*) AS n, MAX(id) AS upper FROM " +
+                    "(SELECT id FROM " + policy.table + " WHERE id > ? ORDER BY id LIMIT ?) chunk",
+                    from, chunkSize);
+                long rows = ((Number) range.get("n")).longValue();
+                if (rows == 0) {
+                    break;
+                }
+                long to = ((Number) range.get("upper")).longValue();
+
+                long chunkStart = System.currentTimeMillis();
+                int chunkDeleted = PLAY_HISTORY.equals(policy.name)
+                    ? deletePlayHistoryChunk(from, to, cutoff)
+                    : jdbcTemplate.update("DELETE FROM " + policy.table +
+                        " WHERE id > ? AND id <= ? AND " + policy.timeColumn + " < ?", from, to, cutoff);
+                maxChunkMs = Math.max(maxChunkMs, System.currentTimeMillis() - chunkStart);
+                deleted += chunkDeleted;
+                progress.setTotalDeleted(progress.getTotalDeleted() + chunkDeleted);
+
+                if (chunkDeleted < rows) {
+                    // 块内有未过期的行，到达保留边界
+                    progress = retentionProgressRepository.save(progress);
+                    break;
+                }
+                progress.setCursorId(to);
+                progress = retentionProgressRepository.save(progress);
+                Thread.sleep(pauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = "PAUSED";
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = "FAILED";
+            String message = String.valueOf(e.getMessage());
+            progress.setLastError(message.length() > 500 ? message.substring(0, 500) : message);
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        long lockTimeAfter = rowLockTimeMs();
+        progress.setStatus(status);
+        progress.setLastEndTime(LocalDateTime.now());
+        progress.setLastDeleted(deleted);
+        progress.setLastRowsPerSecond(deleted * 1000.0 / elapsed);
+        progress.setLastLockWaitMs(lockTimeBefore >= 0 && lockTimeAfter >= 0 ? lockTimeAfter - lockTimeBefore : null);
+        progress.setLastMaxChunkMs(maxChunkMs);
+        retentionProgressRepository.save(progress);
+
+        if (PLAY_HISTORY.equals(policy.name) && deleted > 0) {
+            interactionIndex.reload();
+        }
+    }
+
+    /**
+     * 删除一块过期播放历史，并在同一事务中从 (用户, 歌曲) 汇总表扣减
+     *
+     * 被删除的行都早于保留期限，汇总行的最后播放时间只会来自更新的播放，无需调整；
+     * 播放次数扣减到 0 的汇总行一并删除。开启归档时先把这些行写入归档，事务结束后确认或撤销。
+     */
+    private int deletePlayHistoryChunk(long from, long to, Timestamp cutoff) {
+        return transactionTemplate.execute(status -> {
+            // 加锁读取，避免与用户手动删除播放历史重复扣减
+            // 每行为 [记录ID, 播放时间毫秒, 用户ID, 歌曲ID, 播放时长秒]
+            List<long[]> rows = jdbcTemplate.query(
+                "SELECT id, play_time, user_id, song_id, play_duration FROM tb_play_history " +
+                "WHERE id > ? AND id <= ? AND play_time < ? FOR UPDATE",
+                (rs, i) -> new long[]{rs.getLong(1), rs.getTimestamp(2).getTime(),
+                    rs.getLong(3), rs.getLong(4), rs.getLong(5)}, from, to, cutoff);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            if (archivePlayHistory) {
+                exportToArchive(rows);
+            }
+            // 按 (用户, 歌曲) 排序更新汇总表，与播放写入的加锁顺序一致
+            Map<List<Long>, long[]> rollup = new TreeMap<>(
+                Comparator.<List<Long>, Long>comparing(key -> key.get(0)).thenComparing(key -> key.get(1)));
+            for (long[] row : rows) {
+                long[] value = rollup.computeIfAbsent(Arrays.asList(row[2], row[3]), k -> new long[2]);
+                value[0]++;
+                value[1] += row[4];
+            }
+            int deleted = jdbcTemplate.update(
+                "DELETE FROM tb_play_history WHERE id > ? AND id <= ? AND play_time < ?", from, to, cutoff);
+
+            List<Object[]> decrements = new ArrayList<>(rollup.size());
+            List<Object[]> keys = new ArrayList<>(rollup.size());
+            rollup.forEach((key, value) -> {
+                decrements.add(new Object[]{value[0], value[1], key.get(0), key.get(1)});
+                keys.add(new Object[]{key.get(0), key.get(1)});
+            });
+            jdbcTemplate.batchUpdate("UPDATE tb_user_song_play SET play_count = play_count - ?, " +
+                "total_duration = GREATEST(total_duration - ?, 0) WHERE user_id = ? AND song_id = ?", decrements);
+            jdbcTemplate.batchUpdate("DELETE FROM tb_user_song_play " +
+                "WHERE user_id = ? AND song_id = ? AND play_count <= 0", keys);
+            return deleted;
+        });
+    }
+
+    /**
+     * 在当前事务中导出到归档：提交后确认行组，回滚后截断
+     */
+    private void exportToArchive(List<long[]> rows) {
+        PlayArchive.Export export;
+        try {
+            export = playArchive.append(rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    export.commit();
+                } else {
+                    export.rollback();
+                }
+            }
+        });
+    }
+
+    /**
+     * 数据库累计行锁等待时间（毫秒），不可用时返回 -1
+     */
+    private long rowLockTimeMs() {
+        try {
+            Long value = jdbcTemplate.query("SHOW GLOBAL STATUS LIKE 'Innodb_row_lock_time'",
+                rs -> rs.next() ? rs.getLong(2) : null);
+            return value != null ? value : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 清理策略
+     */
+    private static class Policy {
+
+        private final String name;
+
+        private final String table;
+
+        private final String timeColumn;
+
+        private final int keepDays;
+
+        private Policy(String name, String table, String timeColumn, int keepDays) {
+            this.name = name;
+            this.table = table;
+            this.timeColumn = timeColumn;
+            this.keepDays = keepDays;
+        }
+    }
+}
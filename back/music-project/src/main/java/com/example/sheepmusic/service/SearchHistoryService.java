@@ -6,7 +6,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -115,5 +117,17 @@ public class SearchHistoryService {
                 .map(result -> (String) result[0])  // 只返回关键词
                 .collect(Collectors.toList());
     }
+    
+    /**
+     * 获取热门搜索关键词及搜索次数（按次数从高到低）
+     * @param limit 返回的数量限制
+     */
+    public Map<String, Long> getHotSearchKeywordCounts(int limit) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        searchHistoryRepository.findHotKeywords().stream()
+                .limit(limit)
+                .forEach(result -> counts.put((String) result[0], ((Number) result[1]).longValue()));
+        return counts;
+    }
 }
 
@@ -0,0 +1,66 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.repository.SongRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 歌曲ID集合缓存
+ *
+ * 启动时加载全部歌曲ID，之后由 SongService 在歌曲新增、删除的事务提交后增量维护；
+ * 上报播放等高频写入用它校验歌曲是否存在，不再逐次查询数据库。
+ */
+@Component
+public class SongIdCache {
+
+    @Autowired
+    private SongRepository songRepository;
+
+    private final Set<Long> songIds = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        songIds.addAll(songRepository.findAllIds());
+    }
+
+    public boolean contains(Long songId) {
+        return songId != null && songIds.contains(songId);
+    }
+
+    /**
+     * 歌曲新增（事务提交后生效）
+     */
+    public void add(Long songId) {
+        afterCommit(() -> songIds.add(songId));
+    }
+
+    /**
+     * 歌曲删除（事务提交后生效）
+     */
+    public void remove(Long songId) {
+        afterCommit(() -> songIds.remove(songId));
+    }
+
+    public int size() {
+        return songIds.size();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.Artist;
+import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.utils.TextSearchIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 歌曲全文搜索索引
+ *
+ * 索引歌曲名、歌手名、专辑名、流派、语言（按 search.field-weights 加权），只收录上架歌曲，
+ * 按 BM25 相关度排序并按播放量加权。启动时用两条查询加载（歌曲表一条、歌手关联一条），
+ * 之后由歌曲、歌手的增删改在事务提交后增量维护，播放量随 PlayCountAggregator 同步累加。
+ */
+@Component
+public class SongSearchIndex {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 字段权重：歌曲名, 歌手名, 专辑名, 流派, 语言
+     */
+    @Value("${search.field-weights:3,2,1.5,1,1}")
+    private float[] fieldWeights;
+
+    /**
+     * 播放量加权系数：得分 × (1 + 系数 × ln(1 + 播放量))
+     */
+    @Value("${search.popularity-weight:0.05}")
+    private double popularityWeight;
+
+    private TextSearchIndex index;
+
+    @PostConstruct
+    public void init() {
+        index = new TextSearchIndex(fieldWeights);
+        Map<Long, List<String>> artistNames = new HashMap<>();
+        jdbcTemplate.query("SELECT sa.song_id, a.name FROM song_artist sa JOIN tb_artist a ON a.id = sa.artist_id",
+            rs -> {
+                artistNames.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getString(2));
+            });
+        jdbcTemplate.query("SELECT id, title, album_name, genre, language, play_count FROM tb_song " +
+                "WHERE status = 1 ORDER BY id",
+            rs -> {
+                long songId = rs.getLong(1);
+                List<String> names = artistNames.get(songId);
+                index.put(songId, new String[]{rs.getString(2), names == null ? null : String.join(" ", names),
+                    rs.getString(3), rs.getString(4), rs.getString(5)}, rs.getLong(6));
+            });
+    }
+
+    /**
+     * 搜索歌曲，返回匹配总数和当前页的歌曲ID（按得分排序）
+     */
+    public TextSearchIndex.Hits search(String keyword, int offset, int limit) {
+        return index.search(keyword, offset, limit, popularityWeight);
+    }
+
+    /**
+     * 歌曲新增或修改后同步（事务提交后生效），下架歌曲移除
+     */
+    public void put(Song song) {
+        Long songId = song.getId();
+        if (song.getStatus() == null || song.getStatus() != 1) {
+            remove(songId);
+            return;
+        }
+        String artists = song.getArtists() == null ? null : song.getArtists().stream()
+            .map(Artist::getName)
+            .collect(Collectors.joining(" "));
+        String[] fields = {song.getTitle(), artists, song.getAlbumName(), song.getGenre(), song.getLanguage()};
+        long playCount = song.getPlayCount() != null ? song.getPlayCount() : 0;
+        afterCommit(() -> index.put(songId, fields, playCount));
+    }
+
+    /**
+     * 歌曲被删除（事务提交后生效）
+     */
+    public void remove(Long songId) {
+        afterCommit(() -> index.remove(songId));
+    }
+
+    /**
+     * 播放量增加
+     */
+    public void addPlays(Long songId, long delta) {
+        index.addPopularity(songId, delta);
+    }
+
+    public Map<String, Object> getStats() {
+        return index.getStats();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -6,15 +6,21 @@ import com.example.sheepmusic.entity.Artist;
 import com.example.sheepmusic.entity.Song;
 import com.example.sheepmusic.repository.ArtistRepository;
 import com.example.sheepmusic.repository.SongRepository;
+import com.example.sheepmusic.utils.TextSearchIndex;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * 歌曲服务类
@@ -28,6 +34,30 @@ public class SongService {
     @Autowired
     private ArtistRepository artistRepository;
     
+    @Autowired
+    private SongVectorIndex songVectorIndex;
+    
+    @Autowired
+    private NewReleaseIndex newReleaseIndex;
+    
+    @Autowired
+    private PlayCountAggregator playCountAggregator;
+    
+    @Autowired
+    private SongIdCache songIdCache;
+    
+    @Autowired
+    private TrendingIndex trendingIndex;
+    
+    @Autowired
+    private ListenerStats listenerStats;
+    
+    @Autowired
+    private NextSongModel nextSongModel;
+    
+    @Autowired
+    private SongSearchIndex songSearchIndex;
+    
     /**
      * 创建歌曲（支持多歌手）
      */
@@ -52,7 +82,13 @@ public class SongService {
             song.setArtists(artists);
         }
         
-        return songRepository.save(song);
+        Song saved = songRepository.save(song);
+        songIdCache.add(saved.getId());
+        songVectorIndex.add(saved);
+        newReleaseIndex.put(saved);
+        listenerStats.putSong(saved);
+        songSearchIndex.put(saved);
+        return saved;
     }
     
     /**
@@ -76,7 +112,12 @@ public class SongService {
             song.setArtists(artists);
         }
         
-        return songRepository.save(song);
+        Song saved = songRepository.save(song);
+        songVectorIndex.add(saved);
+        newReleaseIndex.put(saved);
+        listenerStats.putSong(saved);
+        songSearchIndex.put(saved);
+        return saved;
     }
     
     /**
@@ -87,6 +128,13 @@ public class SongService {
             throw new RuntimeException("歌曲不存在");
         }
         songRepository.deleteById(id);
+        songIdCache.remove(id);
+        songVectorIndex.remove(id);
+        newReleaseIndex.remove(id);
+        trendingIndex.remove(id);
+        listenerStats.removeSong(id);
+        nextSongModel.removeSong(id);
+        songSearchIndex.remove(id);
     }
     
     /**
@@ -112,10 +160,20 @@ public class SongService {
     }
     
     /**
-     * 搜索歌曲
+     * 搜索歌曲（歌曲名、歌手、专辑、流派、语言），按相关度和播放量排序，排序来自内存索引
+     * 偏移量超出 int 范围时不可能有结果，按 Integer.MAX_VALUE 查询（只返回总数）
      */
     public Page<Song> searchSongs(String keyword, Pageable pageable) {
-        return songRepository.searchByKeyword(keyword, pageable);
+        int offset = (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE);
+        TextSearchIndex.Hits hits = songSearchIndex.search(keyword, offset, pageable.getPageSize());
+        List<Long> songIds = Arrays.stream(hits.getIds()).boxed().collect(Collectors.toList());
+        Map<Long, Song> songMap = songRepository.findAllById(songIds).stream()
+                .collect(Collectors.toMap(Song::getId, song -> song));
+        List<Song> songs = songIds.stream()
+                .map(songMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new PageImpl<>(songs, pageable, hits.getTotal());
     }
     
     /**
@@ -132,6 +190,44 @@ public class SongService {
         return songRepository.findByStatusOrderByCreateTimeDesc(1, pageable);
     }
     
+    /**
+     * 获取热门新歌（时间窗口内创建的歌曲按播放次数排序）
+     * 
+     * @param days 时间窗口（天）：7、30 或 90
+     */
+    public List<Song> getNewHotSongs(int days, int limit) {
+        List<Long> songIds = newReleaseIndex.getTopSongIds(days, limit);
+        Map<Long, Song> songMap = songRepository.findAllById(songIds).stream()
+                .collect(Collectors.toMap(Song::getId, song -> song));
+        return songIds.stream()
+                .map(songMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * 获取实时热歌（滑动时间窗口内按播放次数排序，排行来自内存）
+     */
+    public List<Song> getTrendingSongs(String window, int limit) {
+        List<Long> songIds = trendingIndex.getTopSongIds(window, limit);
+        Map<Long, Song> songMap = songRepository.findAllById(songIds).stream()
+                .collect(Collectors.toMap(Song::getId, song -> song));
+        return songIds.stream()
+                .map(songMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * 获取歌曲的独立听众数（今天、最近 7 天、全部时间）
+     */
+    public Map<String, Long> getSongListeners(Long songId) {
+        if (!songIdCache.contains(songId)) {
+            throw new RuntimeException("歌曲不存在");
+        }
+        return listenerStats.getSongListeners(songId);
+    }
+    
     /**
      * 根据歌手获取歌曲
      */
@@ -140,13 +236,13 @@ public class SongService {
     }
     
     /**
-     * 增加播放次数
+     * 增加播放次数（内存累加，由 PlayCountAggregator 定时批量写回数据库）
      */
     public void incrementPlayCount(Long id) {
-        Song song = songRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("歌曲不存在"));
-        song.setPlayCount(song.getPlayCount() + 1);
-        songRepository.save(song);
+        if (!songIdCache.contains(id)) {
+            throw new RuntimeException("歌曲不存在");
+        }
+        playCountAggregator.record(id);
     }
     
     /**
@@ -167,6 +263,8 @@ public class SongService {
             }
             
             songRepository.save(song);
+            songVectorIndex.add(song);
+            songSearchIndex.put(song);
         }
     }
 }
@@ -0,0 +1,193 @@
+package com.example.sheepmusic.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 歌曲相似度索引（物品协同过滤的离线预计算结果）
+ *
+ * 后台定时任务基于 InteractionIndex，按 "共同喜欢用户数 / sqrt(歌曲1用户数 * 歌曲2用户数)" 计算每首歌的 Top-K 相似歌曲，
+ * 结果以 CSR 结构保存在堆内：排序后的歌曲ID数组 + 偏移量数组 + 邻居ID/分数数组。
+ * 查询时二分定位歌曲，再直接截取邻居区间，复杂度 O(log N + K)。
+ *
+ * 数据允许一定程度的过期：请求始终读取当前快照，快照超过最大容忍时间时在后台异步重建。
+ */
+@Component
+public class SongSimilarityIndex {
+
+    @Autowired
+    private InteractionIndex interactionIndex;
+
+    /**
+     * 每首歌保留的相似歌曲数量
+     */
+    @Value("${recommend.similarity.top-k:50}")
+    private int topK;
+
+    /**
+     * 快照最大容忍过期时间（毫秒），超过后查询时会触发异步重建
+     */
+    @Value("${recommend.similarity.max-staleness-ms:3600000}")
+    private long maxStalenessMs;
+
+    private volatile Snapshot snapshot;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    /**
+     * 获取与指定歌曲最相似的歌曲ID（按相似度降序）
+     */
+    public List<Long> getSimilarSongIds(Long songId, int limit) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // 首次访问时索引尚未构建，同步构建一次
+            rebuild();
+            current = snapshot;
+        } else if (System.currentTimeMillis() - current.builtAt > maxStalenessMs) {
+            // 快照过旧：继续返回旧数据，同时在后台重建
+            CompletableFuture.runAsync(this::rebuild);
+        }
+
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        return current.neighbors(songId, limit);
+    }
+
+    /**
+     * 定时重建索引，间隔见 recommend.similarity.rebuild-interval-ms
+     */
+    @Scheduled(initialDelayString = "${recommend.similarity.initial-delay-ms:10000}",
+               fixedDelayString = "${recommend.similarity.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        // 同一时间只允许一个重建任务
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            snapshot = build(interactionIndex, topK);
+        } catch (Exception e) {
+            // 重建失败时保留旧快照
+            e.printStackTrace();
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 计算所有歌曲的 Top-K 相似歌曲并生成快照
+     */
+    static Snapshot build(InteractionIndex interactionIndex, int topK) {
+        long[] songIds = interactionIndex.getSongIds().stream().mapToLong(Long::longValue).sorted().toArray();
+        int[] offsets = new int[songIds.length + 1];
+        long[] neighborIds = new long[Math.min(songIds.length * topK, 1 << 20)];
+        float[] scores = new float[neighborIds.length];
+        int size = 0;
+
+        // 共现计数缓冲区：收集所有共同喜欢用户的歌曲后排序，相同ID的连续段长度即共现次数
+        long[] buffer = new long[1024];
+
+        for (int i = 0; i < songIds.length; i++) {
+            long songId = songIds[i];
+            long[] users = interactionIndex.getLikingUsers(songId);
+            if (users.length == 0) {
+                offsets[i + 1] = size;
+                continue;
+            }
+
+            int bufferSize = 0;
+            for (long userId : users) {
+                long[] userSongs = interactionIndex.getLikedSongs(userId);
+                if (bufferSize + userSongs.length > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferSize + userSongs.length));
+                }
+                for (long otherSongId : userSongs) {
+                    if (otherSongId != songId) {
+                        buffer[bufferSize++] = otherSongId;
+                    }
+                }
+            }
+            Arrays.sort(buffer, 0, bufferSize);
+
+            // 余弦相似度 = 共同用户数 / sqrt(歌曲1用户数 * 歌曲2用户数)
+            List<Neighbor> similarity = new ArrayList<>();
+            int start = 0;
+            while (start < bufferSize) {
+                int end = start;
+                while (end < bufferSize && buffer[end] == buffer[start]) {
+                    end++;
+                }
+                int otherUserCount = Math.max(1, interactionIndex.getLikingUsers(buffer[start]).length);
+                double sim = (end - start) / Math.sqrt((double) users.length * otherUserCount);
+                similarity.add(new Neighbor(buffer[start], (float) sim));
+                start = end;
+            }
+            similarity.sort((a, b) -> Float.compare(b.score, a.score));
+
+            int count = Math.min(topK, similarity.size());
+            if (size + count > neighborIds.length) {
+                int capacity = Math.max(neighborIds.length * 2, size + count);
+                neighborIds = Arrays.copyOf(neighborIds, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            for (int j = 0; j < count; j++) {
+                neighborIds[size] = similarity.get(j).songId;
+                scores[size] = similarity.get(j).score;
+                size++;
+            }
+            offsets[i + 1] = size;
+        }
+
+        return new Snapshot(songIds, offsets,
+            Arrays.copyOf(neighborIds, size), Arrays.copyOf(scores, size), System.currentTimeMillis());
+    }
+
+    private static class Neighbor {
+        private final long songId;
+        private final float score;
+
+        Neighbor(long songId, float score) {
+            this.songId = songId;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 不可变的索引快照（CSR 结构）
+     */
+    static class Snapshot {
+        private final long[] songIds;
+        private final int[] offsets;
+        private final long[] neighborIds;
+        private final float[] scores;
+        private final long builtAt;
+
+        Snapshot(long[] songIds, int[] offsets, long[] neighborIds, float[] scores, long builtAt) {
+            this.songIds = songIds;
+            this.offsets = offsets;
+            this.neighborIds = neighborIds;
+            this.scores = scores;
+            this.builtAt = builtAt;
+        }
+
+        List<Long> neighbors(long songId, int limit) {
+            int index = Arrays.binarySearch(songIds, songId);
+            if (index < 0) {
+                return Collections.emptyList();
+            }
+            int from = offsets[index];
+            int to = Math.min(offsets[index + 1], from + Math.max(limit, 0));
+            List<Long> result = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                result.add(neighborIds[i]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.Artist;
+import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.repository.SongRepository;
+import com.example.sheepmusic.utils.HnswIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 歌曲向量近似最近邻索引
+ *
+ * 向量由歌曲的内容特征（类型、语言、专辑、歌手）经特征哈希得到，新上架的歌曲没有任何播放记录也能立即参与相似查询，
+ * 用来补充 SongSimilarityIndex（协同过滤）覆盖不到的长尾和新歌。
+ * 歌曲新增/修改时增量插入，删除或下架时打墓碑，墓碑占比超过阈值时在快照前重建清理；索引定期快照到文件，重启时通过内存映射恢复，
+ * 再与数据库中的上架歌曲对账，不必全量重建。
+ */
+@Component
+public class SongVectorIndex {
+
+    @Autowired
+    private SongRepository songRepository;
+
+    @Value("${recommend.vector.dim:32}")
+    private int dim;
+
+    /**
+     * HNSW 每层最大邻居数
+     */
+    @Value("${recommend.vector.m:16}")
+    private int m;
+
+    @Value("${recommend.vector.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${recommend.vector.ef-search:64}")
+    private int efSearch;
+
+    @Value("${recommend.vector.snapshot-path:data/song-vectors.hnsw}")
+    private String snapshotPath;
+
+    /**
+     * 墓碑数超过有效向量数的这个比例时重建索引
+     */
+    @Value("${recommend.vector.compact-deleted-ratio:0.2}")
+    private double compactDeletedRatio;
+
+    private volatile HnswIndex index;
+
+    /**
+     * 上次快照后是否有变更
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    /**
+     * 启动后优先从快照恢复，不存在、无法解析或维度不一致时从数据库构建，最后与数据库对账
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        HnswIndex restored = null;
+        Path path = Paths.get(snapshotPath);
+        if (Files.exists(path)) {
+            try {
+                restored = HnswIndex.restore(path);
+                if (restored.getDim() != dim) {
+                    restored = null;
+                }
+            } catch (IOException | RuntimeException e) {
+                // 快照损坏（如长度字段异常导致数组越界）时同样放弃快照，从数据库重新构建
+                e.printStackTrace();
+            }
+        }
+        HnswIndex loaded = restored != null ? restored : new HnswIndex(dim, m, efConstruction);
+        reconcile(loaded);
+        index = loaded;
+        snapshot();
+    }
+
+    /**
+     * 写入或更新歌曲向量（事务提交后生效），下架歌曲视为删除
+     */
+    public void add(Song song) {
+        if (song.getStatus() == null || song.getStatus() != 1) {
+            remove(song.getId());
+            return;
+        }
+        List<Long> artistIds = new ArrayList<>();
+        for (Artist artist : song.getArtists()) {
+            artistIds.add(artist.getId());
+        }
+        float[] vector = embed(song.getId(), song.getGenre(), song.getLanguage(), song.getAlbumId(), artistIds);
+        Long songId = song.getId();
+        afterCommit(() -> {
+            HnswIndex current = index;
+            if (current != null) {
+                current.add(songId, vector);
+                dirty.set(true);
+            }
+        });
+    }
+
+    /**
+     * 删除歌曲向量（事务提交后生效）
+     */
+    public void remove(Long songId) {
+        afterCommit(() -> {
+            HnswIndex current = index;
+            if (current != null && current.contains(songId)) {
+                current.remove(songId);
+                dirty.set(true);
+            }
+        });
+    }
+
+    /**
+     * 查询与给定歌曲向量最相似的歌曲
+     *
+     * @param excludeSongIds 需要排除的歌曲ID（种子歌曲本身总是排除）
+     * @return 相似歌曲ID（按相似度降序），歌曲不在索引中时返回空列表
+     */
+    public List<Long> getSimilarSongIds(Long songId, int limit, Set<Long> excludeSongIds) {
+        HnswIndex current = index;
+        if (current == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        float[] vector = current.getVector(songId);
+        if (vector == null) {
+            return Collections.emptyList();
+        }
+        int k = limit + excludeSongIds.size() + 1;
+        List<Long> result = new ArrayList<>(limit);
+        for (Long id : current.search(vector, k, Math.max(efSearch, k))) {
+            if (!id.equals(songId) && !excludeSongIds.contains(id)) {
+                result.add(id);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 有变更时定期写快照（墓碑过多时先清理）
+     */
+    @Scheduled(initialDelayString = "${recommend.vector.snapshot-interval-ms:300000}",
+            fixedDelayString = "${recommend.vector.snapshot-interval-ms:300000}")
+    public void snapshotIfDirty() {
+        if (dirty.get()) {
+            snapshot();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        snapshotIfDirty();
+    }
+
+    private void snapshot() {
+        HnswIndex current = index;
+        if (current == null) {
+            return;
+        }
+        dirty.set(false);
+        if (current.getDeletedCount() > current.size() * compactDeletedRatio) {
+            current.compact();
+        }
+        try {
+            Path path = Paths.get(snapshotPath);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            current.snapshot(path);
+        } catch (IOException e) {
+            dirty.set(true);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 与数据库对账：补齐缺失或特征已变化的歌曲，删除已下架或已删除的歌曲
+     */
+    private void reconcile(HnswIndex target) {
+        Map<Long, SongFeatures> features = new HashMap<>();
+        for (Object[] row : songRepository.findActiveSongFeatures()) {
+            SongFeatures feature = features.computeIfAbsent((Long) row[0], id -> new SongFeatures());
+            feature.genre = (String) row[1];
+            feature.language = (String) row[2];
+            feature.albumId = (Long) row[3];
+            if (row[4] != null) {
+                feature.artistIds.add((Long) row[4]);
+            }
+        }
+
+        for (long id : target.getIds()) {
+            if (!features.containsKey(id)) {
+                target.remove(id);
+            }
+        }
+        for (Map.Entry<Long, SongFeatures> entry : features.entrySet()) {
+            SongFeatures f = entry.getValue();
+            float[] vector = embed(entry.getKey(), f.genre, f.language, f.albumId, f.artistIds);
+            float[] existing = target.getVector(entry.getKey());
+            if (existing == null || !sameDirection(existing, vector)) {
+                target.add(entry.getKey(), vector);
+            }
+        }
+    }
+
+    // ========== 特征哈希 ==========
+
+    /**
+     * 将内容特征哈希到 dim 维向量，每个特征落在一个维度上并带随机符号，互不相关的特征近似正交。
+     * 同歌手权重最高，其次是专辑、类型、语言；歌曲ID 作为小权重特征，保证向量非零并打散完全相同的特征组合。
+     */
+    private float[] embed(Long songId, String genre, String language, Long albumId, List<Long> artistIds) {
+        float[] vector = new float[dim];
+        addFeature(vector, "id:" + songId, 0.2f);
+        if (genre != null && !genre.isEmpty()) {
+            addFeature(vector, "g:" + genre, 1.0f);
+        }
+        if (language != null && !language.isEmpty()) {
+            addFeature(vector, "l:" + language, 0.7f);
+        }
+        if (albumId != null) {
+            addFeature(vector, "al:" + albumId, 0.8f);
+        }
+        if (!artistIds.isEmpty()) {
+            // 多歌手时平分权重，避免合唱歌曲的歌手特征过强
+            float weight = (float) (1.5 / Math.sqrt(artistIds.size()));
+            for (Long artistId : artistIds) {
+                addFeature(vector, "a:" + artistId, weight);
+            }
+        }
+        return vector;
+    }
+
+    private void addFeature(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode() * 0x9E3779B9;
+        int slot = (hash >>> 1) % vector.length;
+        vector[slot] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    private static boolean sameDirection(float[] normalized, float[] vector) {
+        double dot = 0;
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            dot += normalized[i] * vector[i];
+            norm += vector[i] * vector[i];
+        }
+        return norm > 0 && dot / Math.sqrt(norm) > 0.9999;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static class SongFeatures {
+
+        private String genre;
+
+        private String language;
+
+        private Long albumId;
+
+        private final List<Long> artistIds = new ArrayList<>();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.utils.PinyinInitials;
+import com.example.sheepmusic.utils.SuggestTrie;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 搜索框联想索引
+ *
+ * 把上架歌曲名、歌手名和热门搜索词建成 SuggestTrie，每个条目可按原文前缀或拼音首字母前缀（如 "zjl" → 周杰伦）匹配。
+ * 条目权重为 ln(1 + 热度)：歌曲按播放量，歌手按名下歌曲的总播放量，搜索词按搜索次数并加上 keyword-boost。
+ * 前缀树只读，定时在后台整体重建后替换引用，查询不加锁；歌曲、歌手的变化在下次重建后可见。
+ */
+@Component
+public class SuggestIndex {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SearchHistoryService searchHistoryService;
+
+    /**
+     * 每个前缀预计算的补全数，也是单次查询返回数量的上限
+     */
+    @Value("${suggest.top-n:10}")
+    private int topN;
+
+    /**
+     * 参与联想的热门搜索词数量
+     */
+    @Value("${suggest.hot-keywords:1000}")
+    private int hotKeywords;
+
+    /**
+     * 热门搜索词的权重加成（搜索次数通常远小于播放量）
+     */
+    @Value("${suggest.keyword-boost:2.0}")
+    private double keywordBoost;
+
+    private volatile SuggestTrie trie;
+
+    private volatile long buildMillis;
+
+    private volatile long builtAt;
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * 定时重建
+     */
+    @Scheduled(initialDelayString = "${suggest.rebuild-interval-ms:300000}",
+            fixedDelayString = "${suggest.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        SuggestTrie.Builder builder = new SuggestTrie.Builder(topN);
+        jdbcTemplate.query("SELECT id, title, play_count FROM tb_song WHERE status = 1",
+            rs -> {
+                add(builder, rs.getString(2), "song", rs.getLong(1), rs.getLong(3), 0);
+            });
+        jdbcTemplate.query("SELECT a.id, a.name, COALESCE(SUM(s.play_count), 0) FROM tb_artist a " +
+                "LEFT JOIN song_artist sa ON sa.artist_id = a.id " +
+                "LEFT JOIN tb_song s ON s.id = sa.song_id AND s.status = 1 GROUP BY a.id, a.name",
+            rs -> {
+                add(builder, rs.getString(2), "artist", rs.getLong(1), rs.getLong(3), 0);
+            });
+        searchHistoryService.getHotSearchKeywordCounts(hotKeywords).forEach((keyword, count) ->
+            add(builder, keyword, "keyword", null, count, keywordBoost));
+        trie = builder.build();
+        builtAt = System.currentTimeMillis();
+        buildMillis = builtAt - start;
+    }
+
+    /**
+     * 前缀联想
+     *
+     * @return 每项包含 text（显示文本）、type（song/artist/keyword）、id（歌曲或歌手ID，搜索词为 null）
+     */
+    public List<Map<String, Object>> suggest(String prefix, int limit) {
+        SuggestTrie current = trie;
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int entry : current.complete(prefix, limit)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("text", current.getText(entry));
+            item.put("type", current.getType(entry));
+            item.put("id", current.getId(entry));
+            result.add(item);
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        SuggestTrie current = trie;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", current.getEntryCount());
+        stats.put("nodes", current.getNodeCount());
+        stats.put("topSlots", current.getTopSlots());
+        stats.put("buildMillis", buildMillis);
+        stats.put("builtAt", builtAt);
+        return stats;
+    }
+
+    private static void add(SuggestTrie.Builder builder, String text, String type, Long id, long popularity,
+                            double boost) {
+        if (text == null) {
+            return;
+        }
+        builder.add(text, type, id, Math.log1p(Math.max(0, popularity)) + boost, text, PinyinInitials.initials(text));
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.repository.PlayHistoryRepository;
+import com.example.sheepmusic.utils.SlidingWindowTopK;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 实时热歌榜索引
+ *
+ * 每次播放（含未登录用户）由 PlayCountAggregator 计入 1 小时、24 小时、7 天三个滑动窗口，
+ * 查询某个窗口的热歌只从内存中按序取前 K 首，不访问数据库。
+ * 启动时按 5 分钟分组汇总最近 7 天的播放历史预热（只含登录用户的播放，重启后的榜单是近似值）。
+ */
+@Component
+public class TrendingIndex {
+
+    private static final long FINE_BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final long COARSE_BUCKET_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final long MAX_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    @Autowired
+    private PlayHistoryRepository playHistoryRepository;
+
+    /**
+     * 每个时间桶最多跟踪的歌曲数
+     */
+    @Value("${trending.bucket-capacity:500}")
+    private int bucketCapacity;
+
+    /**
+     * 窗口名称 -> 滑动窗口排行
+     */
+    private final Map<String, SlidingWindowTopK> windows = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        windows.put("1h", new SlidingWindowTopK(TimeUnit.HOURS.toMillis(1), FINE_BUCKET_MILLIS, bucketCapacity));
+        windows.put("24h", new SlidingWindowTopK(TimeUnit.DAYS.toMillis(1), FINE_BUCKET_MILLIS, bucketCapacity));
+        windows.put("7d", new SlidingWindowTopK(MAX_WINDOW_MILLIS, COARSE_BUCKET_MILLIS, bucketCapacity));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LocalDateTime since = LocalDateTime.now().minusDays(7);
+        List<Object[]> rows = playHistoryRepository.countPlaysGroupBySongAndBucketSince(
+            since, TimeUnit.MILLISECONDS.toSeconds(FINE_BUCKET_MILLIS));
+        for (Object[] row : rows) {
+            long songId = ((Number) row[0]).longValue();
+            long time = ((Timestamp) row[1]).getTime();
+            long count = ((Number) row[2]).longValue();
+            for (SlidingWindowTopK window : windows.values()) {
+                window.add(songId, time, count);
+            }
+        }
+    }
+
+    /**
+     * 记录一次播放
+     */
+    public void record(Long songId) {
+        long now = System.currentTimeMillis();
+        for (SlidingWindowTopK window : windows.values()) {
+            window.add(songId, now, 1);
+        }
+    }
+
+    /**
+     * 查询时间窗口内播放最多的歌曲ID
+     *
+     * @param window 时间窗口：1h、24h、7d
+     */
+    public List<Long> getTopSongIds(String window, int limit) {
+        SlidingWindowTopK topK = windows.get(window);
+        if (topK == null) {
+            throw new RuntimeException("不支持的时间窗口: " + window + "，可选值: " + windows.keySet());
+        }
+        return Arrays.stream(topK.top(limit, System.currentTimeMillis()))
+            .boxed()
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 歌曲被删除（事务提交后生效）
+     */
+    public void remove(Long songId) {
+        afterCommit(() -> windows.values().forEach(window -> window.remove(songId)));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
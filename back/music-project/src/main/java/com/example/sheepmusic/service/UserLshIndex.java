@@ -0,0 +1,71 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.utils.MinHashLsh;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 相似用户候选索引（基于用户收藏集合的 MinHash/LSH）
+ *
+ * 启动时为每个有收藏的用户计算签名并分桶，收藏变化时由 InteractionIndex 通知并更新该用户的桶。
+ * 查询相似用户时只返回与当前用户发生桶碰撞的候选，由调用方再做精确 Jaccard 计算。
+ */
+@Component
+public class UserLshIndex implements InteractionIndex.Listener {
+
+    @Autowired
+    private InteractionIndex interactionIndex;
+
+    @Value("${recommend.lsh.bands:48}")
+    private int bands;
+
+    @Value("${recommend.lsh.rows:1}")
+    private int rows;
+
+    /**
+     * 单次查询最多返回的候选用户数
+     */
+    @Value("${recommend.lsh.max-candidates:2000}")
+    private int maxCandidates;
+
+    private MinHashLsh lsh;
+
+    @PostConstruct
+    public void init() {
+        lsh = new MinHashLsh(bands, rows, 20250101L);
+        // 先订阅再构建，构建期间发生的收藏变化不会漏掉
+        interactionIndex.addListener(this);
+        rebuild();
+    }
+
+    /**
+     * 获取可能与给定歌曲集合相似的用户
+     */
+    public long[] getCandidates(long[] songIds) {
+        return lsh.candidates(songIds, maxCandidates);
+    }
+
+    @Override
+    public void onUserChanged(Long userId, boolean favoritesChanged, boolean likedChanged) {
+        if (favoritesChanged) {
+            lsh.put(userId, interactionIndex.getFavoriteSongs(userId));
+        }
+    }
+
+    @Override
+    public void onReload() {
+        rebuild();
+    }
+
+    private void rebuild() {
+        long[] userIds = interactionIndex.getUserIds().stream().mapToLong(Long::longValue).toArray();
+        long[][] favorites = new long[userIds.length][];
+        for (int i = 0; i < userIds.length; i++) {
+            favorites[i] = interactionIndex.getFavoriteSongs(userIds[i]);
+        }
+        lsh.putAll(userIds, favorites);
+    }
+}
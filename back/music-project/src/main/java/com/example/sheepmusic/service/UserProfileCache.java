@@ -0,0 +1,100 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.dto.UserProfile;
+import com.example.sheepmusic.entity.User;
+import com.example.sheepmusic.repository.UserRepository;
+import com.example.sheepmusic.utils.LruTtlCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户资料缓存（id → 昵称、头像、角色、状态）
+ *
+ * 好友列表、会话列表、通知等逐行查询 tb_user 的地方统一走这里：
+ * getAll 先查缓存，未命中的 ID 合并为一次 findAllById，500 个好友最多一次批量查询。
+ *
+ * UserService 修改资料后调用 invalidate；为避免失效前读到的旧值在失效后才写回缓存，
+ * 每次从数据库加载前记下失效计数，加载期间发生过失效则本次结果不写入缓存。
+ */
+@Component
+public class UserProfileCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${user-profile-cache.max-entries:50000}")
+    private int maxEntries;
+
+    @Value("${user-profile-cache.ttl-ms:600000}")
+    private long ttlMillis;
+
+    private LruTtlCache<Long, UserProfile> profiles;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        profiles = new LruTtlCache<>(maxEntries, ttlMillis);
+    }
+
+    /**
+     * 获取单个用户资料，用户不存在时返回 null
+     */
+    public UserProfile get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        return getAll(Collections.singletonList(userId)).get(userId);
+    }
+
+    /**
+     * 批量获取用户资料，不存在的用户不出现在结果中
+     */
+    public Map<Long, UserProfile> getAll(Collection<Long> userIds) {
+        Map<Long, UserProfile> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null || result.containsKey(userId)) {
+                continue;
+            }
+            UserProfile profile = profiles.get(userId);
+            if (profile != null) {
+                result.put(userId, profile);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long stamp = invalidations.get();
+            List<UserProfile> loaded = new ArrayList<>();
+            for (User user : userRepository.findAllById(missing)) {
+                loaded.add(UserProfile.from(user));
+            }
+            boolean cacheable = stamp == invalidations.get();
+            for (UserProfile profile : loaded) {
+                result.put(profile.getId(), profile);
+                if (cacheable) {
+                    profiles.put(profile.getId(), profile);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用户资料变更后使缓存失效
+     */
+    public void invalidate(Long userId) {
+        invalidations.incrementAndGet();
+        profiles.invalidate(userId);
+    }
+
+    public Map<String, Object> getStats() {
+        return profiles.getStats();
+    }
+}
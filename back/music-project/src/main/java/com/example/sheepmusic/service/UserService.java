@@ -6,7 +6,7 @@ import com.example.sheepmusic.dto.UpdatePasswordRequest;
 import com.example.sheepmusic.dto.UpdateUserRequest;
 import com.example.sheepmusic.entity.User;
 import com.example.sheepmusic.repository.UserRepository;
-import com.example.sheepmusic.utils.JwtUtil;
+import com.example.sheepmusic.security.TokenRevocationList;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -27,7 +27,13 @@ public class UserService {
     private PasswordEncoder passwordEncoder;
     
     @Autowired
-    private JwtUtil jwtUtil;
+    private UserProfileCache userProfileCache;
+    
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+    
+    @Autowired
+    private RefreshTokenService refreshTokenService;
     
     /**
      * 用户注册
@@ -81,12 +87,8 @@ public class UserService {
             throw new RuntimeException("账号已被禁用");
         }
         
-        // 生成Token（包含角色）
-        String token = jwtUtil.generateToken(user.getUsername(), user.getId(), user.getRole());
-        
-        // 返回用户信息和Token
-        Map<String, Object> result = new HashMap<>();
-        result.put("token", token);
+        // 签发访问令牌（包含角色）和刷新令牌
+        Map<String, Object> result = new HashMap<>(refreshTokenService.issue(user));
         result.put("userInfo", getUserInfo(user));
         
         return result;
@@ -152,7 +154,9 @@ public class UserService {
             user.setAvatar(request.getAvatar().isEmpty() ? null : request.getAvatar());
         }
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userProfileCache.invalidate(userId);
+        return saved;
     }
     
     /**
@@ -175,6 +179,33 @@ public class UserService {
         // 更新密码
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        
+        // 修改密码前签发的Token全部失效，其他设备需要重新登录
+        tokenRevocationList.revokeAll(userId);
+        refreshTokenService.revokeAll(userId);
+    }
+    
+    /**
+     * 修改用户状态（管理员禁用/启用账号）
+     * 禁用后该用户的Token立即失效
+     *
+     * @param status 0-禁用, 1-正常
+     */
+    public User updateStatus(Long userId, Integer status) {
+        if (status == null || (status != 0 && status != 1)) {
+            throw new RuntimeException("无效的用户状态");
+        }
+        User user = getUserById(userId);
+        user.setStatus(status);
+        User saved = userRepository.save(user);
+        userProfileCache.invalidate(userId);
+        if (status == 1) {
+            tokenRevocationList.unban(userId);
+        } else {
+            tokenRevocationList.ban(userId);
+            refreshTokenService.revokeAll(userId);
+        }
+        return saved;
     }
     
     /**
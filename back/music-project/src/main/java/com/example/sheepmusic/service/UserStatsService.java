@@ -0,0 +1,311 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.entity.Artist;
+import com.example.sheepmusic.entity.Song;
+import com.example.sheepmusic.entity.UserListenStat;
+import com.example.sheepmusic.repository.ArtistRepository;
+import com.example.sheepmusic.repository.SongRepository;
+import com.example.sheepmusic.repository.UserListenStatRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 用户收听统计（最常听的歌曲、歌手，流派/语言分布，每周收听时长）
+ *
+ * 播放历史批量写入时，在同一事务中按 (用户, 维度, 维度值) 累加 tb_user_listen_stat：
+ * 歌曲、周、合计直接 upsert，歌手、流派、语言通过 INSERT ... SELECT 从 song_artist / tb_song 取值后 upsert，不需要额外查询。
+ * 查询时每个维度只按 (user_id, dim, plays) 索引取前 N 行，耗时与用户历史长度无关。
+ *
+ * 统计为累计值：过期清理和归档不扣减；用户清空播放历史时一并清空，删除某首歌的播放记录时只删除该歌曲一项。
+ *
+ * 首次部署时从已有播放历史回填：启动时先记下当前最大的播放记录ID作为目标水位并写入回填标记（user_id = 0 的 backfill 行），
+ * 之后新写入的播放（ID 大于目标水位）照常实时累加，回填只统计不超过目标水位的记录，因此不会与新写入的播放重复计数。
+ * 回填在后台线程中按播放记录ID分块进行，每块一个短事务：统计该ID区间并在同一事务中把标记的进度推进到区间上界，
+ * 统计表上的行锁只持有一块的时间，实时写入不会长时间等待；中途停机时已提交的块不会重复统计，下次启动从进度位置继续。
+ */
+@Service
+public class UserStatsService {
+
+    static final String SONG = "song";
+
+    static final String ARTIST = "artist";
+
+    static final String GENRE = "genre";
+
+    static final String LANGUAGE = "language";
+
+    static final String WEEK = "week";
+
+    static final String TOTAL = "total";
+
+    static final String BACKFILL = "backfill";
+
+    private static final String UPSERT_SUFFIX =
+        " ON DUPLICATE KEY UPDATE plays = plays + VALUES(plays), seconds = seconds + VALUES(seconds)";
+
+    private static final String INSERT_PREFIX = "INSERT INTO tb_user_listen_stat (user_id, dim, dim_key, plays, seconds) ";
+
+    private static final String VALUES_SQL = INSERT_PREFIX + "VALUES (?, ?, ?, ?, ?)" + UPSERT_SUFFIX;
+
+    private static final String ARTIST_SQL = INSERT_PREFIX +
+        "SELECT ?, 'artist', sa.artist_id, ?, ? FROM song_artist sa WHERE sa.song_id = ?" + UPSERT_SUFFIX;
+
+    private static final String GENRE_SQL = INSERT_PREFIX +
+        "SELECT ?, 'genre', s.genre, ?, ? FROM tb_song s WHERE s.id = ? AND s.genre IS NOT NULL AND s.genre <> ''" + UPSERT_SUFFIX;
+
+    private static final String LANGUAGE_SQL = INSERT_PREFIX +
+        "SELECT ?, 'language', s.language, ?, ? FROM tb_song s WHERE s.id = ? AND s.language IS NOT NULL AND s.language <> ''" + UPSERT_SUFFIX;
+
+    /**
+     * 首次部署时从现有播放历史回填（每条语句统计 ID 在 (from, to] 区间内的记录）
+     */
+    private static final String[] BACKFILL_SQL = {
+        INSERT_PREFIX + "SELECT user_id, 'song', song_id, COUNT(*), COALESCE(SUM(play_duration), 0) " +
+            "FROM tb_play_history WHERE id > ? AND id <= ? GROUP BY user_id, song_id" + UPSERT_SUFFIX,
+        INSERT_PREFIX + "SELECT ph.user_id, 'artist', sa.artist_id, COUNT(*), COALESCE(SUM(ph.play_duration), 0) " +
+            "FROM tb_play_history ph JOIN song_artist sa ON sa.song_id = ph.song_id " +
+            "WHERE ph.id > ? AND ph.id <= ? GROUP BY ph.user_id, sa.artist_id" + UPSERT_SUFFIX,
+        INSERT_PREFIX + "SELECT ph.user_id, 'genre', s.genre, COUNT(*), COALESCE(SUM(ph.play_duration), 0) " +
+            "FROM tb_play_history ph JOIN tb_song s ON s.id = ph.song_id " +
+            "WHERE ph.id > ? AND ph.id <= ? AND s.genre IS NOT NULL AND s.genre <> '' GROUP BY ph.user_id, s.genre" + UPSERT_SUFFIX,
+        INSERT_PREFIX + "SELECT ph.user_id, 'language', s.language, COUNT(*), COALESCE(SUM(ph.play_duration), 0) " +
+            "FROM tb_play_history ph JOIN tb_song s ON s.id = ph.song_id " +
+            "WHERE ph.id > ? AND ph.id <= ? AND s.language IS NOT NULL AND s.language <> '' GROUP BY ph.user_id, s.language" + UPSERT_SUFFIX,
+        INSERT_PREFIX + "SELECT user_id, 'week', DATE_FORMAT(DATE_SUB(DATE(play_time), INTERVAL WEEKDAY(play_time) DAY), '%Y-%m-%d'), " +
+            "COUNT(*), COALESCE(SUM(play_duration), 0) FROM tb_play_history WHERE id > ? AND id <= ? " +
+            "GROUP BY user_id, DATE_FORMAT(DATE_SUB(DATE(play_time), INTERVAL WEEKDAY(play_time) DAY), '%Y-%m-%d')" + UPSERT_SUFFIX,
+        INSERT_PREFIX + "SELECT user_id, 'total', '', COUNT(*), COALESCE(SUM(play_duration), 0) " +
+            "FROM tb_play_history WHERE id > ? AND id <= ? GROUP BY user_id" + UPSERT_SUFFIX
+    };
+
+    /**
+     * 回填标记：plays 为目标水位（回填统计的最大播放记录ID），seconds 为已回填到的播放记录ID，两者相等表示已完成
+     */
+    private static final String MARKER_WHERE = " WHERE user_id = 0 AND dim = '" + BACKFILL + "' AND dim_key = ''";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserListenStatRepository userListenStatRepository;
+
+    @Autowired
+    private SongRepository songRepository;
+
+    @Autowired
+    private ArtistRepository artistRepository;
+
+    /**
+     * 回填每块覆盖的播放记录ID跨度
+     */
+    @Value("${user-stats.backfill-chunk-size:50000}")
+    private long backfillChunkSize;
+
+    /**
+     * 回填两块之间的停顿（毫秒）
+     */
+    @Value("${user-stats.backfill-pause-ms:100}")
+    private long backfillPauseMs;
+
+    /**
+     * 记下回填水位并在后台回填
+     *
+     * PlayHistoryIngestor 依赖本类，因此水位在播放写入线程启动之前确定，之后写入的播放ID都大于水位
+     */
+    @PostConstruct
+    public void init() {
+        List<long[]> marker = jdbcTemplate.query("SELECT plays, seconds FROM tb_user_listen_stat" + MARKER_WHERE,
+            (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long watermark;
+        long cursor;
+        if (!marker.isEmpty()) {
+            watermark = marker.get(0)[0];
+            cursor = marker.get(0)[1];
+        } else {
+            List<Integer> any = jdbcTemplate.queryForList("SELECT 1 FROM tb_user_listen_stat LIMIT 1", Integer.class);
+            // 统计表已有数据但没有标记：引入标记之前已经回填过
+            watermark = any.isEmpty()
+                ? jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM tb_play_history", Long.class)
+                : 0;
+            cursor = 0;
+            jdbcTemplate.update("INSERT INTO tb_user_listen_stat (user_id, dim, dim_key, plays, seconds) " +
+                "VALUES (0, '" + BACKFILL + "', '', ?, ?)", watermark, cursor);
+        }
+        if (cursor >= watermark) {
+            return;
+        }
+        Thread thread = new Thread(() -> backfill(cursor, watermark), "user-stats-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 按播放记录ID分块回填全部维度，每块一个事务，并在同一事务中推进标记的进度
+     */
+    private void backfill(long from, long watermark) {
+        try {
+            while (from < watermark) {
+                long lower = from;
+                long upper = Math.min(watermark, from + backfillChunkSize);
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (String sql : BACKFILL_SQL) {
+                        jdbcTemplate.update(sql, lower, upper);
+                    }
+                    jdbcTemplate.update("UPDATE tb_user_listen_stat SET seconds = ?" + MARKER_WHERE, upper);
+                });
+                from = upper;
+                Thread.sleep(backfillPauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 出错的块已回滚，标记停在上一块的位置，下次启动时从该位置继续
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 累加一批播放（在调用方的播放历史写入事务中执行）
+     *
+     * @param plays 每行为 [用户ID, 歌曲ID, 播放时间毫秒, 播放时长秒]
+     */
+    public void record(List<long[]> plays) {
+        Comparator<List<Object>> byKey = Comparator.<List<Object>, Long>comparing(key -> (Long) key.get(0))
+            .thenComparing(key -> key.get(1).toString())
+            .thenComparing(key -> key.get(2).toString());
+        // 同一批内先合并，并按键排序保证多实例加锁顺序一致
+        Map<List<Object>, long[]> values = new TreeMap<>(byKey);
+        Map<List<Object>, long[]> songs = new TreeMap<>(byKey);
+        ZoneId zone = ZoneId.systemDefault();
+        for (long[] play : plays) {
+            long userId = play[0];
+            String week = weekOf(Instant.ofEpochMilli(play[2]).atZone(zone).toLocalDate());
+            accumulate(values, Arrays.asList(userId, SONG, String.valueOf(play[1])), play[3]);
+            accumulate(values, Arrays.asList(userId, WEEK, week), play[3]);
+            accumulate(values, Arrays.asList(userId, TOTAL, ""), play[3]);
+            accumulate(songs, Arrays.asList(userId, "", play[1]), play[3]);
+        }
+        jdbcTemplate.batchUpdate(VALUES_SQL, values.entrySet().stream()
+            .map(entry -> new Object[]{entry.getKey().get(0), entry.getKey().get(1), entry.getKey().get(2),
+                entry.getValue()[0], entry.getValue()[1]})
+            .collect(Collectors.toList()));
+        List<Object[]> songArgs = songs.entrySet().stream()
+            .map(entry -> new Object[]{entry.getKey().get(0), entry.getValue()[0], entry.getValue()[1], entry.getKey().get(2)})
+            .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(ARTIST_SQL, songArgs);
+        jdbcTemplate.batchUpdate(GENRE_SQL, songArgs);
+        jdbcTemplate.batchUpdate(LANGUAGE_SQL, songArgs);
+    }
+
+    /**
+     * 用户收听统计
+     *
+     * @param limit 最常听的歌曲、歌手返回的数量
+     * @param weeks 返回最近多少周的收听时长
+     */
+    public Map<String, Object> getStats(Long userId, int limit, int weeks) {
+        UserListenStat total = userListenStatRepository.findByUserIdAndDimAndDimKey(userId, TOTAL, "").orElse(null);
+        long totalPlays = total == null ? 0 : total.getPlays();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalPlays", totalPlays);
+        stats.put("totalMinutes", total == null ? 0 : total.getSeconds() / 60);
+        stats.put("topSongs", top(userId, SONG, limit, ids -> songRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Song::getId, song -> song)), "song"));
+        stats.put("topArtists", top(userId, ARTIST, limit, ids -> artistRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Artist::getId, artist -> artist)), "artist"));
+        stats.put("genres", mix(userId, GENRE, totalPlays));
+        stats.put("languages", mix(userId, LANGUAGE, totalPlays));
+
+        // 最近 weeks 周（含本周）的收听小时数，没有播放的周补 0
+        LocalDate thisWeek = LocalDate.parse(weekOf(LocalDate.now()));
+        LocalDate firstWeek = thisWeek.minusWeeks(weeks - 1);
+        Map<String, Long> seconds = userListenStatRepository.findFrom(userId, WEEK, firstWeek.toString()).stream()
+            .collect(Collectors.toMap(UserListenStat::getDimKey, UserListenStat::getSeconds));
+        List<Map<String, Object>> weekly = new ArrayList<>();
+        for (LocalDate week = firstWeek; !week.isAfter(thisWeek); week = week.plusWeeks(1)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("week", week.toString());
+            item.put("hours", Math.round(seconds.getOrDefault(week.toString(), 0L) / 36.0) / 100.0);
+            weekly.add(item);
+        }
+        stats.put("weeklyHours", weekly);
+        return stats;
+    }
+
+    /**
+     * 清空用户的全部统计（在清空播放历史的事务中调用）
+     */
+    public void clear(Long userId) {
+        userListenStatRepository.deleteByUserId(userId);
+    }
+
+    /**
+     * 删除用户某首歌的统计（在删除该歌曲播放记录的事务中调用）
+     */
+    public void removeSong(Long userId, Long songId) {
+        userListenStatRepository.deleteByUserIdAndDimAndDimKey(userId, SONG, String.valueOf(songId));
+    }
+
+    private <T> List<Map<String, Object>> top(Long userId, String dim, int limit,
+                                              Function<List<Long>, Map<Long, T>> loader, String name) {
+        List<UserListenStat> rows = userListenStatRepository.findTop(userId, dim, PageRequest.of(0, limit));
+        Map<Long, T> entities = loader.apply(rows.stream()
+            .map(row -> Long.valueOf(row.getDimKey()))
+            .collect(Collectors.toList()));
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (UserListenStat row : rows) {
+            T entity = entities.get(Long.valueOf(row.getDimKey()));
+            if (entity == null) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put(name, entity);
+            item.put("plays", row.getPlays());
+            item.put("minutes", row.getSeconds() / 60);
+            result.add(item);
+        }
+        return result;
+    }
+
+    private List<Map<String, Object>> mix(Long userId, String dim, long totalPlays) {
+        return userListenStatRepository.findTop(userId, dim, PageRequest.of(0, 20)).stream()
+            .map(row -> {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("name", row.getDimKey());
+                item.put("plays", row.getPlays());
+                item.put("share", totalPlays == 0 ? 0 : Math.round(row.getPlays() * 1000.0 / totalPlays) / 10.0);
+                return item;
+            })
+            .collect(Collectors.toList());
+    }
+
+    private static void accumulate(Map<List<Object>, long[]> map, List<Object> key, long seconds) {
+        long[] value = map.computeIfAbsent(key, k -> new long[2]);
+        value[0]++;
+        value[1] += seconds;
+    }
+
+    /**
+     * 所在周的周一日期（与 MySQL 的 WEEKDAY 一致）
+     */
+    private static String weekOf(LocalDate date) {
+        return date.with(DayOfWeek.MONDAY).toString();
+    }
+}
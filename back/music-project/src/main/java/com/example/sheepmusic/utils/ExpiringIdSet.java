@@ -0,0 +1,62 @@
+package com.example.sheepmusic.utils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 按过期时间分桶的ID集合
+ *
+ * 每个 ID 带一个过期时间，按过期时间向上取整到 bucketMillis 放入对应的桶；
+ * purge 时整桶丢弃已经过期的桶，不需要逐个检查。桶数约为 最长存活时间 / bucketMillis，
+ * contains 依次查询每个桶的哈希集合。适合存放"在自身过期前需要被拒绝"的短期令牌ID。
+ */
+public class ExpiringIdSet {
+
+    private final long bucketMillis;
+
+    /**
+     * 桶序号（过期时间 / bucketMillis 向上取整）→ 该桶中的ID
+     */
+    private final ConcurrentSkipListMap<Long, Set<String>> buckets = new ConcurrentSkipListMap<>();
+
+    public ExpiringIdSet(long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+    }
+
+    /**
+     * 加入一个ID，expireAtMillis 之后不再需要记住它
+     */
+    public void add(String id, long expireAtMillis) {
+        if (expireAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        long bucket = (expireAtMillis + bucketMillis - 1) / bucketMillis;
+        buckets.computeIfAbsent(bucket, b -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    public boolean contains(String id) {
+        for (Set<String> ids : buckets.values()) {
+            if (ids.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 丢弃已经过期的桶（桶内所有ID的过期时间都不晚于桶的结束时间）
+     */
+    public void purge(long nowMillis) {
+        buckets.headMap(nowMillis / bucketMillis, true).clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map.Entry<Long, Set<String>> entry : buckets.entrySet()) {
+            size += entry.getValue().size();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,548 @@
+package com.example.sheepmusic.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HNSW 近似最近邻索引（余弦相似度）
+ *
+ * 向量归一化后存放在堆外 FloatBuffer 中，图结构为每个节点每层一个 int[] 邻居数组。
+ * 支持增量插入、墓碑删除（删除的节点仍参与图遍历，但不出现在结果中）、清理墓碑（compact，用存活节点重建），
+ * 以及快照到文件 / 通过内存映射恢复：恢复时向量区直接使用映射的文件页，不做拷贝。
+ *
+ * 写操作串行执行；向量区、ID、邻居表、节点数、入口点等整体放在一个不可变的 Graph 中，通过单个 volatile 字段发布，
+ * 读操作开始时取一次 Graph，之后只使用这一份，扩容或重建时不会读到新旧混杂的数组。
+ * 新节点的槽位在发布前写好；邻居数组写时复制，读到的后继节点号不小于所用 Graph 的节点数时跳过（属于之后插入的节点）。
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+
+    private static final int[] NO_LINKS = new int[0];
+
+    private final int dim;
+
+    private final int m;
+
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private final Random random = new Random(42);
+
+    private volatile Graph graph;
+
+    /**
+     * @param dim            向量维度
+     * @param m              每层最大邻居数（第 0 层为 2m）
+     * @param efConstruction 构建时的候选队列大小
+     */
+    public HnswIndex(int dim, int m, int efConstruction) {
+        this.dim = dim;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.graph = new Graph(allocate(16 * dim), new long[16], new int[16][][], 0, -1, -1,
+            new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet());
+    }
+
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * 有效（未删除）向量数量
+     */
+    public int size() {
+        return graph.nodeById.size();
+    }
+
+    /**
+     * 已删除但仍留在图中的节点数（墓碑）
+     */
+    public int getDeletedCount() {
+        return graph.deleted.size();
+    }
+
+    public boolean contains(long id) {
+        return graph.nodeById.containsKey(id);
+    }
+
+    /**
+     * 所有有效向量的ID
+     */
+    public long[] getIds() {
+        return graph.nodeById.keySet().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * 插入向量；ID 已存在时旧节点标记删除后重新插入
+     */
+    public synchronized void add(long id, float[] vector) {
+        Graph g = graph;
+        Integer existing = g.nodeById.remove(id);
+        if (existing != null) {
+            g.deleted.add(existing);
+        }
+
+        float[] normalized = normalize(vector);
+        g = ensureCapacity(g, g.count + 1);
+        int node = g.count;
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+
+        // 新节点的槽位在发布之前写好
+        for (int i = 0; i < dim; i++) {
+            g.vectors.put(node * dim + i, normalized[i]);
+        }
+        g.ids[node] = id;
+        int[][] nodeLinks = new int[level + 1][];
+        Arrays.fill(nodeLinks, NO_LINKS);
+        g.links[node] = nodeLinks;
+
+        int ep = g.entryPoint;
+        if (ep < 0) {
+            graph = g.with(node + 1, node, level);
+            g.nodeById.put(id, node);
+            return;
+        }
+
+        // 从顶层贪心下降到新节点所在层
+        int top = g.maxLevel;
+        for (int layer = top; layer > level; layer--) {
+            ep = greedy(g, normalized, ep, layer);
+        }
+        for (int layer = Math.min(level, top); layer >= 0; layer--) {
+            List<Candidate> found = searchLayer(g, normalized, ep, efConstruction, layer);
+            nodeLinks[layer] = selectNeighbors(g, found, m);
+            ep = found.get(0).node;
+        }
+
+        // 先发布节点，再补充反向边
+        g = g.with(node + 1, g.entryPoint, g.maxLevel);
+        graph = g;
+        g.nodeById.put(id, node);
+        for (int layer = Math.min(level, top); layer >= 0; layer--) {
+            int max = layer == 0 ? maxM0 : m;
+            for (int neighbor : nodeLinks[layer]) {
+                addLink(g, neighbor, node, layer, max);
+            }
+        }
+        if (level > top) {
+            graph = g.with(g.count, node, level);
+        }
+    }
+
+    /**
+     * 墓碑删除
+     */
+    public synchronized void remove(long id) {
+        Graph g = graph;
+        Integer node = g.nodeById.remove(id);
+        if (node != null) {
+            g.deleted.add(node);
+        }
+    }
+
+    /**
+     * 清理墓碑：按原插入顺序把存活节点插入一张新图，替换后整体发布
+     * 重建期间读操作继续使用旧图，写操作等待
+     */
+    public synchronized void compact() {
+        Graph g = graph;
+        if (g.deleted.isEmpty()) {
+            return;
+        }
+        HnswIndex rebuilt = new HnswIndex(dim, m, efConstruction);
+        for (int node = 0; node < g.count; node++) {
+            if (!g.deleted.contains(node)) {
+                rebuilt.add(g.ids[node], vectorAt(g, node));
+            }
+        }
+        graph = rebuilt.graph;
+    }
+
+    /**
+     * 获取向量（归一化后的副本），不存在时返回 null
+     */
+    public float[] getVector(long id) {
+        Graph g = graph;
+        Integer node = g.nodeById.get(id);
+        if (node == null || node >= g.count) {
+            return null;
+        }
+        return vectorAt(g, node);
+    }
+
+    /**
+     * 查询最相似的 k 个ID（按相似度降序）
+     *
+     * @param ef 搜索时的候选队列大小，越大召回越高、越慢
+     */
+    public List<Long> search(float[] query, int k, int ef) {
+        Graph g = graph;
+        int ep = g.entryPoint;
+        if (ep < 0 || k <= 0) {
+            return Collections.emptyList();
+        }
+        float[] normalized = normalize(query);
+        for (int layer = g.maxLevel; layer > 0; layer--) {
+            ep = greedy(g, normalized, ep, layer);
+        }
+        List<Candidate> found = searchLayer(g, normalized, ep, Math.max(ef, k), 0);
+        List<Long> result = new ArrayList<>(k);
+        for (Candidate candidate : found) {
+            if (!g.deleted.contains(candidate.node)) {
+                result.add(g.ids[candidate.node]);
+                if (result.size() >= k) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // ========== 图搜索 ==========
+
+    private int greedy(Graph g, float[] query, int ep, int layer) {
+        int current = ep;
+        float best = distance(g, query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int neighbor : neighbors(g, current, layer)) {
+                float d = distance(g, query, neighbor);
+                if (d < best) {
+                    best = d;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层 best-first 搜索，返回按距离升序的候选
+     */
+    private List<Candidate> searchLayer(Graph g, float[] query, int ep, int ef, int layer) {
+        BitSet visited = new BitSet(g.count);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Collections.reverseOrder());
+
+        Candidate start = new Candidate(ep, distance(g, query, ep));
+        visited.set(ep);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.distance > results.peek().distance) {
+                break;
+            }
+            for (int neighbor : neighbors(g, current.node, layer)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = distance(g, query, neighbor);
+                if (results.size() < ef || d < results.peek().distance) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * 为 node 添加一条指向 target 的边，超过上限时只保留最近的 max 个
+     */
+    private void addLink(Graph g, int node, int target, int layer, int max) {
+        int[][] nodeLinks = g.links[node];
+        int[] current = nodeLinks[layer];
+        if (current.length < max) {
+            int[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = target;
+            nodeLinks[layer] = updated;
+            return;
+        }
+
+        float[] base = vectorAt(g, node);
+        List<Candidate> all = new ArrayList<>(current.length + 1);
+        for (int neighbor : current) {
+            all.add(new Candidate(neighbor, distance(g, base, neighbor)));
+        }
+        all.add(new Candidate(target, distance(g, base, target)));
+        Collections.sort(all);
+        nodeLinks[layer] = selectNeighbors(g, all, max);
+    }
+
+    /**
+     * 启发式邻居选择：候选按距离升序处理，只有当它离基准点比离所有已选邻居都近时才入选，
+     * 使邻居分布在不同方向上，避免聚类数据中的图被切成孤立的团；不足 max 个时再用被跳过的候选补齐。
+     *
+     * @param candidates 按距基准点距离升序排列的候选
+     */
+    private int[] selectNeighbors(Graph g, List<Candidate> candidates, int max) {
+        int[] selected = new int[Math.min(max, candidates.size())];
+        int size = 0;
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (size >= selected.length) {
+                break;
+            }
+            float[] vector = vectorAt(g, candidate.node);
+            boolean diverse = true;
+            for (int i = 0; i < size; i++) {
+                if (distance(g, vector, selected[i]) < candidate.distance) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[size++] = candidate.node;
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; i < skipped.size() && size < selected.length; i++) {
+            selected[size++] = skipped.get(i).node;
+        }
+        return selected;
+    }
+
+    /**
+     * 节点在某层的邻居；节点号不小于 g.count 的邻居是之后插入的节点，不在这份 Graph 中，跳过
+     */
+    private static int[] neighbors(Graph g, int node, int layer) {
+        int[][] nodeLinks = g.links[node];
+        if (nodeLinks == null || layer >= nodeLinks.length) {
+            return NO_LINKS;
+        }
+        int[] result = nodeLinks[layer];
+        for (int neighbor : result) {
+            if (neighbor >= g.count) {
+                return Arrays.stream(result).filter(n -> n < g.count).toArray();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 余弦距离 = 1 - 点积（向量均已归一化）
+     */
+    private float distance(Graph g, float[] query, int node) {
+        FloatBuffer buffer = g.vectors;
+        int base = node * dim;
+        float dot = 0f;
+        for (int i = 0; i < dim; i++) {
+            dot += query[i] * buffer.get(base + i);
+        }
+        return 1f - dot;
+    }
+
+    private float[] vectorAt(Graph g, int node) {
+        float[] vector = new float[dim];
+        FloatBuffer buffer = g.vectors;
+        for (int i = 0; i < dim; i++) {
+            vector[i] = buffer.get(node * dim + i);
+        }
+        return vector;
+    }
+
+    private float[] normalize(float[] vector) {
+        float[] result = Arrays.copyOf(vector, dim);
+        double norm = 0;
+        for (float value : result) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dim; i++) {
+                result[i] *= scale;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 容量不足（或向量区是只读的映射页）时返回换成新数组的 Graph，新数组在下一次发布时才对读操作可见
+     */
+    private Graph ensureCapacity(Graph g, int required) {
+        int capacity = g.ids.length;
+        if (required <= capacity && g.vectors.capacity() >= required * dim && !g.vectors.isReadOnly()) {
+            return g;
+        }
+        int newCapacity = Math.max(required, capacity * 2);
+        FloatBuffer newVectors = allocate(newCapacity * dim);
+        FloatBuffer source = g.vectors.duplicate();
+        source.position(0).limit(g.count * dim);
+        newVectors.put(source);
+        return new Graph(newVectors, Arrays.copyOf(g.ids, newCapacity), Arrays.copyOf(g.links, newCapacity),
+            g.count, g.entryPoint, g.maxLevel, g.nodeById, g.deleted);
+    }
+
+    private static FloatBuffer allocate(int floats) {
+        return ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    // ========== 快照 ==========
+
+    /**
+     * 写入快照文件（先写临时文件再原子替换）
+     * 格式：头部 | 每个节点的 ID、删除标记、各层邻居 | 全部向量（float32）
+     */
+    public synchronized void snapshot(Path path) throws IOException {
+        Graph g = graph;
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(dim);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(g.count);
+            out.writeInt(g.entryPoint);
+            out.writeInt(g.maxLevel);
+            for (int node = 0; node < g.count; node++) {
+                out.writeLong(g.ids[node]);
+                out.writeBoolean(g.deleted.contains(node));
+                int[][] nodeLinks = g.links[node];
+                out.writeInt(nodeLinks.length);
+                for (int[] layer : nodeLinks) {
+                    out.writeInt(layer.length);
+                    for (int neighbor : layer) {
+                        out.writeInt(neighbor);
+                    }
+                }
+            }
+            FloatBuffer buffer = g.vectors;
+            for (int i = 0; i < g.count * dim; i++) {
+                out.writeFloat(buffer.get(i));
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 从快照恢复：整个文件内存映射，图结构解析到堆内，向量区直接引用映射页
+     */
+    public static HnswIndex restore(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("不是有效的 HNSW 快照文件: " + path);
+        }
+        HnswIndex index = new HnswIndex(buffer.getInt(), buffer.getInt(), buffer.getInt());
+        int count = buffer.getInt();
+        int entryPoint = buffer.getInt();
+        int maxLevel = buffer.getInt();
+
+        long[] ids = new long[Math.max(count, 16)];
+        int[][][] links = new int[ids.length][][];
+        Map<Long, Integer> nodeById = new ConcurrentHashMap<>();
+        Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+        for (int node = 0; node < count; node++) {
+            ids[node] = buffer.getLong();
+            boolean isDeleted = buffer.get() != 0;
+            int[][] nodeLinks = new int[buffer.getInt()][];
+            for (int layer = 0; layer < nodeLinks.length; layer++) {
+                int[] neighbors = new int[buffer.getInt()];
+                for (int i = 0; i < neighbors.length; i++) {
+                    neighbors[i] = buffer.getInt();
+                }
+                nodeLinks[layer] = neighbors;
+            }
+            links[node] = nodeLinks;
+            if (isDeleted) {
+                deleted.add(node);
+            } else {
+                nodeById.put(ids[node], node);
+            }
+        }
+
+        ByteBuffer vectorRegion = buffer.slice();
+        vectorRegion.limit(count * index.dim * 4);
+        index.graph = new Graph(vectorRegion.asFloatBuffer().asReadOnlyBuffer(), ids, links, count, entryPoint, maxLevel,
+            nodeById, deleted);
+        return index;
+    }
+
+    /**
+     * 图的一个版本：向量区、ID、邻居表的引用以及节点数、入口点、最高层不可变，
+     * 只有下标不小于 count 的槽位（尚未发布的节点）和邻居数组元素（写时复制）会被写操作修改。
+     * nodeById / deleted 在同一张图的各版本间共享，compact 后随新图整体替换。
+     */
+    private static final class Graph {
+
+        private final FloatBuffer vectors;
+
+        private final long[] ids;
+
+        private final int[][][] links;
+
+        private final int count;
+
+        private final int entryPoint;
+
+        private final int maxLevel;
+
+        private final Map<Long, Integer> nodeById;
+
+        private final Set<Integer> deleted;
+
+        private Graph(FloatBuffer vectors, long[] ids, int[][][] links, int count, int entryPoint, int maxLevel,
+                      Map<Long, Integer> nodeById, Set<Integer> deleted) {
+            this.vectors = vectors;
+            this.ids = ids;
+            this.links = links;
+            this.count = count;
+            this.entryPoint = entryPoint;
+            this.maxLevel = maxLevel;
+            this.nodeById = nodeById;
+            this.deleted = deleted;
+        }
+
+        private Graph with(int count, int entryPoint, int maxLevel) {
+            return new Graph(vectors, ids, links, count, entryPoint, maxLevel, nodeById, deleted);
+        }
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        private final int node;
+        private final float distance;
+
+        Candidate(int node, float distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Float.compare(distance, other.distance);
+        }
+    }
+}
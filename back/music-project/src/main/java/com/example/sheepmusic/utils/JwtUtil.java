@@ -6,12 +6,22 @@ import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * JWT工具类
+ *
+ * 访问令牌有效期较短（jwt.expiration），每个令牌带唯一ID（jti），退出登录时按ID加入吊销索引。
+ * 验签通过的 Token 按 SHA-256 摘要缓存解析出的声明（令牌ID、用户ID、用户名、角色、签发和过期时间），
+ * 同一个 Token 在缓存有效期内只验签一次；读取时仍检查过期时间，过期的 Token 即使在缓存中也视为无效。
  */
 @Component
 public class JwtUtil {
@@ -19,9 +29,31 @@ public class JwtUtil {
     @Value("${jwt.secret}")
     private String secret;
     
+    /**
+     * 访问令牌有效期（毫秒）
+     */
     @Value("${jwt.expiration}")
     private Long expiration;
     
+    /**
+     * 已验证 Token 缓存的条目上限
+     */
+    @Value("${jwt.verified-cache.max-entries:100000}")
+    private int verifiedCacheSize;
+    
+    /**
+     * 已验证 Token 缓存的有效期（毫秒）
+     */
+    @Value("${jwt.verified-cache.ttl-ms:600000}")
+    private long verifiedCacheTtlMillis;
+    
+    private LruTtlCache<String, VerifiedToken> verifiedTokens;
+    
+    @PostConstruct
+    public void init() {
+        verifiedTokens = new LruTtlCache<>(verifiedCacheSize, verifiedCacheTtlMillis);
+    }
+    
     /**
      * 生成Token
      */
@@ -42,34 +74,62 @@ public class JwtUtil {
         
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(now)
                 .setExpiration(expirationDate)
                 .signWith(SignatureAlgorithm.HS512, secret)
                 .compact();
     }
     
+    /**
+     * 验证Token并返回其中的声明，Token无效或已过期时返回 null
+     * 先按摘要查已验证缓存，未命中时验签并写入缓存
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String key = digest(token);
+        VerifiedToken verified = verifiedTokens.get(key);
+        if (verified == null) {
+            Claims claims = getClaimsFromToken(token);
+            if (claims == null) {
+                return null;
+            }
+            verified = new VerifiedToken(
+                    claims.getId(),
+                    claims.get("userId", Long.class),
+                    claims.get("username", String.class),
+                    claims.get("role", String.class),
+                    claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0L,
+                    claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE);
+            verifiedTokens.put(key, verified);
+        }
+        return verified.getExpireAt() > System.currentTimeMillis() ? verified : null;
+    }
+    
     /**
      * 从Token中获取用户名
      */
     public String getUsernameFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        return claims != null ? claims.get("username", String.class) : null;
+        VerifiedToken verified = verify(token);
+        return verified != null ? verified.getUsername() : null;
     }
     
     /**
      * 从Token中获取用户ID
      */
     public Long getUserIdFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        return claims != null ? claims.get("userId", Long.class) : null;
+        VerifiedToken verified = verify(token);
+        return verified != null ? verified.getUserId() : null;
     }
     
     /**
      * 从Token中获取角色
      */
     public String getRoleFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        return claims != null ? claims.get("role", String.class) : null;
+        VerifiedToken verified = verify(token);
+        return verified != null ? verified.getRole() : null;
     }
     
     /**
@@ -90,20 +150,33 @@ public class JwtUtil {
      * 验证Token是否有效
      */
     public boolean validateToken(String token) {
-        try {
-            Claims claims = getClaimsFromToken(token);
-            return claims != null && !isTokenExpired(claims);
-        } catch (Exception e) {
-            return false;
-        }
+        return verify(token) != null;
+    }
+    
+    /**
+     * 访问令牌有效期（毫秒）
+     */
+    public long getExpiration() {
+        return expiration;
+    }
+    
+    /**
+     * 已验证Token缓存统计
+     */
+    public Map<String, Object> getVerifiedCacheStats() {
+        return verifiedTokens.getStats();
     }
     
     /**
-     * 判断Token是否过期
+     * Token 的 SHA-256 摘要，作为缓存键（不在内存中保留 Token 原文）
      */
-    private boolean isTokenExpired(Claims claims) {
-        Date expiration = claims.getExpiration();
-        return expiration.before(new Date());
+    public static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
     
     /**
@@ -129,5 +202,64 @@ public class JwtUtil {
         }
         return null;
     }
+    
+    /**
+     * 验签通过的Token中的声明
+     */
+    public static class VerifiedToken {
+        
+        /**
+         * 令牌ID（jti），旧版本签发的令牌没有
+         */
+        private final String tokenId;
+        
+        private final Long userId;
+        
+        private final String username;
+        
+        private final String role;
+        
+        /**
+         * 签发时间（毫秒时间戳，精确到秒）
+         */
+        private final long issuedAt;
+        
+        /**
+         * 过期时间（毫秒时间戳）
+         */
+        private final long expireAt;
+        
+        public VerifiedToken(String tokenId, Long userId, String username, String role, long issuedAt, long expireAt) {
+            this.tokenId = tokenId;
+            this.userId = userId;
+            this.username = username;
+            this.role = role;
+            this.issuedAt = issuedAt;
+            this.expireAt = expireAt;
+        }
+        
+        public String getTokenId() {
+            return tokenId;
+        }
+        
+        public Long getUserId() {
+            return userId;
+        }
+        
+        public String getUsername() {
+            return username;
+        }
+        
+        public String getRole() {
+            return role;
+        }
+        
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+        
+        public long getExpireAt() {
+            return expireAt;
+        }
+    }
 }
-
@@ -0,0 +1,365 @@
+package com.example.sheepmusic.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MinHash 签名 + 局部敏感哈希（LSH）分桶
+ *
+ * 每个集合用 bands * rows 个最小哈希值作为签名，签名按 band 切分，每个 band 的 rows 个值组合成一个桶键。
+ * 两个集合 Jaccard 相似度为 s 时，至少在一个 band 上碰撞的概率为 1 - (1 - s^rows)^bands，
+ * 因此只需对碰撞到的候选做精确计算，不必遍历全部集合。
+ *
+ * 读操作无锁；写操作（put/remove）串行执行，桶内成员为写时复制的有序 long[]；
+ * putAll 在新的映射上整体构建后再替换，查询不会看到构建到一半的桶。
+ */
+public class MinHashLsh {
+
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * 查询时最多收集 maxCandidates 的多少倍个不同成员，再从中按碰撞 band 数取前 maxCandidates 个
+     */
+    private static final int OVERSAMPLE = 4;
+
+    private final int bands;
+
+    private final int rows;
+
+    private final long[] seeds;
+
+    /**
+     * 成员ID -> 签名
+     */
+    private volatile Map<Long, int[]> signatures = new ConcurrentHashMap<>();
+
+    /**
+     * 桶键 -> 成员ID（升序）
+     */
+    private volatile Map<Long, long[]> buckets = new ConcurrentHashMap<>();
+
+    public MinHashLsh(int bands, int rows, long seed) {
+        this.bands = bands;
+        this.rows = rows;
+        this.seeds = new SplittableRandom(seed).longs(bands * rows).toArray();
+    }
+
+    /**
+     * 计算集合的 MinHash 签名
+     */
+    public int[] signature(long[] items) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long item : items) {
+            for (int i = 0; i < seeds.length; i++) {
+                int hash = (int) (mix(item ^ seeds[i]) >>> 33);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 写入或替换成员的集合；空集合等同于移除
+     */
+    public synchronized void put(long id, long[] items) {
+        removeInternal(id);
+        if (items.length == 0) {
+            return;
+        }
+        int[] signature = signature(items);
+        signatures.put(id, signature);
+        for (int band = 0; band < bands; band++) {
+            buckets.compute(bandKey(signature, band), (k, members) -> insert(members, id));
+        }
+    }
+
+    /**
+     * 批量替换全部成员：先算出所有签名，再逐个 band 按桶键排序分组，每个桶只创建一次数组。
+     * 逐个 put 时每次插入都要复制整个桶，成员多、桶大时会退化为平方复杂度。
+     * 新的签名和桶构建完成后才替换旧映射，构建期间的查询仍使用旧数据。
+     *
+     * @param ids      成员ID
+     * @param itemSets 与 ids 一一对应的集合，空集合的成员被忽略
+     */
+    public synchronized void putAll(long[] ids, long[][] itemSets) {
+        Map<Long, int[]> newSignatures = new ConcurrentHashMap<>();
+        Map<Long, long[]> newBuckets = new ConcurrentHashMap<>();
+        long[] memberIds = new long[ids.length];
+        int[][] memberSignatures = new int[ids.length][];
+        int size = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (itemSets[i].length == 0) {
+                continue;
+            }
+            int[] signature = signature(itemSets[i]);
+            newSignatures.put(ids[i], signature);
+            memberIds[size] = ids[i];
+            memberSignatures[size] = signature;
+            size++;
+        }
+
+        long[] keys = new long[size];
+        long[] members = new long[size];
+        for (int band = 0; band < bands; band++) {
+            for (int i = 0; i < size; i++) {
+                keys[i] = bandKey(memberSignatures[i], band);
+                members[i] = memberIds[i];
+            }
+            sortPairs(keys, members, 0, size - 1);
+            int start = 0;
+            while (start < size) {
+                int end = start;
+                while (end < size && keys[end] == keys[start]) {
+                    end++;
+                }
+                long[] bucket = Arrays.copyOfRange(members, start, end);
+                Arrays.sort(bucket);
+                newBuckets.merge(keys[start], bucket, MinHashLsh::union);
+                start = end;
+            }
+        }
+        buckets = newBuckets;
+        signatures = newSignatures;
+    }
+
+    /**
+     * 移除成员
+     */
+    public synchronized void remove(long id) {
+        removeInternal(id);
+    }
+
+    /**
+     * 清空所有成员
+     */
+    public synchronized void clear() {
+        buckets = new ConcurrentHashMap<>();
+        signatures = new ConcurrentHashMap<>();
+    }
+
+    public int size() {
+        return signatures.size();
+    }
+
+    /**
+     * 查询与给定集合至少在一个 band 上碰撞的成员
+     * 候选过多时优先保留碰撞 band 数多的成员（碰撞越多，相似度越可能越高）
+     *
+     * 热门歌曲所在的桶可能包含大部分成员，因此不复制整个桶：按桶从小到大收集成员，
+     * 收集到 maxCandidates * OVERSAMPLE 个不同成员后不再接纳新成员，之后的桶只给已收集的成员累加碰撞数。
+     *
+     * @param items         查询集合
+     * @param maxCandidates 最多返回的候选数量
+     * @return 候选成员ID（升序）
+     */
+    public long[] candidates(long[] items, int maxCandidates) {
+        if (items.length == 0 || maxCandidates <= 0) {
+            return EMPTY;
+        }
+        int[] signature = signature(items);
+        Map<Long, long[]> current = buckets;
+
+        long[][] hitBuckets = new long[bands][];
+        int bucketCount = 0;
+        for (int band = 0; band < bands; band++) {
+            long[] members = current.get(bandKey(signature, band));
+            if (members != null) {
+                hitBuckets[bucketCount++] = members;
+            }
+        }
+        if (bucketCount == 0) {
+            return EMPTY;
+        }
+        // 小桶的碰撞更有区分度，先收集
+        Arrays.sort(hitBuckets, 0, bucketCount, Comparator.comparingInt(members -> members.length));
+
+        int admitLimit = (int) Math.min(Integer.MAX_VALUE, (long) maxCandidates * OVERSAMPLE);
+        Map<Long, Integer> slotById = new HashMap<>();
+        long[] ids = new long[Math.min(admitLimit, 64)];
+        int[] hits = new int[ids.length];
+        int distinct = 0;
+        for (int b = 0; b < bucketCount; b++) {
+            long[] members = hitBuckets[b];
+            if (distinct == admitLimit && members.length > distinct) {
+                // 已收集满且桶比已收集的成员多：在有序的桶内二分查找已收集的成员
+                for (int i = 0; i < distinct; i++) {
+                    if (Arrays.binarySearch(members, ids[i]) >= 0) {
+                        hits[i]++;
+                    }
+                }
+                continue;
+            }
+            for (long id : members) {
+                Integer slot = slotById.get(id);
+                if (slot != null) {
+                    hits[slot]++;
+                } else if (distinct < admitLimit) {
+                    if (distinct == ids.length) {
+                        int capacity = (int) Math.min(admitLimit, (long) ids.length * 2);
+                        ids = Arrays.copyOf(ids, capacity);
+                        hits = Arrays.copyOf(hits, capacity);
+                    }
+                    slotById.put(id, distinct);
+                    ids[distinct] = id;
+                    hits[distinct] = 1;
+                    distinct++;
+                }
+            }
+        }
+
+        long[] result;
+        if (distinct <= maxCandidates) {
+            result = Arrays.copyOf(ids, distinct);
+        } else {
+            // 按碰撞次数计数排序，取碰撞最多的 maxCandidates 个
+            int[] countByHits = new int[bands + 2];
+            for (int i = 0; i < distinct; i++) {
+                countByHits[hits[i]]++;
+            }
+            int minHits = bands;
+            int kept = 0;
+            while (minHits > 1 && kept + countByHits[minHits] < maxCandidates) {
+                kept += countByHits[minHits];
+                minHits--;
+            }
+            int remainingAtMin = maxCandidates - kept;
+            result = new long[maxCandidates];
+            int resultSize = 0;
+            for (int i = 0; i < distinct && resultSize < maxCandidates; i++) {
+                if (hits[i] > minHits) {
+                    result[resultSize++] = ids[i];
+                } else if (hits[i] == minHits && remainingAtMin > 0) {
+                    result[resultSize++] = ids[i];
+                    remainingAtMin--;
+                }
+            }
+            result = Arrays.copyOf(result, resultSize);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void removeInternal(long id) {
+        int[] old = signatures.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfPresent(bandKey(old, band), (k, members) -> delete(members, id));
+        }
+    }
+
+    /**
+     * 由 band 序号和该 band 的 rows 个最小哈希值组合出桶键
+     */
+    private long bandKey(int[] signature, int band) {
+        long key = mix(band + 1);
+        int offset = band * rows;
+        for (int i = 0; i < rows; i++) {
+            key = mix(key ^ (signature[offset + i] & 0xFFFFFFFFL));
+        }
+        return key;
+    }
+
+    private static long[] insert(long[] members, long id) {
+        if (members == null) {
+            return new long[]{id};
+        }
+        int index = Arrays.binarySearch(members, id);
+        if (index >= 0) {
+            return members;
+        }
+        int insertAt = -index - 1;
+        long[] result = new long[members.length + 1];
+        System.arraycopy(members, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(members, insertAt, result, insertAt + 1, members.length - insertAt);
+        return result;
+    }
+
+    private static long[] delete(long[] members, long id) {
+        int index = Arrays.binarySearch(members, id);
+        if (index < 0) {
+            return members;
+        }
+        if (members.length == 1) {
+            return null;
+        }
+        long[] result = new long[members.length - 1];
+        System.arraycopy(members, 0, result, 0, index);
+        System.arraycopy(members, index + 1, result, index, members.length - index - 1);
+        return result;
+    }
+
+    /**
+     * 合并两个升序数组（不同 band 的桶键碰撞时才会发生）
+     */
+    private static long[] union(long[] a, long[] b) {
+        long[] result = new long[a.length + b.length];
+        int i = 0, j = 0, size = 0;
+        while (i < a.length || j < b.length) {
+            long next;
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (size == 0 || result[size - 1] != next) {
+                result[size++] = next;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 按 keys 升序对 [low, high] 区间内的两个并行数组做原地快速排序
+     */
+    private static void sortPairs(long[] keys, long[] values, int low, int high) {
+        while (low < high) {
+            long pivot = keys[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long key = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = key;
+                    long value = values[i];
+                    values[i] = values[j];
+                    values[j] = value;
+                    i++;
+                    j--;
+                }
+            }
+            if (j - low < high - i) {
+                sortPairs(keys, values, low, j);
+                low = i;
+            } else {
+                sortPairs(keys, values, i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * SplitMix64 混合函数
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.sheepmusic.utils;
+
+import java.util.*;
+
+/**
+ * 新歌热度榜（按时间窗口的播放量排行）
+ *
+ * 只跟踪创建时间在最大时间窗口内的歌曲。每个时间窗口一棵按 (播放量降序, 创建时间降序, ID降序) 排序的 TreeSet，
+ * 歌曲在其创建时间仍落在窗口内时出现在该窗口的树中；播放量变化时从各棵树中取出、更新、再放回，代价 O(W·log n)。
+ * 查询从树头开始取前 limit 个仍在窗口内的歌曲，代价 O(limit + 过期未清理的条目)；过期条目由 purge 定期清理。
+ *
+ * 所有方法在同一把锁内执行。
+ */
+public class NewReleaseChart {
+
+    private static final Comparator<Entry> BY_PLAYS = (a, b) -> {
+        if (a.playCount != b.playCount) {
+            return Long.compare(b.playCount, a.playCount);
+        }
+        if (a.createTime != b.createTime) {
+            return Long.compare(b.createTime, a.createTime);
+        }
+        return Long.compare(b.id, a.id);
+    };
+
+    /**
+     * 时间窗口长度（毫秒，升序）
+     */
+    private final long[] windows;
+
+    private final List<TreeSet<Entry>> charts;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    /**
+     * @param windowsMillis 时间窗口长度（毫秒），如 7/30/90 天
+     */
+    public NewReleaseChart(long... windowsMillis) {
+        this.windows = windowsMillis.clone();
+        Arrays.sort(this.windows);
+        this.charts = new ArrayList<>(windows.length);
+        for (int i = 0; i < windows.length; i++) {
+            charts.add(new TreeSet<>(BY_PLAYS));
+        }
+    }
+
+    /**
+     * 写入或替换歌曲；创建时间早于最大窗口时忽略（并移除旧条目）
+     */
+    public synchronized void put(long id, long createTime, long playCount, long now) {
+        removeInternal(id);
+        if (createTime < now - windows[windows.length - 1]) {
+            return;
+        }
+        Entry entry = new Entry(id, createTime, playCount);
+        entries.put(id, entry);
+        for (int i = 0; i < windows.length; i++) {
+            if (createTime >= now - windows[i]) {
+                charts.get(i).add(entry);
+            }
+        }
+    }
+
+    /**
+     * 增加播放量；歌曲未被跟踪（不是新歌）时忽略
+     */
+    public synchronized void addPlays(long id, long delta) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        boolean[] present = new boolean[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            present[i] = charts.get(i).remove(entry);
+        }
+        entry.playCount += delta;
+        for (int i = 0; i < windows.length; i++) {
+            if (present[i]) {
+                charts.get(i).add(entry);
+            }
+        }
+    }
+
+    public synchronized void remove(long id) {
+        removeInternal(id);
+    }
+
+    public synchronized boolean contains(long id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * 查询时间窗口内播放量最高的歌曲
+     *
+     * @param windowMillis 时间窗口长度，必须是构造时给定的窗口之一
+     * @param limit        最多返回的数量，小于等于 0 时返回空数组
+     * @return 歌曲ID（按播放量降序）
+     */
+    public synchronized long[] top(long windowMillis, long now, int limit) {
+        int index = Arrays.binarySearch(windows, windowMillis);
+        if (index < 0) {
+            throw new IllegalArgumentException("unknown window: " + windowMillis);
+        }
+        long cutoff = now - windowMillis;
+        TreeSet<Entry> chart = charts.get(index);
+        long[] result = new long[Math.max(0, Math.min(limit, chart.size()))];
+        int size = 0;
+        Iterator<Entry> iterator = chart.iterator();
+        while (size < result.length && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.createTime >= cutoff) {
+                result[size++] = entry.id;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 清理各窗口中已过期的条目，超出最大窗口的歌曲不再跟踪
+     *
+     * @return 不再跟踪的歌曲数量
+     */
+    public synchronized int purge(long now) {
+        for (int i = 0; i < windows.length; i++) {
+            long cutoff = now - windows[i];
+            charts.get(i).removeIf(entry -> entry.createTime < cutoff);
+        }
+        long maxCutoff = now - windows[windows.length - 1];
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.createTime < maxCutoff);
+        return before - entries.size();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void removeInternal(long id) {
+        Entry old = entries.remove(id);
+        if (old != null) {
+            for (TreeSet<Entry> chart : charts) {
+                chart.remove(old);
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final long id;
+
+        private final long createTime;
+
+        private long playCount;
+
+        private Entry(long id, long createTime, long playCount) {
+            this.id = id;
+            this.createTime = createTime;
+            this.playCount = playCount;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.sheepmusic.utils;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 汉字拼音首字母
+ *
+ * GB2312 一级汉字（3755 个常用字）按拼音排序，按编码落在哪个声母区间即可得到首字母，不需要拼音字典。
+ * 二级汉字按部首排序，只补充了人名、歌名中常见的一小部分；其余二级汉字和繁体字返回 0。
+ * 多音字按编码表中的读音（通常是常用读音）。
+ */
+public final class PinyinInitials {
+
+    private static final Charset GB2312 = Charset.forName("GB2312");
+
+    /**
+     * 各首字母在 GB2312 一级汉字中的起始编码，最后一个为一级汉字的结束位置
+     */
+    private static final int[] BOUNDARIES = {
+        0xB0A1, 0xB0C5, 0xB2C1, 0xB4EE, 0xB6EA, 0xB7A2, 0xB8C1, 0xB9FE, 0xBBF7,
+        0xBFA6, 0xC0AC, 0xC2E8, 0xC4C3, 0xC5B6, 0xC5BE, 0xC6DA, 0xC8BB, 0xC8F6,
+        0xCBFA, 0xCDDA, 0xCEF4, 0xD1B9, 0xD4D1, 0xD7FA
+    };
+
+    private static final char[] LETTERS = "abcdefghjklmnopqrstwxyz".toCharArray();
+
+    /**
+     * 人名、歌名中常见的二级汉字（汉字后跟首字母）
+     */
+    private static final String EXTRA = "奕y弈y琦q琪q祺q淇q芊q茜q倩q婷t霆t韬t昊h晗h皓h怡y烨y煜y翊y娅y妍y琰y莺y懿y钰y嫣y胤y"
+        + "璐l岚l菁j婕j珏j骁x曦x萱x璇x昕x潇x琛c宸c炜w玮w薇w雯w喆z旻m濛m嫚m淼m晟s姝s霏f";
+
+    private static final Map<Character, Character> EXTRA_INITIALS = new HashMap<>();
+
+    static {
+        for (int i = 0; i + 1 < EXTRA.length(); i += 2) {
+            EXTRA_INITIALS.put(EXTRA.charAt(i), EXTRA.charAt(i + 1));
+        }
+    }
+
+    private PinyinInitials() {
+    }
+
+    /**
+     * 单个汉字的拼音首字母（小写），不是 GB2312 一级汉字时返回 0
+     */
+    public static char of(char c) {
+        if (c < 0x4E00 || c > 0x9FFF) {
+            return 0;
+        }
+        Character extra = EXTRA_INITIALS.get(c);
+        if (extra != null) {
+            return extra;
+        }
+        byte[] bytes = String.valueOf(c).getBytes(GB2312);
+        if (bytes.length != 2) {
+            return 0;
+        }
+        int code = (bytes[0] & 0xFF) << 8 | (bytes[1] & 0xFF);
+        if (code < BOUNDARIES[0] || code >= BOUNDARIES[BOUNDARIES.length - 1]) {
+            return 0;
+        }
+        for (int i = LETTERS.length - 1; i >= 0; i--) {
+            if (code >= BOUNDARIES[i]) {
+                return LETTERS[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 文本的首字母串：汉字取拼音首字母，其他字母数字转小写保留，空格和标点忽略，如"G.E.M.邓紫棋" → "gemdzq"
+     *
+     * @return 不含汉字、或含有无法取首字母的汉字时返回 null
+     */
+    public static String initials(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean hasHan = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                char initial = of(c);
+                if (initial == 0) {
+                    return null;
+                }
+                result.append(initial);
+                hasHan = true;
+            } else if (Character.isLetterOrDigit(c)) {
+                result.append(Character.toLowerCase(c));
+            }
+        }
+        return hasHan ? result.toString() : null;
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.sheepmusic.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * 播放历史列式行组编解码
+ *
+ * 一个行组（block）保存一批播放记录，按 (播放时间, 记录ID) 排序后逐列存储：
+ * 播放时间为相邻差值的 varint，记录ID为相邻差值的 zigzag varint，用户ID、歌曲ID、播放时长为 varint，
+ * 一条记录通常只占 8~12 字节。行组头部记录状态、行数、时间范围和每列的字节数，
+ * 读取时可以按时间范围跳过整个行组，也可以只解码需要的列。
+ * 行组末尾附带用户ID的布隆过滤器（每个不同用户约 10 位），按用户查询时不含该用户的行组连用户列都不用解码。
+ *
+ * 行组布局：[状态 1B][行数 4B][最小时间 8B][最大时间 8B][5 列各自的字节数 4B x 5][过滤器字节数 4B]
+ * [ID列][时间列][用户列][歌曲列][时长列][用户过滤器]
+ */
+public final class PlaySegmentCodec {
+
+    /**
+     * 已写入文件但对应的数据库删除尚未提交
+     */
+    public static final byte PENDING = 0;
+
+    /**
+     * 数据库删除已提交，行组生效
+     */
+    public static final byte COMMITTED = 1;
+
+    /**
+     * 数据库删除已回滚，但行组后面已有其他行组无法截断，读取时跳过
+     */
+    public static final byte ABORTED = 2;
+
+    private static final int FILTER_BITS_PER_USER = 10;
+
+    private static final int FILTER_HASHES = 7;
+
+    public static final int COLUMN_IDS = 0;
+
+    public static final int COLUMN_TIMES = 1;
+
+    public static final int COLUMN_USERS = 2;
+
+    public static final int COLUMN_SONGS = 3;
+
+    public static final int COLUMN_DURATIONS = 4;
+
+    private static final int COLUMNS = 5;
+
+    public static final int HEADER_BYTES = 1 + 4 + 8 + 8 + 4 * COLUMNS + 4;
+
+    private PlaySegmentCodec() {
+    }
+
+    /**
+     * 编码一个状态为 PENDING 的行组
+     *
+     * @param times 播放时间（毫秒时间戳）
+     * @param durations 播放时长（秒），未知时为 0
+     */
+    public static byte[] encode(long[] ids, long[] times, long[] userIds, long[] songIds, long[] durations) {
+        int rows = ids.length;
+        Integer[] order = IntStream.range(0, rows).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> times[i]).thenComparingLong(i -> ids[i]));
+
+        ByteArrayOutputStream[] columns = new ByteArrayOutputStream[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            columns[c] = new ByteArrayOutputStream(rows * 2);
+        }
+        long previousId = 0;
+        long previousTime = rows == 0 ? 0 : times[order[0]];
+        for (int index : order) {
+            writeVarLong(columns[COLUMN_IDS], zigzag(ids[index] - previousId));
+            writeVarLong(columns[COLUMN_TIMES], times[index] - previousTime);
+            writeVarLong(columns[COLUMN_USERS], userIds[index]);
+            writeVarLong(columns[COLUMN_SONGS], songIds[index]);
+            writeVarLong(columns[COLUMN_DURATIONS], durations[index]);
+            previousId = ids[index];
+            previousTime = times[index];
+        }
+
+        long[] filter = buildFilter(userIds);
+        int bodyBytes = Arrays.stream(columns).mapToInt(ByteArrayOutputStream::size).sum();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + bodyBytes + filter.length * 8);
+        buffer.put(PENDING)
+            .putInt(rows)
+            .putLong(rows == 0 ? 0 : times[order[0]])
+            .putLong(rows == 0 ? 0 : times[order[rows - 1]]);
+        for (ByteArrayOutputStream column : columns) {
+            buffer.putInt(column.size());
+        }
+        buffer.putInt(filter.length * 8);
+        for (ByteArrayOutputStream column : columns) {
+            buffer.put(column.toByteArray());
+        }
+        for (long word : filter) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 读取 offset 处的行组头部；剩余字节不足一个完整行组（写入中途崩溃）或头部已损坏时返回 null
+     */
+    public static Block read(ByteBuffer buffer, int offset) {
+        if (offset < 0 || buffer.limit() - offset < HEADER_BYTES) {
+            return null;
+        }
+        byte status = buffer.get(offset);
+        int rows = buffer.getInt(offset + 1);
+        if (status < PENDING || status > ABORTED || rows < 0) {
+            return null;
+        }
+        int[] lengths = new int[COLUMNS];
+        long total = HEADER_BYTES;
+        for (int c = 0; c < COLUMNS; c++) {
+            lengths[c] = buffer.getInt(offset + 21 + 4 * c);
+            // 每个值至少占 1 字节
+            if (lengths[c] < rows) {
+                return null;
+            }
+            total += lengths[c];
+        }
+        int filterBytes = buffer.getInt(offset + HEADER_BYTES - 4);
+        if (filterBytes <= 0 || filterBytes % 8 != 0) {
+            return null;
+        }
+        total += filterBytes;
+        if (buffer.limit() - offset < total) {
+            return null;
+        }
+        return new Block(buffer, offset, rows, buffer.getLong(offset + 5), buffer.getLong(offset + 13),
+            lengths, filterBytes, (int) total);
+    }
+
+    private static long[] buildFilter(long[] userIds) {
+        int distinct = (int) Arrays.stream(userIds).distinct().count();
+        long[] words = new long[Math.max(1, (distinct * FILTER_BITS_PER_USER + 63) / 64)];
+        long bits = words.length * 64L;
+        for (long userId : userIds) {
+            long hash = mix(userId);
+            for (int k = 0; k < FILTER_HASHES; k++) {
+                long bit = filterBit(hash, k, bits);
+                words[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 双重哈希：第 k 个位置为 h1 + k * h2
+     */
+    private static long filterBit(long hash, int k, long bits) {
+        return Math.floorMod((int) hash + k * (hash >>> 32), bits);
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * 一个行组的只读视图（底层通常是内存映射的段文件）
+     * 状态每次从缓冲区读取，映射期间文件中的状态被改写后可以直接看到
+     */
+    public static class Block {
+
+        private final ByteBuffer buffer;
+
+        private final int offset;
+
+        private final int rows;
+
+        private final long minTime;
+
+        private final long maxTime;
+
+        private final int[] lengths;
+
+        private final int filterBytes;
+
+        private final int totalBytes;
+
+        private Block(ByteBuffer buffer, int offset, int rows, long minTime, long maxTime,
+                      int[] lengths, int filterBytes, int totalBytes) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.rows = rows;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.lengths = lengths;
+            this.filterBytes = filterBytes;
+            this.totalBytes = totalBytes;
+        }
+
+        /**
+         * 行组中可能有该用户的记录；返回 false 时一定没有
+         */
+        public boolean mightContainUser(long userId) {
+            int filterOffset = totalBytes - filterBytes;
+            long bits = filterBytes * 8L;
+            long hash = mix(userId);
+            for (int k = 0; k < FILTER_HASHES; k++) {
+                long bit = filterBit(hash, k, bits);
+                if ((buffer.getLong(offset + filterOffset + (int) (bit >>> 6) * 8) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 解码一列，返回按 (播放时间, 记录ID) 排序的值（ID列、时间列已还原为原始值）
+         */
+        public long[] decode(int column) {
+            int position = offset + HEADER_BYTES;
+            for (int c = 0; c < column; c++) {
+                position += lengths[c];
+            }
+            long[] values = new long[rows];
+            long previous = column == COLUMN_TIMES ? minTime : 0;
+            for (int i = 0; i < rows; i++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(position++);
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if (column == COLUMN_IDS) {
+                    previous += unzigzag(value);
+                    values[i] = previous;
+                } else if (column == COLUMN_TIMES) {
+                    previous += value;
+                    values[i] = previous;
+                } else {
+                    values[i] = value;
+                }
+            }
+            return values;
+        }
+
+        public boolean isCommitted() {
+            return getStatus() == COMMITTED;
+        }
+
+        public byte getStatus() {
+            return buffer.get(offset);
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getMinTime() {
+            return minTime;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        public int getTotalBytes() {
+            return totalBytes;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.sheepmusic.utils;
+
+import java.util.*;
+
+/**
+ * 滑动时间窗口内的热门条目排行（Top-K）
+ *
+ * 窗口按固定时长切成环形时间桶，每个桶是一个容量为 capacity 的 Space-Saving 计数器：
+ * 桶满时新条目替换桶内计数最小的一项并继承其计数，频繁出现的条目不会被偶发条目挤掉，单桶内存严格有界。
+ * 同时维护窗口内各条目的计数之和及一棵按 (计数降序, ID升序) 排序的 TreeSet，每次计数变化代价 O(log n)，
+ * 查询前 K 名只需从树头遍历 K 个，代价 O(K)。
+ *
+ * 时间前进到新桶时，先从总计数中减去即将被复用的最旧桶，窗口实际覆盖 [窗口长度 - 桶长度, 窗口长度] 的时间。
+ *
+ * 所有方法在同一把锁内执行。
+ */
+public class SlidingWindowTopK {
+
+    private static final Comparator<Counter> BY_COUNT_DESC = (a, b) -> {
+        if (a.count != b.count) {
+            return Long.compare(b.count, a.count);
+        }
+        return Long.compare(a.id, b.id);
+    };
+
+    private static final Comparator<Counter> BY_COUNT_ASC = (a, b) -> {
+        if (a.count != b.count) {
+            return Long.compare(a.count, b.count);
+        }
+        return Long.compare(a.id, b.id);
+    };
+
+    private final long bucketMillis;
+
+    private final int capacity;
+
+    private final Bucket[] ring;
+
+    /**
+     * 最新的桶序号（时间戳 / 桶长度），-1 表示尚未写入
+     */
+    private long head = -1;
+
+    private final Map<Long, Counter> totals = new HashMap<>();
+
+    private final TreeSet<Counter> ranking = new TreeSet<>(BY_COUNT_DESC);
+
+    /**
+     * @param windowMillis 窗口长度（毫秒）
+     * @param bucketMillis 桶长度（毫秒）
+     * @param capacity 每个桶最多跟踪的条目数
+     */
+    public SlidingWindowTopK(long windowMillis, long bucketMillis, int capacity) {
+        this.bucketMillis = bucketMillis;
+        this.capacity = capacity;
+        int buckets = (int) ((windowMillis + bucketMillis - 1) / bucketMillis);
+        this.ring = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            ring[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 在 time 时刻给条目累加 delta；早于窗口的写入被忽略，晚于当前最新桶时窗口向前滑动
+     */
+    public synchronized void add(long id, long time, long delta) {
+        long index = Math.floorDiv(time, bucketMillis);
+        advance(index);
+        if (index <= head - ring.length) {
+            return;
+        }
+        ring[(int) Math.floorMod(index, (long) ring.length)].add(id, delta);
+    }
+
+    /**
+     * 窗口内计数最高的条目ID（按计数降序），limit 小于等于 0 时返回空数组
+     */
+    public synchronized long[] top(int limit, long now) {
+        advance(Math.floorDiv(now, bucketMillis));
+        long[] ids = new long[Math.max(0, Math.min(limit, ranking.size()))];
+        Iterator<Counter> it = ranking.iterator();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = it.next().id;
+        }
+        return ids;
+    }
+
+    /**
+     * 窗口内的计数（近似值，可能因 Space-Saving 替换而偏高），未跟踪时返回 0
+     */
+    public synchronized long count(long id, long now) {
+        advance(Math.floorDiv(now, bucketMillis));
+        Counter counter = totals.get(id);
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * 移除条目（如歌曲被删除）
+     */
+    public synchronized void remove(long id) {
+        for (Bucket bucket : ring) {
+            bucket.remove(id);
+        }
+        Counter counter = totals.remove(id);
+        if (counter != null) {
+            ranking.remove(counter);
+        }
+    }
+
+    /**
+     * 窗口内被跟踪的条目数
+     */
+    public synchronized int size() {
+        return totals.size();
+    }
+
+    private void advance(long index) {
+        if (head < 0 || index - head >= ring.length) {
+            // 首次写入或跳过了整个窗口，直接清空
+            for (Bucket bucket : ring) {
+                bucket.clear();
+            }
+            totals.clear();
+            ranking.clear();
+            head = Math.max(head, index);
+            return;
+        }
+        while (head < index) {
+            head++;
+            Bucket expired = ring[(int) Math.floorMod(head, (long) ring.length)];
+            for (Counter counter : expired.counters.values()) {
+                adjust(counter.id, -counter.count);
+            }
+            expired.clear();
+        }
+    }
+
+    private void adjust(long id, long delta) {
+        Counter total = totals.get(id);
+        if (total == null) {
+            if (delta <= 0) {
+                return;
+            }
+            total = new Counter(id, 0);
+            totals.put(id, total);
+        } else {
+            ranking.remove(total);
+        }
+        total.count += delta;
+        if (total.count <= 0) {
+            totals.remove(id);
+        } else {
+            ranking.add(total);
+        }
+    }
+
+    private static class Counter {
+
+        private final long id;
+
+        private long count;
+
+        private Counter(long id, long count) {
+            this.id = id;
+            this.count = count;
+        }
+    }
+
+    /**
+     * 单个时间桶的 Space-Saving 计数器
+     */
+    private class Bucket {
+
+        private final Map<Long, Counter> counters = new HashMap<>();
+
+        private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT_ASC);
+
+        private void add(long id, long delta) {
+            Counter counter = counters.get(id);
+            if (counter != null) {
+                byCount.remove(counter);
+                counter.count += delta;
+                byCount.add(counter);
+                adjust(id, delta);
+                return;
+            }
+            long inherited = 0;
+            if (counters.size() >= capacity) {
+                // 替换计数最小的一项，新条目继承其计数
+                Counter min = byCount.pollFirst();
+                counters.remove(min.id);
+                inherited = min.count;
+                adjust(min.id, -inherited);
+            }
+            counter = new Counter(id, inherited + delta);
+            counters.put(id, counter);
+            byCount.add(counter);
+            adjust(id, counter.count);
+        }
+
+        private void remove(long id) {
+            Counter counter = counters.remove(id);
+            if (counter != null) {
+                byCount.remove(counter);
+            }
+        }
+
+        private void clear() {
+            counters.clear();
+            byCount.clear();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.sheepmusic.utils;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * 搜索框联想前缀树（只读，预计算每个节点的前 N 个补全）
+ *
+ * 所有节点按层序编号存放在基本类型数组中：labels[n] 为进入节点 n 的字符，
+ * 节点 n 的子节点为 firstChild[n] .. firstChild[n + 1] - 1，兄弟节点按字符有序，查找子节点用二分。
+ * 每个节点预先算好权重最高的 N 个条目，查询只需沿前缀走到对应节点、直接返回，与条目总数无关。
+ * 只有一个子节点、自身又不是任何键结尾的节点（长键的单链部分），与子节点共用同一段补全列表。
+ *
+ * 数据变化时用 Builder 整体重建后替换，不支持增量修改。
+ */
+public final class SuggestTrie {
+
+    private final char[] labels;
+
+    private final int[] firstChild;
+
+    /**
+     * 节点 n 的补全为 tops[topOffset[n] .. topOffset[n] + topCount[n])，按权重从高到低
+     */
+    private final int[] topOffset;
+
+    private final byte[] topCount;
+
+    private final int[] tops;
+
+    private final String[] texts;
+
+    private final String[] types;
+
+    private final Long[] ids;
+
+    private SuggestTrie(char[] labels, int[] firstChild, int[] topOffset, byte[] topCount, int[] tops,
+                        String[] texts, String[] types, Long[] ids) {
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.topOffset = topOffset;
+        this.topCount = topCount;
+        this.tops = tops;
+        this.texts = texts;
+        this.types = types;
+        this.ids = ids;
+    }
+
+    /**
+     * 前缀补全，返回条目下标（按权重从高到低，最多 min(limit, N) 个）
+     */
+    public int[] complete(String prefix, int limit) {
+        String key = normalizeQuery(prefix);
+        if (key.isEmpty()) {
+            return new int[0];
+        }
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            int child = Arrays.binarySearch(labels, firstChild[node], firstChild[node + 1], key.charAt(i));
+            if (child < 0) {
+                return new int[0];
+            }
+            node = child;
+        }
+        int count = Math.min(limit, topCount[node]);
+        return Arrays.copyOfRange(tops, topOffset[node], topOffset[node] + Math.max(0, count));
+    }
+
+    public String getText(int entry) {
+        return texts[entry];
+    }
+
+    public String getType(int entry) {
+        return types[entry];
+    }
+
+    public Long getId(int entry) {
+        return ids[entry];
+    }
+
+    public int getEntryCount() {
+        return texts.length;
+    }
+
+    public int getNodeCount() {
+        return labels.length;
+    }
+
+    /**
+     * 补全列表实际占用的槽位数（共用的列表只计一次）
+     */
+    public int getTopSlots() {
+        return tops.length;
+    }
+
+    /**
+     * 键的归一化：全角转半角、转小写、连续空白合并为一个空格并去掉首尾空白
+     */
+    public static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 查询的归一化：与键相同，但保留末尾的一个空格（"jay " 只补全以 "jay " 开头的键）
+     */
+    private static String normalizeQuery(String text) {
+        String key = normalize(text);
+        boolean trailingSpace = !text.isEmpty() && Character.isWhitespace(text.charAt(text.length() - 1));
+        return trailingSpace && !key.isEmpty() ? key + " " : key;
+    }
+
+    /**
+     * 构建器：添加条目（显示文本、类型、ID、权重及其可匹配的键），build 时生成只读前缀树
+     */
+    public static class Builder {
+
+        private final int topN;
+
+        /**
+         * 条目的去重键：有 ID 的条目为 (类型, ID)，没有 ID 的（搜索词）为 (类型, 显示文本)
+         */
+        private final Map<String, Integer> entryByIdentity = new HashMap<>();
+
+        /**
+         * 有 ID 的条目（歌曲、歌手）归一化后的显示文本
+         */
+        private final Set<String> identifiedTexts = new HashSet<>();
+
+        private final List<String> texts = new ArrayList<>();
+
+        private final List<String> types = new ArrayList<>();
+
+        private final List<Long> ids = new ArrayList<>();
+
+        private final List<Double> weights = new ArrayList<>();
+
+        private final List<String> keys = new ArrayList<>();
+
+        private final List<Integer> keyEntries = new ArrayList<>();
+
+        /**
+         * @param topN 每个节点预计算的补全数（不超过 127）
+         */
+        public Builder(int topN) {
+            this.topN = Math.min(topN, Byte.MAX_VALUE);
+        }
+
+        /**
+         * 添加一个条目；类型和 ID 相同（没有 ID 时为类型和显示文本相同）的条目只保留一个，权重取较大者，
+         * 键为 null 或空的忽略。同名的不同歌曲、同名的歌曲和歌手各自保留；
+         * 没有 ID 的条目（搜索词）与某个有 ID 的条目显示文本相同时，build 时丢弃该搜索词，避免重复的联想项
+         *
+         * @param keys 可匹配的键（如原文、拼音首字母），会做与查询相同的归一化
+         */
+        public Builder add(String text, String type, Long id, double weight, String... keys) {
+            if (text == null || text.trim().isEmpty()) {
+                return this;
+            }
+            String identity = type + '\0' + (id != null ? id.toString() : text);
+            Integer entry = entryByIdentity.get(identity);
+            if (entry == null) {
+                entry = texts.size();
+                entryByIdentity.put(identity, entry);
+                texts.add(text);
+                types.add(type);
+                ids.add(id);
+                weights.add(weight);
+                if (id != null) {
+                    identifiedTexts.add(normalize(text));
+                }
+            } else if (weight > weights.get(entry)) {
+                weights.set(entry, weight);
+            }
+            for (String key : keys) {
+                if (key != null) {
+                    String normalized = normalize(key);
+                    if (!normalized.isEmpty()) {
+                        this.keys.add(normalized);
+                        keyEntries.add(entry);
+                    }
+                }
+            }
+            return this;
+        }
+
+        public SuggestTrie build() {
+            // 丢弃与歌曲、歌手同名的搜索词，其余条目重新编号
+            int[] renumbered = new int[texts.size()];
+            List<String> entryTexts = new ArrayList<>();
+            List<String> entryTypes = new ArrayList<>();
+            List<Long> entryIds = new ArrayList<>();
+            List<Double> entryWeights = new ArrayList<>();
+            for (int entry = 0; entry < texts.size(); entry++) {
+                if (ids.get(entry) == null && identifiedTexts.contains(normalize(texts.get(entry)))) {
+                    renumbered[entry] = -1;
+                    continue;
+                }
+                renumbered[entry] = entryTexts.size();
+                entryTexts.add(texts.get(entry));
+                entryTypes.add(types.get(entry));
+                entryIds.add(ids.get(entry));
+                entryWeights.add(weights.get(entry));
+            }
+            List<Integer> kept = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                if (renumbered[keyEntries.get(i)] >= 0) {
+                    kept.add(i);
+                }
+            }
+
+            // 键排序后，同一前缀的键连续；逐层按下一个字符分组，得到层序编号且兄弟有序
+            Integer[] order = kept.toArray(new Integer[0]);
+            Arrays.sort(order, Comparator.<Integer, String>comparing(keys::get)
+                .thenComparing(i -> renumbered[keyEntries.get(i)]));
+            String[] sortedKeys = new String[order.length];
+            int[] sortedEntries = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedKeys[i] = keys.get(order[i]);
+                sortedEntries[i] = renumbered[keyEntries.get(order[i])];
+            }
+
+            IntList rangeStart = new IntList();
+            IntList rangeEnd = new IntList();
+            IntList terminalEnd = new IntList();
+            IntList depth = new IntList();
+            IntList children = new IntList();
+            StringBuilder labels = new StringBuilder();
+            rangeStart.add(0);
+            rangeEnd.add(sortedKeys.length);
+            depth.add(0);
+            labels.append('\0');
+            for (int node = 0; node < rangeStart.size(); node++) {
+                int start = rangeStart.get(node);
+                int end = rangeEnd.get(node);
+                int d = depth.get(node);
+                int i = start;
+                // 在此结尾的键排在最前面
+                while (i < end && sortedKeys[i].length() == d) {
+                    i++;
+                }
+                terminalEnd.add(i);
+                children.add(rangeStart.size());
+                while (i < end) {
+                    char c = sortedKeys[i].charAt(d);
+                    int groupStart = i;
+                    while (i < end && sortedKeys[i].charAt(d) == c) {
+                        i++;
+                    }
+                    rangeStart.add(groupStart);
+                    rangeEnd.add(i);
+                    depth.add(d + 1);
+                    labels.append(c);
+                }
+            }
+            int nodes = rangeStart.size();
+            children.add(nodes);
+
+            // 自底向上合并子节点的补全列表
+            double[] weightOf = entryWeights.stream().mapToDouble(Double::doubleValue).toArray();
+            Comparator<Integer> byWeight = Comparator.<Integer>comparingDouble(e -> -weightOf[e])
+                .thenComparingInt(e -> e);
+            int[] topOffset = new int[nodes];
+            byte[] topCount = new byte[nodes];
+            IntList tops = new IntList();
+            for (int node = nodes - 1; node >= 0; node--) {
+                int first = children.get(node);
+                int last = children.get(node + 1);
+                int terminalStart = rangeStart.get(node);
+                int terminals = terminalEnd.get(node) - terminalStart;
+                if (terminals == 0 && last - first == 1) {
+                    topOffset[node] = topOffset[first];
+                    topCount[node] = topCount[first];
+                    continue;
+                }
+                TreeSet<Integer> candidates = new TreeSet<>(byWeight);
+                for (int i = terminalStart; i < terminalStart + terminals; i++) {
+                    candidates.add(sortedEntries[i]);
+                }
+                for (int child = first; child < last; child++) {
+                    for (int i = 0; i < topCount[child]; i++) {
+                        candidates.add(tops.get(topOffset[child] + i));
+                    }
+                }
+                topOffset[node] = tops.size();
+                for (Integer entry : candidates) {
+                    if (topCount[node] == topN) {
+                        break;
+                    }
+                    tops.add(entry);
+                    topCount[node]++;
+                }
+            }
+
+            return new SuggestTrie(labels.toString().toCharArray(), children.toArray(), topOffset, topCount,
+                tops.toArray(), entryTexts.toArray(new String[0]), entryTypes.toArray(new String[0]),
+                entryIds.toArray(new Long[0]));
+        }
+    }
+
+    /**
+     * 构建时使用的 int 动态数组
+     */
+    private static class IntList {
+
+        private int[] values = new int[16];
+
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int get(int index) {
+            return values[index];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.example.sheepmusic.utils;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存全文倒排索引（BM25 排序，中日韩文字按单字和二元组切分）
+ *
+ * 每个文档有若干字段，词频按字段权重累加（BM25F 的简化形式）。中日韩连续文字切成单字和相邻二元组，
+ * 其他字母数字按单词切分并转为小写。查询时各词之间为"与"关系：两字以上的中文只用二元组匹配，
+ * 效果接近子串匹配；查询末尾尚未输入完的英文单词按前缀展开为全部匹配的词，适合边输入边搜索。
+ * 最终得分为 BM25 得分 × (1 + popularityWeight × ln(1 + 热度))。
+ *
+ * 倒排表按文档ID有序存放在基本类型数组中，读写锁保护：增删改文档持写锁，查询持读锁，热度累加不加锁。
+ */
+public class TextSearchIndex {
+
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    private final float[] fieldWeights;
+
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+
+    private final Map<Long, Doc> docs = new HashMap<>();
+
+    private double totalLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param fieldWeights 各字段的权重，put 时字段按同样的顺序传入
+     */
+    public TextSearchIndex(float[] fieldWeights) {
+        this.fieldWeights = fieldWeights.clone();
+    }
+
+    /**
+     * 新增或替换一个文档
+     *
+     * @param fields 字段文本，顺序与构造时的权重一致，可为 null
+     * @param popularity 热度（如播放量）
+     */
+    public void put(long id, String[] fields, long popularity) {
+        Map<String, Float> frequencies = new HashMap<>();
+        float length = 0;
+        for (int f = 0; f < fields.length && f < fieldWeights.length; f++) {
+            if (fields[f] == null) {
+                continue;
+            }
+            for (String token : tokenize(fields[f])) {
+                frequencies.merge(token, fieldWeights[f], Float::sum);
+                length += fieldWeights[f];
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (frequencies.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String, Float> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new Posting()).put(id, entry.getValue());
+            }
+            docs.put(id, new Doc(frequencies.keySet().toArray(new String[0]), length, popularity));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 累加热度（不在索引中的文档忽略）
+     */
+    public void addPopularity(long id, long delta) {
+        lock.readLock().lock();
+        try {
+            Doc doc = docs.get(id);
+            if (doc != null) {
+                doc.popularity.addAndGet(delta);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询，按得分从高到低返回 [offset, offset + limit) 范围内的文档ID
+     *
+     * @param offset           起始位置，负数按 0 处理
+     * @param limit            数量，负数按 0 处理（只返回总数）
+     * @param popularityWeight 热度加权系数，0 表示只按相关度排序
+     */
+    public Hits search(String query, int offset, int limit, double popularityWeight) {
+        offset = Math.max(0, offset);
+        limit = Math.max(0, limit);
+        List<String> runs = runs(query);
+        if (runs.isEmpty()) {
+            return new Hits(0, new long[0]);
+        }
+        // 末尾是英文单词且后面没有空格、标点时，按前缀匹配
+        String normalized = normalize(query);
+        String lastRun = runs.get(runs.size() - 1);
+        boolean prefix = !isCjk(lastRun.codePointAt(0)) && normalized.endsWith(lastRun);
+
+        lock.readLock().lock();
+        try {
+            int documents = docs.size();
+            if (documents == 0) {
+                return new Hits(0, new long[0]);
+            }
+            double averageLength = totalLength / documents;
+
+            // 每个词一个子句，前缀展开出的全部词合并为一个"或"子句，子句之间为"与"
+            Set<String> seen = new HashSet<>();
+            List<Clause> clauses = new ArrayList<>();
+            for (int r = 0; r < runs.size(); r++) {
+                String run = runs.get(r);
+                if (prefix && r == runs.size() - 1) {
+                    Clause clause = expand(run, averageLength, documents);
+                    if (clause.size == 0) {
+                        return new Hits(0, new long[0]);
+                    }
+                    clauses.add(clause);
+                    continue;
+                }
+                for (String token : queryTokens(run)) {
+                    if (!seen.add(token)) {
+                        continue;
+                    }
+                    Posting posting = postings.get(token);
+                    if (posting == null) {
+                        return new Hits(0, new long[0]);
+                    }
+                    clauses.add(new Clause(posting));
+                }
+            }
+            clauses.sort(Comparator.comparingInt(clause -> clause.size));
+
+            // 以文档最少的子句为候选，逐个检查其他子句
+            long[] candidates = Arrays.copyOf(clauses.get(0).ids, clauses.get(0).size);
+            int k = (int) Math.min((long) offset + limit, candidates.length);
+            PriorityQueue<double[]> top = new PriorityQueue<>(Math.max(1, k),
+                Comparator.<double[]>comparingDouble(hit -> hit[0]).thenComparingDouble(hit -> -hit[1]));
+            int total = 0;
+            for (long id : candidates) {
+                Doc doc = docs.get(id);
+                double score = 0;
+                boolean matched = true;
+                for (Clause clause : clauses) {
+                    double clauseScore = clause.score(id, doc.length, averageLength, documents);
+                    if (clauseScore < 0) {
+                        matched = false;
+                        break;
+                    }
+                    score += clauseScore;
+                }
+                if (!matched) {
+                    continue;
+                }
+                total++;
+                score *= 1 + popularityWeight * Math.log1p(Math.max(0, doc.popularity.get()));
+                if (k > 0) {
+                    top.offer(new double[]{score, id});
+                    if (top.size() > k) {
+                        top.poll();
+                    }
+                }
+            }
+
+            // 堆中按得分从低到高弹出，跳过排在 offset 之前的
+            long[] ids = new long[Math.max(0, top.size() - offset)];
+            for (int rank = top.size() - 1; rank >= 0; rank--) {
+                double[] hit = top.poll();
+                if (rank >= offset) {
+                    ids[rank - offset] = (long) hit[1];
+                }
+            }
+            return new Hits(total, ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("documents", docs.size());
+            stats.put("terms", postings.size());
+            stats.put("postings", postings.values().stream().mapToLong(p -> p.size).sum());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引时的切分：中日韩文字输出单字和二元组，其他按单词输出
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String run : runs(text)) {
+            if (!isCjk(run.codePointAt(0))) {
+                tokens.add(run);
+                continue;
+            }
+            int[] codePoints = run.codePoints().toArray();
+            for (int i = 0; i < codePoints.length; i++) {
+                tokens.add(new String(codePoints, i, 1));
+                if (i + 1 < codePoints.length) {
+                    tokens.add(new String(codePoints, i, 2));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 查询时的切分：单个汉字用单字，两字以上只用二元组
+     */
+    private static List<String> queryTokens(String run) {
+        int[] codePoints = run.codePoints().toArray();
+        if (!isCjk(codePoints[0]) || codePoints.length == 1) {
+            return Collections.singletonList(run);
+        }
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            tokens.add(new String(codePoints, i, 2));
+        }
+        return tokens;
+    }
+
+    /**
+     * 切成连续的中日韩文字段和其他字母数字段（已归一化、转小写）
+     */
+    private static List<String> runs(String text) {
+        List<String> runs = new ArrayList<>();
+        if (text == null) {
+            return runs;
+        }
+        String normalized = normalize(text);
+        StringBuilder current = new StringBuilder();
+        boolean currentCjk = false;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                flush(current, runs);
+                continue;
+            }
+            boolean cjk = isCjk(codePoint);
+            if (current.length() > 0 && cjk != currentCjk) {
+                flush(current, runs);
+            }
+            currentCjk = cjk;
+            current.appendCodePoint(codePoint);
+        }
+        flush(current, runs);
+        return runs;
+    }
+
+    private static void flush(StringBuilder current, List<String> runs) {
+        if (current.length() > 0) {
+            runs.add(current.toString());
+            current.setLength(0);
+        }
+    }
+
+    private static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 单个词在文档中的 BM25 得分
+     */
+    private static double score(Posting posting, int index, float length, double averageLength, int documents) {
+        double idf = Math.log(1 + (documents - posting.size + 0.5) / (posting.size + 0.5));
+        double tf = posting.frequencies[index];
+        return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+    }
+
+    /**
+     * 前缀展开：合并以 prefix 开头的全部词的倒排表，文档得分为其包含的各词得分之和。
+     * 一次遍历所有展开词的倒排表，不截断展开词数，匹配总数和排序都是完整的
+     */
+    private Clause expand(String prefix, double averageLength, int documents) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (Posting posting : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            for (int i = 0; i < posting.size; i++) {
+                long id = posting.ids[i];
+                double score = score(posting, i, docs.get(id).length, averageLength, documents);
+                scores.merge(id, score, Double::sum);
+            }
+        }
+        long[] ids = new long[scores.size()];
+        int n = 0;
+        for (Long id : scores.keySet()) {
+            ids[n++] = id;
+        }
+        Arrays.sort(ids);
+        double[] sorted = new double[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = scores.get(ids[i]);
+        }
+        return new Clause(ids, sorted);
+    }
+
+    private void removeLocked(long id) {
+        Doc doc = docs.remove(id);
+        if (doc == null) {
+            return;
+        }
+        for (String term : doc.terms) {
+            Posting posting = postings.get(term);
+            if (posting != null && posting.remove(id) && posting.size == 0) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= doc.length;
+    }
+
+    /**
+     * 查询结果：匹配总数和当前页的文档ID
+     */
+    public static class Hits {
+
+        private final long total;
+
+        private final long[] ids;
+
+        public Hits(long total, long[] ids) {
+            this.total = total;
+            this.ids = ids;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long[] getIds() {
+            return ids;
+        }
+    }
+
+    private static class Doc {
+
+        private final String[] terms;
+
+        private final float length;
+
+        private final AtomicLong popularity;
+
+        private Doc(String[] terms, float length, long popularity) {
+            this.terms = terms;
+            this.length = length;
+            this.popularity = new AtomicLong(popularity);
+        }
+    }
+
+    /**
+     * 查询子句：单个词的倒排表（查询时计算得分），或前缀展开后合并的文档及预先算好的得分
+     */
+    private static class Clause {
+
+        private final long[] ids;
+
+        private final int size;
+
+        private final Posting posting;
+
+        private final double[] scores;
+
+        private Clause(Posting posting) {
+            this.ids = posting.ids;
+            this.size = posting.size;
+            this.posting = posting;
+            this.scores = null;
+        }
+
+        private Clause(long[] ids, double[] scores) {
+            this.ids = ids;
+            this.size = ids.length;
+            this.posting = null;
+            this.scores = scores;
+        }
+
+        /**
+         * 文档在该子句上的得分，不匹配时返回 -1
+         */
+        private double score(long id, float length, double averageLength, int documents) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return -1;
+            }
+            if (posting == null) {
+                return scores[index];
+            }
+            return TextSearchIndex.score(posting, index, length, averageLength, documents);
+        }
+    }
+
+    /**
+     * 一个词的倒排表：按文档ID有序的 (文档ID, 加权词频)
+     */
+    private static class Posting {
+
+        private long[] ids = new long[2];
+
+        private float[] frequencies = new float[2];
+
+        private int size;
+
+        private int indexOf(long id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        private void put(long id, float frequency) {
+            int index = indexOf(id);
+            if (index >= 0) {
+                frequencies[index] = frequency;
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+            ids[index] = id;
+            frequencies[index] = frequency;
+            size++;
+        }
+
+        private boolean remove(long id) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.sheepmusic.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按键限流的令牌桶（GCRA 实现，无锁）
+ *
+ * 每个键只保存一个 AtomicLong："理论到达时间" tat。令牌以 permitsPerSecond 的速率补充、最多积攒 burst 个，
+ * 等价于：每次放行把 tat 推后一个发放间隔，tat 超前当前时间超过 (burst - 1) 个间隔时拒绝。
+ * 放行与拒绝都只是一次 CAS，没有后台补充线程；tat 不晚于当前时间的键等同于满桶，可由 evictIdle 清除。
+ *
+ * 清除与并发请求竞争时，被清除的那个桶上正在进行的 CAS 可能丢失（相当于多放行一次），对限流可以接受。
+ */
+public class TokenBucketLimiter {
+
+    private final double permitsPerSecond;
+
+    private final int burst;
+
+    /**
+     * 发放一个令牌的间隔（纳秒）
+     */
+    private final long intervalNanos;
+
+    /**
+     * 允许 tat 超前当前时间的最大值（纳秒），即可突发的令牌数减一
+     */
+    private final long toleranceNanos;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数，必须大于 0
+     * @param burst            桶容量（允许的最大突发请求数），至少为 1
+     */
+    public TokenBucketLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond 必须大于 0，burst 至少为 1");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    public boolean tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * 尝试为 key 取一个令牌
+     *
+     * @param nowNanos 当前时间（System.nanoTime 时间轴）
+     */
+    public boolean tryAcquire(String key, long nowNanos) {
+        AtomicLong tat = buckets.get(key);
+        if (tat == null) {
+            tat = buckets.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+        }
+        while (true) {
+            long current = tat.get();
+            // 已经补满的桶从当前时间起算
+            long base = current - nowNanos > 0 ? current : nowNanos;
+            if (base - nowNanos > toleranceNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    public int evictIdle() {
+        return evictIdle(System.nanoTime());
+    }
+
+    /**
+     * 清除已经补满的桶（其状态与不存在时相同）
+     *
+     * @return 清除的键数
+     */
+    public int evictIdle(long nowNanos) {
+        int before = buckets.size();
+        buckets.values().removeIf(tat -> tat.get() - nowNanos <= 0);
+        return before - buckets.size();
+    }
+
+    /**
+     * 当前跟踪的键数
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.sheepmusic.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 稀疏转移计数表（一阶马尔可夫链）
+ *
+ * 每个来源只保存计数最高的至多 capacity 个后继，数组按计数降序排列，查询前 N 个后继是 O(N)。
+ * 表满时新出现的后继替换计数最小的一项，并继承其计数 + 1（Space-Saving 计数），
+ * 保证频繁出现的后继不会被偶发的后继挤掉，同时内存严格有界。
+ *
+ * 每个来源的行不可变，更新时整行替换；读操作无锁。
+ */
+public class TransitionTable {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final int capacity;
+
+    private final Map<Long, Row> rows = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity 每个来源最多保存的后继数
+     */
+    public TransitionTable(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 记录一次 from -> to 的转移
+     */
+    public void increment(long from, long to) {
+        rows.compute(from, (k, row) -> Row.increment(row, to, capacity));
+    }
+
+    /**
+     * 计数最高的后继（按计数降序）
+     */
+    public long[] successors(long from, int limit) {
+        Row row = rows.get(from);
+        if (row == null) {
+            return EMPTY;
+        }
+        return Arrays.copyOf(row.targets, Math.min(limit, row.targets.length));
+    }
+
+    /**
+     * 转移计数，不存在时返回 0
+     */
+    public int count(long from, long to) {
+        Row row = rows.get(from);
+        if (row == null) {
+            return 0;
+        }
+        for (int i = 0; i < row.targets.length; i++) {
+            if (row.targets[i] == to) {
+                return row.counts[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 移除某个来源的所有转移（如歌曲被删除）
+     */
+    public void removeSource(long from) {
+        rows.remove(from);
+    }
+
+    public void clear() {
+        rows.clear();
+    }
+
+    /**
+     * 有转移记录的来源数量
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    private static class Row {
+
+        private final long[] targets;
+
+        private final int[] counts;
+
+        private Row(long[] targets, int[] counts) {
+            this.targets = targets;
+            this.counts = counts;
+        }
+
+        private static Row increment(Row row, long to, int capacity) {
+            if (row == null) {
+                return new Row(new long[]{to}, new int[]{1});
+            }
+            long[] targets;
+            int[] counts;
+            int index = -1;
+            for (int i = 0; i < row.targets.length; i++) {
+                if (row.targets[i] == to) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index >= 0) {
+                targets = row.targets.clone();
+                counts = row.counts.clone();
+                counts[index]++;
+            } else if (row.targets.length < capacity) {
+                targets = Arrays.copyOf(row.targets, row.targets.length + 1);
+                counts = Arrays.copyOf(row.counts, row.counts.length + 1);
+                index = targets.length - 1;
+                targets[index] = to;
+                counts[index] = 1;
+            } else {
+                // 替换计数最小的一项（数组末尾）
+                targets = row.targets.clone();
+                counts = row.counts.clone();
+                index = targets.length - 1;
+                targets[index] = to;
+                counts[index]++;
+            }
+            // 计数增加后向前冒泡，保持降序
+            while (index > 0 && counts[index - 1] < counts[index]) {
+                long target = targets[index];
+                targets[index] = targets[index - 1];
+                targets[index - 1] = target;
+                int count = counts[index];
+                counts[index] = counts[index - 1];
+                counts[index - 1] = count;
+                index--;
+            }
+            return new Row(targets, counts);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.sheepmusic.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * RateLimitInterceptor 客户端地址解析测试
+ * 经过可信代理时取 X-Forwarded-For 中最右侧的不可信地址，直连或不可信来源时忽略该请求头
+ */
+class RateLimitInterceptorTest {
+
+    private static final List<IpAddressMatcher> TRUSTED =
+        RateLimitInterceptor.parseTrustedProxies("127.0.0.0/8,::1,10.0.0.0/8,172.16.0.0/12,192.168.0.0/16");
+
+    @Test
+    void behindNginxUsesForwardedClient() {
+        // nginx 在 docker 网络中（172.18.0.5），把客户端地址追加到 X-Forwarded-For
+        assertEquals("203.0.113.7", RateLimitInterceptor.clientIp("172.18.0.5", "203.0.113.7", TRUSTED));
+        assertEquals("198.51.100.2", RateLimitInterceptor.clientIp("172.18.0.5", "198.51.100.2", TRUSTED));
+    }
+
+    @Test
+    void spoofedLeftEntriesAreIgnored() {
+        // 客户端自带的 X-Forwarded-For 在左侧，nginx 追加的真实地址在右侧
+        assertEquals("203.0.113.7",
+            RateLimitInterceptor.clientIp("172.18.0.5", "1.2.3.4, evil.example, 203.0.113.7", TRUSTED));
+        // 多层可信代理都被跳过
+        assertEquals("203.0.113.7",
+            RateLimitInterceptor.clientIp("127.0.0.1", "203.0.113.7, 10.0.0.2, 192.168.1.1", TRUSTED));
+    }
+
+    @Test
+    void untrustedPeerOrMissingHeaderUsesRemoteAddress() {
+        assertEquals("203.0.113.9", RateLimitInterceptor.clientIp("203.0.113.9", "1.2.3.4", TRUSTED));
+        assertEquals("172.18.0.5", RateLimitInterceptor.clientIp("172.18.0.5", null, TRUSTED));
+        // 请求头里全是可信地址时取最左侧的一个
+        assertEquals("10.0.0.3", RateLimitInterceptor.clientIp("172.18.0.5", "10.0.0.3, 10.0.0.4", TRUSTED));
+        assertEquals("::1", RateLimitInterceptor.clientIp("::1", " , ", TRUSTED));
+    }
+}
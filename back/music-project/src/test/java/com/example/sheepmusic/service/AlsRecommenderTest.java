@@ -0,0 +1,193 @@
+package com.example.sheepmusic.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AlsRecommender 测试
+ * 玩具矩阵：用户 1-10 听歌曲 100-105，用户 11-20 听歌曲 200-205，每个用户缺一首同组歌曲。
+ * 训练使加权损失下降；模型文件写入后能原样加载；推荐排除指定歌曲、按分数降序，缺的同组歌曲排在另一组前面
+ */
+class AlsRecommenderTest {
+
+    @Test
+    void trainingLowersLoss() {
+        InteractionIndex index = toyIndex();
+        AlsRecommender.TrainingData data = AlsRecommender.TrainingData.from(index, 10, 5);
+
+        double previous = Double.MAX_VALUE;
+        for (int iterations : new int[]{1, 2, 5, 10}) {
+            AlsRecommender.Model model = newRecommender(index, iterations, null).fit(data);
+            double loss = loss(data, model, 0.1);
+            assertTrue(loss <= previous * (1 + 1e-6), "iterations=" + iterations + " loss=" + loss);
+            previous = loss;
+        }
+        AlsRecommender.Model untrained = newRecommender(index, 0, null).fit(data);
+        assertTrue(previous < loss(data, untrained, 0.1) / 2);
+    }
+
+    @Test
+    void modelFileRoundTrips() throws Exception {
+        Path dir = Files.createTempDirectory("als-test");
+        String modelPath = dir.resolve("als-model.bin").toString();
+        try {
+            InteractionIndex index = toyIndex();
+            AlsRecommender trained = newRecommender(index, 5, modelPath);
+            trained.train();
+            assertTrue(Files.exists(dir.resolve("als-model.bin")));
+            assertFalse(Files.exists(dir.resolve("als-model.bin.tmp")));
+
+            // 加载方不持有任何交互数据，结果只可能来自模型文件
+            AlsRecommender loaded = newRecommender(new InteractionIndex(), 5, modelPath);
+            loaded.init();
+            AlsRecommender.Model expected = model(trained);
+            AlsRecommender.Model actual = model(loaded);
+            assertEquals(expected.factors, actual.factors);
+            assertEquals(expected.trainedAt, actual.trainedAt);
+            assertArrayEquals(expected.userIds, actual.userIds);
+            assertArrayEquals(expected.songIds, actual.songIds);
+            assertTrue(Arrays.equals(expected.userFactors, actual.userFactors));
+            assertTrue(Arrays.equals(expected.songFactors, actual.songFactors));
+            assertEquals(trained.recommend(1L, new long[0], 5), loaded.recommend(1L, new long[0], 5));
+        } finally {
+            Files.deleteIfExists(dir.resolve("als-model.bin"));
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    void recommendExcludesAndOrdersByScore() {
+        InteractionIndex index = toyIndex();
+        AlsRecommender recommender = newRecommender(index, 10, null);
+        ReflectionTestUtils.setField(recommender, "model",
+            recommender.fit(AlsRecommender.TrainingData.from(index, 10, 5)));
+        AlsRecommender.Model model = model(recommender);
+
+        // 用户 1 缺的是歌曲 101，排除它听过的其余同组歌曲后应排在第一
+        long[] exclude = {100, 102, 103, 104, 105};
+        List<Long> result = recommender.recommend(1L, exclude, 4);
+        assertEquals(4, result.size());
+        assertEquals(101L, result.get(0));
+        for (long songId : exclude) {
+            assertFalse(result.contains(songId));
+        }
+
+        float[] scores = new float[result.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = score(model, 1L, result.get(i));
+            if (i > 0) {
+                assertTrue(scores[i - 1] >= scores[i]);
+            }
+        }
+        // 结果与全量打分排序后的前 4 首一致
+        List<Long> expected = new ArrayList<>();
+        for (long songId : model.songIds) {
+            if (Arrays.binarySearch(exclude, songId) < 0) {
+                expected.add(songId);
+            }
+        }
+        expected.sort((a, b) -> Float.compare(score(model, 1L, b), score(model, 1L, a)));
+        assertEquals(expected.subList(0, 4), result);
+
+        assertTrue(recommender.recommend(999L, new long[0], 4).isEmpty());
+        assertTrue(recommender.recommend(1L, new long[0], 0).isEmpty());
+    }
+
+    @Test
+    void choleskySolvesSymmetricSystem() {
+        // A = [[4, 2], [2, 3]]，b = [2, 1] 的解为 [0.5, 0]
+        double[] a = {4, 2, 2, 3};
+        double[] b = {2, 1};
+        AlsRecommender.choleskySolve(a, b, 2);
+        assertEquals(0.5, b[0], 1e-9);
+        assertEquals(0.0, b[1], 1e-9);
+    }
+
+    private static InteractionIndex toyIndex() {
+        List<long[]> rows = new ArrayList<>();
+        for (long user = 1; user <= 20; user++) {
+            long base = user <= 10 ? 100 : 200;
+            long missing = base + (user - 1) % 6;
+            for (long song = base; song < base + 6; song++) {
+                if (song != missing) {
+                    rows.add(new long[]{user, song, 1 + (user + song) % 4});
+                }
+            }
+        }
+        long[] userIds = new long[rows.size()];
+        long[] songIds = new long[rows.size()];
+        int[] weights = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            userIds[i] = rows.get(i)[0];
+            songIds[i] = rows.get(i)[1];
+            weights[i] = (int) rows.get(i)[2] << 1;
+        }
+        InteractionIndex index = new InteractionIndex();
+        index.load(userIds, songIds, weights, rows.size());
+        return index;
+    }
+
+    private static AlsRecommender newRecommender(InteractionIndex index, int iterations, String modelPath) {
+        AlsRecommender recommender = new AlsRecommender();
+        ReflectionTestUtils.setField(recommender, "interactionIndex", index);
+        ReflectionTestUtils.setField(recommender, "factors", 4);
+        ReflectionTestUtils.setField(recommender, "iterations", iterations);
+        ReflectionTestUtils.setField(recommender, "lambda", 0.1);
+        ReflectionTestUtils.setField(recommender, "alpha", 10.0);
+        ReflectionTestUtils.setField(recommender, "favoriteWeight", 5);
+        ReflectionTestUtils.setField(recommender, "parallelism", 2);
+        ReflectionTestUtils.setField(recommender, "modelPath", modelPath);
+        return recommender;
+    }
+
+    private static AlsRecommender.Model model(AlsRecommender recommender) {
+        return (AlsRecommender.Model) ReflectionTestUtils.getField(recommender, "model");
+    }
+
+    /**
+     * 加权损失：Σ c·(p - x·y)² + λ(‖X‖² + ‖Y‖²)，未交互的格子 p = 0、c = 1
+     */
+    private static double loss(AlsRecommender.TrainingData data, AlsRecommender.Model model, double lambda) {
+        int k = model.factors;
+        double loss = 0;
+        for (int user = 0; user < data.userIds.length; user++) {
+            Map<Integer, Float> observed = new HashMap<>();
+            for (int p = data.userPtr[user]; p < data.userPtr[user + 1]; p++) {
+                observed.put(data.userItems[p], data.userConf[p]);
+            }
+            for (int song = 0; song < data.songIds.length; song++) {
+                double prediction = 0;
+                for (int a = 0; a < k; a++) {
+                    prediction += model.userFactors[user * k + a] * model.songFactors[song * k + a];
+                }
+                Float confidence = observed.get(song);
+                double error = (confidence == null ? 0 : 1) - prediction;
+                loss += (confidence == null ? 1 : confidence) * error * error;
+            }
+        }
+        for (float value : model.userFactors) {
+            loss += lambda * value * value;
+        }
+        for (float value : model.songFactors) {
+            loss += lambda * value * value;
+        }
+        return loss;
+    }
+
+    private static float score(AlsRecommender.Model model, long userId, long songId) {
+        int k = model.factors;
+        int user = Arrays.binarySearch(model.userIds, userId);
+        int song = Arrays.binarySearch(model.songIds, songId);
+        float sum = 0f;
+        for (int a = 0; a < k; a++) {
+            sum += model.userFactors[user * k + a] * model.songFactors[song * k + a];
+        }
+        return sum;
+    }
+}
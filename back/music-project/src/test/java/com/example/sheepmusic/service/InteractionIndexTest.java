@@ -0,0 +1,133 @@
+package com.example.sheepmusic.service;
+
+import com.example.sheepmusic.repository.FavoriteRepository;
+import com.example.sheepmusic.repository.PlayHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InteractionIndex 批量装载测试
+ * load 的分组结果与逐条合并到 Map 的参考实现一致：同一 (用户, 歌曲) 多次出现时收藏位取或、播放次数相加；
+ * reload 查询数据库期间提交的增量更新在替换后仍然存在
+ */
+class InteractionIndexTest {
+
+    @Test
+    void loadMatchesPerPairMerge() {
+        Random random = new Random(4);
+        int size = 50_000;
+        long[] userIds = new long[size];
+        long[] songIds = new long[size];
+        int[] weights = new int[size];
+        Map<Long, Map<Long, int[]>> byUser = new HashMap<>();
+        Map<Long, Map<Long, int[]>> bySong = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            // ID 范围小，保证大量重复的 (用户, 歌曲) 对
+            userIds[i] = 1 + random.nextInt(500);
+            songIds[i] = 1 + random.nextInt(300);
+            boolean favorite = random.nextBoolean();
+            int plays = favorite ? 0 : 1 + random.nextInt(3);
+            weights[i] = favorite ? 1 : plays << 1;
+            merge(byUser, userIds[i], songIds[i], favorite, plays);
+            merge(bySong, songIds[i], userIds[i], favorite, plays);
+        }
+
+        InteractionIndex index = new InteractionIndex();
+        index.load(userIds, songIds, weights, size);
+
+        assertEquals(byUser.keySet(), index.getUserIds());
+        assertEquals(bySong.keySet(), index.getSongIds());
+        for (Map.Entry<Long, Map<Long, int[]>> user : byUser.entrySet()) {
+            Long userId = user.getKey();
+            assertArrayEquals(expected(user.getValue(), Integer.MAX_VALUE), index.getFavoriteSongs(userId));
+            assertArrayEquals(expected(user.getValue(), InteractionIndex.USER_LIKE_PLAY_THRESHOLD),
+                index.getLikedSongs(userId));
+            for (Map.Entry<Long, int[]> song : user.getValue().entrySet()) {
+                assertEquals(song.getValue()[1], index.getPlayCount(userId, song.getKey()));
+            }
+        }
+        for (Map.Entry<Long, Map<Long, int[]>> song : bySong.entrySet()) {
+            assertArrayEquals(expected(song.getValue(), InteractionIndex.SONG_LIKER_PLAY_THRESHOLD),
+                index.getLikingUsers(song.getKey()));
+        }
+    }
+
+    @Test
+    void loadIgnoresTrailingSlots() {
+        InteractionIndex index = new InteractionIndex();
+        index.load(new long[]{1, 1, 9}, new long[]{10, 10, 90}, new int[]{1, 4, 1}, 2);
+
+        assertEquals(Collections.singleton(1L), index.getUserIds());
+        assertArrayEquals(new long[]{10}, index.getFavoriteSongs(1L));
+        assertEquals(2, index.getPlayCount(1L, 10L));
+        assertEquals(0, index.getFavoriteSongs(9L).length);
+    }
+
+    @Test
+    void reloadKeepsDeltasAppliedDuringQuery() {
+        InteractionIndex index = new InteractionIndex();
+        index.load(new long[]{1, 3}, new long[]{10, 30}, new int[]{1, 2 << 1}, 2);
+
+        // 查询收藏之后、查询播放次数之前，有新的播放和取消收藏提交（查询结果中都不包含）
+        FavoriteRepository favorites = repository(FavoriteRepository.class, "findAllUserSongPairs", () -> {
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{1L, 10L});
+            rows.add(new Object[]{2L, 20L});
+            return rows;
+        });
+        PlayHistoryRepository plays = repository(PlayHistoryRepository.class, "countPlaysGroupByUserAndSong", () -> {
+            index.addPlay(4L, 40L);
+            index.removeFavorite(2L, 20L);
+            return Collections.singletonList(new Object[]{1L, 10L, 3L});
+        });
+        ReflectionTestUtils.setField(index, "favoriteRepository", favorites);
+        ReflectionTestUtils.setField(index, "playHistoryRepository", plays);
+
+        index.reload();
+
+        assertEquals(3, index.getPlayCount(1L, 10L));
+        assertArrayEquals(new long[]{10}, index.getFavoriteSongs(1L));
+        assertEquals(1, index.getPlayCount(4L, 40L));
+        assertEquals(0, index.getFavoriteSongs(2L).length);
+        // 旧数据中有、数据库中已没有的交互被替换掉
+        assertEquals(0, index.getPlayCount(3L, 30L));
+
+        // 重载结束后增量更新不再缓冲
+        index.addPlay(4L, 40L);
+        assertEquals(2, index.getPlayCount(4L, 40L));
+        assertArrayEquals(new long[]{4}, index.getLikingUsers(40L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T repository(Class<T> type, String method, Supplier<List<Object[]>> rows) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, invoked, args) -> {
+            if (invoked.getName().equals(method)) {
+                return rows.get();
+            }
+            throw new UnsupportedOperationException(invoked.getName());
+        });
+    }
+
+    /**
+     * 参考实现：value -> {收藏位, 播放次数}
+     */
+    private static void merge(Map<Long, Map<Long, int[]>> rows, long key, long value, boolean favorite, int plays) {
+        int[] cell = rows.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(value, k -> new int[2]);
+        cell[0] |= favorite ? 1 : 0;
+        cell[1] += plays;
+    }
+
+    private static long[] expected(Map<Long, int[]> row, int playThreshold) {
+        return row.entrySet().stream()
+            .filter(entry -> entry.getValue()[0] == 1 || entry.getValue()[1] >= playThreshold)
+            .mapToLong(Map.Entry::getKey)
+            .sorted()
+            .toArray();
+    }
+}
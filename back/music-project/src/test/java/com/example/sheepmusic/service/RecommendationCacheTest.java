@@ -0,0 +1,104 @@
+package com.example.sheepmusic.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RecommendationCache 测试
+ * 命中时不重新计算；深度不够时加深；用户变化或全量重载后旧结果不再命中，其他用户不受影响
+ */
+class RecommendationCacheTest {
+
+    @Test
+    void reusesRankingUntilDeeperPageNeeded() {
+        RecommendationCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(ids(10), cache.getRanking(1L, "hot", 5, depth -> load(loads, depth)));
+        assertEquals(ids(10), cache.getRanking(1L, "hot", 10, depth -> load(loads, depth)));
+        assertEquals(1, loads.get());
+
+        assertEquals(ids(30), cache.getRanking(1L, "hot", 30, depth -> load(loads, depth)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void userChangeInvalidatesOnlyThatUser() {
+        RecommendationCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+        cache.getRanking(1L, "hot", 5, depth -> load(loads, depth));
+        cache.getRanking(2L, "hot", 5, depth -> load(loads, depth));
+        assertEquals(2, loads.get());
+
+        cache.onUserChanged(1L, true, false);
+        cache.getRanking(1L, "hot", 5, depth -> load(loads, depth));
+        assertEquals(3, loads.get());
+        cache.getRanking(2L, "hot", 5, depth -> load(loads, depth));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void changeDuringComputeIsNotServed() {
+        RecommendationCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+        cache.getRanking(1L, "hot", 5, depth -> {
+            // 计算期间用户发生变化，本次结果基于旧数据
+            cache.onUserChanged(1L, true, false);
+            return load(loads, depth);
+        });
+        cache.getRanking(1L, "hot", 5, depth -> load(loads, depth));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void reloadInvalidatesEveryone() {
+        RecommendationCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+        cache.getRanking(1L, "hot", 5, depth -> load(loads, depth));
+        cache.getRanking(2L, "new", 5, depth -> load(loads, depth));
+
+        cache.onReload();
+        cache.getRanking(1L, "hot", 5, depth -> load(loads, depth));
+        cache.getRanking(2L, "new", 5, depth -> load(loads, depth));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void pageClampsToRanking() {
+        List<Long> ranking = ids(25);
+        assertEquals(Arrays.asList(10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L),
+            RecommendationCache.page(ranking, 1, 10));
+        assertEquals(ids(25).subList(20, 25), RecommendationCache.page(ranking, 2, 10));
+        assertTrue(RecommendationCache.page(ranking, 3, 10).isEmpty());
+    }
+
+    private static RecommendationCache newCache() {
+        RecommendationCache cache = new RecommendationCache();
+        ReflectionTestUtils.setField(cache, "interactionIndex", new InteractionIndex());
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60_000L);
+        ReflectionTestUtils.setField(cache, "depth", 10);
+        cache.init();
+        return cache;
+    }
+
+    private static List<Long> load(AtomicInteger loads, int depth) {
+        loads.incrementAndGet();
+        return ids(depth);
+    }
+
+    private static List<Long> ids(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ExpiringIdSet 测试
+ * 已过期的ID不加入，桶内全部过期后整桶丢弃，未过期的桶保留
+ */
+class ExpiringIdSetTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void ignoresAlreadyExpired() {
+        ExpiringIdSet set = new ExpiringIdSet(MINUTE);
+        set.add("old", System.currentTimeMillis() - 1);
+        assertFalse(set.contains("old"));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void purgeDropsOnlyExpiredBuckets() {
+        ExpiringIdSet set = new ExpiringIdSet(MINUTE);
+        long now = System.currentTimeMillis();
+        set.add("a", now + 5 * MINUTE);
+        set.add("b", now + 5 * MINUTE + 1);
+        set.add("c", now + 20 * MINUTE);
+        assertTrue(set.contains("a"));
+        assertTrue(set.contains("c"));
+        assertFalse(set.contains("d"));
+        assertEquals(3, set.size());
+
+        // "a" 过期前不会被丢弃
+        set.purge(now + 5 * MINUTE - 1);
+        assertTrue(set.contains("a"));
+
+        // a、b 所在的桶最迟在过期后一个桶宽内丢弃，c 保留
+        set.purge(now + 7 * MINUTE);
+        assertFalse(set.contains("a"));
+        assertFalse(set.contains("b"));
+        assertTrue(set.contains("c"));
+        assertEquals(1, set.size());
+    }
+}
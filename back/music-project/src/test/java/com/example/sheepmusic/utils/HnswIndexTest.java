@@ -0,0 +1,236 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HnswIndex 测试
+ * 召回率 = HNSW 返回的 Top-10 与暴力计算余弦相似度 Top-10 的重合比例；
+ * 删除的向量不再出现在结果中，清理墓碑、快照恢复后结果不变
+ */
+class HnswIndexTest {
+
+    private static final int DIM = 32;
+    private static final int COUNT = 5000;
+    private static final int TOP_K = 10;
+
+    @Test
+    void recallAgainstBruteForce() {
+        Random random = new Random(5);
+        float[][] vectors = clustered(random, COUNT);
+        HnswIndex index = build(vectors);
+        assertEquals(COUNT, index.size());
+
+        double recall = recall(index, vectors, random, Collections.emptySet());
+        assertTrue(recall >= 0.95, "recall too low: " + recall);
+    }
+
+    @Test
+    void deletedVectorsAreNotReturned() {
+        Random random = new Random(6);
+        float[][] vectors = clustered(random, COUNT);
+        HnswIndex index = build(vectors);
+
+        Set<Long> removed = new HashSet<>();
+        for (long id = 0; id < COUNT; id += 3) {
+            index.remove(id);
+            removed.add(id);
+        }
+        assertEquals(COUNT - removed.size(), index.size());
+        assertEquals(removed.size(), index.getDeletedCount());
+        assertFalse(index.contains(0));
+        assertNull(index.getVector(0));
+
+        for (int q = 0; q < 100; q++) {
+            float[] query = vectors[random.nextInt(COUNT)];
+            for (Long id : index.search(query, TOP_K, 64)) {
+                assertFalse(removed.contains(id), "deleted id returned: " + id);
+            }
+        }
+        // 墓碑仍参与图遍历，删除后召回不明显下降
+        double recall = recall(index, vectors, random, removed);
+        assertTrue(recall >= 0.9, "recall after delete too low: " + recall);
+    }
+
+    @Test
+    void concurrentSearchWhileGrowing() throws Exception {
+        Random random = new Random(10);
+        float[][] vectors = clustered(random, COUNT);
+        HnswIndex index = new HnswIndex(DIM, 16, 100);
+        index.add(0, vectors[0]);
+
+        // 插入过程中多次扩容，读线程不加锁一直查询
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            Thread reader = new Thread(() -> {
+                Random local = new Random(seed);
+                while (!done.get()) {
+                    try {
+                        float[] query = vectors[local.nextInt(COUNT)];
+                        index.search(query, TOP_K, 32);
+                        index.getVector(local.nextInt(COUNT));
+                    } catch (Throwable e) {
+                        errors.add(e);
+                        return;
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int i = 1; i < COUNT; i++) {
+            index.add(i, vectors[i]);
+            if (i % 7 == 0) {
+                index.remove(i - 3);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertTrue(errors.isEmpty(), "reader failed: " + errors);
+    }
+
+    @Test
+    void reAddReplacesVector() {
+        HnswIndex index = new HnswIndex(4, 8, 50);
+        index.add(1, new float[]{1, 0, 0, 0});
+        index.add(2, new float[]{0, 1, 0, 0});
+        index.add(1, new float[]{0, 0, 1, 0});
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.getDeletedCount());
+        assertEquals(Arrays.asList(1L), index.search(new float[]{0, 0, 1, 0}, 1, 10));
+        assertEquals(1f, index.getVector(1)[2], 1e-6);
+    }
+
+    @Test
+    void compactRemovesTombstones() {
+        Random random = new Random(8);
+        float[][] vectors = clustered(random, COUNT);
+        HnswIndex index = build(vectors);
+        Set<Long> removed = new HashSet<>();
+        for (long id = 0; id < COUNT; id += 2) {
+            index.remove(id);
+            removed.add(id);
+        }
+
+        index.compact();
+        assertEquals(0, index.getDeletedCount());
+        assertEquals(COUNT - removed.size(), index.size());
+        assertTrue(index.contains(1));
+        assertFalse(index.contains(0));
+
+        double recall = recall(index, vectors, random, removed);
+        assertTrue(recall >= 0.95, "recall after compact too low: " + recall);
+
+        // 清理后仍可继续插入
+        index.add(0, vectors[0]);
+        assertEquals(Long.valueOf(0), index.search(vectors[0], 1, 64).get(0));
+    }
+
+    @Test
+    void snapshotAndRestore() throws Exception {
+        Random random = new Random(9);
+        float[][] vectors = clustered(random, 1000);
+        HnswIndex index = build(vectors);
+        index.remove(5);
+
+        Path file = Files.createTempFile("hnsw", ".bin");
+        try {
+            index.snapshot(file);
+            HnswIndex restored = HnswIndex.restore(file);
+            assertEquals(index.size(), restored.size());
+            assertFalse(restored.contains(5));
+            for (int q = 0; q < 20; q++) {
+                float[] query = vectors[random.nextInt(vectors.length)];
+                assertEquals(index.search(query, TOP_K, 64), restored.search(query, TOP_K, 64));
+            }
+            // 恢复后的向量区是只读映射，插入时复制到新的向量区
+            restored.add(5000, vectors[7]);
+            assertTrue(restored.search(vectors[7], 2, 64).contains(5000L));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static HnswIndex build(float[][] vectors) {
+        HnswIndex index = new HnswIndex(DIM, 16, 100);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add(i, vectors[i]);
+        }
+        return index;
+    }
+
+    private static double recall(HnswIndex index, float[][] vectors, Random random, Set<Long> removed) {
+        int hits = 0;
+        int expected = 0;
+        for (int q = 0; q < 100; q++) {
+            float[] query = vectors[random.nextInt(vectors.length)];
+            Set<Long> exact = bruteForce(vectors, query, removed);
+            expected += exact.size();
+            for (Long id : index.search(query, TOP_K, 64)) {
+                if (exact.contains(id)) {
+                    hits++;
+                }
+            }
+        }
+        return (double) hits / expected;
+    }
+
+    private static Set<Long> bruteForce(float[][] vectors, float[] query, Set<Long> removed) {
+        Map<Long, Double> similarity = new HashMap<>();
+        for (int i = 0; i < vectors.length; i++) {
+            if (!removed.contains((long) i)) {
+                similarity.put((long) i, cosine(query, vectors[i]));
+            }
+        }
+        return similarity.entrySet().stream()
+            .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+            .limit(TOP_K)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet());
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    /**
+     * 50 个簇中心附近的随机向量（与特征哈希得到的歌曲向量一样带有明显的聚类结构）
+     */
+    private static float[][] clustered(Random random, int count) {
+        float[][] centers = new float[50][DIM];
+        for (float[] center : centers) {
+            for (int d = 0; d < DIM; d++) {
+                center[d] = (float) random.nextGaussian();
+            }
+        }
+        float[][] vectors = new float[count][DIM];
+        for (int i = 0; i < count; i++) {
+            float[] center = centers[random.nextInt(centers.length)];
+            for (int d = 0; d < DIM; d++) {
+                vectors[i][d] = center[d] + 0.5f * (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HyperLogLog 测试
+ * 不同基数下的相对误差、稀疏/稠密序列化往返、合并与幂等性
+ */
+class HyperLogLogTest {
+
+    private static final int PRECISION = 12;
+
+    @Test
+    void estimateWithinErrorBound() {
+        // 标准误差 1.04 / sqrt(4096) ≈ 1.6%，按 3 倍标准误差断言
+        for (int n : new int[]{1, 10, 100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog(PRECISION);
+            for (long userId = 1; userId <= n; userId++) {
+                sketch.add(userId);
+            }
+            double error = Math.abs(sketch.estimate() - n) / (double) n;
+            assertTrue(error < 0.05, "n=" + n + " estimate=" + sketch.estimate() + " error=" + error);
+        }
+    }
+
+    @Test
+    void repeatedValuesDoNotChangeSketch() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        assertTrue(sketch.add(42));
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(sketch.add(42));
+        }
+        assertEquals(1, sketch.estimate());
+    }
+
+    @Test
+    void serializationRoundTrip() {
+        Random random = new Random(3);
+        for (int n : new int[]{0, 50, 5_000}) {
+            HyperLogLog sketch = new HyperLogLog(PRECISION);
+            for (int i = 0; i < n; i++) {
+                sketch.add(random.nextLong());
+            }
+            HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+            assertEquals(sketch.estimate(), restored.estimate());
+            assertArrayEquals(sketch.toBytes(), restored.toBytes());
+        }
+        // 少量元素时使用稀疏表示，远小于 4KB 的稠密寄存器
+        HyperLogLog small = new HyperLogLog(PRECISION);
+        for (long i = 0; i < 20; i++) {
+            small.add(i);
+        }
+        assertTrue(small.toBytes().length < 100);
+    }
+
+    @Test
+    void mergeEqualsUnion() {
+        HyperLogLog union = new HyperLogLog(PRECISION);
+        HyperLogLog merged = new HyperLogLog(PRECISION);
+        for (int day = 0; day < 7; day++) {
+            // 每天 3000 个听众，相邻两天有一半重叠
+            HyperLogLog daily = new HyperLogLog(PRECISION);
+            for (long userId = day * 1500L; userId < day * 1500L + 3000; userId++) {
+                daily.add(userId);
+                union.add(userId);
+            }
+            merged.merge(daily);
+        }
+        assertEquals(union.estimate(), merged.estimate());
+        assertArrayEquals(union.toBytes(), merged.toBytes());
+        double error = Math.abs(merged.estimate() - 12_000) / 12_000.0;
+        assertTrue(error < 0.05, "error=" + error);
+    }
+}
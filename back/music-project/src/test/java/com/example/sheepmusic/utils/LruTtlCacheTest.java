@@ -0,0 +1,57 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LruTtlCache 测试
+ * 超过容量时淘汰最久未访问的条目，get 会刷新访问顺序；写入 ttl 毫秒后条目过期
+ */
+class LruTtlCacheTest {
+
+    @Test
+    void evictsLeastRecentlyAccessed() {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(2, 60_000);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        // 访问 a 后 b 成为最久未访问的条目
+        assertEquals(1, cache.get("a"));
+        cache.put("c", 3);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    void expiresAfterTtl() throws InterruptedException {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 20);
+        cache.put("a", 1);
+        assertEquals(1, cache.get("a"));
+
+        Thread.sleep(40);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1L, cache.getStats().get("expirations"));
+    }
+
+    @Test
+    void invalidateRemovesEntries() {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 60_000);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+
+        cache.invalidate("a");
+        cache.invalidate("missing");
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.get("b"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(3L, cache.getStats().get("invalidations"));
+    }
+}
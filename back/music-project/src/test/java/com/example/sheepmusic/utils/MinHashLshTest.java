@@ -0,0 +1,170 @@
+package com.example.sheepmusic.utils;
+
+import com.example.sheepmusic.service.InteractionIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MinHash/LSH 候选生成测试
+ * 召回率 = LSH 候选精排后的 Top-10 相似用户 与 全量精确计算 Top-10 的重合比例
+ */
+class MinHashLshTest {
+
+    private static final int USERS = 5000;
+    private static final int SONGS = 20000;
+    private static final int CLUSTERS = 50;
+    private static final int TOP_N = 10;
+
+    @Test
+    void recallAgainstExactJaccard() {
+        Random random = new Random(42);
+        long[][] favorites = syntheticFavorites(random);
+
+        MinHashLsh lsh = new MinHashLsh(48, 1, 20250101L);
+        for (int user = 0; user < USERS; user++) {
+            lsh.put(user, favorites[user]);
+        }
+
+        int hits = 0;
+        int expected = 0;
+        long candidateTotal = 0;
+        for (int query = 0; query < 200; query++) {
+            int user = random.nextInt(USERS);
+            long[] candidates = lsh.candidates(favorites[user], 2000);
+            candidateTotal += candidates.length;
+
+            Set<Long> exact = topSimilar(user, favorites, null);
+            Set<Long> approximate = topSimilar(user, favorites, candidates);
+            expected += exact.size();
+            for (Long id : approximate) {
+                if (exact.contains(id)) {
+                    hits++;
+                }
+            }
+        }
+
+        double recall = expected == 0 ? 1.0 : (double) hits / expected;
+        assertTrue(recall >= 0.9, "recall too low: " + recall + ", average candidates: " + candidateTotal / 200);
+    }
+
+    @Test
+    void updateMovesMemberBetweenBuckets() {
+        MinHashLsh lsh = new MinHashLsh(16, 2, 1L);
+        long[] songs = {1, 2, 3, 4, 5};
+        lsh.put(7L, songs);
+        assertArrayEquals(new long[]{7L}, lsh.candidates(songs, 10));
+
+        lsh.put(7L, new long[]{100, 200, 300});
+        assertEquals(0, lsh.candidates(songs, 10).length);
+
+        lsh.remove(7L);
+        assertEquals(0, lsh.size());
+    }
+
+    @Test
+    void putAllMatchesIncrementalPut() {
+        Random random = new Random(3);
+        long[][] favorites = syntheticFavorites(random);
+        long[] ids = new long[USERS];
+        for (int user = 0; user < USERS; user++) {
+            ids[user] = user;
+        }
+
+        MinHashLsh incremental = new MinHashLsh(48, 1, 20250101L);
+        for (int user = 0; user < USERS; user++) {
+            incremental.put(user, favorites[user]);
+        }
+        MinHashLsh bulk = new MinHashLsh(48, 1, 20250101L);
+        bulk.putAll(ids, favorites);
+
+        assertEquals(incremental.size(), bulk.size());
+        for (int query = 0; query < 100; query++) {
+            long[] items = favorites[random.nextInt(USERS)];
+            assertArrayEquals(incremental.candidates(items, Integer.MAX_VALUE), bulk.candidates(items, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void capKeepsMostCollidingMembers() {
+        MinHashLsh lsh = new MinHashLsh(32, 1, 7L);
+        // 热门歌曲 1 让几乎所有成员落入同一批大桶
+        for (long user = 0; user < 5000; user++) {
+            lsh.put(user, new long[]{1, 1000 + user});
+        }
+        long[] songs = {1, 2, 3};
+        lsh.put(9999L, songs);
+
+        long[] candidates = lsh.candidates(songs, 5);
+        assertEquals(5, candidates.length);
+        assertTrue(Arrays.binarySearch(candidates, 9999L) >= 0);
+        assertEquals(0, lsh.candidates(songs, 0).length);
+    }
+
+    @Test
+    void putAllReplacesPreviousMembers() {
+        MinHashLsh lsh = new MinHashLsh(16, 2, 1L);
+        lsh.put(1L, new long[]{1, 2, 3});
+        lsh.putAll(new long[]{2L, 3L}, new long[][]{{4, 5, 6}, {}});
+
+        assertEquals(1, lsh.size());
+        assertEquals(0, lsh.candidates(new long[]{1, 2, 3}, 10).length);
+        assertArrayEquals(new long[]{2L}, lsh.candidates(new long[]{4, 5, 6}, 10));
+    }
+
+    /**
+     * 生成按品味聚类的收藏数据：每个用户 70% 的收藏来自所在簇的歌曲池，其余随机
+     */
+    private static long[][] syntheticFavorites(Random random) {
+        int poolSize = 300;
+        long[][] favorites = new long[USERS][];
+        for (int user = 0; user < USERS; user++) {
+            int cluster = user % CLUSTERS;
+            int count = 10 + random.nextInt(40);
+            long[] songs = new long[count];
+            for (int i = 0; i < count; i++) {
+                songs[i] = random.nextDouble() < 0.7
+                    ? (long) cluster * poolSize + random.nextInt(poolSize)
+                    : random.nextInt(SONGS);
+            }
+            favorites[user] = Arrays.stream(songs).distinct().sorted().toArray();
+        }
+        return favorites;
+    }
+
+    /**
+     * 与 RecommendationService.findSimilarUsers 相同的规则：Jaccard > 0.1 的 Top-10
+     */
+    private static Set<Long> topSimilar(int user, long[][] favorites, long[] candidates) {
+        Map<Long, Double> scores = new HashMap<>();
+        if (candidates == null) {
+            for (int other = 0; other < USERS; other++) {
+                score(user, other, favorites, scores);
+            }
+        } else {
+            for (long other : candidates) {
+                score(user, (int) other, favorites, scores);
+            }
+        }
+        Set<Long> result = new HashSet<>();
+        scores.entrySet().stream()
+            .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+            .limit(TOP_N)
+            .forEach(entry -> result.add(entry.getKey()));
+        return result;
+    }
+
+    private static void score(int user, int other, long[][] favorites, Map<Long, Double> scores) {
+        if (other == user) {
+            return;
+        }
+        double similarity = InteractionIndex.jaccard(favorites[user], favorites[other]);
+        if (similarity > 0.1) {
+            scores.put((long) other, similarity);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 新歌热度榜测试
+ * 正确性与暴力排序对比；延迟基准见 src/jmh 下的 NewReleaseChartBenchmark
+ */
+class NewReleaseChartTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long[] WINDOWS = {7 * DAY, 30 * DAY, 90 * DAY};
+
+    @Test
+    void topMatchesBruteForce() {
+        Random random = new Random(7);
+        long now = 1_000 * DAY;
+        int songs = 20_000;
+        long[] createTimes = new long[songs];
+        long[] plays = new long[songs];
+
+        NewReleaseChart chart = new NewReleaseChart(WINDOWS);
+        for (int id = 0; id < songs; id++) {
+            createTimes[id] = now - (long) (random.nextDouble() * 180 * DAY);
+            plays[id] = random.nextInt(1000);
+            chart.put(id, createTimes[id], plays[id], now);
+        }
+        for (int i = 0; i < 50_000; i++) {
+            int id = random.nextInt(songs);
+            plays[id]++;
+            chart.addPlays(id, 1);
+        }
+        for (int i = 0; i < 500; i++) {
+            int id = random.nextInt(songs);
+            plays[id] = -1;
+            chart.remove(id);
+        }
+
+        // 时间推进 10 天，清理前后查询结果都应与暴力计算一致
+        long later = now + 10 * DAY;
+        for (long window : WINDOWS) {
+            assertArrayEquals(bruteForce(createTimes, plays, window, later, 50), chart.top(window, later, 50));
+        }
+        chart.purge(later);
+        for (long window : WINDOWS) {
+            assertArrayEquals(bruteForce(createTimes, plays, window, later, 50), chart.top(window, later, 50));
+        }
+    }
+
+    @Test
+    void oldSongsAreNotTracked() {
+        NewReleaseChart chart = new NewReleaseChart(WINDOWS);
+        long now = 1_000 * DAY;
+        chart.put(1, now - 100 * DAY, 10, now);
+        chart.put(2, now - DAY, 5, now);
+        chart.addPlays(1, 100);
+        assertEquals(1, chart.size());
+        assertArrayEquals(new long[]{2}, chart.top(90 * DAY, now, 10));
+    }
+
+    @Test
+    void nonPositiveLimitReturnsEmpty() {
+        NewReleaseChart chart = new NewReleaseChart(WINDOWS);
+        long now = 1_000 * DAY;
+        chart.put(1, now - DAY, 5, now);
+        assertEquals(0, chart.top(7 * DAY, now, 0).length);
+        assertEquals(0, chart.top(7 * DAY, now, -1).length);
+    }
+
+    private static long[] bruteForce(long[] createTimes, long[] plays, long window, long now, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < createTimes.length; id++) {
+            if (plays[id] >= 0 && createTimes[id] >= now - window && createTimes[id] >= now - 10 * DAY - 90 * DAY) {
+                ids.add(id);
+            }
+        }
+        ids.sort((a, b) -> {
+            if (plays[a] != plays[b]) return Long.compare(plays[b], plays[a]);
+            if (createTimes[a] != createTimes[b]) return Long.compare(createTimes[b], createTimes[a]);
+            return Integer.compare(b, a);
+        });
+        return ids.stream().limit(limit).mapToLong(Integer::longValue).toArray();
+    }
+}
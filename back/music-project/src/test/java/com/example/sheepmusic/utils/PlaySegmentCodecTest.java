@@ -0,0 +1,164 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PlaySegmentCodec 测试
+ * 编码后解码各列与按 (播放时间, 记录ID) 排序的原始数据一致；用户过滤器无漏判、误判率低；
+ * 行组不完整或头部损坏时读取返回 null；改写状态字节后已读出的行组立即可见
+ */
+class PlaySegmentCodecTest {
+
+    @Test
+    void roundTrip() {
+        Random random = new Random(7);
+        int rows = 2000;
+        long[] ids = new long[rows];
+        long[] times = new long[rows];
+        long[] users = new long[rows];
+        long[] songs = new long[rows];
+        long[] durations = new long[rows];
+        long base = 1_700_000_000_000L;
+        for (int i = 0; i < rows; i++) {
+            // ID 与时间都不保证有序，也会有重复的播放时间
+            ids[i] = 1_000_000 + random.nextInt(10_000_000);
+            times[i] = base + random.nextInt(30 * 24 * 3600) * 1000L;
+            users[i] = 1 + random.nextInt(5000);
+            songs[i] = 1 + random.nextInt(100_000);
+            durations[i] = random.nextInt(3) == 0 ? 0 : random.nextInt(600);
+        }
+
+        byte[] bytes = PlaySegmentCodec.encode(ids, times, users, songs, durations);
+        PlaySegmentCodec.Block block = PlaySegmentCodec.read(ByteBuffer.wrap(bytes), 0);
+        assertNotNull(block);
+        assertEquals(PlaySegmentCodec.PENDING, block.getStatus());
+        assertFalse(block.isCommitted());
+        assertEquals(rows, block.getRows());
+        assertEquals(bytes.length, block.getTotalBytes());
+
+        int[] order = IntStream.range(0, rows).boxed()
+            .sorted(Comparator.<Integer>comparingLong(i -> times[i]).thenComparingLong(i -> ids[i]))
+            .mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(permute(ids, order), block.decode(PlaySegmentCodec.COLUMN_IDS));
+        assertArrayEquals(permute(times, order), block.decode(PlaySegmentCodec.COLUMN_TIMES));
+        assertArrayEquals(permute(users, order), block.decode(PlaySegmentCodec.COLUMN_USERS));
+        assertArrayEquals(permute(songs, order), block.decode(PlaySegmentCodec.COLUMN_SONGS));
+        assertArrayEquals(permute(durations, order), block.decode(PlaySegmentCodec.COLUMN_DURATIONS));
+        assertEquals(times[order[0]], block.getMinTime());
+        assertEquals(times[order[rows - 1]], block.getMaxTime());
+    }
+
+    @Test
+    void consecutiveBlocksAndStatus() {
+        byte[] first = PlaySegmentCodec.encode(new long[]{3, 1}, new long[]{20, 10}, new long[]{7, 8},
+            new long[]{100, 200}, new long[]{30, 0});
+        byte[] second = PlaySegmentCodec.encode(new long[]{5}, new long[]{40}, new long[]{9},
+            new long[]{300}, new long[]{60});
+        first[0] = PlaySegmentCodec.COMMITTED;
+        second[0] = PlaySegmentCodec.ABORTED;
+        ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length).put(first).put(second);
+
+        PlaySegmentCodec.Block a = PlaySegmentCodec.read(buffer, 0);
+        assertTrue(a.isCommitted());
+        assertArrayEquals(new long[]{1, 3}, a.decode(PlaySegmentCodec.COLUMN_IDS));
+        assertArrayEquals(new long[]{200, 100}, a.decode(PlaySegmentCodec.COLUMN_SONGS));
+
+        PlaySegmentCodec.Block b = PlaySegmentCodec.read(buffer, a.getTotalBytes());
+        assertEquals(PlaySegmentCodec.ABORTED, b.getStatus());
+        assertFalse(b.isCommitted());
+        assertArrayEquals(new long[]{5}, b.decode(PlaySegmentCodec.COLUMN_IDS));
+        assertNull(PlaySegmentCodec.read(buffer, a.getTotalBytes() + b.getTotalBytes()));
+
+        // 状态在原缓冲区中被改写后，已读出的行组直接看到新状态
+        buffer.put(a.getTotalBytes(), PlaySegmentCodec.COMMITTED);
+        assertTrue(b.isCommitted());
+    }
+
+    @Test
+    void userFilter() {
+        Random random = new Random(11);
+        int rows = 5000;
+        long[] ids = new long[rows];
+        long[] times = new long[rows];
+        long[] users = new long[rows];
+        long[] zeros = new long[rows];
+        Set<Long> present = new HashSet<>();
+        for (int i = 0; i < rows; i++) {
+            ids[i] = i + 1;
+            times[i] = 1_700_000_000_000L + i;
+            users[i] = 1 + random.nextInt(1_000_000);
+            present.add(users[i]);
+        }
+        PlaySegmentCodec.Block block = PlaySegmentCodec.read(
+            ByteBuffer.wrap(PlaySegmentCodec.encode(ids, times, users, zeros, zeros)), 0);
+        for (long user : present) {
+            assertTrue(block.mightContainUser(user));
+        }
+
+        int falsePositives = 0;
+        int probes = 0;
+        for (long user = 2_000_000; user < 2_100_000; user++) {
+            probes++;
+            if (block.mightContainUser(user)) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / probes;
+        assertTrue(rate < 0.03, "false positive rate too high: " + rate);
+    }
+
+    @Test
+    void partialBlockIsNotRead() {
+        byte[] bytes = PlaySegmentCodec.encode(new long[]{1, 2, 3}, new long[]{10, 11, 12}, new long[]{1, 1, 2},
+            new long[]{5, 6, 7}, new long[]{0, 0, 0});
+        // 写入中途崩溃：头部不完整、列数据不完整
+        for (int length : new int[]{0, 1, PlaySegmentCodec.HEADER_BYTES - 1, PlaySegmentCodec.HEADER_BYTES,
+                bytes.length - 1}) {
+            assertNull(PlaySegmentCodec.read(ByteBuffer.wrap(Arrays.copyOf(bytes, length)), 0));
+        }
+        assertNotNull(PlaySegmentCodec.read(ByteBuffer.wrap(bytes), 0));
+    }
+
+    @Test
+    void corruptedHeaderIsNotRead() {
+        byte[] bytes = PlaySegmentCodec.encode(new long[]{1, 2}, new long[]{10, 11}, new long[]{1, 2},
+            new long[]{5, 6}, new long[]{0, 0});
+
+        // 负的行数
+        byte[] negativeRows = bytes.clone();
+        ByteBuffer.wrap(negativeRows).putInt(1, -1);
+        assertNull(PlaySegmentCodec.read(ByteBuffer.wrap(negativeRows), 0));
+
+        // 负的列长度
+        byte[] negativeLength = bytes.clone();
+        ByteBuffer.wrap(negativeLength).putInt(21, -100);
+        assertNull(PlaySegmentCodec.read(ByteBuffer.wrap(negativeLength), 0));
+
+        // 未知的状态
+        byte[] unknownStatus = bytes.clone();
+        unknownStatus[0] = 0x10;
+        assertNull(PlaySegmentCodec.read(ByteBuffer.wrap(unknownStatus), 0));
+
+        // 过滤器字节数不是 8 的倍数
+        byte[] badFilter = bytes.clone();
+        ByteBuffer.wrap(badFilter).putInt(PlaySegmentCodec.HEADER_BYTES - 4, 7);
+        assertNull(PlaySegmentCodec.read(ByteBuffer.wrap(badFilter), 0));
+
+        // 列长度之和溢出 int
+        byte[] overflow = bytes.clone();
+        for (int c = 0; c < 5; c++) {
+            ByteBuffer.wrap(overflow).putInt(21 + 4 * c, Integer.MAX_VALUE);
+        }
+        assertNull(PlaySegmentCodec.read(ByteBuffer.wrap(overflow), 0));
+    }
+
+    private static long[] permute(long[] values, int[] order) {
+        return Arrays.stream(order).mapToLong(i -> values[i]).toArray();
+    }
+}
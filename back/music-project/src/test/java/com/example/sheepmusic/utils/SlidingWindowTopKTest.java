@@ -0,0 +1,143 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SlidingWindowTopK 测试
+ * 条目数不超过桶容量时计数和排名与精确计数一致；超过容量时计数只会偏高、高频条目不丢失；
+ * 时间前进时最旧的桶整体移出窗口，跳过整个窗口时全部清空
+ */
+class SlidingWindowTopKTest {
+
+    private static final long BUCKET = 1000;
+    private static final int BUCKETS = 6;
+
+    @Test
+    void matchesExactCountsWithinCapacity() {
+        Random random = new Random(1);
+        SlidingWindowTopK topK = new SlidingWindowTopK(BUCKETS * BUCKET, BUCKET, 100);
+        List<long[]> events = new ArrayList<>();
+        long time = 0;
+        for (int i = 0; i < 20_000; i++) {
+            // 时间单调前进，偶尔有落在前几个桶内的迟到写入
+            time += random.nextInt(5);
+            long at = random.nextInt(10) == 0 ? Math.max(0, time - random.nextInt(3000)) : time;
+            long id = (long) Math.abs(random.nextGaussian() * 15);
+            long delta = 1 + random.nextInt(3);
+            topK.add(id, at, delta);
+            events.add(new long[]{id, at, delta});
+
+            if (i % 1000 == 999) {
+                Map<Long, Long> exact = exactCounts(events, time);
+                assertEquals(exact.size(), topK.size());
+                for (Map.Entry<Long, Long> entry : exact.entrySet()) {
+                    assertEquals((long) entry.getValue(), topK.count(entry.getKey(), time));
+                }
+                assertArrayEquals(exactTop(exact, 10), topK.top(10, time));
+            }
+        }
+    }
+
+    @Test
+    void overCapacityOnlyOverestimates() {
+        Random random = new Random(2);
+        SlidingWindowTopK topK = new SlidingWindowTopK(BUCKETS * BUCKET, BUCKET, 20);
+        List<long[]> events = new ArrayList<>();
+        long time = 0;
+        for (int i = 0; i < 30_000; i++) {
+            time += random.nextInt(2);
+            // 3 个高频条目与大量只出现一两次的条目交替出现
+            long id = i % 4 == 3 ? 1000 + random.nextInt(100_000) : 1 + i % 4;
+            topK.add(id, time, 1);
+            events.add(new long[]{id, time, 1});
+        }
+
+        Map<Long, Long> exact = exactCounts(events, time);
+        for (Map.Entry<Long, Long> entry : exact.entrySet()) {
+            long approximate = topK.count(entry.getKey(), time);
+            assertTrue(approximate == 0 || approximate >= entry.getValue(),
+                "count underestimated for " + entry.getKey());
+        }
+        Set<Long> top = new HashSet<>();
+        for (long id : topK.top(3, time)) {
+            top.add(id);
+        }
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), top);
+        for (long heavy = 1; heavy <= 3; heavy++) {
+            assertTrue(topK.count(heavy, time) >= exact.get(heavy));
+        }
+    }
+
+    @Test
+    void oldestBucketRollsOut() {
+        SlidingWindowTopK topK = new SlidingWindowTopK(3 * BUCKET, BUCKET, 10);
+        topK.add(1, 0, 5);
+        topK.add(2, BUCKET, 3);
+        topK.add(3, 2 * BUCKET + 999, 1);
+        assertArrayEquals(new long[]{1, 2, 3}, topK.top(10, 2 * BUCKET + 999));
+
+        // 进入第 4 个桶：第 1 个桶被复用，条目 1 移出窗口
+        assertArrayEquals(new long[]{2, 3}, topK.top(10, 3 * BUCKET));
+        assertEquals(0, topK.count(1, 3 * BUCKET));
+        assertEquals(2, topK.size());
+
+        // 早于窗口的迟到写入被忽略，窗口内的迟到写入计入对应的桶
+        topK.add(1, 0, 100);
+        assertEquals(0, topK.count(1, 3 * BUCKET));
+        topK.add(3, BUCKET + 10, 4);
+        assertArrayEquals(new long[]{3, 2}, topK.top(10, 3 * BUCKET));
+
+        // 条目 2 和迟到写入的条目 3 所在的桶移出，只剩条目 3 的最后一次写入
+        assertArrayEquals(new long[]{3}, topK.top(10, 4 * BUCKET));
+        assertEquals(1, topK.count(3, 4 * BUCKET));
+    }
+
+    @Test
+    void skippingWholeWindowClearsAll() {
+        SlidingWindowTopK topK = new SlidingWindowTopK(3 * BUCKET, BUCKET, 10);
+        topK.add(1, 0, 5);
+        topK.add(2, 2 * BUCKET, 5);
+        assertEquals(0, topK.top(10, 100 * BUCKET).length);
+        assertEquals(0, topK.size());
+
+        topK.add(4, 100 * BUCKET, 1);
+        assertArrayEquals(new long[]{4}, topK.top(10, 100 * BUCKET));
+    }
+
+    @Test
+    void removeAndLimit() {
+        SlidingWindowTopK topK = new SlidingWindowTopK(3 * BUCKET, BUCKET, 10);
+        topK.add(1, 0, 5);
+        topK.add(2, 0, 3);
+        topK.remove(1);
+        assertArrayEquals(new long[]{2}, topK.top(10, 0));
+        assertEquals(0, topK.top(0, 0).length);
+        assertEquals(0, topK.top(-1, 0).length);
+    }
+
+    /**
+     * 窗口为最新的 BUCKETS 个桶：桶序号大于 (now 所在的桶 - BUCKETS)
+     */
+    private static Map<Long, Long> exactCounts(List<long[]> events, long now) {
+        long head = Math.floorDiv(now, BUCKET);
+        Map<Long, Long> counts = new HashMap<>();
+        for (long[] event : events) {
+            if (Math.floorDiv(event[1], BUCKET) > head - BUCKETS) {
+                counts.merge(event[0], event[2], Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static long[] exactTop(Map<Long, Long> counts, int limit) {
+        return counts.entrySet().stream()
+            .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(limit)
+            .mapToLong(Map.Entry::getKey)
+            .toArray();
+    }
+}
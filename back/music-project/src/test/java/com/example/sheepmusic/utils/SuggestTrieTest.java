@@ -0,0 +1,113 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SuggestTrie 测试
+ * 原文前缀与拼音首字母前缀、按权重取前 N、按 (类型, ID) 去重、与歌曲歌手同名的搜索词被丢弃、归一化、单链节点共用补全列表
+ */
+class SuggestTrieTest {
+
+    private static SuggestTrie sample() {
+        return new SuggestTrie.Builder(3)
+            .add("周杰伦", "artist", 1L, 10, "周杰伦", PinyinInitials.initials("周杰伦"))
+            .add("晴天", "song", 11L, 8, "晴天", PinyinInitials.initials("晴天"))
+            .add("七里香", "song", 12L, 6, "七里香", PinyinInitials.initials("七里香"))
+            .add("周深", "artist", 2L, 7, "周深", PinyinInitials.initials("周深"))
+            .add("Jay Chou Medley", "song", 13L, 3, "Jay Chou Medley")
+            .add("Jay", "keyword", null, 5, "Jay")
+            .add("晴天", "keyword", null, 9, "晴天")
+            .add("G.E.M.邓紫棋", "artist", 3L, 4, "G.E.M.邓紫棋", PinyinInitials.initials("G.E.M.邓紫棋"))
+            .build();
+    }
+
+    @Test
+    void computesPinyinInitials() {
+        assertEquals("zjl", PinyinInitials.initials("周杰伦"));
+        assertEquals("gemdzq", PinyinInitials.initials("G.E.M.邓紫棋"));
+        assertEquals("cyx", PinyinInitials.initials("陈奕迅"));
+        assertNull(PinyinInitials.initials("Yellow"));
+        assertEquals(0, PinyinInitials.of('a'));
+    }
+
+    @Test
+    void completesByTextAndInitials() {
+        SuggestTrie trie = sample();
+        assertEquals(Arrays.asList("周杰伦", "周深"), texts(trie, "周", 10));
+        assertEquals(Arrays.asList("周杰伦"), texts(trie, "zj", 10));
+        assertEquals(Arrays.asList("周杰伦", "周深"), texts(trie, "z", 10));
+        assertEquals(Arrays.asList("晴天", "七里香"), texts(trie, "q", 10));
+        assertEquals(Arrays.asList("G.E.M.邓紫棋"), texts(trie, "ＧＥ", 10));
+        assertTrue(texts(trie, "x", 10).isEmpty());
+        assertTrue(texts(trie, "   ", 10).isEmpty());
+    }
+
+    @Test
+    void ranksByWeightAndLimitsToTopN() {
+        SuggestTrie trie = sample();
+        // "j" 下有 Jay(5)、Jay Chou Medley(3)，不会出现周杰伦（首字母为 z）
+        assertEquals(Arrays.asList("Jay", "Jay Chou Medley"), texts(trie, "J", 10));
+        assertEquals(Arrays.asList("Jay Chou Medley"), texts(trie, "jay  c", 10));
+        assertEquals(Arrays.asList("Jay Chou Medley"), texts(trie, "jay ", 10));
+        assertEquals(Arrays.asList("Jay"), texts(trie, "jay", 1));
+    }
+
+    @Test
+    void keywordWithSameTextAsSongIsDropped() {
+        SuggestTrie trie = sample();
+        int[] entries = trie.complete("晴", 10);
+        assertEquals(1, entries.length);
+        // 搜索词权重更高，但不会覆盖歌曲的类型和 ID
+        assertEquals("song", trie.getType(entries[0]));
+        assertEquals(Long.valueOf(11), trie.getId(entries[0]));
+        assertEquals(7, trie.getEntryCount());
+    }
+
+    @Test
+    void dedupesByTypeAndId() {
+        SuggestTrie trie = new SuggestTrie.Builder(10)
+            .add("Hello", "song", 1L, 3, "Hello")
+            .add("Hello", "song", 2L, 5, "Hello")
+            .add("Hello", "artist", 1L, 1, "Hello")
+            .add("Hello", "song", 1L, 4, "Hello")
+            .add("hello", "keyword", null, 9, "hello")
+            .add("hello world", "keyword", null, 2, "hello world")
+            .add("hello world", "keyword", null, 6, "hello world")
+            .build();
+
+        // 同名的两首歌和同名歌手各自保留；同一首歌重复添加时权重取较大者
+        int[] entries = trie.complete("hel", 10);
+        assertEquals(4, entries.length);
+        assertEquals("hello world", trie.getText(entries[0]));
+        assertEquals("keyword", trie.getType(entries[0]));
+        assertEquals(Long.valueOf(2), trie.getId(entries[1]));
+        assertEquals(Long.valueOf(1), trie.getId(entries[2]));
+        assertEquals("song", trie.getType(entries[2]));
+        assertEquals("artist", trie.getType(entries[3]));
+        assertEquals(4, trie.getEntryCount());
+    }
+
+    @Test
+    void sharesListsAlongSingleChains() {
+        SuggestTrie.Builder builder = new SuggestTrie.Builder(10);
+        builder.add("abcdefghijklmnopqrstuvwxyz", "song", 1L, 1, "abcdefghijklmnopqrstuvwxyz");
+        SuggestTrie trie = builder.build();
+        assertEquals(27, trie.getNodeCount());
+        assertEquals(1, trie.getTopSlots());
+        assertEquals(1, trie.complete("abcdefghijklm", 10).length);
+    }
+
+    private static List<String> texts(SuggestTrie trie, String prefix, int limit) {
+        List<String> texts = new ArrayList<>();
+        for (int entry : trie.complete(prefix, limit)) {
+            texts.add(trie.getText(entry));
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TextSearchIndex 测试
+ * 中文二元组切分、多词"与"匹配、英文前缀、字段权重与热度排序、分页、增量更新
+ */
+class TextSearchIndexTest {
+
+    private static TextSearchIndex sample() {
+        TextSearchIndex index = new TextSearchIndex(new float[]{3, 2, 1.5f, 1, 1});
+        index.put(1, new String[]{"晴天", "周杰伦", "叶惠美", "流行", "国语"}, 1000);
+        index.put(2, new String[]{"七里香", "周杰伦", "七里香", "流行", "国语"}, 500);
+        index.put(3, new String[]{"天黑黑", "孙燕姿", "风筝", "流行", "国语"}, 800);
+        index.put(4, new String[]{"Yellow", "Coldplay", "Parachutes", "Rock", "英语"}, 300);
+        index.put(5, new String[]{"Jay Chou Medley", "Various", null, null, null}, 0);
+        return index;
+    }
+
+    @Test
+    void tokenizesCjkIntoUnigramsAndBigrams() {
+        assertEquals(Arrays.asList("周", "周杰", "杰", "杰伦", "伦", "jay"), TextSearchIndex.tokenize("周杰伦 JAY"));
+        assertEquals(Arrays.asList("g", "e", "m", "邓", "邓紫", "紫", "紫棋", "棋"), TextSearchIndex.tokenize("G.E.M.邓紫棋"));
+    }
+
+    @Test
+    void matchesSubstringAndAllTerms() {
+        TextSearchIndex index = sample();
+        // 两首都只在歌手名命中，文档较短的得分更高
+        assertArrayEquals(new long[]{1, 2}, ids(index.search("周杰伦", 0, 10, 0)));
+        assertArrayEquals(new long[]{1}, ids(index.search("周杰伦 晴天", 0, 10, 0)));
+        // "天黑" 只匹配二元组，不会命中只含"天"的"晴天"
+        assertArrayEquals(new long[]{3}, ids(index.search("天黑", 0, 10, 0)));
+        assertEquals(2, index.search("天", 0, 10, 0).getTotal());
+        assertEquals(0, index.search("周杰伦 孙燕姿", 0, 10, 0).getTotal());
+        assertEquals(0, index.search("  ", 0, 10, 0).getTotal());
+    }
+
+    @Test
+    void expandsTrailingLatinPrefix() {
+        TextSearchIndex index = sample();
+        assertArrayEquals(new long[]{4}, ids(index.search("cold", 0, 10, 0)));
+        // 后面跟了空格说明单词已输入完，按整词匹配
+        assertEquals(0, index.search("cold ", 0, 10, 0).getTotal());
+        assertArrayEquals(new long[]{5}, ids(index.search("jay ch", 0, 10, 0)));
+    }
+
+    @Test
+    void prefixExpandsEveryMatchingTerm() {
+        TextSearchIndex index = new TextSearchIndex(new float[]{1});
+        // 200 个以 "s" 开头的不同单词，字典序靠后的 "sz..." 文档热度最高
+        for (int i = 0; i < 200; i++) {
+            String word = (i < 100 ? "sa" : "sz") + String.format("%03d", i);
+            index.put(i, new String[]{word}, i);
+        }
+        index.put(1000, new String[]{"other"}, 0);
+
+        TextSearchIndex.Hits hits = index.search("s", 0, 3, 1);
+        assertEquals(200, hits.getTotal());
+        assertArrayEquals(new long[]{199, 198, 197}, hits.getIds());
+        assertEquals(100, index.search("sz", 0, 10, 0).getTotal());
+    }
+
+    @Test
+    void ranksByFieldWeightAndPopularity() {
+        TextSearchIndex index = sample();
+        // 标题命中比只在专辑命中更相关
+        index.put(6, new String[]{"风筝", "群星", "天空", null, null}, 0);
+        assertArrayEquals(new long[]{6, 3}, ids(index.search("风筝", 0, 10, 0)));
+        // "流行" 三首都只在流派命中，按热度排序
+        assertArrayEquals(new long[]{1, 3, 2}, ids(index.search("流行", 0, 10, 0.5)));
+        TextSearchIndex.Hits page = index.search("流行", 1, 1, 0.5);
+        assertEquals(3, page.getTotal());
+        assertArrayEquals(new long[]{3}, page.getIds());
+        assertEquals(0, index.search("流行", 5, 10, 0.5).getIds().length);
+        // 超大偏移量（分页参数换算后截断到 int 上限）只返回总数；负数按 0 处理
+        TextSearchIndex.Hits beyond = index.search("流行", Integer.MAX_VALUE, 10, 0.5);
+        assertEquals(3, beyond.getTotal());
+        assertEquals(0, beyond.getIds().length);
+        assertArrayEquals(new long[]{1, 3, 2}, ids(index.search("流行", -5, 10, 0.5)));
+        assertEquals(0, index.search("流行", 0, -1, 0.5).getIds().length);
+
+        index.addPopularity(2, 100_000);
+        assertEquals(2, index.search("流行", 0, 1, 0.5).getIds()[0]);
+    }
+
+    @Test
+    void updatesAndRemovesIncrementally() {
+        TextSearchIndex index = sample();
+        index.put(1, new String[]{"晴天 Live", "周杰伦", null, null, null}, 1000);
+        assertEquals(0, index.search("叶惠美", 0, 10, 0).getTotal());
+        assertArrayEquals(new long[]{1}, ids(index.search("live", 0, 10, 0)));
+
+        index.remove(2);
+        assertEquals(0, index.search("七里香", 0, 10, 0).getTotal());
+        assertEquals(4, ((Number) index.getStats().get("documents")).intValue());
+    }
+
+    private static long[] ids(TextSearchIndex.Hits hits) {
+        return hits.getIds();
+    }
+}
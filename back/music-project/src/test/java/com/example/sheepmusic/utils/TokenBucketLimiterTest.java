@@ -0,0 +1,104 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenBucketLimiter 测试
+ * 突发容量、按速率补充、键之间互不影响、空闲键清除、并发下不超发
+ */
+class TokenBucketLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void burstThenRefillAtRate() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 5);
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("u:1", now), "burst " + i);
+        }
+        assertFalse(limiter.tryAcquire("u:1", now));
+
+        // 2 个/秒：半秒补一个
+        assertFalse(limiter.tryAcquire("u:1", now + SECOND / 2 - 1));
+        assertTrue(limiter.tryAcquire("u:1", now + SECOND / 2));
+        assertFalse(limiter.tryAcquire("u:1", now + SECOND / 2));
+
+        // 长时间空闲后最多恢复到 burst 个
+        long later = now + 60 * SECOND;
+        int granted = 0;
+        while (limiter.tryAcquire("u:1", later)) {
+            granted++;
+        }
+        assertEquals(5, granted);
+    }
+
+    @Test
+    void keysAreIndependent() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1);
+        long now = 5 * SECOND;
+        assertTrue(limiter.tryAcquire("u:1", now));
+        assertFalse(limiter.tryAcquire("u:1", now));
+        assertTrue(limiter.tryAcquire("u:2", now));
+        assertTrue(limiter.tryAcquire("ip:127.0.0.1", now));
+    }
+
+    @Test
+    void evictOnlyFullBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 3);
+        long now = 10 * SECOND;
+        limiter.tryAcquire("a", now);
+        limiter.tryAcquire("b", now);
+        limiter.tryAcquire("b", now);
+        limiter.tryAcquire("b", now);
+        assertEquals(2, limiter.size());
+
+        // a 在 1 秒后补满，b 需要 3 秒
+        assertEquals(1, limiter.evictIdle(now + SECOND));
+        assertEquals(1, limiter.size());
+        assertFalse(limiter.tryAcquire("b", now + SECOND / 2));
+        assertEquals(1, limiter.evictIdle(now + 3 * SECOND));
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    void concurrentAcquireNeverExceedsBurst() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(0.001, 100);
+        long now = 100 * SECOND;
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (limiter.tryAcquire("hot", now)) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(100, granted.get());
+    }
+
+    @Test
+    void rejectInvalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketLimiter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketLimiter(1, 0));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.sheepmusic.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TransitionTable 测试
+ * 后继按计数降序；表满时替换计数最小的一项并继承其计数，高频后继不会被偶发后继挤掉
+ */
+class TransitionTableTest {
+
+    @Test
+    void successorsOrderedByCount() {
+        TransitionTable table = new TransitionTable(10);
+        for (int i = 0; i < 3; i++) {
+            table.increment(1, 30);
+        }
+        table.increment(1, 10);
+        for (int i = 0; i < 2; i++) {
+            table.increment(1, 20);
+        }
+
+        assertArrayEquals(new long[]{30, 20, 10}, table.successors(1, 10));
+        assertArrayEquals(new long[]{30, 20}, table.successors(1, 2));
+        assertEquals(3, table.count(1, 30));
+        assertEquals(0, table.count(1, 99));
+        assertEquals(0, table.successors(2, 10).length);
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void fullRowReplacesSmallest() {
+        TransitionTable table = new TransitionTable(2);
+        table.increment(1, 10);
+        table.increment(1, 10);
+        table.increment(1, 20);
+
+        // 20 被 30 替换，30 继承 20 的计数 + 1
+        table.increment(1, 30);
+        assertArrayEquals(new long[]{10, 30}, table.successors(1, 10));
+        assertEquals(0, table.count(1, 20));
+        assertEquals(2, table.count(1, 30));
+        assertEquals(2, table.count(1, 10));
+    }
+
+    @Test
+    void heavySuccessorsSurviveNoise() {
+        TransitionTable table = new TransitionTable(5);
+        Random random = new Random(3);
+        for (int i = 0; i < 20_000; i++) {
+            // 三个高频后继与大量只出现一两次的后继交替出现
+            long to = i % 4 == 3 ? 1000 + random.nextInt(100_000) : 1 + i % 4;
+            table.increment(7, to);
+        }
+
+        long[] top = table.successors(7, 3);
+        assertEquals(3, top.length);
+        for (long heavy = 1; heavy <= 3; heavy++) {
+            boolean found = false;
+            for (long id : top) {
+                found |= id == heavy;
+            }
+            assertTrue(found, "heavy successor evicted: " + heavy);
+        }
+        assertEquals(5, table.successors(7, 100).length);
+    }
+
+    @Test
+    void removeSource() {
+        TransitionTable table = new TransitionTable(10);
+        table.increment(1, 2);
+        table.increment(3, 2);
+        table.removeSource(1);
+
+        assertEquals(0, table.successors(1, 10).length);
+        assertArrayEquals(new long[]{2}, table.successors(3, 10));
+        assertEquals(1, table.size());
+
+        table.clear();
+        assertEquals(0, table.size());
+    }
+}
@@ -59,6 +59,17 @@ export const deletePlayHistory = (id) => {
   })
 }
 
+/**
+ * 从播放历史中删除一首歌（该歌曲的全部播放记录）
+ * @param {Number} songId - 歌曲ID
+ */
+export const deleteSongPlayHistory = (songId) => {
+  return request({
+    url: `/api/user/play-history/song/${songId}`,
+    method: 'delete'
+  })
+}
+
 /**
  * 获取最近播放的歌曲
  * @param {Number} limit - 数量限制
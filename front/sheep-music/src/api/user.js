@@ -9,6 +9,15 @@ export const login = (data) => {
   })
 }
 
+// 退出登录（作废刷新令牌并吊销当前访问令牌）
+export const logout = (refreshToken) => {
+  return request({
+    url: '/auth/logout',
+    method: 'post',
+    data: { refreshToken }
+  })
+}
+
 // 用户注册
 export const register = (data) => {
   return request({
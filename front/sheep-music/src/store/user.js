@@ -3,6 +3,7 @@ import { defineStore } from 'pinia'
 export const useUserStore = defineStore('user', {
   state: () => ({
     token: localStorage.getItem('token') || '',
+    refreshToken: localStorage.getItem('refreshToken') || '',
     userInfo: JSON.parse(localStorage.getItem('userInfo') || 'null')  // 从 localStorage 恢复
   }),
 
@@ -16,6 +17,13 @@ export const useUserStore = defineStore('user', {
       this.token = token
       localStorage.setItem('token', token)
     },
+    // 保存登录/刷新返回的访问令牌、刷新令牌和过期时间（expiresIn 为秒）
+    setTokens ({ token, refreshToken, expiresIn }) {
+      this.setToken(token)
+      this.refreshToken = refreshToken
+      localStorage.setItem('refreshToken', refreshToken)
+      localStorage.setItem('tokenExpiresAt', String(Date.now() + expiresIn * 1000))
+    },
     setUserInfo (userInfo) {
       this.userInfo = userInfo
       // 保存到 localStorage（JSON 序列化）
@@ -24,8 +32,11 @@ export const useUserStore = defineStore('user', {
 
     logout () {
       this.token = ''
+      this.refreshToken = ''
       this.userInfo = null
       localStorage.removeItem('token')
+      localStorage.removeItem('refreshToken')
+      localStorage.removeItem('tokenExpiresAt')
       localStorage.removeItem('userInfo')  // 清除用户信息
     }
   }
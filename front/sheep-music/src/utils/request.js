@@ -1,5 +1,7 @@
 import axios from 'axios'
 import { ElMessage } from 'element-plus'
+import { useUserStore } from '@/store/user'
+import wsClient from '@/ws/client'
 
 // 根据环境自动选择 baseURL
 // 开发环境：/api（通过代理到本地后端）
@@ -15,9 +17,99 @@ const request = axios.create({
   timeout: 30000 // 增加超时时间到30秒（云端可能较慢）
 })
 
+// 访问令牌剩余不足这么久时提前刷新（毫秒）
+const REFRESH_AHEAD = 30000
+
+// 正在进行的刷新请求，本页内的并发请求共用同一次刷新
+let refreshing = null
+
+// 跨标签页互斥锁名：刷新令牌存放在共享的 localStorage 中，多个标签页同时用同一个刷新令牌刷新时，
+// 后到的请求会被服务端当作重放，整个登录会话被作废
+const REFRESH_LOCK = 'sheep-music-token-refresh'
+
+// 在跨标签页锁内执行（浏览器不支持 Web Locks 时直接执行，仍靠下面的重新读取缩小竞争窗口）
+const withRefreshLock = (task) => (navigator.locks?.request
+  ? navigator.locks.request(REFRESH_LOCK, task)
+  : task())
+
+// 把其他标签页写入的令牌同步到本页的 store 和 WebSocket
+const adoptStoredTokens = () => {
+  const userStore = useUserStore()
+  const token = localStorage.getItem('token')
+  userStore.token = token || ''
+  userStore.refreshToken = localStorage.getItem('refreshToken') || ''
+  if (token) {
+    wsClient.updateToken(token)
+  }
+  return token
+}
+
+/**
+ * 用刷新令牌换取新的访问令牌（旧刷新令牌随即作废，新的一对令牌写回 store）
+ * 同时让 WebSocket 用新令牌重连。
+ * 拿到锁后重新读取 localStorage：刷新令牌已被其他标签页轮换时直接采用新令牌，不再用旧令牌刷新
+ */
+export const refreshAccessToken = () => {
+  if (!refreshing) {
+    const seenRefreshToken = localStorage.getItem('refreshToken')
+    refreshing = withRefreshLock(() => {
+      const refreshToken = localStorage.getItem('refreshToken')
+      if (!refreshToken) {
+        return Promise.reject(new Error('登录已过期，请重新登录'))
+      }
+      if (refreshToken !== seenRefreshToken) {
+        return adoptStoredTokens()
+      }
+      return axios.post(`${baseURL}/auth/refresh`, { refreshToken }).then(({ data: res }) => {
+        if (res.code !== 200) {
+          throw new Error(res.message || '登录已过期，请重新登录')
+        }
+        useUserStore().setTokens(res.data)
+        wsClient.updateToken(res.data.token)
+        return res.data.token
+      })
+    }).finally(() => {
+      refreshing = null
+    })
+  }
+  return refreshing
+}
+
+// 其他标签页刷新或退出登录后，本页的 store 跟着更新
+window.addEventListener('storage', (event) => {
+  if (event.key === 'token' && event.newValue !== event.oldValue) {
+    adoptStoredTokens()
+  }
+})
+
+/**
+ * 访问令牌即将过期时先刷新（上传等不经过 request 的请求在发送前调用）
+ */
+export const ensureFreshToken = () => {
+  const expiresAt = Number(localStorage.getItem('tokenExpiresAt') || 0)
+  if (expiresAt && Date.now() > expiresAt - REFRESH_AHEAD && localStorage.getItem('refreshToken')) {
+    return refreshAccessToken().catch(() => {})
+  }
+  return Promise.resolve()
+}
+
+// 刷新失败：清除登录状态并回到登录页
+const handleSessionExpired = () => {
+  try { wsClient.disconnect() } catch (e) {}
+  useUserStore().logout()
+  window.location.hash = '#/login'
+}
+
+const isAuthUrl = (url) => (url || '').includes('/auth/')
+
+wsClient.setTokenRefresher(refreshAccessToken)
+
 // 请求拦截器
 request.interceptors.request.use(
-  config => {
+  async config => {
+    if (!isAuthUrl(config.url)) {
+      await ensureFreshToken()
+    }
     // 在发送请求之前做些什么，例如添加 token
     const token = localStorage.getItem('token')
     if (token) {
@@ -49,6 +141,25 @@ request.interceptors.response.use(
     }
   },
   error => {
+    // 访问令牌过期：刷新一次后重放原请求
+    const config = error.config
+    if (error.response?.status === 401 && config && !config._retried && !isAuthUrl(config.url)
+        && localStorage.getItem('refreshToken')) {
+      config._retried = true
+      // 其他标签页已经换了新令牌：直接用新令牌重放
+      const current = localStorage.getItem('token')
+      const refreshed = current && config.headers.Authorization !== `Bearer ${current}`
+        ? Promise.resolve(adoptStoredTokens())
+        : refreshAccessToken()
+      return refreshed.then(token => {
+        config.headers.Authorization = `Bearer ${token}`
+        return request(config)
+      }, refreshError => {
+        handleSessionExpired()
+        ElMessage.error(refreshError.message || '登录已过期，请重新登录')
+        return Promise.reject(refreshError)
+      })
+    }
     // 对响应错误做点什么（网络错误、超时等）
     const message = error.response?.data?.message || error.message || '请求失败'
     ElMessage.error(message)
@@ -15,6 +15,22 @@ class WSClient {
     this.token = null
     this.chatHandlers = []
     this.notifyHandlers = []
+    // 访问令牌即将过期时用于刷新的函数（由 request.js 注册，避免循环依赖）
+    this.tokenRefresher = null
+  }
+
+  setTokenRefresher(refresher) {
+    this.tokenRefresher = refresher
+  }
+
+  // 访问令牌刷新后用新令牌重连（CONNECT 帧只在建立连接时携带认证头）
+  updateToken(token) {
+    this.token = token
+    if (this.client) {
+      const userId = this.userId
+      this.disconnect()
+      this.connect({ userId, token })
+    }
   }
 
   connect({ userId, token }) {
@@ -75,12 +91,36 @@ class WSClient {
   }
 
   // 发送聊天消息到 /app/chat/send
-  sendChatMessage(payload) {
+  async sendChatMessage(payload) {
+    if (!this.client || !this.connected) return
+    // 令牌将要过期时先刷新（刷新后会重连，等新连接建立再发送）
+    const expiresAt = Number(localStorage.getItem('tokenExpiresAt') || 0)
+    if (this.tokenRefresher && expiresAt && Date.now() > expiresAt - 30000) {
+      try {
+        await this.tokenRefresher()
+        await this.waitConnected()
+      } catch (_) {
+        return
+      }
+    }
     if (!this.client || !this.connected) return
     const headers = this.token ? { Authorization: `Bearer ${this.token}` } : {}
     this.client.publish({ destination: '/app/chat/send', headers, body: JSON.stringify(payload) })
   }
 
+  // 等待连接建立（最多 5 秒）
+  waitConnected(timeout = 5000) {
+    const start = Date.now()
+    return new Promise((resolve, reject) => {
+      const check = () => {
+        if (this.client && this.connected) return resolve()
+        if (Date.now() - start > timeout) return reject(new Error('WebSocket 未连接'))
+        setTimeout(check, 100)
+      }
+      check()
+    })
+  }
+
   // 注册处理器
   onChatMessage(handler) {
     this.chatHandlers.push(handler)